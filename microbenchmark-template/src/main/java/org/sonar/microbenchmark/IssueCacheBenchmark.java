@@ -0,0 +1,147 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.server.computation.issue.DefaultIssueCodec;
+import org.sonar.server.util.cache.DiskCache;
+
+/**
+ * Writes then reads the issues of the Compute Engine disk cache, with Java serialization
+ * and with {@link DefaultIssueCodec}, compressed or not. Size of the cache file is logged
+ * at the end of each iteration.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class IssueCacheBenchmark {
+
+  private static final int ISSUES = 10000;
+
+  File file;
+  DefaultIssue[] issues = new DefaultIssue[ISSUES];
+
+  @Setup
+  public void setup() throws Exception {
+    file = File.createTempFile("microbenchmark", ".dat");
+    Date now = new Date();
+    for (int i = 0; i < ISSUES; i++) {
+      String key = "AU-Tpxb--iU5OvuD2FL" + i;
+      issues[i] = new DefaultIssue()
+        .setKey(key)
+        .setComponentUuid("AU-TpxcA-iU5OvuD2FLz" + (i / 50))
+        .setComponentKey("org.sonarsource:sample:src/main/java/org/sonarsource/File" + (i / 50) + ".java")
+        .setModuleUuid("AU-TpxcA-iU5OvuD2FLy")
+        .setModuleUuidPath(".AU-TpxcA-iU5OvuD2FLy.")
+        .setProjectUuid("AU-TpxcA-iU5OvuD2FLy")
+        .setProjectKey("org.sonarsource:sample")
+        .setRuleKey(RuleKey.of("squid", "S00" + (i % 100)))
+        .setLanguage("java")
+        .setSeverity("MAJOR")
+        .setMessage("this is the message of issue " + i)
+        .setLine(i % 500 + 1)
+        .setDebt(Duration.create(10L))
+        .setStatus("OPEN")
+        .setAssignee("someone")
+        .setChecksum("c4e5d6f7a8b9" + i)
+        .setAuthorLogin("someone")
+        .setTags(Arrays.asList("tag" + i, "othertag" + i))
+        .setCreationDate(now)
+        .setUpdateDate(now)
+        .setNew(i % 2 == 0)
+        .setFieldChange(IssueChangeContext.createScan(now), "severity", "MINOR", "MAJOR")
+        .addComment(DefaultIssueComment.create(key, "someone", "comment of issue " + i));
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void logFileSize() {
+    System.out.println("Size of cache file: " + file.length() + " bytes");
+  }
+
+  @Benchmark
+  public void serialization(Blackhole blackhole) throws Exception {
+    writeAndRead(new DiskCache<DefaultIssue>(file, System2.INSTANCE), blackhole);
+  }
+
+  @Benchmark
+  public void codec(Blackhole blackhole) throws Exception {
+    writeAndRead(new DiskCache<>(file, System2.INSTANCE, new DefaultIssueCodec(), false), blackhole);
+  }
+
+  @Benchmark
+  public void codec_lz4(Blackhole blackhole) throws Exception {
+    writeAndRead(new DiskCache<>(file, System2.INSTANCE, new DefaultIssueCodec(), true), blackhole);
+  }
+
+  private void writeAndRead(DiskCache<DefaultIssue> cache, Blackhole blackhole) {
+    DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender();
+    for (DefaultIssue issue : issues) {
+      appender.append(issue);
+    }
+    appender.close();
+    try (CloseableIterator<DefaultIssue> it = cache.traverse()) {
+      while (it.hasNext()) {
+        blackhole.consume(it.next());
+      }
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(IssueCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
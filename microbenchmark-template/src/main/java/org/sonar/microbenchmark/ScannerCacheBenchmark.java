@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.internal.DefaultTempFolder;
+import org.sonar.batch.index.Cache;
+import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.CachesManager;
+import org.sonar.batch.issue.IssueCache;
+import org.sonar.batch.issue.tracking.TrackedIssue;
+
+/**
+ * Writes then reads the issues of the scanner cache, stored in Persistit with Java serialization
+ * and in the memory-mapped cache of {@link IssueCache}.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+public class ScannerCacheBenchmark {
+
+  private static final int ISSUES = 10000;
+
+  CachesManager cachesManager;
+  TrackedIssue[] issues = new TrackedIssue[ISSUES];
+
+  @Setup
+  public void setup() throws Exception {
+    File dir = Files.createTempDirectory("microbenchmark").toFile();
+    cachesManager = new CachesManager(new DefaultTempFolder(dir, true));
+    Date now = new Date();
+    for (int i = 0; i < ISSUES; i++) {
+      issues[i] = new TrackedIssue()
+        .setKey("AU-Tpxb--iU5OvuD2FL" + i)
+        .setComponentKey("org.sonarsource:sample:src/main/java/org/sonarsource/File" + (i / 50) + ".java")
+        .setRuleKey(RuleKey.of("squid", "S00" + (i % 100)))
+        .setSeverity("MAJOR")
+        .setMessage("this is the message of issue " + i)
+        .setStartLine(i % 500 + 1)
+        .setEndLine(i % 500 + 2)
+        .setStatus("OPEN")
+        .setAssignee("someone")
+        .setCreationDate(now)
+        .setNew(i % 2 == 0);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    cachesManager.stop();
+  }
+
+  @Benchmark
+  public void persistit(Blackhole blackhole) {
+    Caches caches = new Caches(cachesManager);
+    Cache<TrackedIssue> cache = caches.createCache("issues");
+    for (TrackedIssue issue : issues) {
+      cache.put(issue.componentKey(), issue.key(), issue);
+    }
+    for (TrackedIssue issue : cache.values()) {
+      blackhole.consume(issue);
+    }
+    for (int i = 0; i < ISSUES; i += 50) {
+      for (TrackedIssue issue : cache.values(issues[i].componentKey())) {
+        blackhole.consume(issue);
+      }
+    }
+    caches.stop();
+  }
+
+  @Benchmark
+  public void mapped(Blackhole blackhole) {
+    Caches caches = new Caches(cachesManager);
+    IssueCache cache = new IssueCache(caches);
+    for (TrackedIssue issue : issues) {
+      cache.put(issue);
+    }
+    for (TrackedIssue issue : cache.all()) {
+      blackhole.consume(issue);
+    }
+    for (int i = 0; i < ISSUES; i += 50) {
+      for (TrackedIssue issue : cache.byComponent(issues[i].componentKey())) {
+        blackhole.consume(issue);
+      }
+    }
+    caches.stop();
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(ScannerCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
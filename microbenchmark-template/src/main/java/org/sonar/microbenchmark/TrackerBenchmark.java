@@ -0,0 +1,169 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.microbenchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.issue.tracking.BlockHashSequence;
+import org.sonar.core.issue.tracking.Input;
+import org.sonar.core.issue.tracking.LineHashSequence;
+import org.sonar.core.issue.tracking.Trackable;
+import org.sonar.core.issue.tracking.Tracker;
+import org.sonar.core.issue.tracking.Tracking;
+
+/**
+ * Tracks the issues of a file in which blocks of lines have been moved. Lines are repeated, so that
+ * most of the issues are matched by comparing blocks of similar lines.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.Throughput)
+public class TrackerBenchmark {
+
+  private static final int BLOCK_SIZE = 20;
+  private static final RuleKey RULE_KEY = RuleKey.of("squid", "S001");
+
+  @Param({"1000", "10000", "50000"})
+  public int lines;
+
+  FakeInput baseInput;
+  FakeInput rawInput;
+
+  @Setup
+  public void setup() throws Exception {
+    int blocks = lines / BLOCK_SIZE;
+    List<String> baseHashes = new ArrayList<>();
+    for (int i = 0; i < blocks * BLOCK_SIZE; i++) {
+      // every fifth line is the same, for example a closing brace
+      baseHashes.add(i % 5 == 0 ? "}" : "line" + (i % 97));
+    }
+    // odd blocks are moved at the end of file, and a line is inserted before each block
+    List<String> rawHashes = new ArrayList<>();
+    for (int pass = 0; pass < 2; pass++) {
+      for (int block = pass; block < blocks; block += 2) {
+        rawHashes.add("new line " + block);
+        rawHashes.addAll(baseHashes.subList(block * BLOCK_SIZE, (block + 1) * BLOCK_SIZE));
+      }
+    }
+    baseInput = new FakeInput(baseHashes);
+    rawInput = new FakeInput(rawHashes);
+    for (int line = 1; line <= baseHashes.size(); line += 2) {
+      baseInput.issues.add(new FakeIssue(line, baseHashes.get(line - 1), "message of base issue " + line));
+    }
+    for (int line = 1; line <= rawHashes.size(); line += 2) {
+      rawInput.issues.add(new FakeIssue(line, rawHashes.get(line - 1), "message of raw issue " + line));
+    }
+  }
+
+  @Benchmark
+  public Tracking<FakeIssue, FakeIssue> track() {
+    return new Tracker<FakeIssue, FakeIssue>().track(rawInput, baseInput);
+  }
+
+  static class FakeIssue implements Trackable {
+    private final int line;
+    private final String lineHash;
+    private final String message;
+
+    FakeIssue(int line, String lineHash, String message) {
+      this.line = line;
+      this.lineHash = lineHash;
+      this.message = message;
+    }
+
+    @Override
+    public Integer getLine() {
+      return line;
+    }
+
+    @Override
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String getLineHash() {
+      return lineHash;
+    }
+
+    @Override
+    public RuleKey getRuleKey() {
+      return RULE_KEY;
+    }
+  }
+
+  static class FakeInput implements Input<FakeIssue> {
+    private final LineHashSequence lineHashSequence;
+    private final BlockHashSequence blockHashSequence;
+    private final List<FakeIssue> issues = new ArrayList<>();
+
+    FakeInput(List<String> lineHashes) {
+      this.lineHashSequence = new LineHashSequence(lineHashes);
+      this.blockHashSequence = BlockHashSequence.create(lineHashSequence);
+    }
+
+    @Override
+    public LineHashSequence getLineHashSequence() {
+      return lineHashSequence;
+    }
+
+    @Override
+    public BlockHashSequence getBlockHashSequence() {
+      return blockHashSequence;
+    }
+
+    @Override
+    public Collection<FakeIssue> getIssues() {
+      return issues;
+    }
+  }
+
+  /**
+   * You can this benchmark with maven command-line (see run.sh) or by executing this method
+   * in IDE
+   */
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+      .include(TrackerBenchmark.class.getSimpleName())
+      .build();
+    new Runner(opt).run();
+  }
+}
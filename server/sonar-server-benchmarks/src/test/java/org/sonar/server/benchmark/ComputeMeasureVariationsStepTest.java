@@ -0,0 +1,170 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.ComponentTesting;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.measure.MeasureDao;
+import org.sonar.db.measure.MeasureDto;
+import org.sonar.server.computation.batch.TreeRootHolderRule;
+import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.measure.MeasureRepositoryRule;
+import org.sonar.server.computation.metric.Metric;
+import org.sonar.server.computation.metric.MetricImpl;
+import org.sonar.server.computation.metric.MetricRepositoryRule;
+import org.sonar.server.computation.period.Period;
+import org.sonar.server.computation.period.PeriodsHolderRule;
+import org.sonar.server.computation.step.ComputeMeasureVariationsStep;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.spy;
+import static org.sonar.db.component.SnapshotTesting.createForComponent;
+import static org.sonar.db.component.SnapshotTesting.newSnapshotForProject;
+import static org.sonar.server.computation.measure.Measure.newMeasureBuilder;
+
+/**
+ * Executes {@link ComputeMeasureVariationsStep} on a project with many directories and counts the queries
+ * run to load past measures, which must not depend on the number of components.
+ */
+public class ComputeMeasureVariationsStepTest {
+
+  public static final Logger LOGGER = LoggerFactory.getLogger("perfTestComputeMeasureVariationsStep");
+
+  public static final int NUMBER_OF_DIRECTORIES = 2000;
+  public static final int NUMBER_OF_PERIODS = 5;
+  public static final int NUMBER_OF_METRICS = 20;
+
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
+  @Rule
+  public PeriodsHolderRule periodsHolder = new PeriodsHolderRule();
+  @Rule
+  public MetricRepositoryRule metricRepository = new MetricRepositoryRule();
+  @Rule
+  public MeasureRepositoryRule measureRepository = MeasureRepositoryRule.create(treeRootHolder, metricRepository);
+
+  private DbClient dbClient = dbTester.getDbClient();
+  private List<Metric> metrics = new ArrayList<>();
+  private List<Component> components = new ArrayList<>();
+
+  @Test
+  public void benchmark() {
+    prepareData();
+
+    DbClient spiedDbClient = spy(dbClient);
+    MeasureDao spiedMeasureDao = spy(dbClient.measureDao());
+    doReturn(spiedMeasureDao).when(spiedDbClient).measureDao();
+
+    long start = System.currentTimeMillis();
+    new ComputeMeasureVariationsStep(spiedDbClient, treeRootHolder, periodsHolder, metricRepository, measureRepository).execute();
+    long duration = System.currentTimeMillis() - start;
+    int queries = mockingDetails(spiedMeasureDao).getInvocations().size();
+
+    LOGGER.info(String.format("Variations of %d components computed in %d ms with %d queries on measures", components.size(), duration, queries));
+    Component directory = components.get(components.size() - 1);
+    assertThat(measureRepository.getRawMeasure(directory, metrics.get(0)).get().getVariations().hasVariation(NUMBER_OF_PERIODS)).isTrue();
+    // one query per period, whatever the number of components
+    assertThat(queries).isEqualTo(NUMBER_OF_PERIODS);
+  }
+
+  private void prepareData() {
+    LOGGER.info("Insert past measures");
+    for (int i = 1; i <= NUMBER_OF_METRICS; i++) {
+      Metric metric = new MetricImpl(i, "metric" + i, "metric" + i, Metric.MetricType.INT);
+      metricRepository.add(metric);
+      metrics.add(metric);
+    }
+
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      ComponentDto projectDto = ComponentTesting.newProjectDto();
+      dbClient.componentDao().insert(dbSession, projectDto);
+      List<ComponentDto> directoryDtos = new ArrayList<>();
+      for (int i = 0; i < NUMBER_OF_DIRECTORIES; i++) {
+        ComponentDto directoryDto = ComponentTesting.newDirectory(projectDto, "dir" + i);
+        dbClient.componentDao().insert(dbSession, directoryDto);
+        directoryDtos.add(directoryDto);
+      }
+      dbSession.commit();
+
+      Period[] periods = new Period[NUMBER_OF_PERIODS];
+      for (int periodIndex = 1; periodIndex <= NUMBER_OF_PERIODS; periodIndex++) {
+        SnapshotDto projectSnapshot = newSnapshotForProject(projectDto).setLast(false);
+        dbClient.snapshotDao().insert(dbSession, projectSnapshot);
+        dbSession.commit();
+        insertMeasures(dbSession, projectDto, projectSnapshot);
+        for (ComponentDto directoryDto : directoryDtos) {
+          SnapshotDto directorySnapshot = createForComponent(directoryDto, projectSnapshot).setLast(false);
+          dbClient.snapshotDao().insert(dbSession, directorySnapshot);
+          insertMeasures(dbSession, directoryDto, directorySnapshot);
+        }
+        dbSession.commit();
+        periods[periodIndex - 1] = new Period(periodIndex, "mode", null, projectSnapshot.getCreatedAt(), projectSnapshot.getId());
+      }
+      periodsHolder.setPeriods(periods);
+
+      List<Component> directories = new ArrayList<>();
+      for (int i = 0; i < directoryDtos.size(); i++) {
+        directories.add(ReportComponent.builder(Component.Type.DIRECTORY, i + 2).setUuid(directoryDtos.get(i).uuid()).build());
+      }
+      Component project = ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(projectDto.uuid())
+        .addChildren(directories.toArray(new Component[directories.size()]))
+        .build();
+      treeRootHolder.setRoot(project);
+      components.add(project);
+      components.addAll(directories);
+      for (Component component : components) {
+        for (Metric metric : metrics) {
+          measureRepository.addRawMeasure(component.getReportAttributes().getRef(), metric.getKey(), newMeasureBuilder().create(100, null));
+        }
+      }
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  private void insertMeasures(DbSession dbSession, ComponentDto componentDto, SnapshotDto snapshotDto) {
+    for (Metric metric : metrics) {
+      dbClient.measureDao().insert(dbSession, new MeasureDto()
+        .setMetricId(metric.getId())
+        .setComponentId(componentDto.getId())
+        .setSnapshotId(snapshotDto.getId())
+        .setValue(10d));
+    }
+  }
+}
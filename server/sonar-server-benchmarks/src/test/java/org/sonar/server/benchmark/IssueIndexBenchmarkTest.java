@@ -36,6 +36,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.Severity;
 import org.sonar.core.util.Uuids;
@@ -77,6 +78,9 @@ public class IssueIndexBenchmarkTest {
 
     // execute some queries
     benchmarkQueries();
+
+    // compare the two modes of authorization of issues
+    benchmarkAuthorizationModes();
   }
 
   private void indexAuthorizations() {
@@ -135,14 +139,43 @@ public class IssueIndexBenchmarkTest {
     // TODO assertions
   }
 
-  private void benchmarkQuery(String label, IssueQuery query) {
+  /**
+   * Compare the has_parent filter on authorization documents with the terms filter on the cached uuids of
+   * authorized projects (see {@link IssueIndex#DENORMALIZED_AUTHORIZATION_PROPERTY})
+   */
+  private void benchmarkAuthorizationModes() {
+    userSessionRule.setUserGroups("sonar-users");
+    IssueQuery query = IssueQuery.builder(userSessionRule).build();
+    Settings settings = tester.get(Settings.class);
+    try {
+      settings.setProperty(IssueIndex.DENORMALIZED_AUTHORIZATION_PROPERTY, false);
+      long hasParentMs = benchmarkQuery("all issues, has_parent authorization", query);
+
+      settings.setProperty(IssueIndex.DENORMALIZED_AUTHORIZATION_PROPERTY, true);
+      long termsMs = benchmarkQuery("all issues, denormalized authorization", query);
+
+      LOGGER.info(String.format("Authorization of issues: has_parent filter %d ms, terms filter %d ms", hasParentMs, termsMs));
+    } finally {
+      settings.removeProperty(IssueIndex.DENORMALIZED_AUTHORIZATION_PROPERTY);
+    }
+  }
+
+  /**
+   * @return the average duration in ms of the requests, excluding the first one which warms up caches
+   */
+  private long benchmarkQuery(String label, IssueQuery query) {
     IssueIndex index = tester.get(IssueIndex.class);
+    long total = 0L;
     for (int i = 0; i < 10; i++) {
       long start = System.currentTimeMillis();
       SearchResult<IssueDoc> result = index.search(query, new SearchOptions());
       long end = System.currentTimeMillis();
       LOGGER.info("Request (" + label + "): {} docs in {} ms", result.getTotal(), end - start);
+      if (i > 0) {
+        total += end - start;
+      }
     }
+    return total / 9;
   }
 
   private static class IssueIterator implements Iterator<IssueDoc> {
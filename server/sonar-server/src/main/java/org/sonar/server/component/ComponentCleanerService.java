@@ -30,7 +30,9 @@ import org.sonar.db.MyBatis;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.measure.index.ProjectMeasuresIndexer;
 import org.sonar.server.test.index.TestIndexer;
+import org.sonar.server.user.AuthorizationCache;
 
 @ServerSide
 public class ComponentCleanerService {
@@ -39,17 +41,22 @@ public class ComponentCleanerService {
   private final IssueAuthorizationIndexer issueAuthorizationIndexer;
   private final IssueIndexer issueIndexer;
   private final TestIndexer testIndexer;
+  private final ProjectMeasuresIndexer projectMeasuresIndexer;
   private final ResourceTypes resourceTypes;
   private final ComponentFinder componentFinder;
+  private final AuthorizationCache authorizationCache;
 
   public ComponentCleanerService(DbClient dbClient, IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer,
-    TestIndexer testIndexer, ResourceTypes resourceTypes, ComponentFinder componentFinder) {
+    TestIndexer testIndexer, ProjectMeasuresIndexer projectMeasuresIndexer, ResourceTypes resourceTypes, ComponentFinder componentFinder,
+    AuthorizationCache authorizationCache) {
     this.dbClient = dbClient;
     this.issueAuthorizationIndexer = issueAuthorizationIndexer;
     this.issueIndexer = issueIndexer;
     this.testIndexer = testIndexer;
+    this.projectMeasuresIndexer = projectMeasuresIndexer;
     this.resourceTypes = resourceTypes;
     this.componentFinder = componentFinder;
+    this.authorizationCache = authorizationCache;
   }
 
   public void delete(DbSession dbSession, List<ComponentDto> projects) {
@@ -74,6 +81,7 @@ public class ComponentCleanerService {
     }
     dbClient.purgeDao().deleteProject(dbSession, project.uuid());
     dbSession.commit();
+    authorizationCache.invalidate();
 
     deleteFromIndices(project.uuid());
   }
@@ -83,6 +91,7 @@ public class ComponentCleanerService {
     issueAuthorizationIndexer.deleteProject(projectUuid, false);
     issueIndexer.deleteProject(projectUuid, true);
     testIndexer.deleteByProject(projectUuid);
+    projectMeasuresIndexer.deleteProject(projectUuid);
   }
 
   private static boolean hasNotProjectScope(ComponentDto project) {
@@ -44,6 +44,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -58,13 +59,16 @@ public class ComponentService {
   private final UserSession userSession;
   private final System2 system2;
   private final ComponentFinder componentFinder;
+  private final AuthorizationCache authorizationCache;
 
-  public ComponentService(DbClient dbClient, I18n i18n, UserSession userSession, System2 system2, ComponentFinder componentFinder) {
+  public ComponentService(DbClient dbClient, I18n i18n, UserSession userSession, System2 system2, ComponentFinder componentFinder,
+    AuthorizationCache authorizationCache) {
     this.dbClient = dbClient;
     this.i18n = i18n;
     this.userSession = userSession;
     this.system2 = system2;
     this.componentFinder = componentFinder;
+    this.authorizationCache = authorizationCache;
   }
 
   public ComponentDto getByKey(String key) {
@@ -114,6 +118,7 @@ public class ComponentService {
       session.commit();
 
       session.commit();
+      authorizationCache.invalidate();
     } finally {
       session.close();
     }
@@ -138,6 +143,7 @@ public class ComponentService {
       userSession.checkComponentUuidPermission(UserRole.ADMIN, project.projectUuid());
       dbClient.resourceKeyUpdaterDao().bulkUpdateKey(session, project.getId(), stringToReplace, replacementString);
       session.commit();
+      authorizationCache.invalidate();
     } finally {
       session.close();
     }
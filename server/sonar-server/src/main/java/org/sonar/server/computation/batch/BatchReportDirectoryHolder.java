@@ -24,7 +24,8 @@ import org.sonar.server.computation.queue.CeTask;
 
 public interface BatchReportDirectoryHolder {
   /**
-   * The File of the directory where the Batch report files for the current {@link CeTask} are stored.
+   * The File of the directory where the Batch report files for the current {@link CeTask} are stored, or
+   * the report file itself when it is segmented (see {@link org.sonar.batch.protocol.output.SegmentedReportReader}).
    *
    * @throws IllegalStateException if the holder is empty (ie. there is no directory yet)
    */
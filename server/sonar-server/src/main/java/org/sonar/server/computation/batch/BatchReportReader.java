@@ -33,6 +33,11 @@ public interface BatchReportReader {
 
   CloseableIterator<BatchReport.Measure> readComponentMeasures(int componentRef);
 
+  /**
+   * Whether the report contains changesets for the component, without reading them
+   */
+  boolean hasChangesets(int componentRef);
+
   @CheckForNull
   BatchReport.Changesets readChangesets(int componentRef);
 
@@ -50,6 +55,12 @@ public interface BatchReportReader {
 
   CloseableIterator<BatchReport.Coverage> readComponentCoverage(int fileRef);
 
+  /**
+   * Hash of the coverage, syntax highlighting and symbols of a file. It is computed on the raw content of the report,
+   * without parsing it, in order to cheaply detect that these data did not change since the previous analysis.
+   */
+  String readLineDataHash(int fileRef);
+
   /**
    * Reads file source line by line. Return an absent optional if the file doest not exist
    */
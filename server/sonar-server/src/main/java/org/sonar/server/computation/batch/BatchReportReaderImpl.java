@@ -21,23 +21,30 @@ package org.sonar.server.computation.batch;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.primitives.Longs;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Parser;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.NoSuchElementException;
 import javax.annotation.CheckForNull;
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.batch.protocol.output.FileStructure;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.LineReaderIterator;
 
 public class BatchReportReaderImpl implements BatchReportReader {
+  private static final FileStructure.Domain[] LINE_DATA_DOMAINS = {
+    FileStructure.Domain.COVERAGES, FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, FileStructure.Domain.SYMBOLS};
+  private static final int BUFFER_SIZE = 8192;
+
   private final org.sonar.batch.protocol.output.BatchReportReader delegate;
   // caching of metadata which are read often
   private BatchReport.Metadata metadata;
@@ -56,16 +63,11 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<String> readScannerLogs() {
-    File file = delegate.getFileStructure().analysisLog();
-    if (!file.exists()) {
+    InputStream input = delegate.openAnalysisLog();
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
-    try {
-      InputStreamReader reader = new InputStreamReader(FileUtils.openInputStream(file), StandardCharsets.UTF_8);
-      return new LineReaderIterator(reader);
-    } catch (IOException e) {
-      throw new IllegalStateException("Fail to open file " + file, e);
-    }
+    return new LineReaderIterator(new InputStreamReader(input, StandardCharsets.UTF_8));
   }
 
   @Override
@@ -78,6 +80,11 @@ public class BatchReportReaderImpl implements BatchReportReader {
     return delegate.readComponentMeasures(componentRef);
   }
 
+  @Override
+  public boolean hasChangesets(int componentRef) {
+    return delegate.hasChangesets(componentRef);
+  }
+
   @Override
   @CheckForNull
   public BatchReport.Changesets readChangesets(int componentRef) {
@@ -120,17 +127,45 @@ public class BatchReportReaderImpl implements BatchReportReader {
   }
 
   @Override
-  public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
-    File file = delegate.readFileSource(fileRef);
-    if (file == null) {
-      return Optional.absent();
+  public String readLineDataHash(int fileRef) {
+    MessageDigest digest = DigestUtils.getMd5Digest();
+    for (FileStructure.Domain domain : LINE_DATA_DOMAINS) {
+      // the domain is part of the hash, so that moving data from a domain to another changes the hash
+      digest.update((byte) domain.ordinal());
+      InputStream input = delegate.openComponentData(domain, fileRef);
+      if (input != null) {
+        // the length ends the data of the domain, so that contents can't overlap domains
+        digest.update(Longs.toByteArray(updateDigest(digest, input, domain, fileRef)));
+      }
     }
+    return Hex.encodeHexString(digest.digest());
+  }
 
+  private static long updateDigest(MessageDigest digest, InputStream input, FileStructure.Domain domain, int fileRef) {
     try {
-      return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(IOUtils.lineIterator(FileUtils.openInputStream(file), StandardCharsets.UTF_8)));
+      long length = 0L;
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read = input.read(buffer);
+      while (read >= 0) {
+        digest.update(buffer, 0, read);
+        length += read;
+        read = input.read(buffer);
+      }
+      return length;
     } catch (IOException e) {
-      throw new IllegalStateException("Fail to traverse file: " + file, e);
+      throw new IllegalStateException("Fail to read " + domain + " of component #" + fileRef, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  @Override
+  public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
+    InputStream input = delegate.openComponentData(FileStructure.Domain.SOURCE, fileRef);
+    if (input == null) {
+      return Optional.absent();
     }
+    return Optional.<CloseableIterator<String>>of(new CloseableLineIterator(IOUtils.lineIterator(input, StandardCharsets.UTF_8)));
   }
 
   private static class CloseableLineIterator extends CloseableIterator<String> {
@@ -164,49 +199,35 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
   @Override
   public CloseableIterator<BatchReport.Test> readTests(int testFileRef) {
-    File file = delegate.readTests(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(BatchReport.Test.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openComponentData(FileStructure.Domain.TESTS, testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    return new ParserCloseableIterator<>(BatchReport.Test.parser(), input);
   }
 
   @Override
   public CloseableIterator<BatchReport.CoverageDetail> readCoverageDetails(int testFileRef) {
-    File file = delegate.readCoverageDetails(testFileRef);
-    if (file == null) {
-      return CloseableIterator.emptyCloseableIterator();
-    }
-
-    try {
-      return new ParserCloseableIterator<>(BatchReport.CoverageDetail.parser(), FileUtils.openInputStream(file));
-    } catch (IOException e) {
-      Throwables.propagate(e);
-      // actually never reached
+    InputStream input = delegate.openComponentData(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+    if (input == null) {
       return CloseableIterator.emptyCloseableIterator();
     }
+    return new ParserCloseableIterator<>(BatchReport.CoverageDetail.parser(), input);
   }
 
   private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
     private final Parser<T> parser;
-    private final FileInputStream fileInputStream;
+    private final InputStream inputStream;
 
-    public ParserCloseableIterator(Parser<T> parser, FileInputStream fileInputStream) {
+    public ParserCloseableIterator(Parser<T> parser, InputStream inputStream) {
       this.parser = parser;
-      this.fileInputStream = fileInputStream;
+      this.inputStream = inputStream;
     }
 
     @Override
     protected T doNext() {
       try {
-        return parser.parseDelimitedFrom(fileInputStream);
+        return parser.parseDelimitedFrom(inputStream);
       } catch (InvalidProtocolBufferException e) {
         Throwables.propagate(e);
         // actually never reached
@@ -216,7 +237,7 @@ public class BatchReportReaderImpl implements BatchReportReader {
 
     @Override
     protected void doClose() throws Exception {
-      fileInputStream.close();
+      inputStream.close();
     }
   }
 }
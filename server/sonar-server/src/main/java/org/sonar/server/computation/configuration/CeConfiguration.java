@@ -0,0 +1,56 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.configuration;
+
+public interface CeConfiguration {
+
+  /**
+   * The number of workers which process {@link org.sonar.server.computation.queue.CeTask} concurrently.
+   * Tasks of a same component are never processed concurrently whatever the number of workers.
+   *
+   * @return an int {@literal >=} 1
+   */
+  int getWorkerCount();
+
+  /**
+   * The number of threads which compute and encode the sources of files in parallel during the processing
+   * of a report.
+   *
+   * @return an int {@literal >=} 1
+   */
+  int getFileSourcesWorkerCount();
+
+  /**
+   * The maximum size of the sources of files which are written to database in a single batch.
+   *
+   * @return a long {@literal >=} 1024
+   */
+  long getFileSourcesBatchSizeInBytes();
+
+  /**
+   * The maximum number of duplication blocks which are loaded in memory to find cross project duplications.
+   * When the blocks of the last analyses exceed this limit, or when the limit is 0, candidates are selected
+   * from database.
+   *
+   * @return an int {@literal >=} 0
+   */
+  int getCrossProjectDuplicationIndexMaxBlocks();
+
+}
@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.configuration;
+
+import org.sonar.api.config.Settings;
+
+import static java.lang.String.format;
+
+/**
+ * Immutable {@link CeConfiguration} which values are read from {@link Settings} once, at startup.
+ */
+public class CeConfigurationImpl implements CeConfiguration {
+
+  public static final String WORKER_COUNT_PROPERTY = "sonar.ce.workerCount";
+  public static final int DEFAULT_WORKER_COUNT = 1;
+  public static final String FILE_SOURCES_WORKER_COUNT_PROPERTY = "sonar.ce.fileSources.workerCount";
+  public static final int DEFAULT_FILE_SOURCES_WORKER_COUNT = 2;
+  public static final String FILE_SOURCES_BATCH_SIZE_PROPERTY = "sonar.ce.fileSources.batchSizeInKb";
+  public static final int DEFAULT_FILE_SOURCES_BATCH_SIZE = 8 * 1024;
+  public static final String CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS_PROPERTY = "sonar.ce.crossProjectDuplicationIndex.maxBlocks";
+  public static final int DEFAULT_CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS = 2_000_000;
+
+  private final int workerCount;
+  private final int fileSourcesWorkerCount;
+  private final long fileSourcesBatchSizeInBytes;
+  private final int crossProjectDuplicationIndexMaxBlocks;
+
+  public CeConfigurationImpl(Settings settings) {
+    this.workerCount = readPositiveInt(settings, WORKER_COUNT_PROPERTY, DEFAULT_WORKER_COUNT);
+    this.fileSourcesWorkerCount = readPositiveInt(settings, FILE_SOURCES_WORKER_COUNT_PROPERTY, DEFAULT_FILE_SOURCES_WORKER_COUNT);
+    this.fileSourcesBatchSizeInBytes = readPositiveInt(settings, FILE_SOURCES_BATCH_SIZE_PROPERTY, DEFAULT_FILE_SOURCES_BATCH_SIZE) * 1024L;
+    this.crossProjectDuplicationIndexMaxBlocks = readPositiveOrZeroInt(settings, CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS_PROPERTY,
+      DEFAULT_CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS);
+  }
+
+  private static int readPositiveInt(Settings settings, String key, int defaultValue) {
+    int i = readInt(settings, key, defaultValue);
+    if (i < 1) {
+      throw new IllegalArgumentException(format("Property %s must be strictly positive. Got: %d", key, i));
+    }
+    return i;
+  }
+
+  private static int readPositiveOrZeroInt(Settings settings, String key, int defaultValue) {
+    int i = readInt(settings, key, defaultValue);
+    if (i < 0) {
+      throw new IllegalArgumentException(format("Property %s must be positive or zero. Got: %d", key, i));
+    }
+    return i;
+  }
+
+  private static int readInt(Settings settings, String key, int defaultValue) {
+    String value = settings.getString(key);
+    if (value == null || value.isEmpty()) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(format("Property %s must be an integer. Got: %s", key, value), e);
+    }
+  }
+
+  @Override
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  @Override
+  public int getFileSourcesWorkerCount() {
+    return fileSourcesWorkerCount;
+  }
+
+  @Override
+  public long getFileSourcesBatchSizeInBytes() {
+    return fileSourcesBatchSizeInBytes;
+  }
+
+  @Override
+  public int getCrossProjectDuplicationIndexMaxBlocks() {
+    return crossProjectDuplicationIndexMaxBlocks;
+  }
+}
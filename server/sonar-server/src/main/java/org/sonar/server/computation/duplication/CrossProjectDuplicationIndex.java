@@ -0,0 +1,483 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.duplication;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.UnsignedLongs;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.log.Profiler;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.configuration.CeConfigurationImpl;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Server-wide in-memory copy of the blocks of the table DUPLICATIONS_INDEX which belong to the last snapshot of
+ * enabled files. It replaces the SQL query executed for each file to find cross project duplication candidates.
+ * <p/>
+ * The index is loaded from database by a single query the first time it's used. It's then updated incrementally :
+ * the blocks persisted by an analysis are staged with {@link #stage(String, Update)} and become visible once the
+ * task is successful ({@link #publish(String)}), replacing the blocks of the previous analysis of the same project.
+ * <p/>
+ * Blocks are stored in segments of sorted primitive arrays. Each publication adds a small segment, segments are
+ * merged and blocks of replaced analyses are purged when there are too many of them.
+ * <p/>
+ * The number of blocks held in memory is bounded by {@link CeConfiguration#getCrossProjectDuplicationIndexMaxBlocks()}.
+ * Beyond this limit, the index is dropped and candidates are selected from database until the server is restarted.
+ */
+public class CrossProjectDuplicationIndex {
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectDuplicationIndex.class);
+
+  private static final int MAX_SEGMENTS = 16;
+  private static final int HEX_HASH_LENGTH = 16;
+
+  private final DbClient dbClient;
+  private final int maxBlocks;
+  private final Map<String, Update> pendingUpdatesByTaskUuid = new HashMap<>();
+
+  @CheckForNull
+  private volatile State state;
+
+  // set when the blocks do not fit in the index
+  private volatile boolean disabled;
+
+  public CrossProjectDuplicationIndex(DbClient dbClient, CeConfiguration ceConfiguration) {
+    this.dbClient = dbClient;
+    this.maxBlocks = ceConfiguration.getCrossProjectDuplicationIndexMaxBlocks();
+    this.disabled = maxBlocks == 0;
+  }
+
+  /**
+   * Same contract as {@link org.sonar.db.duplication.DuplicationDao#selectCandidates(DbSession, Long, String, Collection)} :
+   * blocks of the last snapshots of files of the given language which have one of the given hashes, excluding the
+   * blocks of the project snapshot {@code excludedProjectSnapshotId}.
+   * The fields id and snapshotId of the returned blocks are not set.
+   */
+  public List<DuplicationUnitDto> selectCandidates(@Nullable Long excludedProjectSnapshotId, String language, Collection<String> hashes) {
+    State current = loadedState();
+    if (current == null) {
+      return selectCandidatesFromDb(excludedProjectSnapshotId, language, hashes);
+    }
+    List<DuplicationUnitDto> result = newArrayList();
+    for (String hash : new LinkedHashSet<>(hashes)) {
+      long hashKey = toKey(hash);
+      for (Segment segment : current.segments) {
+        segment.collect(current, hashKey, hash, excludedProjectSnapshotId, language, result);
+      }
+    }
+    return result;
+  }
+
+  private List<DuplicationUnitDto> selectCandidatesFromDb(@Nullable Long excludedProjectSnapshotId, String language, Collection<String> hashes) {
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      return dbClient.duplicationDao().selectCandidates(dbSession, excludedProjectSnapshotId, language, hashes);
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+  }
+
+  public Update newUpdate(String projectUuid, long projectSnapshotId) {
+    return new Update(projectUuid, projectSnapshotId);
+  }
+
+  /**
+   * Keep the blocks of the analysis until the end of the task. They are not visible until {@link #publish(String)}
+   * is called.
+   */
+  public synchronized void stage(String taskUuid, Update update) {
+    if (!disabled) {
+      pendingUpdatesByTaskUuid.put(taskUuid, update);
+    }
+  }
+
+  /**
+   * Make visible the blocks staged by the task, if any. Blocks of the previous analysis of the same project
+   * are not returned anymore.
+   */
+  public synchronized void publish(String taskUuid) {
+    Update update = pendingUpdatesByTaskUuid.remove(taskUuid);
+    State current = state;
+    if (update == null || current == null) {
+      // index is not loaded yet, blocks will be read from db
+      return;
+    }
+    Long liveProjectSnapshotId = current.liveProjectSnapshotIds.get(update.projectUuid);
+    if (liveProjectSnapshotId != null && liveProjectSnapshotId == update.projectSnapshotId) {
+      // index has been loaded after the switch of snapshot, blocks have already been read from db
+      return;
+    }
+    List<Segment> segments = newArrayList(current.segments);
+    segments.add(update.builder.build());
+    Map<String, Long> liveProjectSnapshotIds = newHashMap(current.liveProjectSnapshotIds);
+    liveProjectSnapshotIds.put(update.projectUuid, update.projectSnapshotId);
+    State newState = new State(segments, liveProjectSnapshotIds);
+    if (segments.size() > MAX_SEGMENTS || newState.size() > maxBlocks) {
+      newState = newState.compact();
+    }
+    if (newState.size() > maxBlocks) {
+      disable();
+    } else {
+      state = newState;
+    }
+  }
+
+  /**
+   * Drop the blocks staged by a task which did not succeed. As the snapshot of the project may have been
+   * switched before the failure, the whole index is reloaded on next use.
+   */
+  public synchronized void discard(String taskUuid) {
+    if (pendingUpdatesByTaskUuid.remove(taskUuid) != null) {
+      state = null;
+    }
+  }
+
+  /**
+   * Blocks of the given project snapshots are not returned anymore, for example because the snapshot is not
+   * the last one of its project or because the project has been deleted.
+   */
+  public synchronized void evict(Collection<Long> projectSnapshotIds) {
+    State current = state;
+    if (current == null || projectSnapshotIds.isEmpty()) {
+      return;
+    }
+    Map<String, Long> liveProjectSnapshotIds = newHashMap(current.liveProjectSnapshotIds);
+    liveProjectSnapshotIds.values().removeAll(projectSnapshotIds);
+    state = new State(current.segments, liveProjectSnapshotIds);
+  }
+
+  /**
+   * The index, loaded if needed, or null if it's disabled
+   */
+  @CheckForNull
+  private State loadedState() {
+    State current = state;
+    if (current != null || disabled) {
+      return current;
+    }
+    synchronized (this) {
+      if (state == null && !disabled) {
+        state = load();
+        if (state == null) {
+          disable();
+        }
+      }
+      return state;
+    }
+  }
+
+  private void disable() {
+    LOGGER.warn(String.format("Cross project duplication index exceeds %d blocks. Candidates are selected from database. Limit can be increased with property %s",
+      maxBlocks, CeConfigurationImpl.CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS_PROPERTY));
+    disabled = true;
+    state = null;
+    pendingUpdatesByTaskUuid.clear();
+  }
+
+  /**
+   * Blocks of the last analyses, or null if there are more than {@link #maxBlocks} of them
+   */
+  @CheckForNull
+  private State load() {
+    Profiler profiler = Profiler.create(LOGGER).startInfo("Load cross project duplication index");
+    final SegmentBuilder builder = new SegmentBuilder();
+    final Map<Long, Integer> fileIndexesBySnapshotId = newHashMap();
+    final Map<String, Long> liveProjectSnapshotIds = newHashMap();
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      dbClient.duplicationDao().selectLastBlocks(dbSession, new ResultHandler() {
+        @Override
+        public void handleResult(ResultContext context) {
+          if (builder.size() == maxBlocks) {
+            builder.overflowed = true;
+            context.stop();
+            return;
+          }
+          DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+          Integer fileIndex = fileIndexesBySnapshotId.get(dto.getSnapshotId());
+          if (fileIndex == null) {
+            fileIndex = builder.addFile(new IndexedFile(dto.getComponentKey(), dto.getComponentLanguage(), dto.getProjectUuid(), dto.getProjectSnapshotId()));
+            fileIndexesBySnapshotId.put(dto.getSnapshotId(), fileIndex);
+            liveProjectSnapshotIds.put(dto.getProjectUuid(), dto.getProjectSnapshotId());
+          }
+          builder.addBlock(fileIndex, toKey(dto.getHash()), dto.getIndexInFile(), dto.getStartLine(), dto.getEndLine());
+        }
+      });
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+    if (builder.overflowed) {
+      profiler.stopInfo("Load cross project duplication index | too many blocks");
+      return null;
+    }
+    Segment segment = builder.build();
+    profiler.stopInfo(String.format("Load cross project duplication index | blocks=%d | files=%d", segment.size(), fileIndexesBySnapshotId.size()));
+    return new State(newArrayList(segment), liveProjectSnapshotIds);
+  }
+
+  /**
+   * Hashes computed by {@link org.sonar.duplications.block.BlockChunker} are the 16 hexadecimal digits of a long.
+   * Other hashes are folded into a long, the hash string of the candidate being the one which is looked up.
+   */
+  private static long toKey(String hash) {
+    if (hash.length() == HEX_HASH_LENGTH) {
+      try {
+        return UnsignedLongs.parseUnsignedLong(hash, 16);
+      } catch (NumberFormatException e) {
+        // not an hexadecimal hash
+      }
+    }
+    return Hashing.murmur3_128().hashString(hash, Charsets.UTF_8).asLong();
+  }
+
+  /**
+   * Blocks of one analysis of a project, built while they are persisted.
+   */
+  public static final class Update {
+    private final String projectUuid;
+    private final long projectSnapshotId;
+    private final SegmentBuilder builder = new SegmentBuilder();
+    private final Map<String, Integer> fileIndexesByKey = newHashMap();
+
+    private Update(String projectUuid, long projectSnapshotId) {
+      this.projectUuid = projectUuid;
+      this.projectSnapshotId = projectSnapshotId;
+    }
+
+    public Update addBlock(String fileKey, String language, String hash, int indexInFile, int startLine, int endLine) {
+      Integer fileIndex = fileIndexesByKey.get(fileKey);
+      if (fileIndex == null) {
+        fileIndex = builder.addFile(new IndexedFile(fileKey, language, projectUuid, projectSnapshotId));
+        fileIndexesByKey.put(fileKey, fileIndex);
+      }
+      builder.addBlock(fileIndex, toKey(hash), indexInFile, startLine, endLine);
+      return this;
+    }
+  }
+
+  private static final class State {
+    private final List<Segment> segments;
+    private final Map<String, Long> liveProjectSnapshotIds;
+
+    private State(List<Segment> segments, Map<String, Long> liveProjectSnapshotIds) {
+      this.segments = segments;
+      this.liveProjectSnapshotIds = liveProjectSnapshotIds;
+    }
+
+    private int size() {
+      int size = 0;
+      for (Segment segment : segments) {
+        size += segment.size();
+      }
+      return size;
+    }
+
+    private boolean isLive(IndexedFile file) {
+      Long liveProjectSnapshotId = liveProjectSnapshotIds.get(file.projectUuid);
+      return liveProjectSnapshotId != null && liveProjectSnapshotId == file.projectSnapshotId;
+    }
+
+    /**
+     * Merge all the segments into a single one, dropping the blocks which are not live anymore
+     */
+    private State compact() {
+      SegmentBuilder builder = new SegmentBuilder();
+      for (Segment segment : segments) {
+        int[] fileIndexes = new int[segment.files.size()];
+        for (int i = 0; i < fileIndexes.length; i++) {
+          IndexedFile file = segment.files.get(i);
+          fileIndexes[i] = isLive(file) ? builder.addFile(file) : -1;
+        }
+        for (int i = 0; i < segment.size(); i++) {
+          int fileIndex = fileIndexes[segment.fileIndex(i)];
+          if (fileIndex >= 0) {
+            builder.addBlock(fileIndex, segment.hashes[i], segment.data[4 * i + 1], segment.data[4 * i + 2], segment.data[4 * i + 3]);
+          }
+        }
+      }
+      return new State(newArrayList(builder.build()), liveProjectSnapshotIds);
+    }
+  }
+
+  private static final class IndexedFile {
+    private final String key;
+    private final String language;
+    private final String projectUuid;
+    private final long projectSnapshotId;
+
+    private IndexedFile(String key, @Nullable String language, String projectUuid, long projectSnapshotId) {
+      this.key = key;
+      this.language = language;
+      this.projectUuid = projectUuid;
+      this.projectSnapshotId = projectSnapshotId;
+    }
+  }
+
+  /**
+   * Immutable list of blocks sorted by hash. For each block, {@code data} contains 4 ints : index of file,
+   * index in file, start line and end line.
+   */
+  private static final class Segment {
+    private final List<IndexedFile> files;
+    private final long[] hashes;
+    private final int[] data;
+
+    private Segment(List<IndexedFile> files, long[] hashes, int[] data) {
+      this.files = files;
+      this.hashes = hashes;
+      this.data = data;
+    }
+
+    private int size() {
+      return hashes.length;
+    }
+
+    private int fileIndex(int block) {
+      return data[4 * block];
+    }
+
+    private void collect(State state, long hashKey, String hash, @Nullable Long excludedProjectSnapshotId, String language, List<DuplicationUnitDto> result) {
+      for (int i = firstIndexOf(hashKey); i < hashes.length && hashes[i] == hashKey; i++) {
+        IndexedFile file = files.get(fileIndex(i));
+        boolean excluded = excludedProjectSnapshotId != null && excludedProjectSnapshotId == file.projectSnapshotId;
+        if (!excluded && language.equals(file.language) && state.isLive(file)) {
+          result.add(new DuplicationUnitDto()
+            .setProjectSnapshotId(file.projectSnapshotId)
+            .setComponentKey(file.key)
+            .setHash(hash)
+            .setIndexInFile(data[4 * i + 1])
+            .setStartLine(data[4 * i + 2])
+            .setEndLine(data[4 * i + 3]));
+        }
+      }
+    }
+
+    private int firstIndexOf(long hashKey) {
+      int low = 0;
+      int high = hashes.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (hashes[mid] < hashKey) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private static final class SegmentBuilder {
+    private final List<IndexedFile> files = new ArrayList<>();
+    private long[] hashes = new long[64];
+    private int[] data = new int[4 * 64];
+    private int size = 0;
+    private boolean overflowed = false;
+
+    private int size() {
+      return size;
+    }
+
+    private int addFile(IndexedFile file) {
+      files.add(file);
+      return files.size() - 1;
+    }
+
+    private void addBlock(int fileIndex, long hashKey, int indexInFile, int startLine, int endLine) {
+      if (size == hashes.length) {
+        hashes = Arrays.copyOf(hashes, 2 * size);
+        data = Arrays.copyOf(data, 8 * size);
+      }
+      hashes[size] = hashKey;
+      data[4 * size] = fileIndex;
+      data[4 * size + 1] = indexInFile;
+      data[4 * size + 2] = startLine;
+      data[4 * size + 3] = endLine;
+      size++;
+    }
+
+    private Segment build() {
+      long[] sortedHashes = Arrays.copyOf(hashes, size);
+      int[] sortedData = Arrays.copyOf(data, 4 * size);
+      sort(sortedHashes, sortedData, 0, size - 1);
+      return new Segment(files, sortedHashes, sortedData);
+    }
+
+    private static void sort(long[] hashes, int[] data, int from, int to) {
+      int low = from;
+      int high = to;
+      while (low < high) {
+        long pivot = hashes[(low + high) >>> 1];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (hashes[i] < pivot) {
+            i++;
+          }
+          while (hashes[j] > pivot) {
+            j--;
+          }
+          if (i <= j) {
+            swap(hashes, data, i, j);
+            i++;
+            j--;
+          }
+        }
+        // recurse on the smaller part to bound the depth of the stack
+        if (j - low < high - i) {
+          sort(hashes, data, low, j);
+          low = i;
+        } else {
+          sort(hashes, data, i, high);
+          high = j;
+        }
+      }
+    }
+
+    private static void swap(long[] hashes, int[] data, int i, int j) {
+      long hash = hashes[i];
+      hashes[i] = hashes[j];
+      hashes[j] = hash;
+      for (int k = 0; k < 4; k++) {
+        int value = data[4 * i + k];
+        data[4 * i + k] = data[4 * j + k];
+        data[4 * j + k] = value;
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.duplication;
+
+import org.sonar.db.ce.CeActivityDto;
+import org.sonar.server.computation.queue.CeQueueListener;
+import org.sonar.server.computation.queue.CeTask;
+
+/**
+ * Publishes into {@link CrossProjectDuplicationIndex} the blocks of the analysis once the task is successful
+ */
+public class CrossProjectDuplicationIndexQueueListener implements CeQueueListener {
+
+  private final CrossProjectDuplicationIndex index;
+
+  public CrossProjectDuplicationIndexQueueListener(CrossProjectDuplicationIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public void onRemoved(CeTask task, CeActivityDto.Status status) {
+    if (status == CeActivityDto.Status.SUCCESS) {
+      index.publish(task.getUuid());
+    } else {
+      index.discard(task.getUuid());
+    }
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCacheCodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary encoding of {@link DefaultIssue} for {@link IssueCache}. Fields are written in a fixed order,
+ * so any change of {@link DefaultIssue} must be reflected in both {@link #write(DataOutput, DefaultIssue)}
+ * and {@link #read(DataInput)}. There is no need to be backward-compatible as the cache lives only
+ * during the processing of a report.
+ * <p/>
+ * Values of {@link FieldDiffs} and issue locations are typed as {@link Serializable}. The known types are
+ * encoded natively, the other ones fall back to Java serialization.
+ */
+public class DefaultIssueCodec implements DiskCacheCodec<DefaultIssue> {
+
+  private static final int NULL_SIZE = -1;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte LONG_VALUE = 2;
+  private static final byte INTEGER_VALUE = 3;
+  private static final byte DOUBLE_VALUE = 4;
+  private static final byte LOCATIONS_VALUE = 5;
+  private static final byte SERIALIZED_VALUE = 6;
+
+  private static final byte CURRENT_CHANGE = 0;
+  private static final byte OTHER_CHANGE = 1;
+
+  @Override
+  public void write(DataOutput output, DefaultIssue issue) throws IOException {
+    writeString(output, issue.key());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    writeRuleKey(output, issue.ruleKey());
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    output.writeBoolean(issue.manualSeverity());
+    writeString(output, issue.message());
+    writeValue(output, issue.line());
+    writeValue(output, issue.effortToFix());
+    writeValue(output, issue.debtInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.reporter());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeStringMap(output, issue.attributes());
+    writeString(output, issue.authorLogin());
+    writeString(output, issue.actionPlanKey());
+    writeComments(output, issue.comments());
+    writeStrings(output, issue.tags());
+    writeValue(output, issue.<Serializable>getLocations());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeChanges(output, issue.currentChange(), issue.changes());
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isBeingClosed());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+    writeValue(output, issue.selectedAt());
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    issue.setRuleKey(readRuleKey(input));
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    issue.setLine((Integer) readValue(input));
+    issue.setEffortToFix((Double) readValue(input));
+    Long debt = (Long) readValue(input);
+    issue.setDebt(debt == null ? null : Duration.create(debt));
+    issue.setStatus(readString(input));
+    issue.setResolution(readString(input));
+    issue.setReporter(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAttributes(readStringMap(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setActionPlanKey(readString(input));
+    readComments(input, issue);
+    List<String> tags = readStrings(input);
+    if (tags != null) {
+      issue.setTags(tags);
+    }
+    issue.setLocations(readValue(input));
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    readChanges(input, issue);
+    issue.setNew(input.readBoolean());
+    issue.setBeingClosed(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+    issue.setSelectedAt((Long) readValue(input));
+    return issue;
+  }
+
+  private static void writeRuleKey(DataOutput output, @Nullable RuleKey ruleKey) throws IOException {
+    output.writeBoolean(ruleKey != null);
+    if (ruleKey != null) {
+      writeString(output, ruleKey.repository());
+      writeString(output, ruleKey.rule());
+    }
+  }
+
+  @CheckForNull
+  private static RuleKey readRuleKey(DataInput input) throws IOException {
+    if (input.readBoolean()) {
+      return RuleKey.of(readString(input), readString(input));
+    }
+    return null;
+  }
+
+  private static void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+      writeString(output, defaultComment.key());
+      writeString(output, defaultComment.issueKey());
+      writeString(output, defaultComment.userLogin());
+      writeString(output, defaultComment.markdownText());
+      writeDate(output, defaultComment.createdAt());
+      writeDate(output, defaultComment.updatedAt());
+      output.writeBoolean(defaultComment.isNew());
+    }
+  }
+
+  private static void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      DefaultIssueComment comment = new DefaultIssueComment()
+        .setKey(readString(input))
+        .setIssueKey(readString(input))
+        .setUserLogin(readString(input))
+        .setMarkdownText(readString(input))
+        .setCreatedAt(readDate(input))
+        .setUpdatedAt(readDate(input))
+        .setNew(input.readBoolean());
+      issue.addComment(comment);
+    }
+  }
+
+  /**
+   * The current change is usually also referenced, possibly several times, by the list of changes.
+   * These references are written as a marker, so that they still share the same instance once read.
+   */
+  private static void writeChanges(DataOutput output, @Nullable FieldDiffs currentChange, List<FieldDiffs> changes) throws IOException {
+    output.writeBoolean(currentChange != null);
+    if (currentChange != null) {
+      writeFieldDiffs(output, currentChange);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      if (change == currentChange) {
+        output.writeByte(CURRENT_CHANGE);
+      } else {
+        output.writeByte(OTHER_CHANGE);
+        writeFieldDiffs(output, change);
+      }
+    }
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    FieldDiffs currentChange = null;
+    if (input.readBoolean()) {
+      currentChange = readFieldDiffs(input);
+      issue.setCurrentChange(currentChange);
+    }
+    int size = input.readInt();
+    List<FieldDiffs> changes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      changes.add(input.readByte() == CURRENT_CHANGE ? currentChange : readFieldDiffs(input));
+    }
+    // overrides the change added by setCurrentChange()
+    issue.setChanges(changes);
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs fieldDiffs) throws IOException {
+    writeString(output, fieldDiffs.issueKey());
+    writeString(output, fieldDiffs.userLogin());
+    writeDate(output, fieldDiffs.creationDate());
+    output.writeInt(fieldDiffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : fieldDiffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeValue(output, entry.getValue().oldValue());
+      writeValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs fieldDiffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      fieldDiffs.setDiff(readString(input), readValue(input), readValue(input));
+    }
+    return fieldDiffs;
+  }
+
+  private static void writeStringMap(DataOutput output, Map<String, String> map) throws IOException {
+    output.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  @CheckForNull
+  private static Map<String, String> readStringMap(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == 0) {
+      return null;
+    }
+    Map<String, String> map = new HashMap<>(size);
+    for (int i = 0; i < size; i++) {
+      map.put(readString(input), readString(input));
+    }
+    return map;
+  }
+
+  private static void writeStrings(DataOutput output, Collection<String> strings) throws IOException {
+    output.writeInt(strings.size());
+    for (String s : strings) {
+      writeString(output, s);
+    }
+  }
+
+  @CheckForNull
+  private static List<String> readStrings(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == 0) {
+      return null;
+    }
+    List<String> list = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      list.add(readString(input));
+    }
+    return list;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    writeValue(output, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = (Long) readValue(input);
+    return time == null ? null : new Date(time);
+  }
+
+  /**
+   * Unlike {@link DataOutput#writeUTF(String)}, the length of the string is not limited to 64Kb
+   */
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_SIZE);
+    } else {
+      byte[] bytes = s.getBytes(UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == NULL_SIZE) {
+      return null;
+    }
+    byte[] bytes = new byte[size];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeValue(DataOutput output, @Nullable Serializable value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER_VALUE);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE_VALUE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof DbIssues.Locations) {
+      output.writeByte(LOCATIONS_VALUE);
+      writeBytes(output, ((DbIssues.Locations) value).toByteArray());
+    } else {
+      output.writeByte(SERIALIZED_VALUE);
+      writeBytes(output, serialize(value));
+    }
+  }
+
+  @CheckForNull
+  private static Serializable readValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case INTEGER_VALUE:
+        return input.readInt();
+      case DOUBLE_VALUE:
+        return input.readDouble();
+      case LOCATIONS_VALUE:
+        return DbIssues.Locations.parseFrom(readBytes(input));
+      case SERIALIZED_VALUE:
+        return deserialize(readBytes(input));
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static byte[] serialize(Serializable value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(value);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Serializable deserialize(byte[] bytes) throws IOException {
+    try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return (Serializable) input.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize value", e);
+    }
+  }
+}
@@ -21,8 +21,12 @@ package org.sonar.server.computation.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
@@ -30,18 +34,19 @@ import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDto;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.measure.MapBasedRawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.metric.Metric;
 import org.sonar.server.computation.metric.MetricRepository;
 import org.sonar.server.computation.metric.ReportMetricValidator;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.component.ComponentFunctions.toReportRef;
 
 public class MeasureRepositoryImpl implements MeasureRepository {
   private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
   private final DbClient dbClient;
+  private final TreeRootHolder treeRootHolder;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
@@ -49,9 +54,13 @@ public class MeasureRepositoryImpl implements MeasureRepository {
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
   private final Set<Integer> loadedComponents = new HashSet<>();
+  // base measures of a metric are loaded for all the components of the tree at once, the first time one of them is requested
+  private final Map<Integer, Map<String, MeasureDto>> baseMeasuresByMetricId = new HashMap<>();
 
-  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
+  public MeasureRepositoryImpl(DbClient dbClient, TreeRootHolder treeRootHolder, BatchReportReader reportReader, MetricRepository metricRepository,
+    ReportMetricValidator reportMetricValidator) {
     this.dbClient = dbClient;
+    this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
     this.batchMeasureToMeasure = new BatchMeasureToMeasure();
@@ -64,15 +73,31 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     requireNonNull(component);
     requireNonNull(metric);
 
+    MeasureDto measureDto = getBaseMeasureDtosByComponentUuid(metric).get(component.getUuid());
+    return underTest.toMeasure(measureDto, metric);
+  }
+
+  private Map<String, MeasureDto> getBaseMeasureDtosByComponentUuid(Metric metric) {
+    Map<String, MeasureDto> measureDtosByComponentUuid = baseMeasuresByMetricId.get(metric.getId());
+    if (measureDtosByComponentUuid == null) {
+      measureDtosByComponentUuid = loadBaseMeasures(metric);
+      baseMeasuresByMetricId.put(metric.getId(), measureDtosByComponentUuid);
+    }
+    return measureDtosByComponentUuid;
+  }
+
+  private Map<String, MeasureDto> loadBaseMeasures(Metric metric) {
+    final Map<String, MeasureDto> res = new HashMap<>();
     try (DbSession dbSession = dbClient.openSession(false)) {
-      MeasureDto measureDto = dbClient.measureDao().selectByComponentKeyAndMetricKey(dbSession, component.getKey(), metric.getKey());
-      Optional<Measure> measureOptional = underTest.toMeasure(measureDto, metric);
-      if (measureOptional.isPresent()) {
-        checkArgument(measureOptional.get().getCharacteristicId() == null, "Measures with characteristicId are not supported");
-        checkArgument(measureOptional.get().getRuleId() == null, "Measures with ruleId are not supported");
-      }
-      return measureOptional;
+      dbClient.measureDao().selectLastByProjectUuidAndMetricId(dbSession, treeRootHolder.getRoot().getUuid(), metric.getId(), new ResultHandler() {
+        @Override
+        public void handleResult(ResultContext context) {
+          MeasureDto measureDto = (MeasureDto) context.getResultObject();
+          res.put(measureDto.getComponentUuid(), measureDto);
+        }
+      });
     }
+    return res;
   }
 
   @Override
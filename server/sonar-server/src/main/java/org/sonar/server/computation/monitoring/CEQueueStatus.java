@@ -19,6 +19,8 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import java.util.Map;
+
 public interface CEQueueStatus {
 
   /**
@@ -88,6 +90,22 @@ public interface CEQueueStatus {
    */
   long addError(long processingTime);
 
+  /**
+   * Adds 1 to the count of tasks processed by the specified worker and adds the specified time to the processing time
+   * counter of this worker.
+   *
+   * @param workerName the name of the worker which processed the task
+   * @param processingTime duration of processing in ms
+   *
+   * @return the new count of tasks processed by the specified worker
+   *
+   * @see #getProcessedCountByWorker()
+   * @see #getProcessingTimeByWorker()
+   *
+   * @throws IllegalArgumentException if processingTime is < 0
+   */
+  long addWorkerProcessed(String workerName, long processingTime);
+
   /**
    * Count of received batch reports since instance startup
    */
@@ -117,4 +135,14 @@ public interface CEQueueStatus {
    * Time spent processing batch reports since startup.
    */
   long getProcessingTime();
+
+  /**
+   * Count of tasks processed by each worker since instance startup, whatever their status, keyed by worker name.
+   */
+  Map<String, Long> getProcessedCountByWorker();
+
+  /**
+   * Time spent by each worker processing tasks since startup, keyed by worker name.
+   */
+  Map<String, Long> getProcessingTimeByWorker();
 }
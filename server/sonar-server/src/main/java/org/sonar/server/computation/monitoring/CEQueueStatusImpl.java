@@ -19,6 +19,10 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -33,6 +37,7 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   private final AtomicLong error = new AtomicLong(0);
   private final AtomicLong success = new AtomicLong(0);
   private final AtomicLong processingTime = new AtomicLong(0);
+  private final ConcurrentMap<String, WorkerStatus> workerStatuses = new ConcurrentHashMap<>();
 
   @Override
   public long initPendingCount(long initialPendingCount) {
@@ -82,6 +87,21 @@ public class CEQueueStatusImpl implements CEQueueStatus {
     processingTime.addAndGet(time);
   }
 
+  @Override
+  public long addWorkerProcessed(String workerName, long processingTime) {
+    checkArgument(processingTime >= 0, "Processing time can not be < 0");
+    WorkerStatus workerStatus = workerStatuses.get(workerName);
+    if (workerStatus == null) {
+      WorkerStatus newStatus = new WorkerStatus();
+      workerStatus = workerStatuses.putIfAbsent(workerName, newStatus);
+      if (workerStatus == null) {
+        workerStatus = newStatus;
+      }
+    }
+    workerStatus.processingTime.addAndGet(processingTime);
+    return workerStatus.processed.incrementAndGet();
+  }
+
   @Override
   public long getReceivedCount() {
     return received.get();
@@ -112,4 +132,27 @@ public class CEQueueStatusImpl implements CEQueueStatus {
   public long getProcessingTime() {
     return processingTime.get();
   }
+
+  @Override
+  public Map<String, Long> getProcessedCountByWorker() {
+    Map<String, Long> res = new TreeMap<>();
+    for (Map.Entry<String, WorkerStatus> entry : workerStatuses.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().processed.get());
+    }
+    return res;
+  }
+
+  @Override
+  public Map<String, Long> getProcessingTimeByWorker() {
+    Map<String, Long> res = new TreeMap<>();
+    for (Map.Entry<String, WorkerStatus> entry : workerStatuses.entrySet()) {
+      res.put(entry.getKey(), entry.getValue().processingTime.get());
+    }
+    return res;
+  }
+
+  private static final class WorkerStatus {
+    private final AtomicLong processed = new AtomicLong(0);
+    private final AtomicLong processingTime = new AtomicLong(0);
+  }
 }
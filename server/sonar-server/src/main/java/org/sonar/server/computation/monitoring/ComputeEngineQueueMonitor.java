@@ -20,18 +20,22 @@
 package org.sonar.server.computation.monitoring;
 
 import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.queue.CeQueue;
 import org.sonar.server.platform.monitoring.BaseMonitorMBean;
 
 public class ComputeEngineQueueMonitor extends BaseMonitorMBean implements ComputeEngineQueueMonitorMBean {
   private final CEQueueStatus queueStatus;
+  private final CeConfiguration ceConfiguration;
 
-  public ComputeEngineQueueMonitor(CEQueueStatus queueStatus,
+  public ComputeEngineQueueMonitor(CEQueueStatus queueStatus, CeConfiguration ceConfiguration,
     // ReportQueue initializes CEQueueStatus and is therefor a dependency of
     // ComputeEngineQueueMonitor.
     // Do not remove this parameter, it ensures start order of components
     CeQueue ceQueue) {
     this.queueStatus = queueStatus;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
@@ -48,6 +52,14 @@ public class ComputeEngineQueueMonitor extends BaseMonitorMBean implements Compu
     attributes.put("Successfully processed", getSuccessCount());
     attributes.put("Processed with error", getErrorCount());
     attributes.put("Processing time", getProcessingTime());
+    attributes.put("Workers", getWorkerCount());
+    // workers are never removed, so all the workers of the first map are in the second one
+    Map<String, Long> processedCountByWorker = queueStatus.getProcessedCountByWorker();
+    Map<String, Long> processingTimeByWorker = queueStatus.getProcessingTimeByWorker();
+    for (Map.Entry<String, Long> entry : processedCountByWorker.entrySet()) {
+      attributes.put("Processed by " + entry.getKey(), entry.getValue());
+      attributes.put("Processing time of " + entry.getKey(), processingTimeByWorker.get(entry.getKey()));
+    }
     return attributes;
   }
 
@@ -80,4 +92,9 @@ public class ComputeEngineQueueMonitor extends BaseMonitorMBean implements Compu
   public long getProcessingTime() {
     return queueStatus.getProcessingTime();
   }
+
+  @Override
+  public int getWorkerCount() {
+    return ceConfiguration.getWorkerCount();
+  }
 }
@@ -50,4 +50,9 @@ public interface ComputeEngineQueueMonitorMBean {
    * Time spent processing reports since startup.
    */
   long getProcessingTime();
+
+  /**
+   * Number of workers processing tasks concurrently.
+   */
+  int getWorkerCount();
 }
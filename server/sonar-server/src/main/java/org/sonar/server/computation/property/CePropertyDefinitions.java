@@ -23,6 +23,7 @@ import java.util.List;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
+import org.sonar.server.computation.configuration.CeConfigurationImpl;
 import org.sonar.server.computation.log.CeLogging;
 
 import static java.util.Arrays.asList;
@@ -40,6 +41,30 @@ public class CePropertyDefinitions {
         .type(PropertyType.INTEGER)
         .defaultValue("10")
         .category(CoreProperties.CATEGORY_GENERAL)
+        .build(),
+      PropertyDefinition.builder(CeConfigurationImpl.WORKER_COUNT_PROPERTY)
+        .name("Compute Engine Workers")
+        .description("Number of tasks processed concurrently by the Compute Engine. Tasks of a given project are never processed concurrently. "
+          + "Server must be restarted for the change to be taken into account.")
+        .type(PropertyType.INTEGER)
+        .defaultValue(String.valueOf(CeConfigurationImpl.DEFAULT_WORKER_COUNT))
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .build(),
+      PropertyDefinition.builder(CeConfigurationImpl.FILE_SOURCES_WORKER_COUNT_PROPERTY)
+        .name("Compute Engine Source Workers")
+        .description("Number of threads which compute the sources of files in parallel during the processing of a task. "
+          + "Server must be restarted for the change to be taken into account.")
+        .type(PropertyType.INTEGER)
+        .defaultValue(String.valueOf(CeConfigurationImpl.DEFAULT_FILE_SOURCES_WORKER_COUNT))
+        .category(CoreProperties.CATEGORY_GENERAL)
+        .build(),
+      PropertyDefinition.builder(CeConfigurationImpl.FILE_SOURCES_BATCH_SIZE_PROPERTY)
+        .name("Compute Engine Source Batch Size")
+        .description("Maximum size, in Kb, of the sources of files written to database in a single batch. "
+          + "Server must be restarted for the change to be taken into account.")
+        .type(PropertyType.INTEGER)
+        .defaultValue(String.valueOf(CeConfigurationImpl.DEFAULT_FILE_SOURCES_BATCH_SIZE))
+        .category(CoreProperties.CATEGORY_GENERAL)
         .build());
   }
 }
@@ -86,8 +86,11 @@ public class CeQueueImpl implements CeQueue {
     }
   }
 
+  /**
+   * Peeks are serialized so that two workers can not claim tasks of a same component at the same time.
+   */
   @Override
-  public Optional<CeTask> peek() {
+  public synchronized Optional<CeTask> peek() {
     if (peekPaused.get()) {
       return Optional.absent();
     }
@@ -19,11 +19,14 @@
  */
 package org.sonar.server.computation.queue.report;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
@@ -37,6 +40,7 @@ import static java.lang.String.format;
 public class ReportFiles {
 
   private static final String ZIP_EXTENSION = "zip";
+  private static final int BUFFER_SIZE = 64 * 1024;
 
   private final Settings settings;
 
@@ -44,10 +48,14 @@ public class ReportFiles {
     this.settings = settings;
   }
 
+  /**
+   * Copies the report to the storage of queue. Reports compressed by the scanner while
+   * being uploaded are decompressed on the fly, so that they can be read in place.
+   */
   public void save(String taskUuid, InputStream reportInput) {
     File file = fileForUuid(taskUuid);
     try {
-      FileUtils.copyInputStreamToFile(reportInput, file);
+      FileUtils.copyInputStreamToFile(decompressIfGzip(reportInput), file);
     } catch (Exception e) {
       FileUtils.deleteQuietly(file);
       IOUtils.closeQuietly(reportInput);
@@ -55,6 +63,17 @@ public class ReportFiles {
     }
   }
 
+  private static InputStream decompressIfGzip(InputStream input) throws IOException {
+    InputStream buffered = new BufferedInputStream(input, BUFFER_SIZE);
+    buffered.mark(2);
+    int magic = buffered.read() | (buffered.read() << 8);
+    buffered.reset();
+    if (magic == GZIPInputStream.GZIP_MAGIC) {
+      return new GZIPInputStream(buffered, BUFFER_SIZE);
+    }
+    return buffered;
+  }
+
   public void deleteIfExists(String taskUuid) {
     FileUtils.deleteQuietly(fileForUuid(taskUuid));
   }
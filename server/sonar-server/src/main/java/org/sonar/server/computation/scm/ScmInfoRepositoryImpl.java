@@ -20,21 +20,35 @@
 package org.sonar.server.computation.scm;
 
 import com.google.common.base.Optional;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.component.Component;
+import org.sonar.server.computation.component.CrawlerDepthLimit;
+import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.component.TreeRootHolder;
+import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.source.SourceHashRepository;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * SCM info of files are read from the report. When the report has no changesets for a file, then SCM info
+ * is read from the column FILE_SOURCES.SCM_DATA of previous analysis, so that the sources of files are not decoded.
+ * The first time it's required, the column is loaded in batch queries for all the files which have no changesets
+ * in the report.
+ */
 public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private static final Logger LOGGER = Loggers.get(ScmInfoRepositoryImpl.class);
@@ -43,14 +57,20 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final DbClient dbClient;
   private final SourceHashRepository sourceHashRepository;
+  private final TreeRootHolder treeRootHolder;
 
   private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
+  // SCM data of previous analysis by file uuid, for files without changesets in report. Loaded at first use,
+  // entries are removed when read.
+  private Map<String, FileSourceDto> dbScmDataByFileUuid;
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient,
+    SourceHashRepository sourceHashRepository, TreeRootHolder treeRootHolder) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.dbClient = dbClient;
     this.sourceHashRepository = sourceHashRepository;
+    this.treeRootHolder = treeRootHolder;
   }
 
   @Override
@@ -86,10 +106,55 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
+    FileSourceDto scmDto = getDbScmData().remove(file.getUuid());
+    if (scmDto == null || !sourceHashRepository.getRawSourceHash(file).equals(scmDto.getSrcHash())) {
+      return Optional.absent();
+    }
+    DbFileSources.Data scmData = scmDto.getScmData();
+    if (scmData == null) {
+      return getScmInfoFromDbSourceData(file);
+    }
+    return DbScmInfo.create(file, scmData.getLinesList());
+  }
+
+  private Map<String, FileSourceDto> getDbScmData() {
+    if (dbScmDataByFileUuid == null) {
+      Map<String, FileSourceDto> scmDataByFileUuid = new HashMap<>();
+      DbSession dbSession = dbClient.openSession(false);
+      try {
+        for (FileSourceDto dto : dbClient.fileSourceDao().selectScmDataByFileUuids(dbSession, selectFilesWithoutChangesets())) {
+          scmDataByFileUuid.put(dto.getFileUuid(), dto);
+        }
+      } finally {
+        dbClient.closeSession(dbSession);
+      }
+      dbScmDataByFileUuid = scmDataByFileUuid;
+    }
+    return dbScmDataByFileUuid;
+  }
+
+  private List<String> selectFilesWithoutChangesets() {
+    final List<String> fileUuids = new ArrayList<>();
+    new DepthTraversalTypeAwareCrawler(
+      new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+        @Override
+        public void visitFile(Component file) {
+          if (!batchReportReader.hasChangesets(file.getReportAttributes().getRef())) {
+            fileUuids.add(file.getUuid());
+          }
+        }
+      }).visit(treeRootHolder.getRoot());
+    return fileUuids;
+  }
+
+  /**
+   * Files which have not been analyzed since SCM data is stored in a dedicated column. The whole data of file is decoded.
+   */
+  private Optional<ScmInfo> getScmInfoFromDbSourceData(Component file) {
     DbSession dbSession = dbClient.openSession(false);
     try {
       FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
+      if (dto == null) {
         return Optional.absent();
       }
       return DbScmInfo.create(file, dto.getSourceData().getLinesList());
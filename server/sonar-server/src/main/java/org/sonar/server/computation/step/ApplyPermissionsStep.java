@@ -30,6 +30,7 @@ import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.user.AuthorizationCache;
 
 import static org.sonar.server.computation.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.component.Component.Type.VIEW;
@@ -45,14 +46,16 @@ public class ApplyPermissionsStep implements ComputationStep {
   private final IssueAuthorizationIndexer indexer;
   private final PermissionRepository permissionRepository;
   private final TreeRootHolder treeRootHolder;
+  private final AuthorizationCache authorizationCache;
 
   public ApplyPermissionsStep(DbClient dbClient, DbIdsRepository dbIdsRepository, IssueAuthorizationIndexer indexer, PermissionRepository permissionRepository,
-                              TreeRootHolder treeRootHolder) {
+                              TreeRootHolder treeRootHolder, AuthorizationCache authorizationCache) {
     this.dbClient = dbClient;
     this.dbIdsRepository = dbIdsRepository;
     this.indexer = indexer;
     this.permissionRepository = permissionRepository;
     this.treeRootHolder = treeRootHolder;
+    this.authorizationCache = authorizationCache;
   }
 
   @Override
@@ -78,6 +81,7 @@ public class ApplyPermissionsStep implements ComputationStep {
       if (dbClient.roleDao().countComponentPermissions(session, projectId) == 0) {
         permissionRepository.applyDefaultPermissionTemplate(session, projectId);
         session.commit();
+        authorizationCache.invalidate();
         indexer.index();
       }
     } finally {
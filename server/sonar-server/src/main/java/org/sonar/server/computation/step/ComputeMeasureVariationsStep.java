@@ -21,14 +21,18 @@ package org.sonar.server.computation.step;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.PastMeasureDto;
@@ -89,41 +93,115 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
     DbSession dbSession = dbClient.openSession(false);
     try {
       List<Metric> metrics = from(metricRepository.getAll()).filter(NumericMetric.INSTANCE).toList();
-      new DepthTraversalTypeAwareCrawler(new VariationMeasuresVisitor(dbSession, metrics))
-        .visit(treeRootHolder.getRoot());
+      ComponentsCollector componentsCollector = new ComponentsCollector();
+      new DepthTraversalTypeAwareCrawler(componentsCollector).visit(treeRootHolder.getRoot());
+
+      VariationMeasuresHandler handler = new VariationMeasuresHandler(componentsCollector.componentsByUuid, metrics);
+      for (Period period : periodsHolder.getPeriods()) {
+        handler.startPeriod(period.getIndex());
+        dbClient.measureDao().selectPastMeasuresByProjectSnapshotId(dbSession, period.getSnapshotId(), handler);
+        handler.endPeriod();
+      }
+      handler.processMeasuresWithVariation();
     } finally {
       dbClient.closeSession(dbSession);
     }
   }
 
-  private class VariationMeasuresVisitor extends TypeAwareVisitorAdapter {
+  private static class ComponentsCollector extends TypeAwareVisitorAdapter {
+    private final Map<String, Component> componentsByUuid = new LinkedHashMap<>();
+
+    public ComponentsCollector() {
+      // measures on files are currently purged, so past measures are not available on files
+      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
+    }
+
+    @Override
+    public void visitAny(Component component) {
+      componentsByUuid.put(component.getUuid(), component);
+    }
+  }
+
+  /**
+   * Past measures of a period are streamed for all the components at once, ordered by component uuid. They are
+   * grouped by component on the fly, so that only the past measures of a single component are kept in memory.
+   */
+  private class VariationMeasuresHandler implements ResultHandler {
 
-    private final DbSession session;
+    private final Map<String, Component> componentsByUuid;
     private final Set<Integer> metricIds;
     private final Map<String, Metric> metricByKeys;
+    private final Map<String, MeasuresWithVariationRepository> measuresWithVariationByComponentUuid = new HashMap<>();
 
-    public VariationMeasuresVisitor(DbSession session, Iterable<Metric> metrics) {
-      // measures on files are currently purged, so past measures are not available on files
-      super(CrawlerDepthLimit.reportMaxDepth(DIRECTORY).withViewsMaxDepth(SUBVIEW), PRE_ORDER);
-      this.session = session;
+    private int periodIndex;
+    @CheckForNull
+    private String currentComponentUuid;
+    private final List<PastMeasureDto> currentPastMeasures = new ArrayList<>();
+
+    public VariationMeasuresHandler(Map<String, Component> componentsByUuid, Iterable<Metric> metrics) {
+      this.componentsByUuid = componentsByUuid;
       this.metricIds = from(metrics).transform(MetricDtoToMetricId.INSTANCE).toSet();
       this.metricByKeys = from(metrics).uniqueIndex(MetricToKey.INSTANCE);
     }
 
+    public void startPeriod(int periodIndex) {
+      this.periodIndex = periodIndex;
+    }
+
     @Override
-    public void visitAny(Component component) {
-      MeasuresWithVariationRepository measuresWithVariationRepository = computeMeasuresWithVariations(component);
-      processMeasuresWithVariation(component, measuresWithVariationRepository);
+    public void handleResult(ResultContext context) {
+      PastMeasureDto pastMeasure = (PastMeasureDto) context.getResultObject();
+      if (!pastMeasure.getComponentUuid().equals(currentComponentUuid)) {
+        flushCurrentComponent();
+        currentComponentUuid = pastMeasure.getComponentUuid();
+      }
+      if (metricIds.contains(pastMeasure.getMetricId())) {
+        currentPastMeasures.add(pastMeasure);
+      }
     }
 
-    private MeasuresWithVariationRepository computeMeasuresWithVariations(Component component) {
-      MeasuresWithVariationRepository measuresWithVariationRepository = new MeasuresWithVariationRepository();
-      for (Period period : periodsHolder.getPeriods()) {
-        List<PastMeasureDto> pastMeasures = dbClient.measureDao()
-          .selectByComponentUuidAndProjectSnapshotIdAndMetricIds(session, component.getUuid(), period.getSnapshotId(), metricIds);
-        setVariationMeasures(component, pastMeasures, period.getIndex(), measuresWithVariationRepository);
+    public void endPeriod() {
+      flushCurrentComponent();
+      currentComponentUuid = null;
+    }
+
+    private void flushCurrentComponent() {
+      Component component = currentComponentUuid == null ? null : componentsByUuid.get(currentComponentUuid);
+      if (component != null && !currentPastMeasures.isEmpty()) {
+        setVariationMeasures(component, currentPastMeasures);
+      }
+      currentPastMeasures.clear();
+    }
+
+    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures) {
+      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = from(pastMeasures).uniqueIndex(pastMeasureToMeasureKey);
+      for (Map.Entry<String, Measure> entry : from(measureRepository.getRawMeasures(component).entries()).filter(NotDeveloperMeasure.INSTANCE)) {
+        String metricKey = entry.getKey();
+        Measure measure = entry.getValue();
+        PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metricKey, measure.getCharacteristicId(), measure.getRuleId(), null));
+        if (pastMeasure != null && pastMeasure.hasValue()) {
+          Metric metric = metricByKeys.get(metricKey);
+          getMeasuresWithVariationRepository(component).add(metric, measure, periodIndex, computeVariation(measure, pastMeasure.getValue()));
+        }
+      }
+    }
+
+    private MeasuresWithVariationRepository getMeasuresWithVariationRepository(Component component) {
+      MeasuresWithVariationRepository res = measuresWithVariationByComponentUuid.get(component.getUuid());
+      if (res == null) {
+        res = new MeasuresWithVariationRepository();
+        measuresWithVariationByComponentUuid.put(component.getUuid(), res);
+      }
+      return res;
+    }
+
+    public void processMeasuresWithVariation() {
+      for (Component component : componentsByUuid.values()) {
+        MeasuresWithVariationRepository measuresWithVariationRepository = measuresWithVariationByComponentUuid.get(component.getUuid());
+        if (measuresWithVariationRepository != null) {
+          processMeasuresWithVariation(component, measuresWithVariationRepository);
+        }
       }
-      return measuresWithVariationRepository;
     }
 
     private void processMeasuresWithVariation(Component component, MeasuresWithVariationRepository measuresWithVariationRepository) {
@@ -140,19 +218,6 @@ public class ComputeMeasureVariationsStep implements ComputationStep {
         measureRepository.update(component, metric, measure);
       }
     }
-
-    private void setVariationMeasures(Component component, List<PastMeasureDto> pastMeasures, int period, MeasuresWithVariationRepository measuresWithVariationRepository) {
-      Map<MeasureKey, PastMeasureDto> pastMeasuresByMeasureKey = from(pastMeasures).uniqueIndex(pastMeasureToMeasureKey);
-      for (Map.Entry<String, Measure> entry : from(measureRepository.getRawMeasures(component).entries()).filter(NotDeveloperMeasure.INSTANCE)) {
-        String metricKey = entry.getKey();
-        Measure measure = entry.getValue();
-        PastMeasureDto pastMeasure = pastMeasuresByMeasureKey.get(new MeasureKey(metricKey, measure.getCharacteristicId(), measure.getRuleId(), null));
-        if (pastMeasure != null && pastMeasure.hasValue()) {
-          Metric metric = metricByKeys.get(metricKey);
-          measuresWithVariationRepository.add(metric, measure, period, computeVariation(measure, pastMeasure.getValue()));
-        }
-      }
-    }
   }
 
   private static double computeVariation(Measure measure, Double pastValue) {
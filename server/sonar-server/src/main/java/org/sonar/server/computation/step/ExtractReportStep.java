@@ -26,6 +26,7 @@ import org.sonar.api.utils.TempFolder;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.batch.protocol.output.SegmentedReportReader;
 import org.sonar.server.computation.queue.CeTask;
 import org.sonar.server.computation.queue.report.ReportFiles;
 import org.sonar.server.computation.batch.MutableBatchReportDirectoryHolder;
@@ -33,6 +34,10 @@ import org.sonar.server.computation.batch.MutableBatchReportDirectoryHolder;
 /**
  * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
  * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * Segmented reports (see {@link SegmentedReportReader}) are read in place, so they are not extracted. The
+ * report file itself is added to the {@link MutableBatchReportDirectoryHolder}.
+ * </p>
  */
 public class ExtractReportStep implements ComputationStep {
   private static final Logger LOG = Loggers.get(ExtractReportStep.class);
@@ -52,8 +57,13 @@ public class ExtractReportStep implements ComputationStep {
 
   @Override
   public void execute() {
-    File dir = tempFolder.newDir();
     File zip = reportFiles.fileForUuid(task.getUuid());
+    if (SegmentedReportReader.isSegmentedReport(zip)) {
+      reportDirectoryHolder.setDirectory(zip);
+      LOG.info("Analysis report opened | size={}", FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(zip)));
+      return;
+    }
+    File dir = tempFolder.newDir();
     try {
       ZipUtils.unzip(zip, dir);
       reportDirectoryHolder.setDirectory(dir);
@@ -19,22 +19,19 @@
  */
 package org.sonar.server.computation.step;
 
-import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.issue.index.IssueIndexer;
 
 public class IndexIssuesStep implements ComputationStep {
 
   private final IssueIndexer indexer;
-  private final TreeRootHolder treeRootHolder;
 
-  public IndexIssuesStep(IssueIndexer indexer, TreeRootHolder treeRootHolder) {
+  public IndexIssuesStep(IssueIndexer indexer) {
     this.indexer = indexer;
-    this.treeRootHolder = treeRootHolder;
   }
 
   @Override
   public void execute() {
-    indexer.index(treeRootHolder.getRoot().getUuid());
+    indexer.indexQueue();
   }
 
   @Override
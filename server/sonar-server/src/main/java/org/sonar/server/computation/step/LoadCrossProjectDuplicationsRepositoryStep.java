@@ -20,14 +20,19 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Sets;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.batch.protocol.output.BatchReport.CpdTextBlock;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.component.SnapshotDto;
 import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
@@ -38,6 +43,7 @@ import org.sonar.server.computation.component.CrawlerDepthLimit;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.snapshot.Snapshot;
@@ -62,23 +68,28 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationIndex crossProjectDuplicationIndex;
   private final DbClient dbClient;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, CrossProjectDuplicationIndex crossProjectDuplicationIndex,
+    DbClient dbClient) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.crossProjectDuplicationIndex = crossProjectDuplicationIndex;
     this.dbClient = dbClient;
   }
 
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor();
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      computeCpd(visitor.candidates);
     }
   }
 
@@ -87,8 +98,58 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
     return "Compute cross project duplications";
   }
 
+  /**
+   * Candidates are looked up in the in-memory index, which may still reference the blocks of a project which
+   * has been deleted or re-analyzed since it has been loaded. Project snapshots of the candidates are
+   * checked by a single query.
+   */
+  private void computeCpd(List<FileCandidates> candidates) {
+    Set<Long> lastProjectSnapshotIds = selectLastProjectSnapshotIds(candidates);
+    for (FileCandidates fileCandidates : candidates) {
+      Component file = fileCandidates.file;
+      Collection<Block> duplicatedBlocks = from(fileCandidates.dtos)
+        .filter(new IsInProjectSnapshots(lastProjectSnapshotIds))
+        .transform(DtoToBlock.INSTANCE)
+        .toList();
+      if (duplicatedBlocks.isEmpty()) {
+        continue;
+      }
+      Collection<Block> originBlocks = from(fileCandidates.cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
+      LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
+
+      integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
+    }
+  }
+
+  private Set<Long> selectLastProjectSnapshotIds(Collection<FileCandidates> candidates) {
+    Set<Long> projectSnapshotIds = new HashSet<>();
+    for (FileCandidates fileCandidates : candidates) {
+      for (DuplicationUnitDto dto : fileCandidates.dtos) {
+        projectSnapshotIds.add(dto.getProjectSnapshotId());
+      }
+    }
+    if (projectSnapshotIds.isEmpty()) {
+      return projectSnapshotIds;
+    }
+    Set<Long> lastProjectSnapshotIds = new HashSet<>();
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      for (SnapshotDto snapshot : dbClient.snapshotDao().selectByIds(dbSession, newArrayList(projectSnapshotIds))) {
+        if (Boolean.TRUE.equals(snapshot.getLast())) {
+          lastProjectSnapshotIds.add(snapshot.getId());
+        }
+      }
+    } finally {
+      dbClient.closeSession(dbSession);
+    }
+    crossProjectDuplicationIndex.evict(Sets.difference(projectSnapshotIds, lastProjectSnapshotIds));
+    return lastProjectSnapshotIds;
+  }
+
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
 
+    private final List<FileCandidates> candidates = newArrayList();
+
     private CrossProjectDuplicationVisitor() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
     }
@@ -102,27 +163,37 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
       }
 
       Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
-        return;
+      Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
+      Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
+      List<DuplicationUnitDto> dtos = crossProjectDuplicationIndex.selectCandidates(projectSnapshotId, file.getFileAttributes().getLanguageKey(), hashes);
+      if (!dtos.isEmpty()) {
+        candidates.add(new FileCandidates(file, cpdTextBlocks, dtos));
       }
+    }
+  }
 
-      Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
-      Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
-      LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
+  private static class FileCandidates {
+    private final Component file;
+    private final List<CpdTextBlock> cpdTextBlocks;
+    private final List<DuplicationUnitDto> dtos;
 
-      integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
+    private FileCandidates(Component file, List<CpdTextBlock> cpdTextBlocks, List<DuplicationUnitDto> dtos) {
+      this.file = file;
+      this.cpdTextBlocks = cpdTextBlocks;
+      this.dtos = dtos;
     }
+  }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
-      DbSession dbSession = dbClient.openSession(false);
-      try {
-        Snapshot projectSnapshot = analysisMetadataHolder.getBaseProjectSnapshot();
-        Long projectSnapshotId = projectSnapshot == null ? null : projectSnapshot.getId();
-        return dbClient.duplicationDao().selectCandidates(dbSession, projectSnapshotId, file.getFileAttributes().getLanguageKey(), hashes);
-      } finally {
-        dbClient.closeSession(dbSession);
-      }
+  private static class IsInProjectSnapshots implements Predicate<DuplicationUnitDto> {
+    private final Set<Long> projectSnapshotIds;
+
+    private IsInProjectSnapshots(Set<Long> projectSnapshotIds) {
+      this.projectSnapshotIds = projectSnapshotIds;
+    }
+
+    @Override
+    public boolean apply(@Nonnull DuplicationUnitDto dto) {
+      return projectSnapshotIds.contains(dto.getProjectSnapshotId());
     }
   }
 
@@ -31,12 +31,15 @@ import org.sonar.server.computation.component.DbIdsRepository;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
+import org.sonar.server.computation.queue.CeTask;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
- * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table
+ * Persist cross project duplications text blocks into DUPLICATIONS_INDEX table. The same blocks are staged in
+ * {@link CrossProjectDuplicationIndex}, to be visible by next analyses once the task is successful.
  */
 public class PersistCrossProjectDuplicationIndexStep implements ComputationStep {
 
@@ -45,14 +48,18 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
   private final BatchReportReader reportReader;
   private final DbIdsRepository dbIdsRepository;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationIndex crossProjectDuplicationIndex;
+  private final CeTask ceTask;
 
   public PersistCrossProjectDuplicationIndexStep(DbClient dbClient, DbIdsRepository dbIdsRepository, TreeRootHolder treeRootHolder, BatchReportReader reportReader,
-    CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder) {
+    CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder, CrossProjectDuplicationIndex crossProjectDuplicationIndex, CeTask ceTask) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.dbIdsRepository = dbIdsRepository;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.crossProjectDuplicationIndex = crossProjectDuplicationIndex;
+    this.ceTask = ceTask;
   }
 
   @Override
@@ -62,7 +69,9 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
       if (crossProjectDuplicationStatusHolder.isEnabled()) {
         Component project = treeRootHolder.getRoot();
         long projectSnapshotId = dbIdsRepository.getSnapshotId(project);
-        new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, projectSnapshotId)).visit(project);
+        CrossProjectDuplicationIndex.Update indexUpdate = crossProjectDuplicationIndex.newUpdate(project.getUuid(), projectSnapshotId);
+        new DepthTraversalTypeAwareCrawler(new DuplicationVisitor(session, projectSnapshotId, indexUpdate)).visit(project);
+        crossProjectDuplicationIndex.stage(ceTask.getUuid(), indexUpdate);
       }
       session.commit();
     } finally {
@@ -74,11 +83,13 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
 
     private final DbSession session;
     private final long projectSnapshotId;
+    private final CrossProjectDuplicationIndex.Update indexUpdate;
 
-    private DuplicationVisitor(DbSession session, long projectSnapshotId) {
+    private DuplicationVisitor(DbSession session, long projectSnapshotId, CrossProjectDuplicationIndex.Update indexUpdate) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
       this.projectSnapshotId = projectSnapshotId;
+      this.indexUpdate = indexUpdate;
     }
 
     @Override
@@ -102,6 +113,7 @@ public class PersistCrossProjectDuplicationIndexStep implements ComputationStep
               .setSnapshotId(dbIdsRepository.getSnapshotId(component))
               .setProjectSnapshotId(projectSnapshotId)
             );
+          indexUpdate.addBlock(component.getKey(), component.getFileAttributes().getLanguageKey(), block.getHash(), indexInFile, block.getStartLine(), block.getEndLine());
           indexInFile++;
         }
       } finally {
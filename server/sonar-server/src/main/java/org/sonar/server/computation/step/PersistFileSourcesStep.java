@@ -20,11 +20,23 @@
 package org.sonar.server.computation.step;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -33,6 +45,7 @@ import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReport;
+import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -46,7 +59,13 @@ import org.sonar.server.computation.component.CrawlerDepthLimit;
 import org.sonar.server.computation.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.configuration.CeConfiguration;
+import org.sonar.server.computation.duplication.CrossProjectDuplicate;
+import org.sonar.server.computation.duplication.Duplicate;
+import org.sonar.server.computation.duplication.Duplication;
 import org.sonar.server.computation.duplication.DuplicationRepository;
+import org.sonar.server.computation.duplication.InProjectDuplicate;
+import org.sonar.server.computation.duplication.TextBlock;
 import org.sonar.server.computation.scm.Changeset;
 import org.sonar.server.computation.scm.ScmInfo;
 import org.sonar.server.computation.scm.ScmInfoRepository;
@@ -62,8 +81,24 @@ import org.sonar.server.computation.source.SymbolsLineReader;
 
 import static org.sonar.server.computation.component.ComponentVisitor.Order.PRE_ORDER;
 
+/**
+ * Sources of files are computed and encoded by a pool of workers (see {@link CeConfiguration#getFileSourcesWorkerCount()}),
+ * while a single writer persists them in batches bounded by their size in bytes (see
+ * {@link CeConfiguration#getFileSourcesBatchSizeInBytes()}), so that memory stays bounded even with big files.
+ * <p/>
+ * Repositories which are not thread-safe ({@link ScmInfoRepository} and {@link DuplicationRepository}) are
+ * read by the thread which crawls the tree of components.
+ */
 public class PersistFileSourcesStep implements ComputationStep {
 
+  /**
+   * Part of the hash of inputs of files. It must be incremented when the computation of data changes, so that
+   * the sources of all the files are computed again.
+   */
+  private static final int INPUTS_HASH_VERSION = 2;
+  private static final String WORKER_NAME_PREFIX = "ce-file-sources-";
+  private static final String WRITER_NAME = "ce-file-sources-writer";
+
   private final DbClient dbClient;
   private final System2 system2;
   private final TreeRootHolder treeRootHolder;
@@ -71,9 +106,10 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final CeConfiguration ceConfiguration;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
-    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, CeConfiguration ceConfiguration) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -81,30 +117,73 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.ceConfiguration = ceConfiguration;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
+    int workerCount = ceConfiguration.getFileSourcesWorkerCount();
+    // the queue of the workers is bounded. When full, files are processed by the crawling thread.
+    ThreadPoolExecutor workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(workerCount),
+      new ThreadFactoryBuilder().setNameFormat(WORKER_NAME_PREFIX + "%d").build(),
+      new ThreadPoolExecutor.CallerRunsPolicy());
+    ExecutorService writerExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat(WRITER_NAME).build());
+    FileSourcesWriter writer = new FileSourcesWriter(ceConfiguration.getFileSourcesBatchSizeInBytes(), 2 * workerCount);
     DbSession session = dbClient.openSession(false);
     try {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session))
-        .visit(treeRootHolder.getRoot());
+      Future<?> writerFuture = writerExecutor.submit(writer);
+      try {
+        new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(session, workers, writer))
+          .visit(treeRootHolder.getRoot());
+      } finally {
+        workers.shutdown();
+        awaitTermination(workers);
+        writer.finish();
+      }
+      waitFor(writerFuture);
+      writer.failIfError();
     } finally {
+      workers.shutdownNow();
+      writerExecutor.shutdownNow();
       MyBatis.closeQuietly(session);
     }
   }
 
+  private static void awaitTermination(ExecutorService executor) {
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while persisting sources", e);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while persisting sources", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService workers;
+    private final FileSourcesWriter writer;
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService workers, FileSourcesWriter writer) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.workers = workers;
+      this.writer = writer;
     }
 
     @Override
@@ -121,27 +200,98 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
 
     @Override
-    public void visitFile(Component file) {
+    public void visitFile(final Component file) {
+      if (writer.hasError()) {
+        // no need to compute the remaining files
+        return;
+      }
+      final Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      final List<Duplication> duplications = ImmutableList.copyOf(duplicationRepository.getDuplications(file));
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (!writer.hasError()) {
+            try {
+              computeSource(file, scmInfo, duplications);
+            } catch (Throwable e) {
+              writer.setError(new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e));
+            }
+          }
+        }
+      });
+    }
+
+    private void computeSource(Component file, Optional<ScmInfo> scmInfo, List<Duplication> duplications) {
       int fileRef = file.getReportAttributes().getRef();
       BatchReport.Component component = reportReader.readComponent(fileRef);
+      String inputsHash = computeInputsHash(file, component, scmInfo, duplications);
+      FileSourceDto previousDto = previousFileSourcesByUuid.get(file.getUuid());
+      if (previousDto != null && inputsHash.equals(previousDto.getInputsHash())) {
+        // nothing changed since previous analysis, there's no need to open the line readers
+        return;
+      }
+
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplications, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), component.getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
-      } catch (Exception e) {
-        throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
+        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange(), inputsHash);
       } finally {
         linesIterator.close();
         lineReaders.close();
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
+    /**
+     * Fingerprint of everything the data of the file is computed from. The report files of coverage, highlighting
+     * and symbols are hashed without being parsed.
+     */
+    private String computeInputsHash(Component file, BatchReport.Component component, Optional<ScmInfo> scmInfo, List<Duplication> duplications) {
+      StringBuilder inputs = new StringBuilder();
+      inputs.append(INPUTS_HASH_VERSION).append('\n');
+      inputs.append(computeSrcHash(file)).append('\n');
+      inputs.append(component.getLines()).append('\n');
+      inputs.append(reportReader.readLineDataHash(component.getRef())).append('\n');
+      if (scmInfo.isPresent()) {
+        Changeset latestChange = scmInfo.get().getLatestChangeset();
+        inputs.append(latestChange.getRevision()).append(',').append(latestChange.getAuthor()).append(',').append(latestChange.getDate());
+      }
+      inputs.append('\n');
+      for (Duplication duplication : duplications) {
+        appendTextBlock(inputs, duplication.getOriginal());
+        for (Duplicate duplicate : duplication.getDuplicates()) {
+          inputs.append(',');
+          if (duplicate instanceof InProjectDuplicate) {
+            inputs.append(((InProjectDuplicate) duplicate).getFile().getKey());
+          } else if (duplicate instanceof CrossProjectDuplicate) {
+            inputs.append(((CrossProjectDuplicate) duplicate).getFileKey());
+          }
+          appendTextBlock(inputs, duplicate.getTextBlock());
+        }
+        inputs.append('\n');
+      }
+      return DigestUtils.md5Hex(inputs.toString());
+    }
+
+    private String computeSrcHash(Component file) {
+      SourceHashComputer sourceHashComputer = new SourceHashComputer();
+      CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
+      try {
+        while (linesIterator.hasNext()) {
+          sourceHashComputer.addLine(linesIterator.next(), linesIterator.hasNext());
+        }
+        return sourceHashComputer.getHash();
+      } finally {
+        linesIterator.close();
+      }
+    }
+
+    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange, String inputsHash) {
       DbFileSources.Data fileData = fileSourceData.getFileSourceData();
 
       byte[] data = FileSourceDto.encodeSourceData(fileData);
+      byte[] scmData = FileSourceDto.encodeScmData(fileData);
       String dataHash = DigestUtils.md5Hex(data);
       String srcHash = fileSourceData.getSrcHash();
       String lineHashes = fileSourceData.getLineHashes();
@@ -153,14 +303,15 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setFileUuid(componentUuid)
           .setDataType(Type.SOURCE)
           .setBinaryData(data)
+          .setScmBinaryData(scmData)
           .setSrcHash(srcHash)
           .setDataHash(dataHash)
           .setLineHashes(lineHashes)
+          .setInputsHash(inputsHash)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
           .setRevision(computeRevision(latestChange));
-        dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        writer.insert(dto);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
@@ -170,18 +321,180 @@ public class PersistFileSourcesStep implements ComputationStep {
         if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
           previousDto
             .setBinaryData(data)
+            .setScmBinaryData(scmData)
             .setDataHash(dataHash)
             .setSrcHash(srcHash)
             .setLineHashes(lineHashes)
+            .setInputsHash(inputsHash)
             .setRevision(revision)
             .setUpdatedAt(system2.now());
-          dbClient.fileSourceDao().update(previousDto);
-          session.commit();
+          writer.update(previousDto);
+        } else {
+          // data did not change, for example because of a format change of the report. Date of update is not changed
+          // as it means that data has changed, but inputs hash is stored in order to skip the file during next analysis.
+          // SCM data is written as it's missing on files which have not been analyzed since it's stored (progressive migration).
+          writer.updateInputsHashAndScmData(previousDto.setInputsHash(inputsHash).setScmBinaryData(scmData));
         }
       }
     }
   }
 
+  /**
+   * Consumes the sources computed by the workers and persists them with a batch session, which is committed
+   * when the size of the pending sources exceeds the budget. The queue is bounded, so workers wait for the
+   * writer when database is the bottleneck.
+   * <p/>
+   * On error, the writer keeps on consuming the queue without writing, in order to never block the workers.
+   */
+  private class FileSourcesWriter implements Runnable {
+    private final PendingWrite end = new PendingWrite(new FileSourceDto(), Operation.INSERT);
+    private final long batchSizeInBytes;
+    private final BlockingQueue<PendingWrite> queue;
+    private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+    private FileSourcesWriter(long batchSizeInBytes, int queueSize) {
+      this.batchSizeInBytes = batchSizeInBytes;
+      this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    void insert(FileSourceDto dto) {
+      put(new PendingWrite(dto, Operation.INSERT));
+    }
+
+    void update(FileSourceDto dto) {
+      put(new PendingWrite(dto, Operation.UPDATE));
+    }
+
+    void updateInputsHashAndScmData(FileSourceDto dto) {
+      put(new PendingWrite(dto, Operation.UPDATE_INPUTS_HASH_AND_SCM_DATA));
+    }
+
+    void finish() {
+      put(end);
+    }
+
+    private void put(PendingWrite pendingWrite) {
+      try {
+        queue.put(pendingWrite);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while persisting sources", e);
+      }
+    }
+
+    boolean hasError() {
+      return error.get() != null;
+    }
+
+    void setError(RuntimeException e) {
+      error.compareAndSet(null, e);
+    }
+
+    void failIfError() {
+      RuntimeException e = error.get();
+      if (e != null) {
+        throw e;
+      }
+    }
+
+    @Override
+    public void run() {
+      DbSession batchSession = null;
+      try {
+        batchSession = dbClient.openSession(true);
+        consume(batchSession);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        setError(new IllegalStateException("Interrupted while persisting sources", e));
+      } catch (Throwable e) {
+        setError(new IllegalStateException("Cannot persist sources", e));
+        discardUntilEnd();
+      } finally {
+        MyBatis.closeQuietly(batchSession);
+      }
+    }
+
+    private void consume(DbSession batchSession) throws InterruptedException {
+      long pendingBytes = 0L;
+      PendingWrite pendingWrite = queue.take();
+      while (pendingWrite != end) {
+        if (!hasError()) {
+          pendingBytes += write(batchSession, pendingWrite);
+          if (pendingBytes >= batchSizeInBytes) {
+            commit(batchSession);
+            pendingBytes = 0L;
+          }
+        }
+        pendingWrite = queue.take();
+      }
+      if (!hasError()) {
+        commit(batchSession);
+      }
+    }
+
+    /**
+     * Keeps on consuming the queue after an unexpected failure, so that workers never wait forever for space in the queue
+     */
+    private void discardUntilEnd() {
+      try {
+        PendingWrite pendingWrite = queue.take();
+        while (pendingWrite != end) {
+          pendingWrite = queue.take();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private long write(DbSession batchSession, PendingWrite pendingWrite) {
+      FileSourceDto dto = pendingWrite.dto;
+      try {
+        switch (pendingWrite.operation) {
+          case INSERT:
+            dbClient.fileSourceDao().insert(batchSession, dto);
+            break;
+          case UPDATE:
+            dbClient.fileSourceDao().update(batchSession, dto);
+            break;
+          case UPDATE_INPUTS_HASH_AND_SCM_DATA:
+            dbClient.fileSourceDao().updateInputsHashAndScmData(batchSession, dto);
+            return dto.getInputsHash().length() + dto.getScmBinaryData().length;
+          default:
+            throw new IllegalStateException("Unsupported operation " + pendingWrite.operation);
+        }
+      } catch (RuntimeException e) {
+        setError(new IllegalStateException(String.format("Cannot persist sources of file %s", dto.getFileUuid()), e));
+      }
+      return dto.getBinaryData().length + dto.getScmBinaryData().length + (dto.getLineHashes() == null ? 0 : dto.getLineHashes().length());
+    }
+
+    private void commit(DbSession batchSession) {
+      try {
+        batchSession.commit();
+      } catch (RuntimeException e) {
+        setError(new IllegalStateException("Cannot persist sources", e));
+      }
+    }
+  }
+
+  private enum Operation {
+    INSERT, UPDATE, UPDATE_INPUTS_HASH_AND_SCM_DATA
+  }
+
+  private static class PendingWrite {
+    private final FileSourceDto dto;
+    private final Operation operation;
+
+    private PendingWrite(FileSourceDto dto, Operation operation) {
+      this.dto = dto;
+      this.operation = operation;
+    }
+  }
+
+  private static void appendTextBlock(StringBuilder inputs, TextBlock textBlock) {
+    inputs.append('[').append(textBlock.getStart()).append('-').append(textBlock.getEnd()).append(']');
+  }
+
   @CheckForNull
   private static String computeRevision(FileSourceDto previousDto, @Nullable Changeset latestChange) {
     if (latestChange == null) {
@@ -204,13 +517,12 @@ public class PersistFileSourcesStep implements ComputationStep {
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, List<Duplication> duplications, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<BatchReport.Coverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -227,7 +539,7 @@ public class PersistFileSourcesStep implements ComputationStep {
       closeables.add(symbolsIt);
       readers.add(new SymbolsLineReader(component, symbolsIt, rangeOffsetConverter));
 
-      readers.add(new DuplicationLineReader(duplicationRepository.getDuplications(component)));
+      readers.add(new DuplicationLineReader(duplications));
     }
 
     List<LineReader> readers() {
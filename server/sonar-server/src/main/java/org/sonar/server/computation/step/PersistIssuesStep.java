@@ -24,6 +24,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.DefaultIssueComment;
 import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueChangeDto;
 import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
@@ -36,6 +37,8 @@ import org.sonar.server.computation.issue.RuleRepository;
 import org.sonar.db.DbClient;
 import org.sonar.core.util.CloseableIterator;
 
+import static java.util.Collections.singletonList;
+
 public class PersistIssuesStep implements ComputationStep {
 
   private final DbClient dbClient;
@@ -81,6 +84,8 @@ public class PersistIssuesStep implements ComputationStep {
         }
         if (saved) {
           insertChanges(changeMapper, issue);
+          // indexed by IndexIssuesStep
+          dbClient.esQueueDao().insert(session, EsQueueDto.TYPE_ISSUE, singletonList(issue.key()));
         }
       }
       session.flushStatements();
@@ -101,6 +101,7 @@ public class ReportComputationSteps extends AbstractComputationSteps {
     // ES indexing is done after all db changes
     IndexIssuesStep.class,
     IndexTestsStep.class,
+    IndexProjectMeasuresStep.class,
 
     // notifications are sent at the end, so that webapp displays up-to-date information
     SendIssueNotificationsStep.class,
@@ -30,6 +30,7 @@ import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.computation.configuration.CeConfiguration;
 
 import static com.google.common.util.concurrent.Futures.addCallback;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -42,15 +43,23 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   private final long delayBetweenTasks;
   private final TimeUnit timeUnit;
-  // warning: using a single ChainingCallback object for chaining works and is thread safe only because we use a single Thread in CeProcessingSchedulerExecutorService
-  private final ChainingCallback chainingCallback = new ChainingCallback();
+  // warning: a ChainingCallback object is not thread safe by itself. It is safe to use it because each ChainingCallback
+  // has at most one future running or scheduled at a time, and a new one is chained only once the previous one is done
+  private final ChainingCallback[] chainingCallbacks;
 
-  public CeProcessingSchedulerImpl(CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
+  public CeProcessingSchedulerImpl(CeConfiguration ceConfiguration,
+    CeProcessingSchedulerExecutorService processingExecutorService, CeWorkerCallable workerRunnable) {
     this.executorService = processingExecutorService;
     this.workerRunnable = workerRunnable;
 
     this.delayBetweenTasks = 2;
     this.timeUnit = SECONDS;
+
+    int workerCount = ceConfiguration.getWorkerCount();
+    this.chainingCallbacks = new ChainingCallback[workerCount];
+    for (int i = 0; i < workerCount; i++) {
+      chainingCallbacks[i] = new ChainingCallback();
+    }
   }
 
   @Override
@@ -60,20 +69,23 @@ public class CeProcessingSchedulerImpl implements CeProcessingScheduler, Startab
 
   @Override
   public void startScheduling() {
-    ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
-
-    addCallback(future, chainingCallback, executorService);
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      ListenableScheduledFuture<Boolean> future = executorService.schedule(workerRunnable, delayBetweenTasks, timeUnit);
+      addCallback(future, chainingCallback, executorService);
+    }
   }
 
   @Override
   public void stop() {
-    this.chainingCallback.stop();
+    for (ChainingCallback chainingCallback : chainingCallbacks) {
+      chainingCallback.stop();
+    }
   }
 
   private class ChainingCallback implements FutureCallback<Boolean> {
     private final AtomicBoolean keepRunning = new AtomicBoolean(true);
     @CheckForNull
-    private ListenableFuture<Boolean> workerFuture;
+    private volatile ListenableFuture<Boolean> workerFuture;
 
     @Override
     public void onSuccess(@Nullable Boolean result) {
@@ -20,14 +20,22 @@
 package org.sonar.server.computation.taskprocessor;
 
 import org.sonar.core.platform.Module;
+import org.sonar.server.computation.configuration.CeConfigurationImpl;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndex;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndexQueueListener;
 
 public class CeTaskProcessorModule extends Module {
   @Override
   protected void configureModule() {
     add(
+      CeConfigurationImpl.class,
       CeTaskProcessorRepositoryImpl.class,
       CeWorkerCallableImpl.class,
       CeProcessingSchedulerExecutorServiceImpl.class,
-      CeProcessingSchedulerImpl.class);
+      CeProcessingSchedulerImpl.class,
+
+      // shared by the analyses of all the projects
+      CrossProjectDuplicationIndex.class,
+      CrossProjectDuplicationIndexQueueListener.class);
   }
 }
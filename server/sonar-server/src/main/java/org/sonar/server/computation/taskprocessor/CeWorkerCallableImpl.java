@@ -25,6 +25,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.server.computation.log.CeLogging;
+import org.sonar.server.computation.monitoring.CEQueueStatus;
 import org.sonar.server.computation.queue.CeQueue;
 import org.sonar.server.computation.queue.CeTask;
 import org.sonar.server.computation.queue.CeTaskResult;
@@ -38,11 +39,13 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
   private final CeQueue queue;
   private final CeLogging ceLogging;
   private final CeTaskProcessorRepository taskProcessorRepository;
+  private final CEQueueStatus queueStatus;
 
-  public CeWorkerCallableImpl(CeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository) {
+  public CeWorkerCallableImpl(CeQueue queue, CeLogging ceLogging, CeTaskProcessorRepository taskProcessorRepository, CEQueueStatus queueStatus) {
     this.queue = queue;
     this.ceLogging = ceLogging;
     this.taskProcessorRepository = taskProcessorRepository;
+    this.queueStatus = queueStatus;
   }
 
   @Override
@@ -90,7 +93,9 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
       // logging twice: once in sonar.log and once in CE appender
       stopProfiler(ceProfiler, task, status);
       ceLogging.clearForTask();
-      stopProfiler(regularProfiler, task, status);
+      long processingTime = stopProfiler(regularProfiler, task, status);
+      // a worker is bound to a thread of CeProcessingSchedulerExecutorService, which name identifies it
+      queueStatus.addWorkerProcessed(Thread.currentThread().getName(), processingTime);
     }
   }
 
@@ -98,11 +103,10 @@ public class CeWorkerCallableImpl implements CeWorkerCallable {
     return Profiler.create(LOG).startInfo("Execute task | project={} | id={}", task.getComponentKey(), task.getUuid());
   }
 
-  private static void stopProfiler(Profiler profiler, CeTask task, CeActivityDto.Status status) {
+  private static long stopProfiler(Profiler profiler, CeTask task, CeActivityDto.Status status) {
     if (status == CeActivityDto.Status.FAILED) {
-      profiler.stopError("Executed task | project={} | id={}", task.getComponentKey(), task.getUuid());
-    } else {
-      profiler.stopInfo("Executed task | project={} | id={}", task.getComponentKey(), task.getUuid());
+      return profiler.stopError("Executed task | project={} | id={}", task.getComponentKey(), task.getUuid());
     }
+    return profiler.stopInfo("Executed task | project={} | id={}", task.getComponentKey(), task.getUuid());
   }
 }
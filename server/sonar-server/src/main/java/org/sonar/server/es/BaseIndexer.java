@@ -62,21 +62,29 @@ public abstract class BaseIndexer implements Startable {
   }
 
   public void index(final IndexerTask task) {
-    if (enabled) {
-      final long requestedAt = System.currentTimeMillis();
-      Future submit = executor.submit(new Runnable() {
-        @Override
-        public void run() {
-          if (lastUpdatedAt == -1L) {
-            lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
-          }
-          if (requestedAt > lastUpdatedAt) {
-            long l = task.index(lastUpdatedAt);
-            // l can be 0 if no documents were indexed
-            lastUpdatedAt = Math.max(l, lastUpdatedAt);
-          }
+    final long requestedAt = System.currentTimeMillis();
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        if (lastUpdatedAt == -1L) {
+          lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
+        }
+        if (requestedAt > lastUpdatedAt) {
+          long l = task.index(lastUpdatedAt);
+          // l can be 0 if no documents were indexed
+          lastUpdatedAt = Math.max(l, lastUpdatedAt);
         }
-      });
+      }
+    });
+  }
+
+  /**
+   * Executes the task in the indexing thread and waits for its completion, so that it never runs
+   * concurrently with the other tasks of this indexer. Does nothing if indexer is disabled.
+   */
+  protected void execute(Runnable task) {
+    if (enabled) {
+      Future submit = executor.submit(task);
       try {
         Uninterruptibles.getUninterruptibly(submit);
       } catch (ExecutionException e) {
@@ -19,8 +19,22 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -35,23 +49,25 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.picocontainer.Startable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 
-import java.util.Map;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-
 import static java.lang.String.format;
 
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk requests are sent asynchronously, so that documents are built while previous requests are being executed.
+ *   The number of concurrent requests is limited, the caller is blocked when the limit is reached</li>
+ *   <li>size of bulk requests is adapted to the latency of Elasticsearch, between 256Kb and 16Mb. It starts at 1Mb</li>
+ *   <li>requests rejected by Elasticsearch because its queues are full are sent again</li>
+ *   <li>deletions by query are non-blocking. Their failures are raised by {@link #stop()}. Scrolling of the documents
+ *   to be deleted is paused as long as too many deletions are waiting to be sent</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
  * </ul>
@@ -60,21 +76,47 @@ public class BulkIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
+  private static final long MIN_FLUSH_BYTE_SIZE = new ByteSizeValue(256, ByteSizeUnit.KB).bytes();
+  private static final long MAX_FLUSH_BYTE_SIZE = new ByteSizeValue(16, ByteSizeUnit.MB).bytes();
+  // size of bulk requests is increased when responses are faster than the low threshold, and decreased
+  // when they are slower than the high threshold
+  private static final long LOW_LATENCY_MS = 500L;
+  private static final long HIGH_LATENCY_MS = 2000L;
+  private static final int MAX_ATTEMPTS = 5;
+  private static final int MAX_ASYNC_REQUESTS = 10_000;
+  private static final long STOP_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
 
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
-  private long flushByteSize = FLUSH_BYTE_SIZE;
+  private boolean adaptiveFlushByteSize = true;
+  private final AtomicLong flushByteSize = new AtomicLong(FLUSH_BYTE_SIZE);
   private boolean disableRefresh = false;
-  private BulkRequestBuilder bulkRequest = null;
+  private Bulk bulk = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
   private final int concurrentRequests;
   private final Semaphore semaphore;
   private final ProgressLogger progress;
 
+  // requests added by asynchronous listeners (deletions by query and retries). They are
+  // consumed by the thread adding the other requests.
+  private final BlockingQueue<PendingRequest> asyncRequests = new LinkedBlockingQueue<>();
+  private final AtomicInteger pendingDeletions = new AtomicInteger(0);
+  // scroll ids of the deletions paused because of too many async requests. They are resumed by the
+  // thread consuming the requests, as the listeners must not be blocked.
+  private final Queue<String> pausedDeletionScrolls = new ConcurrentLinkedQueue<>();
+  private int maxAsyncRequests = MAX_ASYNC_REQUESTS;
+  private final AtomicReference<Throwable> deletionFailure = new AtomicReference<>();
+
+  private final AtomicInteger inFlightRequests = new AtomicInteger(0);
+  private final AtomicLong sentBytes = new AtomicLong(0L);
+  private final AtomicLong rejectedExecutions = new AtomicLong(0L);
+  private final AtomicLong retries = new AtomicLong(0L);
+  private long startedAt;
+
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
     this.indexName = indexName;
@@ -90,16 +132,30 @@ public class BulkIndexer implements Startable {
    * automatic refresh are disabled during bulk indexing and lucene segments are optimized at the end.
    */
   public BulkIndexer setLarge(boolean b) {
-    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    Preconditions.checkState(bulk == null, ALREADY_STARTED_MESSAGE);
     this.large = b;
     return this;
   }
 
+  /**
+   * Fixed size of bulk requests. It disables the adaptation of size to the latency of Elasticsearch.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
-    this.flushByteSize = flushByteSize;
+    this.flushByteSize.set(flushByteSize);
+    this.adaptiveFlushByteSize = false;
     return this;
   }
 
+  @VisibleForTesting
+  BulkIndexer setMaxAsyncRequests(int maxAsyncRequests) {
+    this.maxAsyncRequests = maxAsyncRequests;
+    return this;
+  }
+
+  public long getFlushByteSize() {
+    return flushByteSize.get();
+  }
+
   /**
    * By default refresh of index is executed in method {@link #stop()}. Set to true
    * to disable refresh.
@@ -111,7 +167,7 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void start() {
-    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    Preconditions.checkState(bulk == null, ALREADY_STARTED_MESSAGE);
     if (large) {
       largeInitialSettings = Maps.newHashMap();
       Map<String, Object> bulkSettings = Maps.newHashMap();
@@ -131,18 +187,37 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
-    bulkRequest = client.prepareBulk().setRefresh(false);
+    bulk = new Bulk();
     counter.set(0L);
+    sentBytes.set(0L);
+    rejectedExecutions.set(0L);
+    retries.set(0L);
+    deletionFailure.set(null);
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
   public void add(ActionRequest request) {
-    bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    addAsyncRequests();
+    add(request, 1);
+  }
+
+  private void add(ActionRequest request, int attempt) {
+    bulk.add(request, attempt);
+    if (bulk.builder.request().estimatedSizeInBytes() >= flushByteSize.get()) {
       executeBulk();
     }
   }
 
+  /**
+   * Delete all the documents matching the given search request. This method is non-blocking,
+   * deletions are completed when {@link #stop()} returns. {@link #stop()} fails if the documents
+   * to be deleted can't be searched.
+   * <p/>
+   * Deletions are sent by the calls to {@link #add(ActionRequest)} and {@link #stop()}, which also
+   * resume the scrolling of the documents to be deleted once too many deletions are waiting. Scroll
+   * contexts are kept 5 minutes between two of these calls.
+   */
   public void addDeletion(SearchRequestBuilder searchRequest) {
     searchRequest
       .setScroll(TimeValue.timeValueMinutes(5))
@@ -151,24 +226,8 @@ public class BulkIndexer implements Startable {
       // load only doc ids, not _source fields
       .setFetchSource(false);
 
-    // this search is synchronous. An optimization would be to be non-blocking,
-    // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
-    // two locks)
-    SearchResponse searchResponse = searchRequest.get();
-
-    while (true) {
-      searchResponse = client.prepareSearchScroll(searchResponse.getScrollId())
-        .setScroll(TimeValue.timeValueMinutes(5))
-        .get();
-      SearchHit[] hits = searchResponse.getHits().getHits();
-      for (SearchHit hit : hits) {
-        add(client.prepareDelete(hit.index(), hit.type(), hit.getId()).request());
-      }
-      if (hits.length == 0) {
-        break;
-      }
-    }
+    pendingDeletions.incrementAndGet();
+    searchRequest.execute(new DeletionScrollListener(true));
   }
 
   /**
@@ -184,17 +243,9 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
-    }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
-      }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
-    }
+    awaitCompletion();
     progress.stop();
+    logStatistics();
 
     if (!disableRefresh) {
       client.prepareRefresh(indexName).get();
@@ -207,7 +258,112 @@ public class BulkIndexer implements Startable {
 
       updateSettings(largeInitialSettings);
     }
-    bulkRequest = null;
+    bulk = null;
+
+    Throwable failure = deletionFailure.get();
+    if (failure != null) {
+      throw new IllegalStateException("Fail to delete documents from index " + indexName, failure);
+    }
+  }
+
+  /**
+   * Number of bulk requests sent to Elasticsearch and not completed yet
+   */
+  public int getInFlightRequests() {
+    return inFlightRequests.get();
+  }
+
+  /**
+   * Total size of the bulk requests sent to Elasticsearch since {@link #start()}, including retries
+   */
+  public long getSentBytes() {
+    return sentBytes.get();
+  }
+
+  public long getSentBytesPerSecond() {
+    long durationMs = Math.max(1L, System.currentTimeMillis() - startedAt);
+    return 1000L * sentBytes.get() / durationMs;
+  }
+
+  /**
+   * Number of requests rejected by Elasticsearch since {@link #start()}, generally because
+   * its queues are full.
+   */
+  public long getRejectedExecutions() {
+    return rejectedExecutions.get();
+  }
+
+  /**
+   * Number of requests sent again since {@link #start()}
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  private void awaitCompletion() {
+    long timeoutAt = System.currentTimeMillis() + STOP_TIMEOUT_MS;
+    while (true) {
+      addAsyncRequests();
+      if (bulk.size() > 0) {
+        executeBulk();
+      }
+      // listeners add their requests before being marked as completed
+      if (pendingDeletions.get() == 0 && inFlightRequests.get() == 0 && asyncRequests.isEmpty()) {
+        return;
+      }
+      long remainingMs = timeoutAt - System.currentTimeMillis();
+      if (remainingMs <= 0) {
+        throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes");
+      }
+      try {
+        PendingRequest request = asyncRequests.poll(Math.min(remainingMs, 50L), TimeUnit.MILLISECONDS);
+        if (request != null) {
+          add(request.request, request.attempt);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for Elasticsearch bulk requests", e);
+      }
+    }
+  }
+
+  private void addAsyncRequests() {
+    PendingRequest request = asyncRequests.poll();
+    while (request != null) {
+      add(request.request, request.attempt);
+      request = asyncRequests.poll();
+    }
+    resumeDeletionScrolls();
+  }
+
+  private void resumeDeletionScrolls() {
+    String scrollId = pausedDeletionScrolls.poll();
+    while (scrollId != null) {
+      scrollDeletion(scrollId);
+      scrollId = pausedDeletionScrolls.poll();
+    }
+  }
+
+  private void scrollDeletion(String scrollId) {
+    try {
+      client.prepareSearchScroll(scrollId)
+        .setScroll(TimeValue.timeValueMinutes(5))
+        .execute(new DeletionScrollListener(false));
+    } catch (RuntimeException e) {
+      failDeletion(e);
+    }
+  }
+
+  private void failDeletion(Throwable e) {
+    deletionFailure.compareAndSet(null, e);
+    pendingDeletions.decrementAndGet();
+  }
+
+  private void logStatistics() {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(format("Bulk indexing of %s: %d requests, %d bytes sent (%d bytes/sec), %d rejected executions, %d retries",
+        indexName, counter.get(), sentBytes.get(), getSentBytesPerSecond(), rejectedExecutions.get(), retries.get()));
+    }
   }
 
   private void updateSettings(Map<String, Object> settings) {
@@ -217,35 +373,154 @@ public class BulkIndexer implements Startable {
   }
 
   private void executeBulk() {
-    final BulkRequestBuilder req = this.bulkRequest;
-    this.bulkRequest = client.prepareBulk().setRefresh(false);
+    Bulk req = this.bulk;
+    this.bulk = new Bulk();
     semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    inFlightRequests.incrementAndGet();
+    sentBytes.addAndGet(req.builder.request().estimatedSizeInBytes());
+    req.builder.execute(new BulkResponseActionListener(req, System.currentTimeMillis()));
+  }
+
+  private void retry(Bulk req, int itemId) {
+    int attempt = req.attempts.get(itemId);
+    ActionRequest request = req.builder.request().requests().get(itemId);
+    if (attempt < MAX_ATTEMPTS) {
+      retries.incrementAndGet();
+      asyncRequests.add(new PendingRequest(request, attempt + 1));
+    } else {
+      LOGGER.error("Request rejected {} times by Elasticsearch, it is not sent again: {}", attempt, request);
+    }
+  }
+
+  @VisibleForTesting
+  void adaptFlushByteSize(long latencyMs, boolean rejected) {
+    if (!adaptiveFlushByteSize) {
+      return;
+    }
+    long current = flushByteSize.get();
+    long updated = current;
+    if (rejected || latencyMs > HIGH_LATENCY_MS) {
+      updated = Math.max(MIN_FLUSH_BYTE_SIZE, current / 2);
+    } else if (latencyMs < LOW_LATENCY_MS) {
+      updated = Math.min(MAX_FLUSH_BYTE_SIZE, current + current / 2);
+    }
+    // concurrent responses can adapt the size, only one of them is applied
+    flushByteSize.compareAndSet(current, updated);
+  }
+
+  private static boolean isRejectedExecution(Throwable e) {
+    return ExceptionsHelper.unwrapCause(e) instanceof EsRejectedExecutionException;
+  }
+
+  private class Bulk {
+    private final BulkRequestBuilder builder = client.prepareBulk().setRefresh(false);
+    // number of attempts of each request of the bulk, in the same order
+    private final List<Integer> attempts = new ArrayList<>();
+
+    private void add(ActionRequest request, int attempt) {
+      builder.request().add(request);
+      attempts.add(attempt);
+    }
+
+    private int size() {
+      return builder.numberOfActions();
+    }
+  }
+
+  private static class PendingRequest {
+    private final ActionRequest request;
+    private final int attempt;
+
+    private PendingRequest(ActionRequest request, int attempt) {
+      this.request = request;
+      this.attempt = attempt;
+    }
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
-    private final BulkRequestBuilder req;
+    private final Bulk req;
+    private final long sentAt;
 
-    public BulkResponseActionListener(BulkRequestBuilder req) {
+    public BulkResponseActionListener(Bulk req, long sentAt) {
       this.req = req;
+      this.sentAt = sentAt;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
+      try {
+        boolean rejected = false;
+        for (BulkItemResponse item : response.getItems()) {
+          if (!item.isFailed()) {
+            counter.incrementAndGet();
+          } else if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS) {
+            rejected = true;
+            rejectedExecutions.incrementAndGet();
+            retry(req, item.getItemId());
+          } else {
+            counter.incrementAndGet();
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
+        }
+        adaptFlushByteSize(System.currentTimeMillis() - sentAt, rejected);
+      } finally {
+        release();
+      }
+    }
+
+    @Override
+    public void onFailure(Throwable e) {
+      try {
+        if (isRejectedExecution(e)) {
+          rejectedExecutions.incrementAndGet();
+          adaptFlushByteSize(System.currentTimeMillis() - sentAt, true);
+          for (int itemId = 0; itemId < req.size(); itemId++) {
+            retry(req, itemId);
+          }
+        } else {
+          LOGGER.error("Fail to execute bulk index request: " + req.builder, e);
+        }
+      } finally {
+        release();
+      }
+    }
+
+    private void release() {
+      inFlightRequests.decrementAndGet();
       semaphore.release();
-      counter.addAndGet(response.getItems().length);
+    }
+  }
+
+  private class DeletionScrollListener implements ActionListener<SearchResponse> {
+    // the first response of a scan search does not contain hits
+    private final boolean scan;
+
+    private DeletionScrollListener(boolean scan) {
+      this.scan = scan;
+    }
 
-      for (BulkItemResponse item : response.getItems()) {
-        if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+    @Override
+    public void onResponse(SearchResponse searchResponse) {
+      try {
+        SearchHit[] hits = searchResponse.getHits().getHits();
+        for (SearchHit hit : hits) {
+          asyncRequests.add(new PendingRequest(client.prepareDelete(hit.index(), hit.type(), hit.getId()).request(), 1));
+        }
+        if (!scan && hits.length == 0) {
+          pendingDeletions.decrementAndGet();
+        } else if (asyncRequests.size() >= maxAsyncRequests) {
+          pausedDeletionScrolls.add(searchResponse.getScrollId());
+        } else {
+          scrollDeletion(searchResponse.getScrollId());
         }
+      } catch (RuntimeException e) {
+        onFailure(e);
       }
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      failDeletion(e);
     }
   }
 }
@@ -0,0 +1,329 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.process.ProcessProperties;
+
+/**
+ * Full indexing of a type whose documents belong to projects, for example issues. Projects are split into ranges
+ * of uuids which are indexed concurrently by {@link #PARTITIONS_PROPERTY} partitions, each one having its own
+ * JDBC cursor and bulk requests.
+ * <p/>
+ * Indexed ranges are recorded in a file of the data directory, so that indexing is resumed if the server is
+ * stopped before the end. The file is dropped when the index is re-created.
+ */
+public class PartitionedReindexer {
+
+  public static final String PARTITIONS_PROPERTY = "sonar.search.reindexPartitions";
+  private static final int DEFAULT_PARTITIONS = 4;
+  // ranges are smaller than partitions, so that they are balanced and so that resumed indexing
+  // does not start again from scratch
+  private static final int RANGES_PER_PARTITION = 8;
+
+  private static final Logger LOGGER = Loggers.get(PartitionedReindexer.class);
+  private static final String SQL_PROJECT_UUIDS = "SELECT p.uuid FROM projects p WHERE p.scope='PRJ' AND p.qualifier='TRK' ORDER BY p.uuid";
+  private static final String CREATION_DATE_SETTING = "index.creation_date";
+
+  private final EsClient esClient;
+  private final DbClient dbClient;
+  private final Settings settings;
+
+  public PartitionedReindexer(EsClient esClient, DbClient dbClient, Settings settings) {
+    this.esClient = esClient;
+    this.dbClient = dbClient;
+    this.settings = settings;
+  }
+
+  public interface RangeIndexer {
+    /**
+     * Index all the documents of the projects of the range. A range can be indexed again when
+     * indexing is resumed, so requests must be idempotent (upserts for instance).
+     *
+     * @return the number of indexed documents
+     */
+    long index(ProjectUuidRange range);
+  }
+
+  /**
+   * Full indexing is required when type is empty, for example because the index has just been created,
+   * or when a previous full indexing has not completed.
+   */
+  public boolean isRequired(String indexName, String typeName) {
+    if (readProgress(indexName, typeName) != null) {
+      return true;
+    }
+    return esClient.prepareCount(indexName).setTypes(typeName).get().getCount() == 0L;
+  }
+
+  public void reindex(final String indexName, final String typeName, final RangeIndexer rangeIndexer) {
+    Progress resumed = readProgress(indexName, typeName);
+    final Progress progress = resumed == null ? newProgress(indexName, typeName) : resumed;
+    final Queue<Integer> pendingRanges = new ConcurrentLinkedQueue<>(progress.pendingRanges());
+    int partitions = Math.max(1, Math.min(getPartitions(), pendingRanges.size()));
+    LOGGER.info("{} {}/{} in {} partitions | ranges={} | done={}", resumed == null ? "Reindex" : "Resume reindex of",
+      indexName, typeName, partitions, progress.ranges.size(), progress.ranges.size() - pendingRanges.size());
+
+    // replicas and refresh are disabled once for all the partitions
+    BulkIndexer largeBulk = new BulkIndexer(esClient, indexName).setLarge(true);
+    largeBulk.start();
+    ExecutorService executor = Executors.newFixedThreadPool(partitions,
+      new ThreadFactoryBuilder().setNameFormat("Reindex-" + typeName + "-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < partitions; i++) {
+        final int partition = i;
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            indexPartition(partition, typeName, rangeIndexer, progress, pendingRanges);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        Uninterruptibles.getUninterruptibly(future);
+      }
+    } catch (ExecutionException e) {
+      // remaining ranges are indexed when server is restarted
+      pendingRanges.clear();
+      throw new IllegalStateException(String.format("Fail to reindex %s/%s", indexName, typeName), e.getCause());
+    } finally {
+      executor.shutdown();
+      largeBulk.stop();
+    }
+    progress.delete();
+  }
+
+  private static void indexPartition(int partition, String typeName, RangeIndexer rangeIndexer, Progress progress, Queue<Integer> pendingRanges) {
+    long docs = 0L;
+    Integer rangeIndex = pendingRanges.poll();
+    while (rangeIndex != null) {
+      ProjectUuidRange range = progress.ranges.get(rangeIndex);
+      long rangeDocs = rangeIndexer.index(range);
+      docs += rangeDocs;
+      int done = progress.markDone(rangeIndex);
+      LOGGER.info("Reindex {} | partition={} | range={} | docs={} | partition docs={} | ranges done={}/{}",
+        typeName, partition, range, rangeDocs, docs, done, progress.ranges.size());
+      rangeIndex = pendingRanges.poll();
+    }
+  }
+
+  private int getPartitions() {
+    String value = settings.getString(PARTITIONS_PROPERTY);
+    if (StringUtils.isBlank(value)) {
+      return DEFAULT_PARTITIONS;
+    }
+    try {
+      int partitions = Integer.parseInt(value.trim());
+      if (partitions > 0) {
+        return partitions;
+      }
+    } catch (NumberFormatException e) {
+      // log below
+    }
+    LOGGER.warn("Value of property {} is not a positive integer: {}. Default value is used: {}", PARTITIONS_PROPERTY, value, DEFAULT_PARTITIONS);
+    return DEFAULT_PARTITIONS;
+  }
+
+  private Progress newProgress(String indexName, String typeName) {
+    List<ProjectUuidRange> ranges = ProjectUuidRange.split(selectSortedProjectUuids(), getPartitions() * RANGES_PER_PARTITION);
+    Progress progress = new Progress(progressFile(indexName, typeName), getIndexCreationDate(indexName), ranges, new HashSet<Integer>());
+    progress.create();
+    return progress;
+  }
+
+  @CheckForNull
+  private Progress readProgress(String indexName, String typeName) {
+    File file = progressFile(indexName, typeName);
+    if (!file.exists()) {
+      return null;
+    }
+    Progress progress = Progress.read(file);
+    if (progress == null || !progress.indexCreationDate.equals(getIndexCreationDate(indexName))) {
+      // index has been re-created since the progress file was written
+      progress = null;
+      if (!file.delete()) {
+        LOGGER.warn("Fail to delete file {}", file.getAbsolutePath());
+      }
+    }
+    return progress;
+  }
+
+  private File progressFile(String indexName, String typeName) {
+    return new File(settings.getString(ProcessProperties.PATH_DATA), "reindex/" + indexName + "." + typeName + ".progress");
+  }
+
+  private String getIndexCreationDate(String indexName) {
+    String date = esClient.nativeClient().admin().indices().prepareGetSettings(indexName).get().getSetting(indexName, CREATION_DATE_SETTING);
+    return StringUtils.defaultString(date);
+  }
+
+  /**
+   * Uuids are sorted by database, so that ranges are consistent with its collation
+   */
+  private List<String> selectSortedProjectUuids() {
+    List<String> uuids = new ArrayList<>();
+    DbSession dbSession = dbClient.openSession(false);
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      stmt = dbClient.getMyBatis().newScrollingSelectStatement(dbSession, SQL_PROJECT_UUIDS);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        uuids.add(rs.getString(1));
+      }
+      return uuids;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select uuids of projects", e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(stmt);
+      dbSession.close();
+    }
+  }
+
+  /**
+   * Text file listing the ranges and the indexes of the ranges already indexed :
+   * <pre>
+   * index.creation_date=1450000000000
+   * range=,AVB
+   * range=AVB,AVK
+   * range=AVK,
+   * done=1
+   * </pre>
+   */
+  private static class Progress {
+    private static final String CREATION_DATE_KEY = "index.creation_date=";
+    private static final String RANGE_KEY = "range=";
+    private static final String DONE_KEY = "done=";
+
+    private final File file;
+    private final String indexCreationDate;
+    private final List<ProjectUuidRange> ranges;
+    private final Set<Integer> doneRanges;
+
+    private Progress(File file, String indexCreationDate, List<ProjectUuidRange> ranges, Set<Integer> doneRanges) {
+      this.file = file;
+      this.indexCreationDate = indexCreationDate;
+      this.ranges = ranges;
+      this.doneRanges = doneRanges;
+    }
+
+    private List<Integer> pendingRanges() {
+      List<Integer> pending = new ArrayList<>();
+      for (int i = 0; i < ranges.size(); i++) {
+        if (!doneRanges.contains(i)) {
+          pending.add(i);
+        }
+      }
+      return pending;
+    }
+
+    private void create() {
+      StringBuilder content = new StringBuilder();
+      content.append(CREATION_DATE_KEY).append(indexCreationDate).append('\n');
+      for (ProjectUuidRange range : ranges) {
+        content.append(RANGE_KEY)
+          .append(StringUtils.defaultString(range.getFromInclusive()))
+          .append(',')
+          .append(StringUtils.defaultString(range.getToExclusive()))
+          .append('\n');
+      }
+      try {
+        Files.createParentDirs(file);
+        Files.write(content, file, Charsets.UTF_8);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write file " + file.getAbsolutePath(), e);
+      }
+    }
+
+    /**
+     * @return the number of ranges indexed
+     */
+    private synchronized int markDone(int rangeIndex) {
+      try {
+        Files.append(DONE_KEY + rangeIndex + "\n", file, Charsets.UTF_8);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to write file " + file.getAbsolutePath(), e);
+      }
+      doneRanges.add(rangeIndex);
+      return doneRanges.size();
+    }
+
+    private void delete() {
+      if (!file.delete()) {
+        LOGGER.warn("Fail to delete file {}", file.getAbsolutePath());
+      }
+    }
+
+    @CheckForNull
+    private static Progress read(File file) {
+      try {
+        String indexCreationDate = null;
+        List<ProjectUuidRange> ranges = new ArrayList<>();
+        Set<Integer> doneRanges = new HashSet<>();
+        for (String line : Files.readLines(file, Charsets.UTF_8)) {
+          if (line.startsWith(CREATION_DATE_KEY)) {
+            indexCreationDate = line.substring(CREATION_DATE_KEY.length());
+          } else if (line.startsWith(RANGE_KEY)) {
+            String[] bounds = StringUtils.splitPreserveAllTokens(line.substring(RANGE_KEY.length()), ',');
+            ranges.add(new ProjectUuidRange(StringUtils.trimToNull(bounds[0]), StringUtils.trimToNull(bounds[1])));
+          } else if (line.startsWith(DONE_KEY)) {
+            doneRanges.add(Integer.parseInt(line.substring(DONE_KEY.length())));
+          }
+        }
+        if (indexCreationDate == null || ranges.isEmpty()) {
+          return null;
+        }
+        return new Progress(file, indexCreationDate, ranges, doneRanges);
+      } catch (IOException | RuntimeException e) {
+        // the file may be truncated if server has been killed while writing
+        LOGGER.warn("Ignore corrupted file " + file.getAbsolutePath(), e);
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Preconditions;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Range of project uuids, used to split the full indexing of large tables. Bounds are
+ * optional, so that contiguous ranges cover all the possible uuids.
+ */
+@Immutable
+public final class ProjectUuidRange {
+
+  private final String fromInclusive;
+  private final String toExclusive;
+
+  public ProjectUuidRange(@Nullable String fromInclusive, @Nullable String toExclusive) {
+    this.fromInclusive = fromInclusive;
+    this.toExclusive = toExclusive;
+  }
+
+  @CheckForNull
+  public String getFromInclusive() {
+    return fromInclusive;
+  }
+
+  @CheckForNull
+  public String getToExclusive() {
+    return toExclusive;
+  }
+
+  /**
+   * SQL condition on the given column, to be appended to a WHERE or ON clause. The values of the
+   * parameters are set by {@link #setParameters(PreparedStatement, int)}.
+   */
+  public String toSqlFilter(String column) {
+    StringBuilder sql = new StringBuilder();
+    if (fromInclusive != null) {
+      sql.append(" AND ").append(column).append(">=?");
+    }
+    if (toExclusive != null) {
+      sql.append(" AND ").append(column).append("<?");
+    }
+    return sql.toString();
+  }
+
+  /**
+   * @return the index of the next parameter
+   */
+  public int setParameters(PreparedStatement stmt, int firstIndex) throws SQLException {
+    int index = firstIndex;
+    if (fromInclusive != null) {
+      stmt.setString(index, fromInclusive);
+      index++;
+    }
+    if (toExclusive != null) {
+      stmt.setString(index, toExclusive);
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Split into at most {@code maxRanges} contiguous ranges with about the same number of projects.
+   * The first range has no lower bound and the last range has no upper bound.
+   *
+   * @param sortedProjectUuids project uuids sorted by the database, so that ranges are consistent with its collation
+   */
+  public static List<ProjectUuidRange> split(List<String> sortedProjectUuids, int maxRanges) {
+    Preconditions.checkArgument(maxRanges > 0, "Number of ranges must be positive: %s", maxRanges);
+    List<ProjectUuidRange> ranges = new ArrayList<>();
+    int rangeSize = Math.max(1, (sortedProjectUuids.size() + maxRanges - 1) / maxRanges);
+    String from = null;
+    for (int i = rangeSize; i < sortedProjectUuids.size(); i += rangeSize) {
+      String to = sortedProjectUuids.get(i);
+      ranges.add(new ProjectUuidRange(from, to));
+      from = to;
+    }
+    ranges.add(new ProjectUuidRange(from, null));
+    return ranges;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ProjectUuidRange that = (ProjectUuidRange) o;
+    return Objects.equals(fromInclusive, that.fromInclusive) && Objects.equals(toExclusive, that.toExclusive);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(fromInclusive, toExclusive);
+  }
+
+  @Override
+  public String toString() {
+    return "[" + (fromInclusive == null ? "" : fromInclusive) + "," + (toExclusive == null ? "" : toExclusive) + ")";
+  }
+}
@@ -25,9 +25,12 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static java.util.Collections.singletonList;
+
 /**
  * @since 3.6
  */
@@ -49,6 +52,7 @@ public class ServerIssueStorage extends IssueStorage {
     IssueDto dto = IssueDto.toDtoForServerInsert(issue, component, project, ruleId, now);
 
     getDbClient().issueDao().insert(session, dto);
+    getDbClient().esQueueDao().insert(session, EsQueueDto.TYPE_ISSUE, singletonList(dto.getKee()));
   }
 
   @Override
@@ -56,11 +60,12 @@ public class ServerIssueStorage extends IssueStorage {
     IssueDto dto = IssueDto.toDtoForUpdate(issue, now);
 
     getDbClient().issueDao().update(session, dto);
+    getDbClient().esQueueDao().insert(session, EsQueueDto.TYPE_ISSUE, singletonList(dto.getKee()));
   }
 
   @Override
   protected void doAfterSave() {
-    indexer.index();
+    indexer.indexQueue();
   }
 
   protected ComponentDto component(DbSession session, DefaultIssue issue) {
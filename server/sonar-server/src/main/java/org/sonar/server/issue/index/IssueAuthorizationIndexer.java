@@ -21,17 +21,30 @@ package org.sonar.server.issue.index;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.update.UpdateRequest;
-import org.sonar.db.DbSession;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
-
-import java.util.Collection;
-import java.util.Date;
-import java.util.Map;
+import org.sonar.server.es.EsUtils;
 
 /**
  * Manages the synchronization of index issues/authorization with authorization settings defined in database :
@@ -39,10 +52,17 @@ import java.util.Map;
  *   <li>index the projects with recent permission changes</li>
  *   <li>delete project orphans from index</li>
  * </ul>
+ * It also caches, per user and per group, the uuids of the projects which can be browsed, as an alternative
+ * to the join on documents of type {@link IssueIndexDefinition#TYPE_AUTHORIZATION} when searching for issues.
+ * The cache is loaded from index on demand and is invalidated each time authorizations are indexed.
  */
 public class IssueAuthorizationIndexer extends BaseIndexer {
 
   private final DbClient dbClient;
+  private final AtomicLong authorizationsVersion = new AtomicLong();
+
+  @CheckForNull
+  private volatile AuthorizedProjects authorizedProjects;
 
   public IssueAuthorizationIndexer(DbClient dbClient, EsClient esClient) {
     super(esClient, 0L, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION, IssueIndexDefinition.FIELD_ISSUE_TECHNICAL_UPDATED_AT);
@@ -80,6 +100,7 @@ public class IssueAuthorizationIndexer extends BaseIndexer {
       maxDate = Math.max(maxDate, authorization.getUpdatedAt());
     }
     bulk.stop();
+    invalidateAuthorizedProjects();
     return maxDate;
   }
 
@@ -88,6 +109,64 @@ public class IssueAuthorizationIndexer extends BaseIndexer {
       .prepareDelete(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION, uuid)
       .setRefresh(refresh)
       .get();
+    invalidateAuthorizedProjects();
+  }
+
+  /**
+   * Uuids of the projects which can be browsed by the user or by one of the groups
+   */
+  public Set<String> selectAuthorizedProjectUuids(@Nullable String userLogin, Collection<String> userGroups) {
+    AuthorizedProjects projects = authorizedProjects;
+    if (projects == null) {
+      projects = loadAuthorizedProjects();
+    }
+    Set<String> result = new HashSet<>();
+    if (userLogin != null) {
+      result.addAll(projects.byUser(userLogin));
+    }
+    for (String group : userGroups) {
+      result.addAll(projects.byGroup(group));
+    }
+    return result;
+  }
+
+  private void invalidateAuthorizedProjects() {
+    authorizationsVersion.incrementAndGet();
+    authorizedProjects = null;
+  }
+
+  private synchronized AuthorizedProjects loadAuthorizedProjects() {
+    long version = authorizationsVersion.get();
+    AuthorizedProjects loaded = authorizedProjects;
+    if (loaded != null && loaded.version == version) {
+      // loaded by another thread while waiting for the lock
+      return loaded;
+    }
+    AuthorizedProjects projects = new AuthorizedProjects(version);
+    SearchResponse response = esClient.prepareSearch(IssueIndexDefinition.INDEX)
+      .setTypes(IssueIndexDefinition.TYPE_AUTHORIZATION)
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+      .setSize(1000)
+      .setQuery(QueryBuilders.matchAllQuery())
+      .get();
+    while (true) {
+      response = esClient.prepareSearchScroll(response.getScrollId())
+        .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+        .get();
+      SearchHit[] hits = response.getHits().getHits();
+      if (hits.length == 0) {
+        break;
+      }
+      for (SearchHit hit : hits) {
+        projects.add(hit.getSource());
+      }
+    }
+    // authorizations indexed during loading are not taken into account, the cache is not kept
+    if (version == authorizationsVersion.get()) {
+      authorizedProjects = projects;
+    }
+    return projects;
   }
 
   private ActionRequest newUpdateRequest(IssueAuthorizationDao.Dto dto) {
@@ -101,4 +180,51 @@ public class IssueAuthorizationIndexer extends BaseIndexer {
       .doc(doc)
       .upsert(doc);
   }
+
+  private static class AuthorizedProjects {
+    // version of authorizations when loading started
+    private final long version;
+    private final Map<String, Set<String>> projectUuidsByUser = new HashMap<>();
+    private final Map<String, Set<String>> projectUuidsByGroup = new HashMap<>();
+
+    private AuthorizedProjects(long version) {
+      this.version = version;
+    }
+
+    private void add(Map<String, Object> authorization) {
+      String projectUuid = (String) authorization.get(IssueIndexDefinition.FIELD_AUTHORIZATION_PROJECT_UUID);
+      put(projectUuidsByUser, getStrings(authorization, IssueIndexDefinition.FIELD_AUTHORIZATION_USERS), projectUuid);
+      put(projectUuidsByGroup, getStrings(authorization, IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS), projectUuid);
+    }
+
+    @SuppressWarnings("unchecked")
+    @CheckForNull
+    private static List<String> getStrings(Map<String, Object> authorization, String field) {
+      return (List<String>) authorization.get(field);
+    }
+
+    private static void put(Map<String, Set<String>> projectUuidsByKey, @Nullable List<String> keys, String projectUuid) {
+      if (keys == null) {
+        return;
+      }
+      for (String key : keys) {
+        Set<String> projectUuids = projectUuidsByKey.get(key);
+        if (projectUuids == null) {
+          projectUuids = new HashSet<>();
+          projectUuidsByKey.put(key, projectUuids);
+        }
+        projectUuids.add(projectUuid);
+      }
+    }
+
+    private Set<String> byUser(String login) {
+      Set<String> projectUuids = projectUuidsByUser.get(login);
+      return projectUuids == null ? Collections.<String>emptySet() : projectUuids;
+    }
+
+    private Set<String> byGroup(String group) {
+      Set<String> projectUuids = projectUuidsByGroup.get(group);
+      return projectUuids == null ? Collections.<String>emptySet() : projectUuids;
+    }
+  }
 }
@@ -63,6 +63,7 @@ import org.elasticsearch.search.aggregations.metrics.min.Min;
 import org.elasticsearch.search.aggregations.metrics.sum.SumBuilder;
 import org.joda.time.Duration;
 import org.sonar.api.issue.Issue;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Scopes;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
@@ -117,6 +118,13 @@ public class IssueIndex extends BaseIndex {
 
   private static final String IS_ASSIGNED_FILTER = "__isAssigned";
 
+  /**
+   * When true, authorization of issues is checked by a terms filter on the uuids of the projects which can be
+   * browsed, as cached by {@link IssueAuthorizationIndexer}, instead of a has_parent filter on documents of
+   * type {@link IssueIndexDefinition#TYPE_AUTHORIZATION}.
+   */
+  public static final String DENORMALIZED_AUTHORIZATION_PROPERTY = "sonar.issues.denormalizedAuthorization";
+
   public static final String DEBT_AGGREGATION_NAME = "debt";
   private static final SumBuilder DEBT_AGGREGATION = AggregationBuilders.sum(DEBT_AGGREGATION_NAME).field(IssueIndexDefinition.FIELD_ISSUE_DEBT);
   private static final Order DEBT_AGGREGATION_ORDER = Order.aggregation(DEBT_AGGREGATION_NAME, false);
@@ -140,12 +148,16 @@ public class IssueIndex extends BaseIndex {
   private final Sorting sorting;
   private final System2 system;
   private final UserSession userSession;
+  private final Settings settings;
+  private final IssueAuthorizationIndexer authorizationIndexer;
 
-  public IssueIndex(EsClient client, System2 system, UserSession userSession) {
+  public IssueIndex(EsClient client, System2 system, UserSession userSession, Settings settings, IssueAuthorizationIndexer authorizationIndexer) {
     super(client);
 
     this.system = system;
     this.userSession = userSession;
+    this.settings = settings;
+    this.authorizationIndexer = authorizationIndexer;
     this.sorting = new Sorting();
     this.sorting.add(IssueQuery.SORT_BY_ASSIGNEE, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE);
     this.sorting.add(IssueQuery.SORT_BY_STATUS, IssueIndexDefinition.FIELD_ISSUE_STATUS);
@@ -324,8 +336,10 @@ public class IssueIndex extends BaseIndex {
     return String.format("%s%s%s", IssueIndexDefinition.TYPE_ISSUE, viewUuid, ViewIndexDefinition.TYPE_VIEW);
   }
 
-  private static FilterBuilder createAuthorizationFilter(boolean checkAuthorization, @Nullable String userLogin, Set<String> userGroups) {
-    if (checkAuthorization) {
+  private FilterBuilder createAuthorizationFilter(boolean checkAuthorization, @Nullable String userLogin, Set<String> userGroups) {
+    if (checkAuthorization && settings.getBoolean(DENORMALIZED_AUTHORIZATION_PROPERTY)) {
+      return FilterBuilders.termsFilter(IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID, authorizationIndexer.selectAuthorizedProjectUuids(userLogin, userGroups));
+    } else if (checkAuthorization) {
       OrFilterBuilder groupsAndUser = FilterBuilders.orFilter();
       if (userLogin != null) {
         groupsAndUser.add(FilterBuilders.termFilter(IssueIndexDefinition.FIELD_AUTHORIZATION_USERS, userLogin));
@@ -19,7 +19,11 @@
  */
 package org.sonar.server.issue.index;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.update.UpdateRequest;
@@ -27,11 +31,17 @@ import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedReindexer;
+import org.sonar.server.es.ProjectUuidRange;
 
-public class IssueIndexer extends BaseIndexer {
+public class IssueIndexer extends BaseIndexer implements PartitionedReindexer.RangeIndexer {
+
+  // maximum size of IN clause on Oracle
+  private static final int QUEUE_BATCH_SIZE = 1_000;
 
   private final DbClient dbClient;
 
@@ -58,6 +68,89 @@ public class IssueIndexer extends BaseIndexer {
     });
   }
 
+  /**
+   * Index the issues recorded in db table ES_QUEUE by the transactions that changed them, then remove
+   * them from the queue. Cost depends on the number of changed issues only, and issues changed
+   * before a server restart are indexed at next call.
+   */
+  public void indexQueue() {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        doIndexQueue();
+      }
+    });
+  }
+
+  private void doIndexQueue() {
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      boolean indexed = false;
+      List<EsQueueDto> items = dbClient.esQueueDao().selectOldest(dbSession, EsQueueDto.TYPE_ISSUE, QUEUE_BATCH_SIZE);
+      while (!items.isEmpty()) {
+        indexQueueItems(dbSession, items);
+        indexed = true;
+        items = dbClient.esQueueDao().selectOldest(dbSession, EsQueueDto.TYPE_ISSUE, QUEUE_BATCH_SIZE);
+      }
+      if (indexed) {
+        esClient.prepareRefresh(IssueIndexDefinition.INDEX).get();
+      }
+    } finally {
+      dbSession.close();
+    }
+  }
+
+  private void indexQueueItems(DbSession dbSession, List<EsQueueDto> items) {
+    Set<String> issueKeys = new LinkedHashSet<>();
+    List<Long> itemIds = new ArrayList<>();
+    for (EsQueueDto item : items) {
+      issueKeys.add(item.getDocId());
+      itemIds.add(item.getId());
+    }
+
+    // issues that do not exist anymore in db are ignored
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.setDisableRefresh(true);
+    bulk.start();
+    IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, issueKeys);
+    try {
+      while (rowIt.hasNext()) {
+        bulk.add(newUpsertRequest(rowIt.next()));
+      }
+    } finally {
+      rowIt.close();
+    }
+    bulk.stop();
+
+    dbClient.esQueueDao().deleteByIds(dbSession, itemIds);
+    dbSession.commit();
+  }
+
+  /**
+   * Index all the issues of a range of projects. Bulk requests are not refreshed, as
+   * this method is called by {@link PartitionedReindexer} during a large indexing.
+   */
+  @Override
+  public long index(ProjectUuidRange range) {
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.setDisableRefresh(true);
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, range);
+      long count = 0L;
+      bulk.start();
+      while (rowIt.hasNext()) {
+        bulk.add(newUpsertRequest(rowIt.next()));
+        count++;
+      }
+      bulk.stop();
+      rowIt.close();
+      return count;
+    } finally {
+      dbSession.close();
+    }
+  }
+
   /**
    * For benchmarks
    */
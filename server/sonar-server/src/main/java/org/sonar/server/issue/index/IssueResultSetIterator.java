@@ -27,6 +27,7 @@ import com.google.common.collect.Maps;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Date;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -37,6 +38,7 @@ import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ResultSetIterator;
+import org.sonar.server.es.ProjectUuidRange;
 
 import static org.sonar.api.utils.DateUtils.longToDate;
 import static org.sonar.db.DatabaseUtils.getLong;
@@ -119,6 +121,37 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  /**
+   * Issues with the given keys. Number of keys must not exceed 1'000, the maximum size of IN clause on Oracle.
+   */
+  static IssueResultSetIterator create(DbClient dbClient, DbSession session, Collection<String> issueKeys) {
+    try {
+      String sql = SQL_ALL + " where i.kee in (" + DatabaseUtils.repeatCondition("?", issueKeys.size(), ",") + ")";
+      PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, sql);
+      int index = 1;
+      for (String issueKey : issueKeys) {
+        stmt.setString(index, issueKey);
+        index++;
+      }
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues by keys", e);
+    }
+  }
+
+  /**
+   * All the issues of the projects of the range, whatever their update date
+   */
+  static IssueResultSetIterator create(DbClient dbClient, DbSession session, ProjectUuidRange range) {
+    try {
+      PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, SQL_ALL + range.toSqlFilter("root.uuid"));
+      range.setParameters(stmt, 1);
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues of projects " + range, e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath, String scope) {
     if (filePath != null) {
@@ -19,30 +19,55 @@
  */
 package org.sonar.server.measure;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Qualifiers;
+import org.sonar.api.resources.Scopes;
 import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.db.Database;
 import org.sonar.db.MyBatis;
 import org.sonar.db.component.ResourceDao;
+import org.sonar.server.measure.index.ProjectMeasuresDoc;
+import org.sonar.server.measure.index.ProjectMeasuresIndex;
+import org.sonar.server.measure.index.ProjectMeasuresQuery;
+
+import javax.annotation.CheckForNull;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 @ServerSide
 public class MeasureFilterExecutor {
 
+  /**
+   * Measure filters on projects are executed on the Elasticsearch index of project measures, unless
+   * this property is true.
+   */
+  public static final String DISABLE_INDEX_PROPERTY = "sonar.measureFilters.disableIndex";
+
+  private static final Logger LOG = Loggers.get(MeasureFilterExecutor.class);
+
   private MyBatis mybatis;
   private Database database;
   private ResourceDao resourceDao;
+  private ProjectMeasuresIndex projectMeasuresIndex;
+  private Settings settings;
 
-  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao) {
+  public MeasureFilterExecutor(MyBatis mybatis, Database database, ResourceDao resourceDao, ProjectMeasuresIndex projectMeasuresIndex, Settings settings) {
     this.mybatis = mybatis;
     this.database = database;
     this.resourceDao = resourceDao;
+    this.projectMeasuresIndex = projectMeasuresIndex;
+    this.settings = settings;
   }
 
   public List<MeasureFilterRow> execute(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
@@ -50,6 +75,30 @@ public class MeasureFilterExecutor {
       return Collections.emptyList();
     }
 
+    if (!settings.getBoolean(DISABLE_INDEX_PROPERTY) && isValid(filter, context)) {
+      ProjectMeasuresQuery query = toIndexQuery(filter);
+      if (query != null) {
+        try {
+          return executeOnIndex(query);
+        } catch (RuntimeException e) {
+          LOG.warn("Fail to execute measure filter on index of project measures, falling back to database", e);
+        }
+      }
+    }
+    return executeOnDb(filter, context);
+  }
+
+  private List<MeasureFilterRow> executeOnIndex(ProjectMeasuresQuery query) {
+    List<ProjectMeasuresDoc> docs = projectMeasuresIndex.search(query);
+    List<MeasureFilterRow> rows = new ArrayList<>(docs.size());
+    for (ProjectMeasuresDoc doc : docs) {
+      // a project is its own root
+      rows.add(new MeasureFilterRow(doc.snapshotId(), doc.projectId(), doc.projectId()));
+    }
+    return rows;
+  }
+
+  private List<MeasureFilterRow> executeOnDb(MeasureFilter filter, MeasureFilterContext context) throws SQLException {
     List<MeasureFilterRow> rows;
     SqlSession session = null;
     Connection connection = null;
@@ -80,6 +129,81 @@ public class MeasureFilterExecutor {
     }
   }
 
+  /**
+   * Converts the filter to a query on the index of project measures, or returns null if the
+   * filter requires the database: filters on components other than projects, favourites, names,
+   * periods or text measures.
+   */
+  @VisibleForTesting
+  @CheckForNull
+  static ProjectMeasuresQuery toIndexQuery(MeasureFilter filter) {
+    boolean supported = filter.getResourceQualifiers().equals(Collections.singletonList(Qualifiers.PROJECT));
+    supported &= filter.getResourceScopes().isEmpty() || filter.getResourceScopes().equals(Collections.singletonList(Scopes.PROJECT));
+    supported &= Strings.isNullOrEmpty(filter.getBaseResourceKey()) && !filter.isOnFavourites();
+    supported &= Strings.isNullOrEmpty(filter.getResourceName()) && Strings.isNullOrEmpty(filter.getResourceKey());
+    if (!supported) {
+      return null;
+    }
+
+    ProjectMeasuresQuery query = new ProjectMeasuresQuery()
+      .setAnalysedAfter(filter.getFromDate())
+      .setAnalysedBefore(filter.getToDate());
+    for (MeasureFilterCondition condition : filter.getMeasureConditions()) {
+      ProjectMeasuresQuery.Operator operator = toIndexOperator(condition.operator());
+      if (operator == null || condition.period() != null || condition.textValue() != null || !isNumeric(condition.metric())) {
+        return null;
+      }
+      query.addMetricCriterion(condition.metric().getKey(), operator, condition.value());
+    }
+    return setIndexSort(filter.sort(), query);
+  }
+
+  @CheckForNull
+  private static ProjectMeasuresQuery setIndexSort(MeasureFilterSort sort, ProjectMeasuresQuery query) {
+    switch (sort.field()) {
+      case NAME:
+        query.setSort(ProjectMeasuresQuery.Sort.NAME);
+        break;
+      case KEY:
+        query.setSort(ProjectMeasuresQuery.Sort.KEY);
+        break;
+      case DATE:
+        query.setSort(ProjectMeasuresQuery.Sort.ANALYSIS_DATE);
+        break;
+      case METRIC:
+        if (!sort.isOnNumericMeasure() || sort.isOnAlert() || sort.period() != null) {
+          return null;
+        }
+        query.setSortOnMetric(sort.metric().getKey());
+        break;
+      default:
+        return null;
+    }
+    return query.setAsc(sort.isAsc());
+  }
+
+  @CheckForNull
+  private static ProjectMeasuresQuery.Operator toIndexOperator(MeasureFilterCondition.Operator operator) {
+    switch (operator) {
+      case LESS:
+        return ProjectMeasuresQuery.Operator.LT;
+      case LESS_OR_EQUALS:
+        return ProjectMeasuresQuery.Operator.LTE;
+      case EQUALS:
+        return ProjectMeasuresQuery.Operator.EQ;
+      case GREATER:
+        return ProjectMeasuresQuery.Operator.GT;
+      case GREATER_OR_EQUALS:
+        return ProjectMeasuresQuery.Operator.GTE;
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isNumeric(Metric metric) {
+    return metric != null && metric.isNumericType();
+  }
+
   static boolean isValid(MeasureFilter filter, MeasureFilterContext context) {
     boolean valid = Strings.isNullOrEmpty(filter.getBaseResourceKey()) || context.getBaseSnapshot() != null;
     valid &= !(filter.isOnBaseResourceChildren() && context.getBaseSnapshot() == null);
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import org.sonar.server.search.BaseDoc;
+
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_ANALYSED_AT;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_KEY;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES_KEY;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES_VALUE;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_NAME;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_PROJECT_ID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_PROJECT_UUID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_SNAPSHOT_ID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_UPDATED_AT;
+
+public class ProjectMeasuresDoc extends BaseDoc {
+
+  public ProjectMeasuresDoc(Map<String, Object> fields) {
+    super(fields);
+  }
+
+  public ProjectMeasuresDoc() {
+    super(Maps.<String, Object>newHashMapWithExpectedSize(10));
+    setField(FIELD_MEASURES, new ArrayList<Map<String, Object>>());
+  }
+
+  public String projectUuid() {
+    return getField(FIELD_PROJECT_UUID);
+  }
+
+  public ProjectMeasuresDoc setProjectUuid(String s) {
+    setField(FIELD_PROJECT_UUID, s);
+    return this;
+  }
+
+  public long projectId() {
+    return ((Number) getField(FIELD_PROJECT_ID)).longValue();
+  }
+
+  public ProjectMeasuresDoc setProjectId(long l) {
+    setField(FIELD_PROJECT_ID, l);
+    return this;
+  }
+
+  public long snapshotId() {
+    return ((Number) getField(FIELD_SNAPSHOT_ID)).longValue();
+  }
+
+  public ProjectMeasuresDoc setSnapshotId(long l) {
+    setField(FIELD_SNAPSHOT_ID, l);
+    return this;
+  }
+
+  public String key() {
+    return getField(FIELD_KEY);
+  }
+
+  public ProjectMeasuresDoc setKey(String s) {
+    setField(FIELD_KEY, s);
+    return this;
+  }
+
+  public String name() {
+    return getField(FIELD_NAME);
+  }
+
+  public ProjectMeasuresDoc setName(String s) {
+    setField(FIELD_NAME, s);
+    return this;
+  }
+
+  public Date analysedAt() {
+    return getFieldAsDate(FIELD_ANALYSED_AT);
+  }
+
+  public ProjectMeasuresDoc setAnalysedAt(Date d) {
+    setField(FIELD_ANALYSED_AT, d);
+    return this;
+  }
+
+  public Date updatedAt() {
+    return getFieldAsDate(FIELD_UPDATED_AT);
+  }
+
+  public ProjectMeasuresDoc setUpdatedAt(Date d) {
+    setField(FIELD_UPDATED_AT, d);
+    return this;
+  }
+
+  public List<Map<String, Object>> measures() {
+    return getField(FIELD_MEASURES);
+  }
+
+  public ProjectMeasuresDoc addMeasure(String metricKey, double value) {
+    measures().add(ImmutableMap.<String, Object>of(FIELD_MEASURES_KEY, metricKey, FIELD_MEASURES_VALUE, value));
+    return this;
+  }
+}
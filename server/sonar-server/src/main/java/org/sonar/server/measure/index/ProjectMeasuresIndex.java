@@ -0,0 +1,155 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeFilterBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.sonar.server.es.BaseIndex;
+import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsUtils;
+
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_ANALYSED_AT;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_KEY;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES_KEY;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_MEASURES_VALUE;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_NAME;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_PROJECT_ID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_SNAPSHOT_ID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.INDEX;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES;
+
+public class ProjectMeasuresIndex extends BaseIndex {
+
+  private static final int SCROLL_SIZE = 500;
+  private static final String MEASURE_KEY = FIELD_MEASURES + "." + FIELD_MEASURES_KEY;
+  private static final String MEASURE_VALUE = FIELD_MEASURES + "." + FIELD_MEASURES_VALUE;
+  private static final String SORT_SUFFIX = ".sort";
+
+  public ProjectMeasuresIndex(EsClient client) {
+    super(client);
+  }
+
+  /**
+   * Returns all the projects matching the query, sorted as requested. Documents contain only
+   * the fields {@link ProjectMeasuresIndexDefinition#FIELD_SNAPSHOT_ID} and {@link ProjectMeasuresIndexDefinition#FIELD_PROJECT_ID}.
+   */
+  public List<ProjectMeasuresDoc> search(ProjectMeasuresQuery query) {
+    SearchRequestBuilder request = getClient().prepareSearch(INDEX)
+      .setTypes(TYPE_PROJECT_MEASURES)
+      .setFetchSource(new String[] {FIELD_SNAPSHOT_ID, FIELD_PROJECT_ID}, null)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+      .setSize(SCROLL_SIZE)
+      .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), createFilter(query)));
+    addSorts(request, query);
+
+    List<ProjectMeasuresDoc> docs = new ArrayList<>();
+    SearchResponse response = request.get();
+    while (response.getHits().getHits().length > 0) {
+      for (SearchHit hit : response.getHits().getHits()) {
+        docs.add(new ProjectMeasuresDoc(hit.sourceAsMap()));
+      }
+      response = getClient().prepareSearchScroll(response.getScrollId())
+        .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+        .get();
+    }
+    return docs;
+  }
+
+  private static FilterBuilder createFilter(ProjectMeasuresQuery query) {
+    BoolFilterBuilder filter = FilterBuilders.boolFilter().must(FilterBuilders.matchAllFilter());
+    for (ProjectMeasuresQuery.MetricCriterion criterion : query.getMetricCriteria()) {
+      filter.must(FilterBuilders.nestedFilter(FIELD_MEASURES, FilterBuilders.boolFilter()
+        .must(FilterBuilders.termFilter(MEASURE_KEY, criterion.getMetricKey()))
+        .must(createValueFilter(criterion))));
+    }
+    if (query.getAnalysedAfter() != null || query.getAnalysedBefore() != null) {
+      RangeFilterBuilder dateFilter = FilterBuilders.rangeFilter(FIELD_ANALYSED_AT);
+      if (query.getAnalysedAfter() != null) {
+        dateFilter.gte(query.getAnalysedAfter().getTime());
+      }
+      if (query.getAnalysedBefore() != null) {
+        dateFilter.lte(query.getAnalysedBefore().getTime());
+      }
+      filter.must(dateFilter);
+    }
+    return filter;
+  }
+
+  private static FilterBuilder createValueFilter(ProjectMeasuresQuery.MetricCriterion criterion) {
+    double value = criterion.getValue();
+    switch (criterion.getOperator()) {
+      case LT:
+        return FilterBuilders.rangeFilter(MEASURE_VALUE).lt(value);
+      case LTE:
+        return FilterBuilders.rangeFilter(MEASURE_VALUE).lte(value);
+      case GT:
+        return FilterBuilders.rangeFilter(MEASURE_VALUE).gt(value);
+      case GTE:
+        return FilterBuilders.rangeFilter(MEASURE_VALUE).gte(value);
+      case EQ:
+        return FilterBuilders.termFilter(MEASURE_VALUE, value);
+      default:
+        throw new IllegalArgumentException("Unsupported operator: " + criterion.getOperator());
+    }
+  }
+
+  private static void addSorts(SearchRequestBuilder request, ProjectMeasuresQuery query) {
+    SortOrder order = query.isAsc() ? SortOrder.ASC : SortOrder.DESC;
+    switch (query.getSort()) {
+      case KEY:
+        request.addSort(FIELD_KEY + SORT_SUFFIX, order);
+        break;
+      case NAME:
+        request.addSort(FIELD_NAME + SORT_SUFFIX, order);
+        break;
+      case ANALYSIS_DATE:
+        request.addSort(FIELD_ANALYSED_AT, order);
+        break;
+      case METRIC:
+        FieldSortBuilder metricSort = SortBuilders.fieldSort(MEASURE_VALUE)
+          .setNestedPath(FIELD_MEASURES)
+          .setNestedFilter(FilterBuilders.termFilter(MEASURE_KEY, query.getSortMetricKey()))
+          // projects without measure are always last, as in SQL
+          .missing("_last")
+          .order(order);
+        request.addSort(metricSort);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported sort: " + query.getSort());
+    }
+    // ties are ordered by key, so that pages are stable
+    if (query.getSort() != ProjectMeasuresQuery.Sort.KEY) {
+      request.addSort(FIELD_KEY + SORT_SUFFIX, SortOrder.ASC);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import com.google.common.collect.ImmutableMap;
+import org.sonar.api.config.Settings;
+import org.sonar.server.es.IndexDefinition;
+import org.sonar.server.es.NewIndex;
+
+/**
+ * Definition of ES index "projectmeasures". It contains a document per project, with the
+ * measures of its last analysis.
+ */
+public class ProjectMeasuresIndexDefinition implements IndexDefinition {
+
+  public static final String INDEX = "projectmeasures";
+
+  public static final String TYPE_PROJECT_MEASURES = "projectmeasures";
+
+  public static final String FIELD_PROJECT_UUID = "projectUuid";
+  public static final String FIELD_PROJECT_ID = "projectId";
+  public static final String FIELD_SNAPSHOT_ID = "snapshotId";
+  public static final String FIELD_KEY = "key";
+  public static final String FIELD_NAME = "name";
+  public static final String FIELD_ANALYSED_AT = "analysedAt";
+  public static final String FIELD_UPDATED_AT = "updatedAt";
+  public static final String FIELD_MEASURES = "measures";
+  public static final String FIELD_MEASURES_KEY = "key";
+  public static final String FIELD_MEASURES_VALUE = "value";
+
+  private final Settings settings;
+
+  public ProjectMeasuresIndexDefinition(Settings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  public void define(IndexDefinitionContext context) {
+    NewIndex index = context.create(INDEX);
+
+    index.refreshHandledByIndexer();
+    index.setShards(settings);
+
+    NewIndex.NewIndexType nestedMapping = index.createType(TYPE_PROJECT_MEASURES);
+    nestedMapping.stringFieldBuilder(FIELD_MEASURES_KEY).build();
+    nestedMapping.createDoubleField(FIELD_MEASURES_VALUE);
+
+    NewIndex.NewIndexType mapping = index.createType(TYPE_PROJECT_MEASURES);
+    mapping.setAttribute("_id", ImmutableMap.of("path", FIELD_PROJECT_UUID));
+    mapping.stringFieldBuilder(FIELD_PROJECT_UUID).build();
+    mapping.createLongField(FIELD_PROJECT_ID);
+    mapping.createLongField(FIELD_SNAPSHOT_ID);
+    mapping.stringFieldBuilder(FIELD_KEY).enableSorting().build();
+    mapping.stringFieldBuilder(FIELD_NAME).enableSorting().build();
+    mapping.createDateTimeField(FIELD_ANALYSED_AT);
+    mapping.createDateTimeField(FIELD_UPDATED_AT);
+    mapping.nestedObjectBuilder(FIELD_MEASURES, nestedMapping).build();
+  }
+}
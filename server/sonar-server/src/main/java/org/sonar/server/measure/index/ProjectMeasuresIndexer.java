@@ -0,0 +1,133 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import java.util.Date;
+import javax.annotation.Nullable;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.es.BaseIndexer;
+import org.sonar.server.es.BulkIndexer;
+import org.sonar.server.es.EsClient;
+
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.INDEX;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES;
+
+/**
+ * Indexes the measures of the last analysis of each project, so that measure filters
+ * can be executed without joining the table PROJECT_MEASURES.
+ */
+public class ProjectMeasuresIndexer extends BaseIndexer {
+
+  private final DbClient dbClient;
+
+  public ProjectMeasuresIndexer(DbClient dbClient, EsClient esClient) {
+    super(esClient, 300, INDEX, TYPE_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.FIELD_UPDATED_AT);
+    this.dbClient = dbClient;
+  }
+
+  @Override
+  protected long doIndex(long lastUpdatedAt) {
+    return doIndex(createBulkIndexer(lastUpdatedAt == 0L), lastUpdatedAt, null);
+  }
+
+  /**
+   * Indexes the last analysis of the project, whatever its date.
+   */
+  public void index(final String projectUuid) {
+    execute(new Runnable() {
+      @Override
+      public void run() {
+        doIndex(createBulkIndexer(false), 0L, projectUuid);
+      }
+    });
+  }
+
+  public void deleteProject(String uuid) {
+    esClient.prepareDelete(INDEX, TYPE_PROJECT_MEASURES, uuid).setRefresh(true).get();
+  }
+
+  private long doIndex(BulkIndexer bulk, long lastUpdatedAt, @Nullable String projectUuid) {
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      ProjectMeasuresResultSetIterator rowIt = ProjectMeasuresResultSetIterator.create(dbClient, dbSession, lastUpdatedAt, projectUuid);
+      try {
+        return doIndex(bulk, rowIt);
+      } finally {
+        rowIt.close();
+      }
+    } finally {
+      dbSession.close();
+    }
+  }
+
+  private static long doIndex(BulkIndexer bulk, ProjectMeasuresResultSetIterator rowIt) {
+    bulk.start();
+    long maxDate = 0L;
+    ProjectMeasuresDoc doc = null;
+    long snapshotId = -1L;
+    while (rowIt.hasNext()) {
+      ProjectMeasuresResultSetIterator.Row row = rowIt.next();
+      if (doc == null || row.getSnapshotId() != snapshotId) {
+        if (doc != null) {
+          bulk.add(newUpsertRequest(doc));
+        }
+        doc = newDoc(row);
+        snapshotId = row.getSnapshotId();
+        maxDate = Math.max(maxDate, row.getUpdatedAt());
+      }
+      String metricKey = row.getMetricKey();
+      Double value = row.getValue();
+      if (metricKey != null && value != null) {
+        doc.addMeasure(metricKey, value);
+      }
+    }
+    if (doc != null) {
+      bulk.add(newUpsertRequest(doc));
+    }
+    bulk.stop();
+    return maxDate;
+  }
+
+  private static ProjectMeasuresDoc newDoc(ProjectMeasuresResultSetIterator.Row row) {
+    return new ProjectMeasuresDoc()
+      .setProjectUuid(row.getProjectUuid())
+      .setProjectId(row.getProjectId())
+      .setSnapshotId(row.getSnapshotId())
+      .setKey(row.getProjectKey())
+      .setName(row.getProjectName())
+      .setAnalysedAt(new Date(row.getAnalysedAt()))
+      .setUpdatedAt(new Date(row.getUpdatedAt()));
+  }
+
+  private BulkIndexer createBulkIndexer(boolean large) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
+    bulk.setLarge(large);
+    return bulk;
+  }
+
+  private static UpdateRequest newUpsertRequest(ProjectMeasuresDoc doc) {
+    // measures of the previous analysis are replaced, as arrays are not merged by partial updates
+    return new UpdateRequest(INDEX, TYPE_PROJECT_MEASURES, doc.projectUuid())
+      .doc(doc.getFields())
+      .upsert(doc.getFields());
+  }
+}
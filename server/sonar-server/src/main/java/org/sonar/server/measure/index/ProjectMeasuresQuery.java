@@ -0,0 +1,139 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Criteria of search in {@link ProjectMeasuresIndex}
+ */
+public class ProjectMeasuresQuery {
+
+  public enum Operator {
+    LT, LTE, EQ, GT, GTE
+  }
+
+  public enum Sort {
+    NAME, KEY, ANALYSIS_DATE, METRIC
+  }
+
+  private final List<MetricCriterion> metricCriteria = new ArrayList<>();
+  private Date analysedAfter;
+  private Date analysedBefore;
+  private Sort sort = Sort.NAME;
+  private String sortMetricKey;
+  private boolean asc = true;
+
+  public ProjectMeasuresQuery addMetricCriterion(String metricKey, Operator operator, double value) {
+    metricCriteria.add(new MetricCriterion(metricKey, operator, value));
+    return this;
+  }
+
+  public List<MetricCriterion> getMetricCriteria() {
+    return metricCriteria;
+  }
+
+  /**
+   * Inclusive lower bound of analysis date
+   */
+  public ProjectMeasuresQuery setAnalysedAfter(@Nullable Date d) {
+    this.analysedAfter = d;
+    return this;
+  }
+
+  @CheckForNull
+  public Date getAnalysedAfter() {
+    return analysedAfter;
+  }
+
+  /**
+   * Inclusive upper bound of analysis date
+   */
+  public ProjectMeasuresQuery setAnalysedBefore(@Nullable Date d) {
+    this.analysedBefore = d;
+    return this;
+  }
+
+  @CheckForNull
+  public Date getAnalysedBefore() {
+    return analysedBefore;
+  }
+
+  public ProjectMeasuresQuery setSort(Sort sort) {
+    checkArgument(sort != Sort.METRIC, "Use setSortOnMetric() to sort on a metric");
+    this.sort = sort;
+    this.sortMetricKey = null;
+    return this;
+  }
+
+  public ProjectMeasuresQuery setSortOnMetric(String metricKey) {
+    this.sort = Sort.METRIC;
+    this.sortMetricKey = metricKey;
+    return this;
+  }
+
+  public Sort getSort() {
+    return sort;
+  }
+
+  @CheckForNull
+  public String getSortMetricKey() {
+    return sortMetricKey;
+  }
+
+  public ProjectMeasuresQuery setAsc(boolean asc) {
+    this.asc = asc;
+    return this;
+  }
+
+  public boolean isAsc() {
+    return asc;
+  }
+
+  public static class MetricCriterion {
+    private final String metricKey;
+    private final Operator operator;
+    private final double value;
+
+    MetricCriterion(String metricKey, Operator operator, double value) {
+      this.metricKey = metricKey;
+      this.operator = operator;
+      this.value = value;
+    }
+
+    public String getMetricKey() {
+      return metricKey;
+    }
+
+    public Operator getOperator() {
+      return operator;
+    }
+
+    public double getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.ResultSetIterator;
+
+/**
+ * Scrolls over the measures of the last analyses of projects. There is a row per measure, ordered by
+ * analysis, so that the measures of a project are contiguous. Projects without measures have a single row
+ * with null metric.
+ */
+class ProjectMeasuresResultSetIterator extends ResultSetIterator<ProjectMeasuresResultSetIterator.Row> {
+
+  private static final String[] FIELDS = {
+    // column 1
+    "s.id",
+    "p.id",
+    "p.uuid",
+    "p.kee",
+    "p.long_name",
+    "s.created_at",
+    "s.build_date",
+    "m.name",
+    "pm.value"
+  };
+
+  private static final String SQL_ALL = "select " + StringUtils.join(FIELDS, ",") + " from projects p " +
+    "inner join snapshots s on s.project_id=p.id and s.islast=? and s.status='P' " +
+    "left outer join project_measures pm on pm.snapshot_id=s.id and pm.value is not null and pm.rule_id is null " +
+    "and pm.rule_priority is null and pm.characteristic_id is null and pm.person_id is null " +
+    "left outer join metrics m on m.id=pm.metric_id " +
+    "where p.enabled=? and p.scope='PRJ' and p.qualifier='TRK' and p.copy_resource_id is null";
+
+  private static final String AFTER_DATE_FILTER = " and s.build_date>?";
+  private static final String PROJECT_FILTER = " and p.uuid=?";
+  private static final String ORDER_BY = " order by s.id";
+
+  private ProjectMeasuresResultSetIterator(PreparedStatement stmt) throws SQLException {
+    super(stmt);
+  }
+
+  static ProjectMeasuresResultSetIterator create(DbClient dbClient, DbSession session, long afterDate, @Nullable String projectUuid) {
+    try {
+      StringBuilder sql = new StringBuilder(SQL_ALL);
+      if (afterDate > 0L) {
+        sql.append(AFTER_DATE_FILTER);
+      }
+      if (projectUuid != null) {
+        sql.append(PROJECT_FILTER);
+      }
+      sql.append(ORDER_BY);
+      PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, sql.toString());
+      stmt.setBoolean(1, true);
+      stmt.setBoolean(2, true);
+      int index = 3;
+      if (afterDate > 0L) {
+        stmt.setLong(index, afterDate);
+        index++;
+      }
+      if (projectUuid != null) {
+        stmt.setString(index, projectUuid);
+      }
+      return new ProjectMeasuresResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select measures of projects", e);
+    }
+  }
+
+  @Override
+  protected Row read(ResultSet rs) throws SQLException {
+    Row row = new Row();
+    row.snapshotId = rs.getLong(1);
+    row.projectId = rs.getLong(2);
+    row.projectUuid = rs.getString(3);
+    row.projectKey = rs.getString(4);
+    row.projectName = rs.getString(5);
+    row.analysedAt = rs.getLong(6);
+    long buildDate = rs.getLong(7);
+    // build date is missing on snapshots created before version 5.2
+    row.updatedAt = rs.wasNull() ? row.analysedAt : buildDate;
+    row.metricKey = rs.getString(8);
+    double value = rs.getDouble(9);
+    row.value = rs.wasNull() ? null : value;
+    return row;
+  }
+
+  static class Row {
+    private long snapshotId;
+    private long projectId;
+    private String projectUuid;
+    private String projectKey;
+    private String projectName;
+    private long analysedAt;
+    private long updatedAt;
+    private String metricKey;
+    private Double value;
+
+    long getSnapshotId() {
+      return snapshotId;
+    }
+
+    long getProjectId() {
+      return projectId;
+    }
+
+    String getProjectUuid() {
+      return projectUuid;
+    }
+
+    String getProjectKey() {
+      return projectKey;
+    }
+
+    String getProjectName() {
+      return projectName;
+    }
+
+    long getAnalysedAt() {
+      return analysedAt;
+    }
+
+    long getUpdatedAt() {
+      return updatedAt;
+    }
+
+    @CheckForNull
+    String getMetricKey() {
+      return metricKey;
+    }
+
+    @CheckForNull
+    Double getValue() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.sonar.server.ws.WsActionMetrics;
+import org.sonar.server.ws.WsMetrics;
+
+import static java.lang.String.format;
+
+/**
+ * Execution metrics of web services, as recorded by {@link org.sonar.server.ws.WebServiceEngine}
+ */
+public class WebServicesMonitor extends BaseMonitorMBean implements WebServicesMonitorMBean {
+
+  private final WsMetrics metrics;
+
+  public WebServicesMonitor(WsMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public String name() {
+    return "WebServices";
+  }
+
+  @Override
+  public long getRequests() {
+    long sum = 0L;
+    for (WsActionMetrics action : metrics.getAll()) {
+      sum += action.getRequests();
+    }
+    return sum;
+  }
+
+  @Override
+  public long getClientErrors() {
+    long sum = 0L;
+    for (WsActionMetrics action : metrics.getAll()) {
+      sum += action.getClientErrors();
+    }
+    return sum;
+  }
+
+  @Override
+  public long getServerErrors() {
+    long sum = 0L;
+    for (WsActionMetrics action : metrics.getAll()) {
+      sum += action.getServerErrors();
+    }
+    return sum;
+  }
+
+  @Override
+  public long getResponseBytes() {
+    long sum = 0L;
+    for (WsActionMetrics action : metrics.getAll()) {
+      sum += action.getResponseBytes();
+    }
+    return sum;
+  }
+
+  @Override
+  public String[] getActions() {
+    List<WsActionMetrics> actions = sortedByTotalTime(metrics.getAll());
+    String[] lines = new String[actions.size()];
+    for (int i = 0; i < lines.length; i++) {
+      WsActionMetrics action = actions.get(i);
+      lines[i] = format("%s requests=%d clientErrors=%d serverErrors=%d bytes=%d p50=%dus p99=%dus max=%dus",
+        action.getPath(), action.getRequests(), action.getClientErrors(), action.getServerErrors(), action.getResponseBytes(),
+        action.getPercentileMicros(50d), action.getPercentileMicros(99d), action.getMaxMicros());
+    }
+    return lines;
+  }
+
+  @Override
+  public LinkedHashMap<String, Object> attributes() {
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Requests", getRequests());
+    attributes.put("Client Errors", getClientErrors());
+    attributes.put("Server Errors", getServerErrors());
+    attributes.put("Response Bytes", getResponseBytes());
+    return attributes;
+  }
+
+  /**
+   * Actions sorted by decreasing total execution time, which puts first the actions that weigh the most on the server
+   */
+  public static List<WsActionMetrics> sortedByTotalTime(List<WsActionMetrics> actions) {
+    Collections.sort(actions, TotalTimeComparator.INSTANCE);
+    return actions;
+  }
+
+  private enum TotalTimeComparator implements Comparator<WsActionMetrics> {
+    INSTANCE;
+
+    @Override
+    public int compare(WsActionMetrics a1, WsActionMetrics a2) {
+      int result = Long.compare(a2.getTotalMicros(), a1.getTotalMicros());
+      return result != 0 ? result : a1.getPath().compareTo(a2.getPath());
+    }
+  }
+}
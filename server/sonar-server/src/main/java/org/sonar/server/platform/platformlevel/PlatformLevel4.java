@@ -150,6 +150,9 @@ import org.sonar.server.measure.MeasureFilterEngine;
 import org.sonar.server.measure.MeasureFilterExecutor;
 import org.sonar.server.measure.MeasureFilterFactory;
 import org.sonar.server.measure.custom.ws.CustomMeasuresWsModule;
+import org.sonar.server.measure.index.ProjectMeasuresIndex;
+import org.sonar.server.measure.index.ProjectMeasuresIndexDefinition;
+import org.sonar.server.measure.index.ProjectMeasuresIndexer;
 import org.sonar.server.measure.template.MyFavouritesFilter;
 import org.sonar.server.measure.template.ProjectFilter;
 import org.sonar.server.measure.ws.MeasuresWsModule;
@@ -175,6 +178,7 @@ import org.sonar.server.platform.monitoring.JvmPropertiesMonitor;
 import org.sonar.server.platform.monitoring.PluginsMonitor;
 import org.sonar.server.platform.monitoring.SonarQubeMonitor;
 import org.sonar.server.platform.monitoring.SystemMonitor;
+import org.sonar.server.platform.monitoring.WebServicesMonitor;
 import org.sonar.server.platform.ws.ChangeLogLevelAction;
 import org.sonar.server.platform.ws.DbMigrationStatusAction;
 import org.sonar.server.platform.ws.InfoAction;
@@ -186,6 +190,7 @@ import org.sonar.server.platform.ws.ServerWs;
 import org.sonar.server.platform.ws.StatusAction;
 import org.sonar.server.platform.ws.SystemWs;
 import org.sonar.server.platform.ws.UpgradesAction;
+import org.sonar.server.platform.ws.WsMetricsAction;
 import org.sonar.server.plugins.PluginDownloader;
 import org.sonar.server.plugins.ServerExtensionInstaller;
 import org.sonar.server.plugins.UpdateCenterClient;
@@ -289,6 +294,7 @@ import org.sonar.server.ui.ws.GlobalNavigationAction;
 import org.sonar.server.ui.ws.NavigationWs;
 import org.sonar.server.ui.ws.SettingsNavigationAction;
 import org.sonar.server.updatecenter.ws.UpdateCenterWs;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.DefaultUserService;
 import org.sonar.server.user.GroupMembershipFinder;
 import org.sonar.server.user.GroupMembershipService;
@@ -313,6 +319,7 @@ import org.sonar.server.view.index.ViewIndexDefinition;
 import org.sonar.server.view.index.ViewIndexer;
 import org.sonar.server.ws.WebServiceEngine;
 import org.sonar.server.ws.WebServicesWs;
+import org.sonar.server.ws.WsMetrics;
 import org.sonar.server.ws.WsResponseCommonFormat;
 
 public class PlatformLevel4 extends PlatformLevel {
@@ -476,6 +483,9 @@ public class PlatformLevel4 extends PlatformLevel {
       ActivityMapping.class,
 
       // measure
+      ProjectMeasuresIndexDefinition.class,
+      ProjectMeasuresIndexer.class,
+      ProjectMeasuresIndex.class,
       MeasureFilterFactory.class,
       MeasureFilterExecutor.class,
       MeasureFilterEngine.class,
@@ -515,6 +525,7 @@ public class PlatformLevel4 extends PlatformLevel {
 
       // web services
       WebServiceEngine.class,
+      WsMetrics.class,
       WebServicesWs.class,
 
       // localization
@@ -524,6 +535,7 @@ public class PlatformLevel4 extends PlatformLevel {
       AuthenticationModule.class,
 
       // users
+      AuthorizationCache.class,
       SecurityRealmFactory.class,
       DeprecatedUserFinder.class,
       NewUserNotifier.class,
@@ -678,6 +690,7 @@ public class PlatformLevel4 extends PlatformLevel {
       ServerLogging.class,
       RestartAction.class,
       InfoAction.class,
+      WsMetricsAction.class,
       UpgradesAction.class,
       StatusAction.class,
       SystemWs.class,
@@ -687,6 +700,7 @@ public class PlatformLevel4 extends PlatformLevel {
       PluginsMonitor.class,
       JvmPropertiesMonitor.class,
       DatabaseMonitor.class,
+      WebServicesMonitor.class,
       MigrateDbAction.class,
       LogsAction.class,
       ChangeLogLevelAction.class,
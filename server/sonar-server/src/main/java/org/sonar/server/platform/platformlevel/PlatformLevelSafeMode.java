@@ -25,6 +25,7 @@ import org.sonar.server.platform.ws.StatusAction;
 import org.sonar.server.platform.ws.SystemWs;
 import org.sonar.server.ws.WebServicesWs;
 import org.sonar.server.ws.WebServiceEngine;
+import org.sonar.server.ws.WsMetrics;
 
 public class PlatformLevelSafeMode extends PlatformLevel {
   public PlatformLevelSafeMode(PlatformLevel parent) {
@@ -44,6 +45,7 @@ public class PlatformLevelSafeMode extends PlatformLevel {
       WebServicesWs.class,
 
       // WS engine
-      WebServiceEngine.class);
+      WebServiceEngine.class,
+      WsMetrics.class);
   }
 }
@@ -0,0 +1,93 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.ws;
+
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.server.user.UserSession;
+import org.sonar.server.ws.WsActionMetrics;
+import org.sonar.server.ws.WsMetrics;
+
+import static org.sonar.server.platform.monitoring.WebServicesMonitor.sortedByTotalTime;
+
+/**
+ * Implementation of the {@code ws_metrics} action for the System WebService.
+ */
+public class WsMetricsAction implements SystemWsAction {
+
+  private final WsMetrics metrics;
+  private final UserSession userSession;
+
+  public WsMetricsAction(WsMetrics metrics, UserSession userSession) {
+    this.metrics = metrics;
+    this.userSession = userSession;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    controller.createAction("ws_metrics")
+      .setDescription("Execution metrics of the web services since server startup: number of requests, errors, size of responses and latencies. " +
+        "Actions are sorted by decreasing total execution time. Latencies are in milliseconds. Percentiles are approximated with a relative error lower than 25%." +
+        "<br/>" +
+        "Requires user to be authenticated with Administer System permissions.")
+      .setSince("5.4")
+      .setInternal(true)
+      .setResponseExample(getClass().getResource("/org/sonar/server/platform/ws/example-ws_metrics.json"))
+      .setHandler(this);
+  }
+
+  @Override
+  public void handle(Request request, Response response) {
+    userSession.checkPermission(GlobalPermissions.SYSTEM_ADMIN);
+    JsonWriter json = response.newJsonWriter();
+    json.beginObject();
+    json.name("actions").beginArray();
+    for (WsActionMetrics action : sortedByTotalTime(metrics.getAll())) {
+      writeAction(json, action);
+    }
+    json.endArray();
+    json.endObject();
+    json.close();
+  }
+
+  private static void writeAction(JsonWriter json, WsActionMetrics action) {
+    long requests = action.getRequests();
+    json.beginObject()
+      .prop("path", action.getPath())
+      .prop("requests", requests)
+      .prop("clientErrors", action.getClientErrors())
+      .prop("serverErrors", action.getServerErrors())
+      .prop("responseBytes", action.getResponseBytes())
+      .prop("meanMs", requests == 0L ? 0L : toMillis(action.getTotalMicros() / requests))
+      .prop("p50Ms", toMillis(action.getPercentileMicros(50d)))
+      .prop("p90Ms", toMillis(action.getPercentileMicros(90d)))
+      .prop("p99Ms", toMillis(action.getPercentileMicros(99d)))
+      .prop("maxMs", toMillis(action.getMaxMicros()))
+      .endObject();
+  }
+
+  private static long toMillis(long micros) {
+    return TimeUnit.MICROSECONDS.toMillis(micros);
+  }
+}
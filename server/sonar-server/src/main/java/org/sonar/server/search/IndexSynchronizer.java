@@ -27,10 +27,14 @@ import org.sonar.db.DbSession;
 import org.sonar.server.activity.index.ActivityIndexer;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.db.DeprecatedDao;
+import org.sonar.server.es.PartitionedReindexer;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.measure.index.ProjectMeasuresIndexer;
 import org.sonar.server.qualityprofile.index.ActiveRuleIndex;
 import org.sonar.server.rule.index.RuleIndex;
+import org.sonar.server.test.index.TestIndexDefinition;
 import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.view.index.ViewIndexer;
@@ -47,6 +51,8 @@ public class IndexSynchronizer {
   private final UserIndexer userIndexer;
   private final ViewIndexer viewIndexer;
   private final ActivityIndexer activityIndexer;
+  private final ProjectMeasuresIndexer projectMeasuresIndexer;
+  private final PartitionedReindexer partitionedReindexer;
   private final Settings settings;
 
   /**
@@ -56,7 +62,8 @@ public class IndexSynchronizer {
    */
   public IndexSynchronizer(DbClient db, IndexClient index,
     TestIndexer testIndexer, IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer,
-    UserIndexer userIndexer, ViewIndexer viewIndexer, ActivityIndexer activityIndexer, Settings settings) {
+    UserIndexer userIndexer, ViewIndexer viewIndexer, ActivityIndexer activityIndexer, ProjectMeasuresIndexer projectMeasuresIndexer,
+    PartitionedReindexer partitionedReindexer, Settings settings) {
     this.db = db;
     this.index = index;
     this.testIndexer = testIndexer;
@@ -65,6 +72,8 @@ public class IndexSynchronizer {
     this.userIndexer = userIndexer;
     this.viewIndexer = viewIndexer;
     this.activityIndexer = activityIndexer;
+    this.projectMeasuresIndexer = projectMeasuresIndexer;
+    this.partitionedReindexer = partitionedReindexer;
     this.settings = settings;
   }
 
@@ -86,9 +95,11 @@ public class IndexSynchronizer {
 
       LOG.info("Index issues");
       issueAuthorizationIndexer.setEnabled(true).index();
-      issueIndexer.setEnabled(true).index();
+      reindexIfRequired(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE, issueIndexer);
+      issueIndexer.setEnabled(true).indexQueue();
 
       LOG.info("Index tests");
+      reindexIfRequired(TestIndexDefinition.INDEX, TestIndexDefinition.TYPE, testIndexer);
       testIndexer.setEnabled(true).index();
 
       LOG.info("Index users");
@@ -96,6 +107,19 @@ public class IndexSynchronizer {
 
       LOG.info("Index views");
       viewIndexer.setEnabled(true).index();
+
+      LOG.info("Index project measures");
+      projectMeasuresIndexer.setEnabled(true).index();
+    }
+  }
+
+  /**
+   * Full indexing of large types is partitioned. Documents updated in the meantime are
+   * indexed afterwards by the incremental indexing.
+   */
+  private void reindexIfRequired(String indexName, String typeName, PartitionedReindexer.RangeIndexer rangeIndexer) {
+    if (partitionedReindexer.isRequired(indexName, typeName)) {
+      partitionedReindexer.reindex(indexName, typeName, rangeIndexer);
     }
   }
 
@@ -29,6 +29,7 @@ import javax.annotation.Nullable;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.server.es.ProjectUuidRange;
 
 public class FileSourcesUpdaterHelper {
 
@@ -64,6 +65,17 @@ public class FileSourcesUpdaterHelper {
     return stmt;
   }
 
+  /**
+   * Rows of the projects of the range, whatever their update date
+   */
+  public static PreparedStatement preparedStatementToSelectFileSources(DbClient dbClient, DbSession session, String dataType, ProjectUuidRange range)
+    throws SQLException {
+    String sql = String.format(SQL_ALL, FIELDS_ONE_LINE, dataType) + range.toSqlFilter("project_uuid");
+    PreparedStatement stmt = dbClient.getMyBatis().newScrollingSingleRowSelectStatement(session, sql);
+    range.setParameters(stmt, 1);
+    return stmt;
+  }
+
   private static String createSQL(String dataType, long afterDate, @Nullable String projectUuid) {
     StringBuilder sql = new StringBuilder(String.format(SQL_ALL, FIELDS_ONE_LINE, dataType));
     if (afterDate > 0L || projectUuid != null) {
@@ -30,6 +30,8 @@ import org.sonar.db.DbSession;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedReindexer;
+import org.sonar.server.es.ProjectUuidRange;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 
 import static org.sonar.server.test.index.TestIndexDefinition.FIELD_FILE_UUID;
@@ -41,7 +43,7 @@ import static org.sonar.server.test.index.TestIndexDefinition.TYPE;
  * Add to Elasticsearch index {@link TestIndexDefinition} the rows of
  * db table FILE_SOURCES of type TEST that are not indexed yet
  */
-public class TestIndexer extends BaseIndexer {
+public class TestIndexer extends BaseIndexer implements PartitionedReindexer.RangeIndexer {
 
   private final DbClient dbClient;
 
@@ -65,6 +67,33 @@ public class TestIndexer extends BaseIndexer {
     return doIndex(bulk, dbRows);
   }
 
+  /**
+   * Index the tests of a range of projects. Index is not refreshed, as
+   * this method is called by {@link PartitionedReindexer} during a large indexing.
+   */
+  @Override
+  public long index(ProjectUuidRange range) {
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
+    bulk.setDisableRefresh(true);
+    DbSession dbSession = dbClient.openSession(false);
+    try {
+      TestResultSetIterator rowIt = TestResultSetIterator.create(dbClient, dbSession, range);
+      long count = 0L;
+      bulk.start();
+      while (rowIt.hasNext()) {
+        for (UpdateRequest updateRequest : rowIt.next().getUpdateRequests()) {
+          bulk.add(updateRequest);
+          count++;
+        }
+      }
+      bulk.stop();
+      rowIt.close();
+      return count;
+    } finally {
+      dbSession.close();
+    }
+  }
+
   @Override
   protected long doIndex(long lastUpdatedAt) {
     return doIndex(lastUpdatedAt, null);
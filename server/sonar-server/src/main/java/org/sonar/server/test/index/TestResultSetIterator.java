@@ -35,6 +35,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.ResultSetIterator;
 import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.es.ProjectUuidRange;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper.Row;
 
@@ -71,6 +72,14 @@ public class TestResultSetIterator extends ResultSetIterator<Row> {
     }
   }
 
+  public static TestResultSetIterator create(DbClient dbClient, DbSession session, ProjectUuidRange range) {
+    try {
+      return new TestResultSetIterator(FileSourcesUpdaterHelper.preparedStatementToSelectFileSources(dbClient, session, FileSourceDto.Type.TEST, range));
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select tests of projects " + range, e);
+    }
+  }
+
   @Override
   protected Row read(ResultSet rs) throws SQLException {
     String projectUuid = rs.getString(1);
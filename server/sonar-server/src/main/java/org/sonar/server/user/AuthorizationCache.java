@@ -0,0 +1,210 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.component.ResourceDao;
+import org.sonar.db.component.ResourceDto;
+import org.sonar.db.user.AuthorizationDao;
+
+/**
+ * Server-wide cache of the projects authorized to users, shared by all the {@link ServerUserSession}.
+ * Authorized projects are stored per user and permission as sorted arrays of keys or uuids.
+ * <p/>
+ * The cache must be invalidated by the changes of project permissions and group memberships. Entries
+ * expire anyway after a few minutes, as permissions can still be changed by the Rails application.
+ * <p/>
+ * Keys include the generation of the cache, which is incremented on each invalidation, so that the loads
+ * started before an invalidation are never returned after it.
+ * <p/>
+ * Heap is bounded by the total number of authorized projects referenced by the cached arrays, whatever
+ * the number of users.
+ */
+@ServerSide
+public class AuthorizationCache {
+
+  private static final long EXPIRATION_MINUTES = 5L;
+  private static final long MAX_COMPONENTS = 10_000L;
+  // sum of the lengths of the cached arrays of authorized projects
+  static final long MAX_AUTHORIZED_PROJECTS = 1_000_000L;
+
+  private final AuthorizationDao authorizationDao;
+  private final ResourceDao resourceDao;
+  private final LoadingCache<UserPermission, String[]> projectKeys;
+  private final LoadingCache<UserPermission, String[]> projectUuids;
+  private final Cache<String, String> projectKeyByComponentKey;
+  private final Cache<String, String> projectUuidByComponentUuid;
+  private final AtomicLong generation = new AtomicLong();
+
+  public AuthorizationCache(AuthorizationDao authorizationDao, ResourceDao resourceDao) {
+    this.authorizationDao = authorizationDao;
+    this.resourceDao = resourceDao;
+    this.projectKeys = CacheBuilder.newBuilder()
+      .expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+      .maximumWeight(MAX_AUTHORIZED_PROJECTS)
+      .weigher(ArrayLengthWeigher.INSTANCE)
+      .build(new ProjectKeysLoader());
+    this.projectUuids = CacheBuilder.newBuilder()
+      .expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+      .maximumWeight(MAX_AUTHORIZED_PROJECTS)
+      .weigher(ArrayLengthWeigher.INSTANCE)
+      .build(new ProjectUuidsLoader());
+    this.projectKeyByComponentKey = CacheBuilder.newBuilder()
+      .expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_COMPONENTS)
+      .build();
+    this.projectUuidByComponentUuid = CacheBuilder.newBuilder()
+      .expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES)
+      .maximumSize(MAX_COMPONENTS)
+      .build();
+  }
+
+  public boolean hasProjectPermission(@Nullable Integer userId, String permission, String projectKey) {
+    return Arrays.binarySearch(projectKeys.getUnchecked(new UserPermission(generation.get(), userId, permission)), projectKey) >= 0;
+  }
+
+  public boolean hasProjectPermissionByUuid(@Nullable Integer userId, String permission, String projectUuid) {
+    return Arrays.binarySearch(projectUuids.getUnchecked(new UserPermission(generation.get(), userId, permission)), projectUuid) >= 0;
+  }
+
+  /**
+   * Key of the root project of the component, or null if the component does not exist
+   */
+  @CheckForNull
+  public String getRootProjectKey(String componentKey) {
+    String projectKey = projectKeyByComponentKey.getIfPresent(componentKey);
+    if (projectKey == null) {
+      long loadedGeneration = generation.get();
+      ResourceDto project = resourceDao.getRootProjectByComponentKey(componentKey);
+      if (project == null) {
+        // not cached, as the component may be created later
+        return null;
+      }
+      projectKey = project.getKey();
+      if (loadedGeneration == generation.get()) {
+        projectKeyByComponentKey.put(componentKey, projectKey);
+      }
+    }
+    return projectKey;
+  }
+
+  /**
+   * Uuid of the project of the component, or null if the component does not exist
+   */
+  @CheckForNull
+  public String getProjectUuid(String componentUuid) {
+    String projectUuid = projectUuidByComponentUuid.getIfPresent(componentUuid);
+    if (projectUuid == null) {
+      long loadedGeneration = generation.get();
+      ResourceDto component = resourceDao.selectResource(componentUuid);
+      if (component == null || component.getProjectUuid() == null) {
+        return null;
+      }
+      projectUuid = component.getProjectUuid();
+      if (loadedGeneration == generation.get()) {
+        projectUuidByComponentUuid.put(componentUuid, projectUuid);
+      }
+    }
+    return projectUuid;
+  }
+
+  /**
+   * To be called when project permissions, group memberships or component keys are changed.
+   */
+  public void invalidate() {
+    generation.incrementAndGet();
+    projectKeys.invalidateAll();
+    projectUuids.invalidateAll();
+    projectKeyByComponentKey.invalidateAll();
+    projectUuidByComponentUuid.invalidateAll();
+  }
+
+  private static String[] toSortedArray(Collection<String> values) {
+    String[] array = values.toArray(new String[values.size()]);
+    Arrays.sort(array);
+    return array;
+  }
+
+  private class ProjectKeysLoader extends CacheLoader<UserPermission, String[]> {
+    @Override
+    public String[] load(UserPermission key) {
+      return toSortedArray(authorizationDao.selectAuthorizedRootProjectsKeys(key.userId, key.permission));
+    }
+  }
+
+  private class ProjectUuidsLoader extends CacheLoader<UserPermission, String[]> {
+    @Override
+    public String[] load(UserPermission key) {
+      return toSortedArray(authorizationDao.selectAuthorizedRootProjectsUuids(key.userId, key.permission));
+    }
+  }
+
+  private enum ArrayLengthWeigher implements Weigher<UserPermission, String[]> {
+    INSTANCE;
+
+    @Override
+    public int weigh(UserPermission key, String[] value) {
+      // empty arrays are weighed too, so that the number of users is bounded as well
+      return value.length + 1;
+    }
+  }
+
+  private static class UserPermission {
+    private final long generation;
+    // null for anonymous
+    private final Integer userId;
+    private final String permission;
+
+    private UserPermission(long generation, @Nullable Integer userId, String permission) {
+      this.generation = generation;
+      this.userId = userId;
+      this.permission = permission;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      UserPermission that = (UserPermission) o;
+      return generation == that.generation && Objects.equal(userId, that.userId) && permission.equals(that.permission);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(generation, userId, permission);
+    }
+  }
+}
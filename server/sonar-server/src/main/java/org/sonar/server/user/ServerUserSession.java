@@ -20,33 +20,26 @@
 package org.sonar.server.user;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import org.sonar.api.security.DefaultGroups;
-import org.sonar.db.component.ResourceDao;
-import org.sonar.db.component.ResourceDto;
 import org.sonar.db.user.AuthorizationDao;
 
-import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 
 /**
- * Part of the current HTTP session
+ * Part of the current HTTP session. Project permissions are read from the server-wide {@link AuthorizationCache}.
  */
 public class ServerUserSession extends AbstractUserSession<ServerUserSession>
   implements UserSession {
 
-  private Map<String, String> projectKeyByComponentKey = newHashMap();
-
   private final AuthorizationDao authorizationDao;
-  private final ResourceDao resourceDao;
+  private final AuthorizationCache authorizationCache;
 
-  ServerUserSession(AuthorizationDao authorizationDao, ResourceDao resourceDao) {
+  ServerUserSession(AuthorizationDao authorizationDao, AuthorizationCache authorizationCache) {
     super(ServerUserSession.class);
     this.globalPermissions = null;
     this.authorizationDao = authorizationDao;
-    this.resourceDao = resourceDao;
+    this.authorizationCache = authorizationCache;
     // Do not forget that when forceAuthentication is set to true, the Anyone group should not be set (but this will be check when
     // authentication will be done in Java)
     this.userGroups = newHashSet(DefaultGroups.ANYONE);
@@ -64,53 +57,14 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession>
     return globalPermissions;
   }
 
-  private boolean hasProjectPermission(String permission, String projectKey) {
-    if (!projectPermissionsCheckedByKey.contains(permission)) {
-      Collection<String> projectKeys = authorizationDao.selectAuthorizedRootProjectsKeys(userId, permission);
-      for (String key : projectKeys) {
-        projectKeyByPermission.put(permission, key);
-      }
-      projectPermissionsCheckedByKey.add(permission);
-    }
-    return projectKeyByPermission.get(permission).contains(projectKey);
-  }
-
-  // To keep private
-  private boolean hasProjectPermissionByUuid(String permission, String projectUuid) {
-    if (!projectPermissionsCheckedByUuid.contains(permission)) {
-      Collection<String> projectUuids = authorizationDao.selectAuthorizedRootProjectsUuids(userId, permission);
-      addProjectPermission(permission, projectUuids);
-    }
-    return projectUuidByPermission.get(permission).contains(projectUuid);
-  }
-
-  private void addProjectPermission(String permission, Collection<String> authorizedProjectUuids) {
-    for (String key : authorizedProjectUuids) {
-      projectUuidByPermission.put(permission, key);
-    }
-    projectPermissionsCheckedByUuid.add(permission);
-  }
-
   @Override
   public boolean hasComponentPermission(String permission, String componentKey) {
     if (hasPermission(permission)) {
       return true;
     }
 
-    String projectKey = projectKeyByComponentKey.get(componentKey);
-    if (projectKey == null) {
-      ResourceDto project = resourceDao.getRootProjectByComponentKey(componentKey);
-      if (project == null) {
-        return false;
-      }
-      projectKey = project.getKey();
-    }
-    boolean hasComponentPermission = hasProjectPermission(permission, projectKey);
-    if (hasComponentPermission) {
-      projectKeyByComponentKey.put(componentKey, projectKey);
-      return true;
-    }
-    return false;
+    String projectKey = authorizationCache.getRootProjectKey(componentKey);
+    return projectKey != null && authorizationCache.hasProjectPermission(userId, permission, projectKey);
   }
 
   @Override
@@ -119,20 +73,8 @@ public class ServerUserSession extends AbstractUserSession<ServerUserSession>
       return true;
     }
 
-    String projectUuid = projectUuidByComponentUuid.get(componentUuid);
-    if (projectUuid == null) {
-      ResourceDto project = resourceDao.selectResource(componentUuid);
-      if (project == null) {
-        return false;
-      }
-      projectUuid = project.getProjectUuid();
-    }
-    boolean hasComponentPermission = hasProjectPermissionByUuid(permission, projectUuid);
-    if (hasComponentPermission) {
-      projectUuidByComponentUuid.put(componentUuid, projectUuid);
-      return true;
-    }
-    return false;
+    String projectUuid = authorizationCache.getProjectUuid(componentUuid);
+    return projectUuid != null && authorizationCache.hasProjectPermissionByUuid(userId, permission, projectUuid);
   }
 
 }
@@ -31,6 +31,7 @@ import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.user.UserSession;
 
 import static java.lang.String.format;
@@ -46,11 +47,13 @@ public class AddUserAction implements UserGroupsWsAction {
   private final DbClient dbClient;
   private final UserGroupFinder userGroupFinder;
   private final UserSession userSession;
+  private final AuthorizationCache authorizationCache;
 
-  public AddUserAction(DbClient dbClient, UserGroupFinder userGroupFinder, UserSession userSession) {
+  public AddUserAction(DbClient dbClient, UserGroupFinder userGroupFinder, UserSession userSession, AuthorizationCache authorizationCache) {
     this.dbClient = dbClient;
     this.userGroupFinder = userGroupFinder;
     this.userSession = userSession;
+    this.authorizationCache = authorizationCache;
   }
 
   @Override
@@ -86,6 +89,7 @@ public class AddUserAction implements UserGroupsWsAction {
         UserGroupDto userGroup = new UserGroupDto().setGroupId(group.getId()).setUserId(user.getId());
         dbClient.userGroupDao().insert(dbSession, userGroup);
         dbSession.commit();
+        authorizationCache.invalidate();
       }
 
       response.noContent();
@@ -19,12 +19,21 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import javax.annotation.CheckForNull;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
@@ -33,20 +42,32 @@ import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p/>
+ * Objects are written with Java serialization, unless a {@link DiskCacheCodec} is provided. In this
+ * case each appender writes a buffered binary stream, optionally compressed with LZ4.
  */
 public class DiskCache<O extends Serializable> {
 
   private final File file;
   private final System2 system2;
+  private final Format<O> format;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new SerializationFormat<O>());
+  }
+
+  public DiskCache(File file, System2 system2, DiskCacheCodec<O> codec, boolean compressed) {
+    this(file, system2, new CodecFormat<>(codec, compressed));
+  }
+
+  private DiskCache(File file, System2 system2, Format<O> format) {
     this.system2 = system2;
     this.file = file;
+    this.format = format;
     OutputStream output = null;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
+      output = new FileOutputStream(file);
+      format.init(output);
       output.flush();
 
       // raise an exception if can't close
@@ -64,23 +85,18 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      return format.newIterator(FileUtils.openInputStream(file));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final ObjectWriter<O> output;
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        this.output = format.newWriter(new FileOutputStream(file, true));
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -88,8 +104,7 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        output.write(object);
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -101,4 +116,146 @@ public class DiskCache<O extends Serializable> {
       system2.close(output);
     }
   }
+
+  private interface Format<O> {
+    /**
+     * Called once, when the cache file is created.
+     */
+    void init(OutputStream output) throws IOException;
+
+    ObjectWriter<O> newWriter(OutputStream output) throws IOException;
+
+    CloseableIterator<O> newIterator(InputStream input) throws IOException;
+  }
+
+  private interface ObjectWriter<O> extends Closeable {
+    void write(O object) throws IOException;
+  }
+
+  private static class SerializationFormat<O> implements Format<O> {
+    @Override
+    public void init(OutputStream output) throws IOException {
+      // writes the serialization stream header required when calling "traverse()"
+      // on empty stream. Moreover it allows to call multiple times "newAppender()"
+      new ObjectOutputStream(output).flush();
+    }
+
+    @Override
+    public ObjectWriter<O> newWriter(OutputStream output) throws IOException {
+      final ObjectOutputStream objectOutput = new ObjectOutputStream(output) {
+        @Override
+        protected void writeStreamHeader() throws IOException {
+          // do not write stream headers as it's already done in constructor of DiskCache
+        }
+      };
+      return new ObjectWriter<O>() {
+        @Override
+        public void write(O object) throws IOException {
+          objectOutput.writeObject(object);
+          objectOutput.reset();
+        }
+
+        @Override
+        public void close() throws IOException {
+          objectOutput.close();
+        }
+      };
+    }
+
+    @Override
+    public CloseableIterator<O> newIterator(InputStream input) throws IOException {
+      return new ObjectInputStreamIterator<>(input);
+    }
+  }
+
+  private static class CodecFormat<O> implements Format<O> {
+    private final DiskCacheCodec<O> codec;
+    private final boolean compressed;
+
+    CodecFormat(DiskCacheCodec<O> codec, boolean compressed) {
+      this.codec = codec;
+      this.compressed = compressed;
+    }
+
+    @Override
+    public void init(OutputStream output) {
+      // no header, an empty file is an empty cache
+    }
+
+    @Override
+    public ObjectWriter<O> newWriter(OutputStream output) {
+      OutputStream bufferedOutput = new BufferedOutputStream(output);
+      final DataOutputStream dataOutput = new DataOutputStream(compressed ? new LZ4BlockOutputStream(bufferedOutput) : bufferedOutput);
+      return new ObjectWriter<O>() {
+        @Override
+        public void write(O object) throws IOException {
+          codec.write(dataOutput, object);
+        }
+
+        @Override
+        public void close() throws IOException {
+          dataOutput.close();
+        }
+      };
+    }
+
+    @Override
+    public CloseableIterator<O> newIterator(InputStream input) {
+      return new CodecIterator<>(codec, compressed, new BufferedInputStream(input));
+    }
+  }
+
+  /**
+   * Each appender writes its own LZ4 stream, so a compressed file is a sequence of streams. A new
+   * {@link LZ4BlockInputStream} is opened when the previous one is exhausted. It does not read ahead,
+   * so the underlying stream is positioned at the beginning of the next one.
+   */
+  private static class CodecIterator<O> extends CloseableIterator<O> {
+    private final DiskCacheCodec<O> codec;
+    private final boolean compressed;
+    private final InputStream fileInput;
+    private InputStream streamInput;
+    private DataInputStream dataInput;
+
+    CodecIterator(DiskCacheCodec<O> codec, boolean compressed, InputStream fileInput) {
+      this.codec = codec;
+      this.compressed = compressed;
+      this.fileInput = fileInput;
+      if (!compressed) {
+        this.streamInput = fileInput;
+        this.dataInput = new DataInputStream(fileInput);
+      }
+    }
+
+    @Override
+    @CheckForNull
+    protected O doNext() {
+      try {
+        while (dataInput == null || isExhausted(streamInput)) {
+          if (!compressed || isExhausted(fileInput)) {
+            return null;
+          }
+          streamInput = new BufferedInputStream(new LZ4BlockInputStream(fileInput));
+          dataInput = new DataInputStream(streamInput);
+        }
+        return codec.read(dataInput);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read from disk cache", e);
+      }
+    }
+
+    private static boolean isExhausted(InputStream input) throws IOException {
+      input.mark(1);
+      if (input.read() < 0) {
+        return true;
+      }
+      input.reset();
+      return false;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(fileInput);
+    }
+  }
 }
@@ -71,6 +71,13 @@ public class ServletResponse implements Response {
       return new String(output.toByteArray(), StandardCharsets.UTF_8);
     }
 
+    /**
+     * Number of bytes written to the output
+     */
+    public int size() {
+      return output.size();
+    }
+
     public ServletStream reset() {
       output.reset();
       return this;
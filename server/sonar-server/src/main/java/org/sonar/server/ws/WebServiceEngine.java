@@ -48,9 +48,11 @@ public class WebServiceEngine implements Startable {
   private final WebService.Context context;
   private final I18n i18n;
   private final UserSession userSession;
+  private final WsMetrics metrics;
 
-  public WebServiceEngine(WebService[] webServices, I18n i18n, UserSession userSession) {
+  public WebServiceEngine(WebService[] webServices, I18n i18n, UserSession userSession, WsMetrics metrics) {
     this.userSession = userSession;
+    this.metrics = metrics;
     context = new WebService.Context();
     for (WebService webService : webServices) {
       webService.define(context);
@@ -78,8 +80,10 @@ public class WebServiceEngine implements Startable {
 
   public void execute(ValidatingRequest request, ServletResponse response,
     String controllerPath, String actionKey) {
+    long start = System.nanoTime();
+    WebService.Action action = null;
     try {
-      WebService.Action action = getAction(controllerPath, actionKey);
+      action = getAction(controllerPath, actionKey);
       request.setAction(action);
       verifyRequest(action, request);
       action.handler().handle(request, response);
@@ -94,6 +98,12 @@ public class WebServiceEngine implements Startable {
     } catch (Exception e) {
       Loggers.get(getClass()).error("Fail to process request " + request, e);
       sendErrors(response, 500, new Errors().add(Message.of(e.getMessage())));
+    } finally {
+      // requests on unknown actions are not recorded, so that the number of tracked paths is bounded
+      if (action != null) {
+        ServletResponse.ServletStream stream = response.stream();
+        metrics.record(action, System.nanoTime() - start, stream.httpStatus(), stream.size());
+      }
     }
   }
 
@@ -0,0 +1,181 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution metrics of a web service action: number of requests, errors, size of responses and
+ * log-linear histogram of latencies. Each bucket of the histogram covers a quarter of a power of two
+ * of microseconds, so percentiles are returned with a relative error lower than 25%.
+ * <p/>
+ * Counters are striped by thread in order to limit contention between concurrent requests. Recording
+ * does not allocate memory.
+ */
+public class WsActionMetrics {
+
+  // must be a power of 2
+  private static final int STRIPES = 4;
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // latencies greater than 2^40 microseconds (12 days) are stored in the last bucket
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+  private static final int REQUESTS = 0;
+  private static final int CLIENT_ERRORS = 1;
+  private static final int SERVER_ERRORS = 2;
+  private static final int RESPONSE_BYTES = 3;
+  private static final int TOTAL_MICROS = 4;
+  private static final int MAX_MICROS = 5;
+  private static final int FIRST_BUCKET = 6;
+  // stripes are aligned on 64 bytes so that they do not share cache lines
+  private static final int STRIPE_SIZE = ((FIRST_BUCKET + BUCKETS + 7) / 8) * 8;
+
+  private final String path;
+  private final AtomicLongArray values = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+
+  WsActionMetrics(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Path of the action, for example "api/issues/search"
+   */
+  public String getPath() {
+    return path;
+  }
+
+  void record(long durationNanos, int httpStatus, long responseBytes) {
+    int offset = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SIZE;
+    long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, durationNanos));
+    values.incrementAndGet(offset + REQUESTS);
+    if (httpStatus >= 500) {
+      values.incrementAndGet(offset + SERVER_ERRORS);
+    } else if (httpStatus >= 400) {
+      values.incrementAndGet(offset + CLIENT_ERRORS);
+    }
+    values.addAndGet(offset + RESPONSE_BYTES, responseBytes);
+    values.addAndGet(offset + TOTAL_MICROS, micros);
+    updateMax(offset + MAX_MICROS, micros);
+    values.incrementAndGet(offset + FIRST_BUCKET + bucketIndex(micros));
+  }
+
+  private void updateMax(int index, long value) {
+    long current = values.get(index);
+    while (value > current && !values.compareAndSet(index, current, value)) {
+      current = values.get(index);
+    }
+  }
+
+  public long getRequests() {
+    return sum(REQUESTS);
+  }
+
+  /**
+   * Number of responses with HTTP status 4xx
+   */
+  public long getClientErrors() {
+    return sum(CLIENT_ERRORS);
+  }
+
+  /**
+   * Number of responses with HTTP status 5xx
+   */
+  public long getServerErrors() {
+    return sum(SERVER_ERRORS);
+  }
+
+  public long getResponseBytes() {
+    return sum(RESPONSE_BYTES);
+  }
+
+  public long getTotalMicros() {
+    return sum(TOTAL_MICROS);
+  }
+
+  public long getMaxMicros() {
+    long max = 0L;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      max = Math.max(max, values.get(stripe * STRIPE_SIZE + MAX_MICROS));
+    }
+    return max;
+  }
+
+  /**
+   * Upper bound of the latency, in microseconds, of the given percentage of requests.
+   * Returns 0 if no requests were recorded.
+   *
+   * @param percentile between 0 (excluded) and 100 (included)
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long total = 0L;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = sum(FIRST_BUCKET + bucket);
+      total += counts[bucket];
+    }
+    if (total == 0L) {
+      return 0L;
+    }
+    long threshold = Math.max(1L, (long) Math.ceil(total * percentile / 100d));
+    long cumulated = 0L;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      cumulated += counts[bucket];
+      if (cumulated >= threshold) {
+        // the upper bound of the bucket can not exceed the max value really recorded
+        return Math.min(bucketUpperBound(bucket), getMaxMicros());
+      }
+    }
+    return getMaxMicros();
+  }
+
+  private long sum(int field) {
+    long sum = 0L;
+    for (int stripe = 0; stripe < STRIPES; stripe++) {
+      sum += values.get(stripe * STRIPE_SIZE + field);
+    }
+    return sum;
+  }
+
+  static int bucketIndex(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+    int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BUCKET_BITS);
+    return (SUB_BUCKETS + subBucket) * width + width - 1;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.server.ws.WebService;
+
+/**
+ * Execution metrics of the web services, grouped by action. Metrics are kept in memory
+ * and are reset when server restarts.
+ */
+@ServerSide
+public class WsMetrics {
+
+  private final ConcurrentMap<String, WsActionMetrics> metricsByPath = new ConcurrentHashMap<>();
+
+  public void record(WebService.Action action, long durationNanos, int httpStatus, long responseBytes) {
+    metricsFor(action.path()).record(durationNanos, httpStatus, responseBytes);
+  }
+
+  private WsActionMetrics metricsFor(String path) {
+    WsActionMetrics metrics = metricsByPath.get(path);
+    if (metrics == null) {
+      metrics = new WsActionMetrics(path);
+      WsActionMetrics existing = metricsByPath.putIfAbsent(path, metrics);
+      if (existing != null) {
+        metrics = existing;
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * Metrics of the actions that have been requested at least once since startup
+   */
+  public List<WsActionMetrics> getAll() {
+    return new ArrayList<>(metricsByPath.values());
+  }
+}
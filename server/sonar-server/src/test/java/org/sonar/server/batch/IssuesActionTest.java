@@ -84,9 +84,9 @@ public class IssuesActionTest {
     db.truncateTables();
     es.truncateIndices();
 
-    issueIndex = new IssueIndex(es.client(), System2.INSTANCE, userSessionRule);
     issueIndexer = new IssueIndexer(null, es.client());
     issueAuthorizationIndexer = new IssueAuthorizationIndexer(null, es.client());
+    issueIndex = new IssueIndex(es.client(), System2.INSTANCE, userSessionRule, new Settings(), issueAuthorizationIndexer);
     issuesAction = new IssuesAction(db.getDbClient(), issueIndex, userSessionRule, new ComponentFinder(db.getDbClient()));
 
     tester = new WsTester(new BatchWs(new BatchIndex(mock(Server.class)), issuesAction));
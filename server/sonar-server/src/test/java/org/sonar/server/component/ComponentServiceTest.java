@@ -45,6 +45,7 @@ import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.test.DbTests;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -73,13 +74,14 @@ public class ComponentServiceTest {
   DbClient dbClient = dbTester.getDbClient();
   DbSession session = dbTester.getSession();
   I18n i18n = mock(I18n.class);
+  AuthorizationCache authorizationCache = mock(AuthorizationCache.class);
   ComponentService service;
 
   @Before
   public void setUp() {
     dbTester.truncateTables();
     when(i18n.message(Locale.getDefault(), "qualifier.TRK", "Project")).thenReturn("Project");
-    service = new ComponentService(dbClient, i18n, userSessionRule, System2.INSTANCE, new ComponentFinder(dbClient));
+    service = new ComponentService(dbClient, i18n, userSessionRule, System2.INSTANCE, new ComponentFinder(dbClient), authorizationCache);
   }
 
   @Test
@@ -127,6 +129,8 @@ public class ComponentServiceTest {
     // Check file key has been updated
     assertThat(service.getNullableByKey(file.key())).isNull();
     assertThat(service.getNullableByKey("sample2:root:src/File.xoo")).isNotNull();
+
+    verify(authorizationCache).invalidate();
   }
 
   @Test
@@ -419,7 +423,7 @@ public class ComponentServiceTest {
       ComponentTesting.newProjectDto().setId(3L).setKey(projectKey)
     ));
 
-    service = new ComponentService(dbClient, i18n, userSessionRule, System2.INSTANCE, new ComponentFinder(dbClient));
+    service = new ComponentService(dbClient, i18n, userSessionRule, System2.INSTANCE, new ComponentFinder(dbClient), authorizationCache);
     service.create(NewComponent.create(projectKey, projectKey));
 
     verify(componentDao).delete(session, 2L);
@@ -19,8 +19,12 @@
  */
 package org.sonar.server.computation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.h2.util.IOUtils;
 import org.junit.Before;
@@ -57,6 +61,18 @@ public class ReportFilesTest {
 
   }
 
+  @Test
+  public void decompress_report_compressed_during_upload() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write("{binary}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    underTest.save("TASK_1", new ByteArrayInputStream(compressed.toByteArray()));
+
+    assertThat(FileUtils.readFileToString(new File(reportDir, "TASK_1.zip"))).isEqualTo("{binary}");
+  }
+
   @Test
   public void deleteIfExists_uuid_does_not_exist() {
     // do not fail, does nothing
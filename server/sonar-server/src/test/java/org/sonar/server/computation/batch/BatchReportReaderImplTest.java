@@ -118,6 +118,18 @@ public class BatchReportReaderImplTest {
     assertThat(underTest.readComponentMeasures(COMPONENT_REF)).isNotSameAs(underTest.readComponentMeasures(COMPONENT_REF));
   }
 
+  @Test
+  public void hasChangesets_returns_false_if_no_changeset() {
+    assertThat(underTest.hasChangesets(COMPONENT_REF)).isFalse();
+  }
+
+  @Test
+  public void hasChangesets_returns_true_if_changesets_exist() {
+    writer.writeComponentChangesets(CHANGESETS);
+
+    assertThat(underTest.hasChangesets(COMPONENT_REF)).isTrue();
+  }
+
   @Test
   public void readChangesets_returns_null_if_no_changeset() {
     assertThat(underTest.readChangesets(COMPONENT_REF)).isNull();
@@ -273,6 +285,35 @@ public class BatchReportReaderImplTest {
     res.close();
   }
 
+  @Test
+  public void readLineDataHash_is_the_same_when_files_do_not_exist() {
+    assertThat(underTest.readLineDataHash(COMPONENT_REF)).isEqualTo(underTest.readLineDataHash(COMPONENT_REF + 1));
+  }
+
+  @Test
+  public void readLineDataHash_changes_with_content_of_coverage_highlighting_and_symbols() {
+    String emptyHash = underTest.readLineDataHash(COMPONENT_REF);
+
+    writer.writeComponentCoverage(COMPONENT_REF, of(BatchReport.Coverage.newBuilder().setLine(1).setUtHits(true).build()));
+    String coverageHash = underTest.readLineDataHash(COMPONENT_REF);
+    assertThat(coverageHash).isNotEqualTo(emptyHash);
+
+    writer.writeComponentSymbols(COMPONENT_REF, of(SYMBOL));
+    String symbolsHash = underTest.readLineDataHash(COMPONENT_REF);
+    assertThat(symbolsHash).isNotEqualTo(coverageHash);
+
+    writer.writeComponentCoverage(COMPONENT_REF, of(BatchReport.Coverage.newBuilder().setLine(1).setUtHits(false).build()));
+    assertThat(underTest.readLineDataHash(COMPONENT_REF)).isNotEqualTo(symbolsHash);
+  }
+
+  @Test
+  public void readLineDataHash_depends_on_the_type_of_data() {
+    writer.writeComponentSymbols(COMPONENT_REF, of(SYMBOL));
+    writer.writeComponentSyntaxHighlighting(COMPONENT_REF + 1, of(SYNTAX_HIGHLIGHTING_1));
+
+    assertThat(underTest.readLineDataHash(COMPONENT_REF)).isNotEqualTo(underTest.readLineDataHash(COMPONENT_REF + 1));
+  }
+
   @Test
   public void readFileSource_returns_absent_optional_when_file_does_not_exist() {
     assertThat(underTest.readFileSource(COMPONENT_REF)).isAbsent();
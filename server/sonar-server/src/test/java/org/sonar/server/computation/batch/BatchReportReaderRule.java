@@ -21,6 +21,7 @@ package org.sonar.server.computation.batch;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.protobuf.Message;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.rules.TestRule;
 import org.junit.runner.Description;
 import org.junit.runners.model.Statement;
@@ -135,6 +137,11 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     return this;
   }
 
+  @Override
+  public boolean hasChangesets(int componentRef) {
+    return changesets.containsKey(componentRef);
+  }
+
   @Override
   @CheckForNull
   public BatchReport.Changesets readChangesets(int componentRef) {
@@ -230,6 +237,25 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     return this;
   }
 
+  @Override
+  public String readLineDataHash(int fileRef) {
+    StringBuilder data = new StringBuilder();
+    appendMessages(data, coverages.get(fileRef));
+    data.append('|');
+    appendMessages(data, syntaxHighlightings.get(fileRef));
+    data.append('|');
+    appendMessages(data, symbols.get(fileRef));
+    return DigestUtils.md5Hex(data.toString());
+  }
+
+  private static void appendMessages(StringBuilder data, @Nullable List<? extends Message> messages) {
+    if (messages != null) {
+      for (Message message : messages) {
+        data.append(message.toString());
+      }
+    }
+  }
+
   @Override
   public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
     List<String> lines = fileSources.get(fileRef);
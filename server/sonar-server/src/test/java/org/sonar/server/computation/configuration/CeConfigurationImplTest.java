@@ -0,0 +1,117 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.configuration;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CeConfigurationImplTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Settings settings = new Settings();
+
+  @Test
+  public void getWorkerCount_returns_1_when_property_is_not_set() {
+    assertThat(new CeConfigurationImpl(settings).getWorkerCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getWorkerCount_returns_value_of_property() {
+    settings.setProperty(CeConfigurationImpl.WORKER_COUNT_PROPERTY, "4");
+
+    assertThat(new CeConfigurationImpl(settings).getWorkerCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void constructor_throws_IAE_if_property_is_not_an_integer() {
+    settings.setProperty(CeConfigurationImpl.WORKER_COUNT_PROPERTY, "foo");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.workerCount must be an integer. Got: foo");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void constructor_throws_IAE_if_property_is_0() {
+    settings.setProperty(CeConfigurationImpl.WORKER_COUNT_PROPERTY, "0");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.workerCount must be strictly positive. Got: 0");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void file_sources_properties_have_default_values() {
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesWorkerCount()).isEqualTo(2);
+    assertThat(underTest.getFileSourcesBatchSizeInBytes()).isEqualTo(8 * 1024 * 1024L);
+  }
+
+  @Test
+  public void file_sources_properties_return_values_of_properties() {
+    settings.setProperty(CeConfigurationImpl.FILE_SOURCES_WORKER_COUNT_PROPERTY, "3");
+    settings.setProperty(CeConfigurationImpl.FILE_SOURCES_BATCH_SIZE_PROPERTY, "100");
+
+    CeConfigurationImpl underTest = new CeConfigurationImpl(settings);
+
+    assertThat(underTest.getFileSourcesWorkerCount()).isEqualTo(3);
+    assertThat(underTest.getFileSourcesBatchSizeInBytes()).isEqualTo(100 * 1024L);
+  }
+
+  @Test
+  public void constructor_throws_IAE_if_file_sources_batch_size_is_negative() {
+    settings.setProperty(CeConfigurationImpl.FILE_SOURCES_BATCH_SIZE_PROPERTY, "-1");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.fileSources.batchSizeInKb must be strictly positive. Got: -1");
+
+    new CeConfigurationImpl(settings);
+  }
+
+  @Test
+  public void cross_project_duplication_index_max_blocks_has_default_value() {
+    assertThat(new CeConfigurationImpl(settings).getCrossProjectDuplicationIndexMaxBlocks()).isEqualTo(2_000_000);
+  }
+
+  @Test
+  public void cross_project_duplication_index_can_be_disabled() {
+    settings.setProperty(CeConfigurationImpl.CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS_PROPERTY, "0");
+
+    assertThat(new CeConfigurationImpl(settings).getCrossProjectDuplicationIndexMaxBlocks()).isEqualTo(0);
+  }
+
+  @Test
+  public void constructor_throws_IAE_if_cross_project_duplication_index_max_blocks_is_negative() {
+    settings.setProperty(CeConfigurationImpl.CROSS_PROJECT_DUPLICATION_INDEX_MAX_BLOCKS_PROPERTY, "-1");
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.crossProjectDuplicationIndex.maxBlocks must be positive or zero. Got: -1");
+
+    new CeConfigurationImpl(settings);
+  }
+}
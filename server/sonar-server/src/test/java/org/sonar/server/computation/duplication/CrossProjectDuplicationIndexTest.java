@@ -0,0 +1,242 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.duplication;
+
+import java.util.List;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.duplication.DuplicationUnitDto;
+import org.sonar.server.computation.configuration.CeConfiguration;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CrossProjectDuplicationIndexTest {
+
+  static final String HASH = "a8998353e96320ec";
+  static final String OTHER_HASH = "b1234353e96320ff";
+
+  DbClient dbClient = mock(DbClient.class);
+  DuplicationDao duplicationDao = mock(DuplicationDao.class);
+  CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+
+  CrossProjectDuplicationIndex underTest;
+
+  public CrossProjectDuplicationIndexTest() {
+    when(dbClient.duplicationDao()).thenReturn(duplicationDao);
+    when(dbClient.openSession(false)).thenReturn(mock(DbSession.class));
+    when(ceConfiguration.getCrossProjectDuplicationIndexMaxBlocks()).thenReturn(100);
+    underTest = new CrossProjectDuplicationIndex(dbClient, ceConfiguration);
+  }
+
+  @Test
+  public void index_is_loaded_once() {
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+
+    verify(duplicationDao, times(1)).selectLastBlocks(any(DbSession.class), any(ResultHandler.class));
+  }
+
+  @Test
+  public void select_candidates_of_published_blocks() {
+    loadEmptyIndex();
+
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L)
+      .addBlock("FILE_1", "java", HASH, 0, 1, 10)
+      .addBlock("FILE_1", "java", OTHER_HASH, 1, 5, 15)
+      .addBlock("FILE_2", "java", HASH, 0, 20, 30));
+
+    List<DuplicationUnitDto> candidates = underTest.selectCandidates(null, "java", singletonList(HASH));
+    assertThat(candidates).extracting("componentKey").containsOnly("FILE_1", "FILE_2");
+    assertThat(candidates).extracting("startLine").containsOnly(1, 20);
+    assertThat(candidates).extracting("hash").containsOnly(HASH);
+
+    // same hash requested twice
+    assertThat(underTest.selectCandidates(null, "java", asList(OTHER_HASH, OTHER_HASH))).hasSize(1);
+    assertThat(underTest.selectCandidates(null, "java", singletonList("0000000000000000"))).isEmpty();
+  }
+
+  @Test
+  public void exclude_project_snapshot_and_other_languages() {
+    loadEmptyIndex();
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+    publish("TASK_2", underTest.newUpdate("PROJECT_2", 20L).addBlock("FILE_2", "js", HASH, 0, 1, 10));
+
+    assertThat(underTest.selectCandidates(10L, "java", singletonList(HASH))).isEmpty();
+    assertThat(underTest.selectCandidates(20L, "java", singletonList(HASH))).extracting("componentKey").containsOnly("FILE_1");
+    assertThat(underTest.selectCandidates(null, "js", singletonList(HASH))).extracting("componentKey").containsOnly("FILE_2");
+  }
+
+  @Test
+  public void new_analysis_replaces_blocks_of_previous_analysis() {
+    loadEmptyIndex();
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+    publish("TASK_2", underTest.newUpdate("PROJECT_1", 11L).addBlock("FILE_2", "java", OTHER_HASH, 0, 1, 10));
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).isEmpty();
+    assertThat(underTest.selectCandidates(null, "java", singletonList(OTHER_HASH))).extracting("projectSnapshotId").containsOnly(11L);
+  }
+
+  @Test
+  public void segments_are_compacted() {
+    loadEmptyIndex();
+    for (int i = 0; i < 40; i++) {
+      publish("TASK_" + i, underTest.newUpdate("PROJECT_" + (i % 3), i).addBlock("FILE_" + i, "java", HASH, 0, i, i + 10));
+    }
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).extracting("projectSnapshotId").containsOnly(37L, 38L, 39L);
+  }
+
+  @Test
+  public void blocks_of_failed_task_are_not_published() {
+    loadEmptyIndex();
+    underTest.stage("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).isEmpty();
+    underTest.discard("TASK_1");
+    underTest.publish("TASK_1");
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).isEmpty();
+    // index is reloaded
+    verify(duplicationDao, times(2)).selectLastBlocks(any(DbSession.class), any(ResultHandler.class));
+  }
+
+  @Test
+  public void evict_project_snapshots() {
+    loadEmptyIndex();
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+    publish("TASK_2", underTest.newUpdate("PROJECT_2", 20L).addBlock("FILE_2", "java", HASH, 0, 1, 10));
+
+    underTest.evict(singletonList(10L));
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).extracting("projectSnapshotId").containsOnly(20L);
+  }
+
+  @Test
+  public void support_hashes_which_are_not_16_hexadecimal_digits() {
+    loadEmptyIndex();
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", "not_an_hexa_hash", 0, 1, 10));
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList("not_an_hexa_hash"))).extracting("hash").containsOnly("not_an_hexa_hash");
+    assertThat(underTest.selectCandidates(null, "java", singletonList("ab"))).isEmpty();
+  }
+
+  @Test
+  public void blocks_already_loaded_from_db_are_not_published_twice() {
+    // index is loaded after the switch of snapshot of the task, but before its publication
+    mockLastBlocks(new DuplicationUnitDto().setSnapshotId(100L).setProjectUuid("PROJECT_1").setProjectSnapshotId(10L)
+      .setComponentKey("FILE_1").setComponentLanguage("java").setHash(HASH).setIndexInFile(0).setStartLine(1).setEndLine(10));
+    underTest.stage("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+    loadEmptyIndex();
+
+    underTest.publish("TASK_1");
+
+    assertThat(underTest.selectCandidates(null, "java", singletonList(HASH))).hasSize(1);
+  }
+
+  @Test
+  public void select_candidates_from_db_when_index_is_disabled() {
+    when(ceConfiguration.getCrossProjectDuplicationIndexMaxBlocks()).thenReturn(0);
+    underTest = new CrossProjectDuplicationIndex(dbClient, ceConfiguration);
+
+    underTest.selectCandidates(10L, "java", singletonList(HASH));
+
+    verify(duplicationDao, never()).selectLastBlocks(any(DbSession.class), any(ResultHandler.class));
+    verify(duplicationDao).selectCandidates(any(DbSession.class), eq(10L), eq("java"), eq(singletonList(HASH)));
+  }
+
+  @Test
+  public void select_candidates_from_db_when_blocks_of_db_exceed_max_blocks() {
+    when(ceConfiguration.getCrossProjectDuplicationIndexMaxBlocks()).thenReturn(1);
+    underTest = new CrossProjectDuplicationIndex(dbClient, ceConfiguration);
+    mockLastBlocks(
+      new DuplicationUnitDto().setSnapshotId(100L).setProjectUuid("PROJECT_1").setProjectSnapshotId(10L)
+        .setComponentKey("FILE_1").setComponentLanguage("java").setHash(HASH).setIndexInFile(0).setStartLine(1).setEndLine(10),
+      new DuplicationUnitDto().setSnapshotId(100L).setProjectUuid("PROJECT_1").setProjectSnapshotId(10L)
+        .setComponentKey("FILE_1").setComponentLanguage("java").setHash(OTHER_HASH).setIndexInFile(1).setStartLine(5).setEndLine(15));
+
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+
+    // index is not loaded again
+    verify(duplicationDao, times(1)).selectLastBlocks(any(DbSession.class), any(ResultHandler.class));
+    verify(duplicationDao, times(2)).selectCandidates(any(DbSession.class), eq((Long) null), eq("java"), eq(singletonList(HASH)));
+  }
+
+  @Test
+  public void select_candidates_from_db_when_published_blocks_exceed_max_blocks() {
+    when(ceConfiguration.getCrossProjectDuplicationIndexMaxBlocks()).thenReturn(2);
+    underTest = new CrossProjectDuplicationIndex(dbClient, ceConfiguration);
+    loadEmptyIndex();
+    publish("TASK_1", underTest.newUpdate("PROJECT_1", 10L).addBlock("FILE_1", "java", HASH, 0, 1, 10));
+    verify(duplicationDao, never()).selectCandidates(any(DbSession.class), any(Long.class), anyString(), anyCollectionOf(String.class));
+
+    publish("TASK_2", underTest.newUpdate("PROJECT_2", 20L)
+      .addBlock("FILE_2", "java", HASH, 0, 1, 10)
+      .addBlock("FILE_2", "java", OTHER_HASH, 1, 5, 15));
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+
+    verify(duplicationDao).selectCandidates(any(DbSession.class), eq((Long) null), eq("java"), eq(singletonList(HASH)));
+  }
+
+  private void mockLastBlocks(final DuplicationUnitDto... dtos) {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        ResultHandler handler = (ResultHandler) invocation.getArguments()[1];
+        DefaultResultContext context = new DefaultResultContext();
+        for (DuplicationUnitDto dto : dtos) {
+          if (context.isStopped()) {
+            break;
+          }
+          context.nextResultObject(dto);
+          handler.handleResult(context);
+        }
+        return null;
+      }
+    }).when(duplicationDao).selectLastBlocks(any(DbSession.class), any(ResultHandler.class));
+  }
+
+  private void loadEmptyIndex() {
+    underTest.selectCandidates(null, "java", singletonList(HASH));
+  }
+
+  private void publish(String taskUuid, CrossProjectDuplicationIndex.Update update) {
+    underTest.stage(taskUuid, update);
+    underTest.publish(taskUuid);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DefaultIssueCodecTest {
+
+  DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws Exception {
+    Date date = new Date(1_500_000_000L);
+    DefaultIssueComment comment = new DefaultIssueComment()
+      .setKey("COMMENT1")
+      .setIssueKey("ISSUE1")
+      .setUserLogin("john")
+      .setMarkdownText("a comment")
+      .setCreatedAt(date)
+      .setUpdatedAt(date)
+      .setNew(true);
+    FieldDiffs previousChange = new FieldDiffs()
+      .setIssueKey("ISSUE1")
+      .setUserLogin("simon")
+      .setCreationDate(date)
+      .setDiff("status", "OPEN", "CONFIRMED");
+    DbIssues.Locations locations = DbIssues.Locations.newBuilder()
+      .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(3).setEndLine(5))
+      .build();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE1")
+      .setComponentUuid("FILE1")
+      .setComponentKey("PROJECT:File1.java")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("PROJECT")
+      .setRuleKey(RuleKey.of("squid", "S001"))
+      .setLanguage("java")
+      .setSeverity(Severity.MAJOR)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(10)
+      .setEffortToFix(2.5)
+      .setDebt(Duration.create(30L))
+      .setStatus("CONFIRMED")
+      .setResolution(null)
+      .setReporter("reporter")
+      .setAssignee("assignee")
+      .setChecksum("c4e5")
+      .setAttribute("jira", "SONAR-1")
+      .setAuthorLogin("author")
+      .setActionPlanKey("PLAN1")
+      .addComment(comment)
+      .setTags(Arrays.asList("bug", "security"))
+      .setLocations(locations)
+      .setCreationDate(date)
+      .setUpdateDate(date)
+      .setCloseDate(null)
+      .addChange(previousChange)
+      .setFieldChange(IssueChangeContext.createUser(date, "john"), "severity", Severity.MINOR, Severity.MAJOR)
+      .setFieldChange(IssueChangeContext.createUser(date, "john"), "technicalDebt", 10L, 30L)
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_000L);
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE1");
+    assertThat(decoded.componentUuid()).isEqualTo("FILE1");
+    assertThat(decoded.componentKey()).isEqualTo("PROJECT:File1.java");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".MODULE1.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(decoded.projectKey()).isEqualTo("PROJECT");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("squid", "S001"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo(Severity.MAJOR);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(10);
+    assertThat(decoded.effortToFix()).isEqualTo(2.5);
+    assertThat(decoded.debtInMinutes()).isEqualTo(30L);
+    assertThat(decoded.status()).isEqualTo("CONFIRMED");
+    assertThat(decoded.resolution()).isNull();
+    assertThat(decoded.reporter()).isEqualTo("reporter");
+    assertThat(decoded.assignee()).isEqualTo("assignee");
+    assertThat(decoded.checksum()).isEqualTo("c4e5");
+    assertThat(decoded.attributes()).containsOnly(entry("jira", "SONAR-1"));
+    assertThat(decoded.authorLogin()).isEqualTo("author");
+    assertThat(decoded.actionPlanKey()).isEqualTo("PLAN1");
+    assertThat(decoded.tags()).containsExactly("bug", "security");
+    assertThat(decoded.<DbIssues.Locations>getLocations()).isEqualTo(locations);
+    assertThat(decoded.creationDate()).isEqualTo(date);
+    assertThat(decoded.updateDate()).isEqualTo(date);
+    assertThat(decoded.closeDate()).isNull();
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isBeingClosed()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(1_000L);
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment decodedComment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(decodedComment.key()).isEqualTo("COMMENT1");
+    assertThat(decodedComment.issueKey()).isEqualTo("ISSUE1");
+    assertThat(decodedComment.userLogin()).isEqualTo("john");
+    assertThat(decodedComment.markdownText()).isEqualTo("a comment");
+    assertThat(decodedComment.createdAt()).isEqualTo(date);
+    assertThat(decodedComment.updatedAt()).isEqualTo(date);
+    assertThat(decodedComment.isNew()).isTrue();
+
+    assertThat(decoded.changes()).hasSize(3);
+    assertThat(decoded.changes().get(0).toString()).isEqualTo("status=OPEN|CONFIRMED");
+    assertThat(decoded.changes().get(0).userLogin()).isEqualTo("simon");
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange.userLogin()).isEqualTo("john");
+    assertThat(currentChange.creationDate()).isEqualTo(date);
+    assertThat(currentChange.get("severity").newValue()).isEqualTo(Severity.MAJOR);
+    assertThat(currentChange.get("technicalDebt").oldValue()).isEqualTo(10L);
+    assertThat(currentChange.get("technicalDebt").newValue()).isEqualTo(30L);
+    // references to the current change share the same instance
+    assertThat(decoded.changes().get(1)).isSameAs(currentChange);
+    assertThat(decoded.changes().get(2)).isSameAs(currentChange);
+  }
+
+  @Test
+  public void encode_and_decode_issue_without_optional_fields() throws Exception {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE1");
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ISSUE1");
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.debt()).isNull();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.tags()).isEmpty();
+    assertThat(decoded.<Object>getLocations()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.isNew()).isTrue();
+    assertThat(decoded.selectedAt()).isNull();
+  }
+
+  @Test
+  public void encode_and_decode_long_strings() throws Exception {
+    // longer than the 64Kb supported by DataOutput#writeUTF()
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 100_000; i++) {
+      value.append('\u00e9');
+    }
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE1").setAttribute("description", value.toString());
+
+    assertThat(encodeAndDecode(issue).attribute("description")).isEqualTo(value.toString());
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      underTest.write(output, issue);
+    }
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return underTest.read(input);
+    }
+  }
+}
@@ -46,6 +46,7 @@ import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.Developer;
 import org.sonar.server.computation.component.DumbDeveloper;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.debt.Characteristic;
 import org.sonar.server.computation.debt.CharacteristicImpl;
 import org.sonar.server.computation.metric.Metric;
@@ -98,7 +99,7 @@ public class MapBasedRawMeasureRepositoryTest {
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mock(TreeRootHolder.class), mockBatchReportReader, metricRepository, reportMetricValidator);
 
   @Before
   public void setUp() {
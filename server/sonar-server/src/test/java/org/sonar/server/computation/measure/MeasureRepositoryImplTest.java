@@ -45,6 +45,7 @@ import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
+import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.ReportComponent;
 import org.sonar.server.computation.debt.Characteristic;
@@ -74,10 +75,13 @@ public class MeasureRepositoryImplTest {
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   private static final String FILE_COMPONENT_KEY = "file cpt key";
   private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey(FILE_COMPONENT_KEY).build();
   private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).setKey("some other key").build();
+  private static final ReportComponent PROJECT = ReportComponent.builder(Component.Type.PROJECT, 10).setUuid("PROJECT_UUID").addChildren(FILE_COMPONENT, OTHER_COMPONENT).build();
   private static final String METRIC_KEY_1 = "metric 1";
   private static final int METRIC_ID_1 = 1;
   private static final String METRIC_KEY_2 = "metric 2";
@@ -96,18 +100,21 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, treeRootHolder, reportReader, metricRepository, reportMetricValidator);
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, treeRootHolder, mockBatchReportReader, metricRepository, reportMetricValidator);
 
   private DbSession dbSession = dbTester.getSession();
 
   @Before
   public void setUp() {
+    treeRootHolder.setRoot(PROJECT);
+    when(metric1.getId()).thenReturn(METRIC_ID_1);
     when(metric1.getKey()).thenReturn(METRIC_KEY_1);
     when(metric1.getType()).thenReturn(Metric.MetricType.STRING);
+    when(metric2.getId()).thenReturn(METRIC_ID_2);
     when(metric2.getKey()).thenReturn(METRIC_KEY_2);
     when(metric2.getType()).thenReturn(Metric.MetricType.STRING);
 
@@ -180,6 +187,24 @@ public class MeasureRepositoryImplTest {
     assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1)).isAbsent();
   }
 
+  @Test
+  public void getBaseMeasure_loads_measures_of_a_metric_only_once() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, LAST_SNAPSHOT_ID));
+    dbSession.commit();
+
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1)).isPresent();
+    assertThat(underTest.getBaseMeasure(OTHER_COMPONENT, metric1)).isAbsent();
+
+    // measures of metric 1 are already loaded, those of metric 2 are not
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_2, LAST_SNAPSHOT_ID));
+    dbSession.commit();
+    dbTester.executeUpdateSql("delete from project_measures where metric_id=" + METRIC_ID_1);
+
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1)).isPresent();
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric2)).isPresent();
+  }
+
   @Test
   public void add_throws_NPE_if_Component_argument_is_null() {
     expectedException.expect(NullPointerException.class);
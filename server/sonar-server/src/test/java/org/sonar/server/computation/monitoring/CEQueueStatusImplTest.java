@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 public class CEQueueStatusImplTest {
   private static final int SOME_RANDOM_MAX = 96535;
@@ -44,6 +45,8 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getErrorCount()).isEqualTo(0);
     assertThat(underTest.getSuccessCount()).isEqualTo(0);
     assertThat(underTest.getProcessingTime()).isEqualTo(0);
+    assertThat(underTest.getProcessedCountByWorker()).isEmpty();
+    assertThat(underTest.getProcessingTimeByWorker()).isEmpty();
   }
 
   @Test
@@ -192,4 +195,24 @@ public class CEQueueStatusImplTest {
     assertThat(underTest.getInProgressCount()).isEqualTo(-calls);
     assertThat(underTest.getProcessingTime()).isEqualTo(calls);
   }
+
+  @Test
+  public void addWorkerProcessed_throws_IAE_if_time_is_less_than_0() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Processing time can not be < 0");
+
+    underTest.addWorkerProcessed("worker", -1);
+  }
+
+  @Test
+  public void addWorkerProcessed_counts_tasks_and_processing_time_per_worker() {
+    assertThat(underTest.addWorkerProcessed("worker-1", 10)).isEqualTo(1);
+    assertThat(underTest.addWorkerProcessed("worker-2", 20)).isEqualTo(1);
+    assertThat(underTest.addWorkerProcessed("worker-1", 30)).isEqualTo(2);
+
+    assertThat(underTest.getProcessedCountByWorker()).containsOnly(entry("worker-1", 2L), entry("worker-2", 1L));
+    assertThat(underTest.getProcessingTimeByWorker()).containsOnly(entry("worker-1", 40L), entry("worker-2", 20L));
+    // global counters are not impacted
+    assertThat(underTest.getProcessingTime()).isEqualTo(0);
+  }
 }
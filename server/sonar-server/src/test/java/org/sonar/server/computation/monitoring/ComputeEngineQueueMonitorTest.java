@@ -19,12 +19,17 @@
  */
 package org.sonar.server.computation.monitoring;
 
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import org.junit.Before;
 import org.junit.Test;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.queue.CeQueueImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ComputeEngineQueueMonitorTest {
   private static final long RECEIVED_COUNT = 30;
@@ -33,8 +38,18 @@ public class ComputeEngineQueueMonitorTest {
   private static final long ERROR_COUNT = 10;
   private static final long SUCCESS_COUNT = 13;
   private static final long PROCESSING_TIME = 987;
+  private static final int WORKER_COUNT = 2;
+  private static final String WORKER_NAME = "ce-processor-0";
+  private static final long WORKER_PROCESSED_COUNT = 20;
+  private static final long WORKER_PROCESSING_TIME = 654;
 
-  private ComputeEngineQueueMonitor underTest = new ComputeEngineQueueMonitor(new DumbCEQueueStatus(), mock(CeQueueImpl.class));
+  private CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+  private ComputeEngineQueueMonitor underTest = new ComputeEngineQueueMonitor(new DumbCEQueueStatus(), ceConfiguration, mock(CeQueueImpl.class));
+
+  @Before
+  public void setUp() {
+    when(ceConfiguration.getWorkerCount()).thenReturn(WORKER_COUNT);
+  }
 
   @Test
   public void name_is_ComputeEngine() {
@@ -49,7 +64,10 @@ public class ComputeEngineQueueMonitorTest {
       entry("In progress", IN_PROGRESS_COUNT),
       entry("Successfully processed", SUCCESS_COUNT),
       entry("Processed with error", ERROR_COUNT),
-      entry("Processing time", PROCESSING_TIME));
+      entry("Processing time", PROCESSING_TIME),
+      entry("Workers", WORKER_COUNT),
+      entry("Processed by " + WORKER_NAME, WORKER_PROCESSED_COUNT),
+      entry("Processing time of " + WORKER_NAME, WORKER_PROCESSING_TIME));
   }
 
   @Test
@@ -60,6 +78,7 @@ public class ComputeEngineQueueMonitorTest {
     assertThat(underTest.getErrorCount()).isEqualTo(ERROR_COUNT);
     assertThat(underTest.getSuccessCount()).isEqualTo(SUCCESS_COUNT);
     assertThat(underTest.getProcessingTime()).isEqualTo(PROCESSING_TIME);
+    assertThat(underTest.getWorkerCount()).isEqualTo(WORKER_COUNT);
   }
 
   /**
@@ -126,5 +145,20 @@ public class ComputeEngineQueueMonitorTest {
     public long getProcessingTime() {
       return PROCESSING_TIME;
     }
+
+    @Override
+    public long addWorkerProcessed(String workerName, long processingTime) {
+      return methodNotImplemented();
+    }
+
+    @Override
+    public Map<String, Long> getProcessedCountByWorker() {
+      return ImmutableMap.of(WORKER_NAME, WORKER_PROCESSED_COUNT);
+    }
+
+    @Override
+    public Map<String, Long> getProcessingTimeByWorker() {
+      return ImmutableMap.of(WORKER_NAME, WORKER_PROCESSING_TIME);
+    }
   }
 }
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
@@ -36,15 +37,19 @@ import org.sonar.api.utils.log.LogTester;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.core.hash.SourceHashComputer;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.protobuf.DbFileSources;
+import org.sonar.db.source.FileSourceDao;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.server.computation.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.batch.BatchReportReader;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
+import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.component.TreeRootHolder;
 import org.sonar.server.computation.component.ViewsComponent;
 import org.sonar.server.computation.snapshot.Snapshot;
 import org.sonar.server.computation.source.SourceHashRepository;
@@ -53,8 +58,13 @@ import org.sonar.server.computation.source.SourceLinesRepositoryImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.guava.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 import static org.sonar.api.utils.log.LoggerLevel.TRACE;
 import static org.sonar.server.computation.component.ReportComponent.builder;
 
@@ -63,6 +73,7 @@ public class ScmInfoRepositoryImplTest {
 
   static final int FILE_REF = 1;
   static final Component FILE = builder(Component.Type.FILE, FILE_REF).setKey("FILE_KEY").setUuid("FILE_UUID").build();
+  static final Component PROJECT = builder(Component.Type.PROJECT, 2).setKey("PROJECT_KEY").setUuid("PROJECT_UUID").addChildren(FILE).build();
   static final long DATE_1 = 123456789L;
   static final long DATE_2 = 1234567810L;
 
@@ -81,11 +92,13 @@ public class ScmInfoRepositoryImplTest {
   public AnalysisMetadataHolderRule analysisMetadataHolder = new AnalysisMetadataHolderRule();
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(PROJECT);
 
   DbClient dbClient = dbTester.getDbClient();
 
   ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
-    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
+    new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
 
   @Test
   public void read_from_report() throws Exception {
@@ -110,6 +123,32 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from db for file 'FILE_KEY'");
   }
 
+  @Test
+  public void getScmInfo_does_not_decode_source_data_when_scm_data_is_stored() throws Exception {
+    analysisMetadataHolder.setBaseProjectSnapshot(BASE_PROJECT_SNAPSHOT);
+    FileSourceDto dto = createFileSourceDto("henry", DATE_1, "rev-1", computeSourceHash(1));
+    // source data can't be decoded
+    dto.setBinaryData(new byte[] {1, 2, 3});
+    dbTester.getDbClient().fileSourceDao().insert(dto);
+    addFileSourceInReport(1);
+
+    Changeset changeset = underTest.getScmInfo(FILE).get().getChangesetForLine(1);
+    assertThat(changeset.getAuthor()).isEqualTo("henry");
+    assertThat(changeset.getDate()).isEqualTo(DATE_1);
+    assertThat(changeset.getRevision()).isEqualTo("rev-1");
+  }
+
+  @Test
+  public void getScmInfo_reads_source_data_when_scm_data_is_not_stored_yet() throws Exception {
+    analysisMetadataHolder.setBaseProjectSnapshot(BASE_PROJECT_SNAPSHOT);
+    dbTester.getDbClient().fileSourceDao().insert(createFileSourceDto("henry", DATE_1, "rev-1", computeSourceHash(1)).setScmBinaryData(null));
+    addFileSourceInReport(1);
+
+    Changeset changeset = underTest.getScmInfo(FILE).get().getChangesetForLine(1);
+    assertThat(changeset.getAuthor()).isEqualTo("henry");
+    assertThat(changeset.getRevision()).isEqualTo("rev-1");
+  }
+
   @Test
   public void getScmInfo_returns_absent_if_hash_from_db_does_not_match() throws Exception {
     analysisMetadataHolder.setBaseProjectSnapshot(BASE_PROJECT_SNAPSHOT);
@@ -182,11 +221,12 @@ public class ScmInfoRepositoryImplTest {
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
     DbClient dbClient = mock(DbClient.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    TreeRootHolder treeRootHolder = mock(TreeRootHolder.class);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
-    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository, treeRootHolder);
   }
 
   @Test
@@ -203,6 +243,35 @@ public class ScmInfoRepositoryImplTest {
     assertThat(logTester.logs(TRACE)).isEmpty();
   }
 
+  @Test
+  public void load_db_scm_data_only_of_files_without_changesets_in_report() throws Exception {
+    Component fileWithChangesets = builder(Component.Type.FILE, 3).setKey("FILE2_KEY").setUuid("FILE2_UUID").build();
+    treeRootHolder.setRoot(builder(Component.Type.PROJECT, 2).setKey("PROJECT_KEY").setUuid("PROJECT_UUID")
+      .addChildren(FILE, fileWithChangesets).build());
+    FileSourceDao fileSourceDao = spy(dbClient.fileSourceDao());
+    DbClient spiedDbClient = spy(dbClient);
+    when(spiedDbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, spiedDbClient,
+      new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)), treeRootHolder);
+    analysisMetadataHolder.setBaseProjectSnapshot(BASE_PROJECT_SNAPSHOT);
+    addFileSourceInDb("henry", DATE_1, "rev-1", computeSourceHash(1));
+    addFileSourceInReport(1);
+    reportReader.putChangesets(BatchReport.Changesets.newBuilder()
+      .setComponentRef(3)
+      .addChangeset(BatchReport.Changesets.Changeset.newBuilder()
+        .setAuthor("john")
+        .setDate(DATE_2)
+        .setRevision("rev-2")
+        .build())
+      .addChangesetIndexByLine(0)
+      .build());
+
+    assertThat(underTest.getScmInfo(FILE).get().getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+    assertThat(underTest.getScmInfo(fileWithChangesets).get().getChangesetForLine(1).getAuthor()).isEqualTo("john");
+
+    verify(fileSourceDao).selectScmDataByFileUuids(any(DbSession.class), eq(Collections.singletonList("FILE_UUID")));
+  }
+
   @Test
   public void not_read_in_db_on_first_analysis() throws Exception {
     analysisMetadataHolder.setBaseProjectSnapshot(null);
@@ -214,6 +283,10 @@ public class ScmInfoRepositoryImplTest {
   }
 
   private void addFileSourceInDb(@Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
+    dbTester.getDbClient().fileSourceDao().insert(createFileSourceDto(author, date, revision, srcHash));
+  }
+
+  private static FileSourceDto createFileSourceDto(@Nullable String author, @Nullable Long date, @Nullable String revision, String srcHash) {
     DbFileSources.Data.Builder fileDataBuilder = DbFileSources.Data.newBuilder();
     DbFileSources.Line.Builder builder = fileDataBuilder.addLinesBuilder()
       .setLine(1);
@@ -226,11 +299,11 @@ public class ScmInfoRepositoryImplTest {
     if (revision != null) {
       builder.setScmRevision(revision);
     }
-    dbTester.getDbClient().fileSourceDao().insert(new FileSourceDto()
+    return new FileSourceDto()
       .setFileUuid(FILE.getUuid())
       .setProjectUuid("PROJECT_UUID")
       .setSourceData(fileDataBuilder.build())
-      .setSrcHash(srcHash));
+      .setSrcHash(srcHash);
   }
 
   private void addChangesetInReport(String author, Long date, String revision) {
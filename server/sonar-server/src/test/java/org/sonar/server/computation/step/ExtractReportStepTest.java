@@ -31,6 +31,7 @@ import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.batch.protocol.output.SegmentedReportWriter;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.queue.CeTask;
@@ -101,4 +102,17 @@ public class ExtractReportStepTest {
       }
     }));
   }
+
+  @Test
+  public void segmented_report_is_not_extracted() throws Exception {
+    File reportDir = tempFolder.newDir();
+    FileUtils.write(new File(reportDir, "metadata.pb"), "{report}");
+    File report = tempFolder.newFile();
+    SegmentedReportWriter.writeDirectory(reportDir, report);
+    when(reportFiles.fileForUuid(TASK_UUID)).thenReturn(report);
+
+    underTest.execute();
+
+    verify(reportDirectoryHolder).setDirectory(report);
+  }
 }
@@ -26,6 +26,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.db.DbClient;
@@ -44,6 +45,8 @@ import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.FileAttributes;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.configuration.CeConfigurationImpl;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.snapshot.Snapshot;
@@ -95,8 +98,10 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
 
   Snapshot baseProjectSnapshot;
 
+  CrossProjectDuplicationIndex crossProjectDuplicationIndex = new CrossProjectDuplicationIndex(dbClient, new CeConfigurationImpl(new Settings()));
+
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, crossProjectDuplicationIndex, dbClient);
 
   @Before
   public void setUp() throws Exception {
@@ -259,6 +264,48 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
       );
   }
 
+  @Test
+  public void ignore_blocks_of_project_re_analyzed_since_index_has_been_loaded() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseProjectSnapshot(baseProjectSnapshot);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+
+    ComponentDto otherFIle = createFile("OTHER_FILE_KEY", otherProject);
+    SnapshotDto otherFileSnapshot = createFileSnapshot(otherFIle, otherProjectSnapshot);
+
+    String hash = "a8998353e96320ec";
+    dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+      .setHash(hash)
+      .setStartLine(40)
+      .setEndLine(55)
+      .setIndexInFile(0)
+      .setProjectSnapshotId(otherProjectSnapshot.getId())
+      .setSnapshotId(otherFileSnapshot.getId()));
+    dbSession.commit();
+
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(BatchReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build()));
+
+    underTest.execute();
+    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), anyCollection(), anyCollection());
+
+    // snapshot is switched by another analysis whose blocks have not been published to the index
+    dbClient.snapshotDao().updateSnapshotAndChildrenLastFlag(dbSession, otherProjectSnapshot, false);
+    dbSession.commit();
+    reset(integrateCrossProjectDuplications);
+
+    underTest.execute();
+    verifyZeroInteractions(integrateCrossProjectDuplications);
+    assertThat(crossProjectDuplicationIndex.selectCandidates(baseProjectSnapshot.getId(), XOO_LANGUAGE, asList(hash))).isEmpty();
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
@@ -27,16 +27,23 @@ import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.batch.protocol.output.BatchReport;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
+import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.db.duplication.DuplicationUnitDto;
 import org.sonar.server.computation.batch.BatchReportReaderRule;
 import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.DbIdsRepositoryImpl;
+import org.sonar.server.computation.component.FileAttributes;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.configuration.CeConfigurationImpl;
+import org.sonar.server.computation.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.duplication.CrossProjectDuplicationStatusHolder;
+import org.sonar.server.computation.queue.CeTask;
 
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -46,7 +53,9 @@ import static org.mockito.Mockito.when;
 public class PersistCrossProjectDuplicationIndexStepTest {
 
   static final int FILE_REF = 2;
-  static final Component FILE = ReportComponent.builder(Component.Type.FILE, FILE_REF).build();
+  static final Component FILE = ReportComponent.builder(Component.Type.FILE, FILE_REF)
+    .setFileAttributes(new FileAttributes(false, "java"))
+    .build();
   static final long FILE_SNAPSHOT_ID = 11L;
 
   static final Component PROJECT = ReportComponent.builder(Component.Type.PROJECT, 1)
@@ -75,7 +84,12 @@ public class PersistCrossProjectDuplicationIndexStepTest {
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(dbClient, dbIdsRepository, treeRootHolder, reportReader, crossProjectDuplicationStatusHolder);
+  CrossProjectDuplicationIndex crossProjectDuplicationIndex = new CrossProjectDuplicationIndex(dbClient, new CeConfigurationImpl(new Settings()));
+
+  CeTask ceTask = new CeTask.Builder().setType(CeTaskTypes.REPORT).setUuid("TASK_1").build();
+
+  ComputationStep underTest = new PersistCrossProjectDuplicationIndexStep(dbClient, dbIdsRepository, treeRootHolder, reportReader, crossProjectDuplicationStatusHolder,
+    crossProjectDuplicationIndex, ceTask);
 
   @Before
   public void setUp() throws Exception {
@@ -123,6 +137,26 @@ public class PersistCrossProjectDuplicationIndexStepTest {
     assertThat(dtos).extracting("projectSnapshotId").containsOnly(PROJECT_SNAPSHOT_ID);
   }
 
+  @Test
+  public void blocks_are_visible_in_index_once_task_is_published() throws Exception {
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    reportReader.putDuplicationBlocks(FILE_REF, singletonList(CPD_TEXT_BLOCK));
+    List<String> hashes = singletonList(CPD_TEXT_BLOCK.getHash());
+    // load index before the analysis
+    assertThat(crossProjectDuplicationIndex.selectCandidates(null, "java", hashes)).isEmpty();
+
+    underTest.execute();
+    assertThat(crossProjectDuplicationIndex.selectCandidates(null, "java", hashes)).isEmpty();
+
+    crossProjectDuplicationIndex.publish(ceTask.getUuid());
+    List<DuplicationUnitDto> candidates = crossProjectDuplicationIndex.selectCandidates(null, "java", hashes);
+    assertThat(candidates).hasSize(1);
+    assertThat(candidates.get(0).getComponentKey()).isEqualTo(FILE.getKey());
+    assertThat(candidates.get(0).getProjectSnapshotId()).isEqualTo(PROJECT_SNAPSHOT_ID);
+    assertThat(candidates.get(0).getStartLine()).isEqualTo(30);
+    assertThat(candidates.get(0).getEndLine()).isEqualTo(45);
+  }
+
   @Test
   public void nothing_to_persist_when_no_cpd_text_blocks_in_report() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
@@ -38,6 +38,7 @@ import org.sonar.server.computation.batch.BatchReportReaderRule;
 import org.sonar.server.computation.batch.TreeRootHolderRule;
 import org.sonar.server.computation.component.Component;
 import org.sonar.server.computation.component.ReportComponent;
+import org.sonar.server.computation.configuration.CeConfiguration;
 import org.sonar.server.computation.duplication.Duplicate;
 import org.sonar.server.computation.duplication.Duplication;
 import org.sonar.server.computation.duplication.DuplicationRepositoryRule;
@@ -50,7 +51,9 @@ import org.sonar.test.DbTests;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 @Category(DbTests.class)
@@ -82,6 +85,7 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private DbSession session = dbTester.getSession();
+  private CeConfiguration ceConfiguration = mock(CeConfiguration.class);
 
   private PersistFileSourcesStep underTest;
 
@@ -89,7 +93,10 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
   public void setup() {
     dbTester.truncateTables();
     when(system2.now()).thenReturn(NOW);
-    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository);
+    when(ceConfiguration.getFileSourcesWorkerCount()).thenReturn(2);
+    when(ceConfiguration.getFileSourcesBatchSizeInBytes()).thenReturn(1024L * 1024L);
+    underTest = new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      ceConfiguration);
   }
 
   @Override
@@ -322,6 +329,44 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getDataHash()).isEqualTo(dataHash);
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(past);
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(past);
+    // inputs hash is stored in order to skip the file during next analysis
+    assertThat(fileSourceDto.getInputsHash()).isNotEmpty();
+  }
+
+  @Test
+  public void skip_file_when_inputs_hash_has_not_changed() {
+    initBasicReport(1);
+    underTest.execute();
+
+    // data is altered in db, it must not be recomputed as inputs of the file did not change
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    dbClient.fileSourceDao().update(session, fileSourceDto.setDataHash("ANOTHER_HASH"));
+    session.commit();
+
+    underTest.execute();
+
+    fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("ANOTHER_HASH");
+  }
+
+  @Test
+  public void update_sources_when_inputs_hash_has_changed() {
+    initBasicReport(1);
+    underTest.execute();
+    String dataHash = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID).getDataHash();
+
+    reportReader.putCoverage(FILE_REF, newArrayList(BatchReport.Coverage.newBuilder()
+      .setLine(1)
+      .setConditions(10)
+      .setUtHits(true)
+      .build()));
+
+    underTest.execute();
+
+    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID);
+    assertThat(fileSourceDto.getDataHash()).isNotEqualTo(dataHash);
+    DbFileSources.Data data = FileSourceDto.decodeSourceData(fileSourceDto.getBinaryData());
+    assertThat(data.getLines(0).getConditions()).isEqualTo(10);
   }
 
   @Test
@@ -434,6 +479,83 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isEqualTo("rev-1");
   }
 
+  @Test
+  public void persist_sources_of_many_files_in_several_batches() {
+    // every file exceeds the budget, so that each one is committed separately
+    when(ceConfiguration.getFileSourcesBatchSizeInBytes()).thenReturn(1L);
+    int numberOfFiles = 20;
+    Component[] files = new Component[numberOfFiles];
+    BatchReport.Component.Builder project = BatchReport.Component.newBuilder()
+      .setRef(1)
+      .setType(Constants.ComponentType.PROJECT);
+    for (int i = 0; i < numberOfFiles; i++) {
+      int ref = 2 + i;
+      files[i] = ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("PROJECT_KEY:src/Foo" + i + ".java").build();
+      reportReader.putComponent(BatchReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(Constants.ComponentType.FILE)
+        .setLines(1)
+        .build());
+      fileSourceRepository.addLine(ref, "line of file " + i);
+      project.addChildRef(ref);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(files).build());
+    reportReader.putComponent(project.build());
+
+    underTest.execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(numberOfFiles);
+    for (int i = 0; i < numberOfFiles; i++) {
+      FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(session, "FILE_" + i);
+      DbFileSources.Data data = FileSourceDto.decodeSourceData(fileSourceDto.getBinaryData());
+      assertThat(data.getLines(0).getSource()).isEqualTo("line of file " + i);
+    }
+  }
+
+  @Test
+  public void fail_with_key_of_file_when_sources_can_not_be_computed() {
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.FILE, FILE_REF).setUuid(FILE_UUID).setKey("PROJECT_KEY:src/Foo.java").build())
+      .build());
+    // the component of the file is missing from report
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Cannot persist sources of PROJECT_KEY:src/Foo.java");
+
+    underTest.execute();
+  }
+
+  @Test(timeout = 60000)
+  public void fail_instead_of_waiting_forever_when_sources_can_not_be_written() {
+    DbClient failingDbClient = spy(dbClient);
+    doThrow(new IllegalStateException("database is down")).when(failingDbClient).openSession(true);
+    underTest = new PersistFileSourcesStep(failingDbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository,
+      ceConfiguration);
+    int numberOfFiles = 20;
+    Component[] files = new Component[numberOfFiles];
+    BatchReport.Component.Builder project = BatchReport.Component.newBuilder()
+      .setRef(1)
+      .setType(Constants.ComponentType.PROJECT);
+    for (int i = 0; i < numberOfFiles; i++) {
+      int ref = 2 + i;
+      files[i] = ReportComponent.builder(Component.Type.FILE, ref).setUuid("FILE_" + i).setKey("PROJECT_KEY:src/Foo" + i + ".java").build();
+      reportReader.putComponent(BatchReport.Component.newBuilder()
+        .setRef(ref)
+        .setType(Constants.ComponentType.FILE)
+        .setLines(1)
+        .build());
+      fileSourceRepository.addLine(ref, "line of file " + i);
+      project.addChildRef(ref);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(files).build());
+    reportReader.putComponent(project.build());
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Cannot persist sources");
+
+    underTest.execute();
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
@@ -39,9 +39,11 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.Timeout;
+import org.sonar.server.computation.configuration.CeConfiguration;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -59,7 +61,15 @@ public class CeProcessingSchedulerImplTest {
   private SchedulerCall regularDelayedPoll = new SchedulerCall(ceWorkerRunnable, 2L, TimeUnit.SECONDS);
   private SchedulerCall notDelayedPoll = new SchedulerCall(ceWorkerRunnable);
 
-  private CeProcessingSchedulerImpl underTest = new CeProcessingSchedulerImpl(processingExecutorService, ceWorkerRunnable);
+  private CeConfiguration ceConfiguration = mock(CeConfiguration.class);
+
+  private CeProcessingSchedulerImpl underTest;
+
+  @Before
+  public void setUp() {
+    when(ceConfiguration.getWorkerCount()).thenReturn(1);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+  }
 
   @Test
   public void polls_without_delay_when_CeWorkerCallable_returns_true() throws Exception {
@@ -172,6 +182,24 @@ public class CeProcessingSchedulerImplTest {
     );
   }
 
+  @Test
+  public void startScheduling_schedules_one_chain_of_CeWorkerCallable_per_worker() throws Exception {
+    when(ceConfiguration.getWorkerCount()).thenReturn(3);
+    underTest = new CeProcessingSchedulerImpl(ceConfiguration, processingExecutorService, ceWorkerRunnable);
+    when(ceWorkerRunnable.call())
+        .thenReturn(true)
+        .thenThrow(ERROR_TO_INTERRUPT_CHAINING);
+
+    startSchedulingAndRun();
+
+    assertThat(processingExecutorService.getSchedulerCalls()).containsExactly(
+        regularDelayedPoll,
+        regularDelayedPoll,
+        regularDelayedPoll,
+        notDelayedPoll
+    );
+  }
+
   private void startSchedulingAndRun() throws ExecutionException, InterruptedException {
     underTest.startScheduling();
 
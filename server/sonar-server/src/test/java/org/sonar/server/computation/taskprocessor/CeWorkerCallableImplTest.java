@@ -27,14 +27,18 @@ import org.mockito.Mockito;
 import org.sonar.db.ce.CeActivityDto;
 import org.sonar.db.ce.CeTaskTypes;
 import org.sonar.server.computation.log.CeLogging;
+import org.sonar.server.computation.monitoring.CEQueueStatus;
 import org.sonar.server.computation.queue.CeQueue;
 import org.sonar.server.computation.queue.CeQueueImpl;
 import org.sonar.server.computation.queue.CeTask;
 import org.sonar.server.computation.taskprocessor.report.ReportTaskProcessor;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -46,7 +50,8 @@ public class CeWorkerCallableImplTest {
   CeQueue queue = mock(CeQueueImpl.class);
   ReportTaskProcessor taskProcessor = mock(ReportTaskProcessor.class);
   CeLogging ceLogging = mock(CeLogging.class);
-  CeWorkerCallable underTest = new CeWorkerCallableImpl(queue, ceLogging, taskProcessorRepository);
+  CEQueueStatus queueStatus = mock(CEQueueStatus.class);
+  CeWorkerCallable underTest = new CeWorkerCallableImpl(queue, ceLogging, taskProcessorRepository, queueStatus);
   InOrder inOrder = Mockito.inOrder(ceLogging, taskProcessor, queue);
 
   @Test
@@ -55,7 +60,7 @@ public class CeWorkerCallableImplTest {
 
     assertThat(underTest.call()).isFalse();
 
-    verifyZeroInteractions(taskProcessor, ceLogging);
+    verifyZeroInteractions(taskProcessor, ceLogging, queueStatus);
   }
 
   @Test
@@ -83,6 +88,7 @@ public class CeWorkerCallableImplTest {
     inOrder.verify(taskProcessor).process(task);
     inOrder.verify(queue).remove(task, CeActivityDto.Status.SUCCESS, null);
     inOrder.verify(ceLogging).clearForTask();
+    verify(queueStatus).addWorkerProcessed(eq(Thread.currentThread().getName()), anyLong());
   }
 
   @Test
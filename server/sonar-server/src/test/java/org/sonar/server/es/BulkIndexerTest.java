@@ -20,24 +20,37 @@
 package org.sonar.server.es;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.Rule;
 import org.junit.Test;
-
-import java.util.Map;
+import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.server.es.request.ProxyBulkRequestBuilder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
 
 public class BulkIndexerTest {
 
   @Rule
   public EsTester esTester = new EsTester().addDefinitions(new FakeIndexDefinition().setReplicas(1));
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void index_nothing() {
     esTester.truncateIndices();
@@ -109,6 +122,86 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(removeFrom);
   }
 
+  @Test
+  public void index_documents_while_deleting_documents_asynchronously() {
+    Map[] docs = new Map[300];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = ImmutableMap.of(FakeIndexDefinition.INT_FIELD, i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch(FakeIndexDefinition.INDEX)
+      .setTypes(FakeIndexDefinition.TYPE)
+      .setQuery(QueryBuilders.filteredQuery(
+        QueryBuilders.matchAllQuery(),
+        FilterBuilders.rangeFilter(FakeIndexDefinition.INT_FIELD).lt(1000))));
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(1000 + i));
+    }
+    indexer.stop();
+
+    // the 300 existing documents are deleted, but not the new ones
+    assertThat(count()).isEqualTo(10);
+  }
+
+  @Test
+  public void pause_deletions_while_too_many_requests_are_waiting() {
+    Map[] docs = new Map[1000];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = ImmutableMap.of(FakeIndexDefinition.INT_FIELD, i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setMaxAsyncRequests(10);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch(FakeIndexDefinition.INDEX)
+      .setTypes(FakeIndexDefinition.TYPE)
+      .setQuery(QueryBuilders.filteredQuery(
+        QueryBuilders.matchAllQuery(),
+        FilterBuilders.rangeFilter(FakeIndexDefinition.INT_FIELD).gte(100))));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+  }
+
+  @Test
+  public void expose_counters() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(indexer.getInFlightRequests()).isEqualTo(0);
+    assertThat(indexer.getSentBytes()).isGreaterThan(0L);
+    assertThat(indexer.getSentBytesPerSecond()).isGreaterThan(0L);
+    assertThat(indexer.getRejectedExecutions()).isEqualTo(0L);
+    assertThat(indexer.getRetries()).isEqualTo(0L);
+  }
+
+  @Test
+  public void fixed_flush_byte_size() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(1024L * 1024L);
+
+    indexer.setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    // size is not adapted to the latency of responses
+    assertThat(indexer.getFlushByteSize()).isEqualTo(500L);
+    assertThat(count()).isEqualTo(10);
+  }
+
   @Test
   public void disable_refresh() {
     BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
@@ -124,6 +217,122 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void fail_on_stop_when_documents_to_be_deleted_can_not_be_searched() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.addDeletion(esTester.client().prepareSearch("unknown_index").setQuery(QueryBuilders.matchAllQuery()));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail to delete documents from index fakes");
+
+    indexer.stop();
+  }
+
+  @Test
+  public void send_again_requests_rejected_by_elasticsearch() {
+    EsClient client = clientRejectingBulks(2);
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(10);
+    assertThat(indexer.getRejectedExecutions()).isEqualTo(2L);
+    assertThat(indexer.getRetries()).isGreaterThanOrEqualTo(2L);
+  }
+
+  @Test
+  public void decrease_flush_byte_size_when_requests_are_rejected() {
+    BulkIndexer indexer = new BulkIndexer(clientRejectingBulks(1), FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(1);
+    assertThat(indexer.getFlushByteSize()).isLessThan(1024L * 1024L);
+  }
+
+  @Test
+  public void adapt_flush_byte_size_to_latency() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+
+    // fast responses
+    indexer.adaptFlushByteSize(100L, false);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(1536L * 1024L);
+
+    // neither fast nor slow
+    indexer.adaptFlushByteSize(1000L, false);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(1536L * 1024L);
+
+    // slow responses
+    indexer.adaptFlushByteSize(3000L, false);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(768L * 1024L);
+
+    // rejected requests
+    indexer.adaptFlushByteSize(100L, true);
+    assertThat(indexer.getFlushByteSize()).isEqualTo(384L * 1024L);
+  }
+
+  @Test
+  public void flush_byte_size_is_bounded() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX);
+    for (int i = 0; i < 20; i++) {
+      indexer.adaptFlushByteSize(3000L, false);
+    }
+    assertThat(indexer.getFlushByteSize()).isEqualTo(256L * 1024L);
+
+    for (int i = 0; i < 20; i++) {
+      indexer.adaptFlushByteSize(100L, false);
+    }
+    assertThat(indexer.getFlushByteSize()).isEqualTo(16L * 1024L * 1024L);
+  }
+
+  @Test
+  public void fixed_flush_byte_size_is_not_adapted() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+
+    indexer.adaptFlushByteSize(3000L, true);
+
+    assertThat(indexer.getFlushByteSize()).isEqualTo(500L);
+  }
+
+  /**
+   * Client which bulk requests are rejected the given number of times, as when the queues of Elasticsearch are full
+   */
+  private EsClient clientRejectingBulks(int rejections) {
+    final AtomicInteger remainingRejections = new AtomicInteger(rejections);
+    final EsClient client = spy(esTester.client());
+    doAnswer(new Answer<ProxyBulkRequestBuilder>() {
+      @Override
+      public ProxyBulkRequestBuilder answer(InvocationOnMock invocation) {
+        return new RejectingBulkRequestBuilder(client.nativeClient(), remainingRejections);
+      }
+    }).when(client).prepareBulk();
+    return client;
+  }
+
+  private static class RejectingBulkRequestBuilder extends ProxyBulkRequestBuilder {
+    private final AtomicInteger remainingRejections;
+
+    private RejectingBulkRequestBuilder(Client client, AtomicInteger remainingRejections) {
+      super(client);
+      this.remainingRejections = remainingRejections;
+    }
+
+    @Override
+    public void execute(ActionListener<BulkResponse> listener) {
+      if (remainingRejections.getAndDecrement() > 0) {
+        listener.onFailure(new EsRejectedExecutionException("queue is full"));
+      } else {
+        super.execute(listener);
+      }
+    }
+  }
 
   private long count() {
     return esTester.countDocuments("fakes", "fake");
@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.process.ProcessProperties;
+import org.sonar.server.issue.index.IssueIndexDefinition;
+import org.sonar.test.DbTests;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.server.issue.index.IssueIndexDefinition.INDEX;
+import static org.sonar.server.issue.index.IssueIndexDefinition.TYPE_ISSUE;
+
+@Category(DbTests.class)
+public class PartitionedReindexerTest {
+
+  @ClassRule
+  public static EsTester esTester = new EsTester().addDefinitions(new IssueIndexDefinition(new Settings()));
+  @Rule
+  public DbTester dbTester = DbTester.create(System2.INSTANCE);
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  Settings settings = new Settings();
+  File dataDir;
+  PartitionedReindexer underTest;
+
+  @Before
+  public void setUp() throws Exception {
+    dbTester.truncateTables();
+    esTester.truncateIndices();
+    dataDir = temp.newFolder();
+    settings.setProperty(ProcessProperties.PATH_DATA, dataDir.getAbsolutePath());
+    underTest = new PartitionedReindexer(esTester.client(), dbTester.getDbClient(), settings);
+
+    dbTester.getDbClient().componentDao().insert(dbTester.getSession(), newProjectDto("B"), newProjectDto("A"), newProjectDto("C"));
+    dbTester.getSession().commit();
+  }
+
+  @Test
+  public void reindex_is_required_if_type_is_empty() {
+    assertThat(underTest.isRequired(INDEX, TYPE_ISSUE)).isTrue();
+  }
+
+  @Test
+  public void index_all_ranges_of_projects() {
+    RecordingRangeIndexer rangeIndexer = new RecordingRangeIndexer(-1);
+
+    underTest.reindex(INDEX, TYPE_ISSUE, rangeIndexer);
+
+    assertThat(rangeIndexer.ranges).containsOnly(
+      new ProjectUuidRange(null, "B"), new ProjectUuidRange("B", "C"), new ProjectUuidRange("C", null));
+    assertThat(progressFile()).doesNotExist();
+  }
+
+  @Test
+  public void resume_interrupted_reindex() {
+    settings.setProperty(PartitionedReindexer.PARTITIONS_PROPERTY, "1");
+    RecordingRangeIndexer failingIndexer = new RecordingRangeIndexer(1);
+    try {
+      underTest.reindex(INDEX, TYPE_ISSUE, failingIndexer);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to reindex issues/issue");
+    }
+    assertThat(progressFile()).exists();
+    assertThat(underTest.isRequired(INDEX, TYPE_ISSUE)).isTrue();
+
+    // new projects are ignored until the resumed reindex completes
+    dbTester.getDbClient().componentDao().insert(dbTester.getSession(), newProjectDto("D"));
+    dbTester.getSession().commit();
+    RecordingRangeIndexer rangeIndexer = new RecordingRangeIndexer(-1);
+    underTest.reindex(INDEX, TYPE_ISSUE, rangeIndexer);
+
+    assertThat(failingIndexer.ranges).containsExactly(new ProjectUuidRange(null, "B"), new ProjectUuidRange("B", "C"));
+    assertThat(rangeIndexer.ranges).containsExactly(new ProjectUuidRange("B", "C"), new ProjectUuidRange("C", null));
+    assertThat(progressFile()).doesNotExist();
+  }
+
+  @Test
+  public void ignore_progress_file_of_previous_index() throws Exception {
+    FileUtils.write(progressFile(), "index.creation_date=123\nrange=,\ndone=0\n");
+
+    RecordingRangeIndexer rangeIndexer = new RecordingRangeIndexer(-1);
+    underTest.reindex(INDEX, TYPE_ISSUE, rangeIndexer);
+
+    assertThat(rangeIndexer.ranges).hasSize(3);
+    assertThat(progressFile()).doesNotExist();
+  }
+
+  private File progressFile() {
+    return new File(dataDir, "reindex/issues.issue.progress");
+  }
+
+  private static class RecordingRangeIndexer implements PartitionedReindexer.RangeIndexer {
+    private final int failingRange;
+    private final List<ProjectUuidRange> ranges = new CopyOnWriteArrayList<>();
+
+    private RecordingRangeIndexer(int failingRange) {
+      this.failingRange = failingRange;
+    }
+
+    @Override
+    public long index(ProjectUuidRange range) {
+      ranges.add(range);
+      if (ranges.size() == failingRange + 1) {
+        throw new IllegalStateException("Unexpected failure");
+      }
+      return 1L;
+    }
+  }
+}
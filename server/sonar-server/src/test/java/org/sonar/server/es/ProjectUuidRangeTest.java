@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectUuidRangeTest {
+
+  @Test
+  public void split_in_contiguous_ranges() {
+    List<ProjectUuidRange> ranges = ProjectUuidRange.split(Arrays.asList("A", "B", "C", "D", "E"), 2);
+
+    assertThat(ranges).containsExactly(new ProjectUuidRange(null, "D"), new ProjectUuidRange("D", null));
+  }
+
+  @Test
+  public void split_in_less_ranges_than_requested_if_not_enough_projects() {
+    List<ProjectUuidRange> ranges = ProjectUuidRange.split(Arrays.asList("A", "B"), 10);
+
+    assertThat(ranges).containsExactly(new ProjectUuidRange(null, "B"), new ProjectUuidRange("B", null));
+  }
+
+  @Test
+  public void single_unbounded_range_if_no_projects() {
+    List<ProjectUuidRange> ranges = ProjectUuidRange.split(Collections.<String>emptyList(), 10);
+
+    assertThat(ranges).containsExactly(new ProjectUuidRange(null, null));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void fail_if_number_of_ranges_is_not_positive() {
+    ProjectUuidRange.split(Arrays.asList("A", "B"), 0);
+  }
+
+  @Test
+  public void sql_filter() {
+    assertThat(new ProjectUuidRange(null, null).toSqlFilter("p.uuid")).isEmpty();
+    assertThat(new ProjectUuidRange("A", null).toSqlFilter("p.uuid")).isEqualTo(" AND p.uuid>=?");
+    assertThat(new ProjectUuidRange(null, "B").toSqlFilter("p.uuid")).isEqualTo(" AND p.uuid<?");
+    assertThat(new ProjectUuidRange("A", "B").toSqlFilter("p.uuid")).isEqualTo(" AND p.uuid>=? AND p.uuid<?");
+  }
+
+  @Test
+  public void test_equals_and_to_string() {
+    ProjectUuidRange range = new ProjectUuidRange("A", "B");
+
+    assertThat(range).isEqualTo(new ProjectUuidRange("A", "B"));
+    assertThat(range).isNotEqualTo(new ProjectUuidRange("A", null));
+    assertThat(range.hashCode()).isEqualTo(new ProjectUuidRange("A", "B").hashCode());
+    assertThat(range.toString()).isEqualTo("[A,B)");
+    assertThat(new ProjectUuidRange(null, null).toString()).isEqualTo("[,)");
+  }
+}
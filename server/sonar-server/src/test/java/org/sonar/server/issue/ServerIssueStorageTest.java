@@ -111,6 +111,7 @@ public class ServerIssueStorageTest {
 
     dbTester.assertDbUnit(getClass(), "should_insert_new_issues-result.xml",
       new String[]{"id", "created_at", "updated_at", "issue_change_creation_date"}, "issues", "issue_changes");
+    assertThat(dbTester.countSql("select count(*) from es_queue where doc_type='issue' and doc_id='ABCDE'")).isEqualTo(1);
   }
 
   @Test
@@ -21,6 +21,7 @@ package org.sonar.server.issue.index;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.elasticsearch.search.SearchHit;
 import org.junit.Before;
@@ -108,6 +109,26 @@ public class IssueAuthorizationIndexerTest {
     assertThat((Collection)docs.get(0).sourceAsMap().get(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS)).hasSize(0);
   }
 
+  @Test
+  public void select_authorized_project_uuids() {
+    IssueAuthorizationIndexer indexer = createIndexer();
+    indexer.index(Arrays.asList(
+      new IssueAuthorizationDao.Dto("ABC", System.currentTimeMillis()).addUser("guy").addGroup("dev"),
+      new IssueAuthorizationDao.Dto("DEF", System.currentTimeMillis()).addGroup("Anyone"),
+      new IssueAuthorizationDao.Dto("GHI", System.currentTimeMillis())));
+
+    assertThat(indexer.selectAuthorizedProjectUuids("guy", Collections.<String>emptySet())).containsOnly("ABC");
+    assertThat(indexer.selectAuthorizedProjectUuids(null, Arrays.asList("dev", "Anyone"))).containsOnly("ABC", "DEF");
+    assertThat(indexer.selectAuthorizedProjectUuids("other", Arrays.asList("other"))).isEmpty();
+
+    // permissions of project are changed
+    indexer.index(Arrays.asList(new IssueAuthorizationDao.Dto("ABC", System.currentTimeMillis()).addUser("guy")));
+    assertThat(indexer.selectAuthorizedProjectUuids(null, Arrays.asList("dev", "Anyone"))).containsOnly("DEF");
+
+    indexer.deleteProject("DEF", true);
+    assertThat(indexer.selectAuthorizedProjectUuids("guy", Arrays.asList("dev", "Anyone"))).containsOnly("ABC");
+  }
+
   private IssueAuthorizationIndexer createIndexer() {
     return new IssueAuthorizationIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
   }
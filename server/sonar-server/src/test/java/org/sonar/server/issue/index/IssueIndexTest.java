@@ -71,6 +71,7 @@ public class IssueIndexTest {
 
   IssueIndex index;
 
+  Settings settings = new Settings();
   IssueIndexer issueIndexer;
   IssueAuthorizationIndexer issueAuthorizationIndexer;
   ViewIndexer viewIndexer;
@@ -85,7 +86,7 @@ public class IssueIndexTest {
     when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("+01:00"));
     when(system.now()).thenReturn(System.currentTimeMillis());
 
-    index = new IssueIndex(tester.client(), system, userSessionRule);
+    index = new IssueIndex(tester.client(), system, userSessionRule, settings, issueAuthorizationIndexer);
 
   }
 
@@ -1193,6 +1194,36 @@ public class IssueIndexTest {
     assertThat(index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()).hasSize(1);
   }
 
+  @Test
+  public void authorized_issues_with_denormalized_authorization() {
+    settings.setProperty(IssueIndex.DENORMALIZED_AUTHORIZATION_PROPERTY, true);
+    ComponentDto project1 = ComponentTesting.newProjectDto().setKey("project1");
+    ComponentDto project2 = ComponentTesting.newProjectDto().setKey("project2");
+    ComponentDto project3 = ComponentTesting.newProjectDto().setKey("project3");
+
+    ComponentDto file1 = ComponentTesting.newFileDto(project1).setKey("file1");
+    ComponentDto file2 = ComponentTesting.newFileDto(project2).setKey("file2");
+    ComponentDto file3 = ComponentTesting.newFileDto(project3).setKey("file3");
+
+    // project1 can be seen by john and by sonar-users, project2 by max, project3 cannot be seen by anyone
+    indexIssue(IssueTesting.newDoc("ISSUE1", file1), "sonar-users", "john");
+    indexIssue(IssueTesting.newDoc("ISSUE2", file2), null, "max");
+    indexIssue(IssueTesting.newDoc("ISSUE3", file3), null, null);
+
+    userSessionRule.login("john");
+    assertThat(searchAuthorizedIssueKeys()).containsOnly("ISSUE1");
+
+    userSessionRule.login("max").setUserGroups("sonar-users");
+    assertThat(searchAuthorizedIssueKeys()).containsOnly("ISSUE1", "ISSUE2");
+
+    userSessionRule.login("another guy").setUserGroups("another group");
+    assertThat(index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()).isEmpty();
+
+    // permissions are changed
+    addIssueAuthorization(project3.uuid(), "another group", null);
+    assertThat(searchAuthorizedIssueKeys()).containsOnly("ISSUE3");
+  }
+
   @Test
   public void delete_closed_issues_from_one_project_older_than_specific_date() {
     // ARRANGE
@@ -1309,6 +1340,14 @@ public class IssueIndexTest {
     assertThat(Lists.newArrayList(index.selectIssuesForBatch(project2))).isEmpty();
   }
 
+  private List<String> searchAuthorizedIssueKeys() {
+    List<String> keys = newArrayList();
+    for (IssueDoc issue : index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()) {
+      keys.add(issue.key());
+    }
+    return keys;
+  }
+
   private void indexIssues(IssueDoc... issues) {
     issueIndexer.index(Arrays.asList(issues).iterator());
     for (IssueDoc issue : issues) {
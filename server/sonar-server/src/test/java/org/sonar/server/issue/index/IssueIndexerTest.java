@@ -30,10 +30,12 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
-import org.sonar.server.db.DbClient;
+import org.sonar.db.es.EsQueueDto;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.es.ProjectUuidRange;
 import org.sonar.test.DbTests;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @Category(DbTests.class)
@@ -118,8 +120,35 @@ public class IssueIndexerTest {
     assertThat(docs.get(0).key()).isEqualTo("ABCDE");
   }
 
+  @Test
+  public void index_queued_issues() {
+    dbTester.prepareDbUnit(getClass(), "index.xml");
+    dbTester.getDbClient().esQueueDao().insert(dbTester.getSession(), EsQueueDto.TYPE_ISSUE, asList("ABCDE", "UNKNOWN", "ABCDE"));
+    dbTester.getSession().commit();
+
+    createIndexer().indexQueue();
+
+    List<IssueDoc> docs = esTester.getDocuments("issues", "issue", IssueDoc.class);
+    assertThat(docs).hasSize(1);
+    assertThat(docs.get(0).key()).isEqualTo("ABCDE");
+    assertThat(dbTester.countRowsOfTable("es_queue")).isEqualTo(0);
+  }
+
+  @Test
+  public void index_issues_of_range_of_projects() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    long count = createIndexer().index(new ProjectUuidRange(null, "THE_PROJECT_2"));
+    esTester.client().prepareRefresh(IssueIndexDefinition.INDEX).get();
+
+    assertThat(count).isEqualTo(1L);
+    List<IssueDoc> docs = esTester.getDocuments("issues", "issue", IssueDoc.class);
+    assertThat(docs).hasSize(1);
+    assertThat(docs.get(0).key()).isEqualTo("ABCDE");
+  }
+
   private IssueIndexer createIndexer() {
-    IssueIndexer indexer = new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    IssueIndexer indexer = new IssueIndexer(dbTester.getDbClient(), esTester.client());
     indexer.setEnabled(true);
     return indexer;
   }
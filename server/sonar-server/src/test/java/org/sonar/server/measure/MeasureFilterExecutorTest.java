@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.utils.DateUtils;
@@ -34,10 +35,16 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ResourceDao;
 import org.sonar.db.component.SnapshotDto;
+import org.sonar.server.measure.index.ProjectMeasuresDoc;
+import org.sonar.server.measure.index.ProjectMeasuresIndex;
+import org.sonar.server.measure.index.ProjectMeasuresQuery;
 import org.sonar.test.DbTests;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @Category(DbTests.class)
 public class MeasureFilterExecutorTest {
@@ -57,11 +64,83 @@ public class MeasureFilterExecutorTest {
   private static final Metric METRIC_UNKNOWN = new Metric.Builder("unknown", "Unknown", Metric.ValueType.FLOAT).create().setId(4);
   @Rule
   public DbTester db = DbTester.create(System2.INSTANCE);
+  private ProjectMeasuresIndex projectMeasuresIndex = mock(ProjectMeasuresIndex.class);
+  private Settings settings = new Settings().setProperty(MeasureFilterExecutor.DISABLE_INDEX_PROPERTY, true);
   private MeasureFilterExecutor executor;
 
   @Before
   public void before() {
-    executor = new MeasureFilterExecutor(db.myBatis(), db.database(), new ResourceDao(db.myBatis(), System2.INSTANCE));
+    executor = new MeasureFilterExecutor(db.myBatis(), db.database(), new ResourceDao(db.myBatis(), System2.INSTANCE), projectMeasuresIndex, settings);
+  }
+
+  @Test
+  public void execute_filter_on_projects_with_index() throws SQLException {
+    settings.setProperty(MeasureFilterExecutor.DISABLE_INDEX_PROPERTY, false);
+    when(projectMeasuresIndex.search(any(ProjectMeasuresQuery.class))).thenReturn(newArrayList(
+      new ProjectMeasuresDoc().setProjectUuid("P1").setProjectId(PHP_PROJECT_ID).setSnapshotId(PHP_SNAPSHOT_ID)));
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"));
+
+    List<MeasureFilterRow> rows = executor.execute(filter, new MeasureFilterContext());
+
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0).getSnapshotId()).isEqualTo(PHP_SNAPSHOT_ID);
+    assertThat(rows.get(0).getResourceId()).isEqualTo(PHP_PROJECT_ID);
+    assertThat(rows.get(0).getResourceRootId()).isEqualTo(PHP_PROJECT_ID);
+  }
+
+  @Test
+  public void fall_back_to_db_if_index_fails() throws SQLException {
+    db.prepareDbUnit(getClass(), "shared.xml");
+    settings.setProperty(MeasureFilterExecutor.DISABLE_INDEX_PROPERTY, false);
+    when(projectMeasuresIndex.search(any(ProjectMeasuresQuery.class))).thenThrow(new IllegalStateException("index is not available"));
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"));
+
+    List<MeasureFilterRow> rows = executor.execute(filter, new MeasureFilterContext());
+
+    // sorted by name
+    assertThat(rows).hasSize(2);
+    verifyJavaProject(rows.get(0));
+    verifyPhpProject(rows.get(1));
+  }
+
+  @Test
+  public void convert_filter_on_projects_to_index_query() {
+    MeasureFilter filter = new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_COVERAGE, MeasureFilterCondition.Operator.GREATER_OR_EQUALS, 80.0))
+      .setFromDate(new Date(1_000L))
+      .setSortOnMetric(METRIC_LINES).setSortAsc(false);
+
+    ProjectMeasuresQuery query = MeasureFilterExecutor.toIndexQuery(filter);
+
+    assertThat(query.getMetricCriteria()).hasSize(1);
+    assertThat(query.getMetricCriteria().get(0).getMetricKey()).isEqualTo("coverage");
+    assertThat(query.getMetricCriteria().get(0).getOperator()).isEqualTo(ProjectMeasuresQuery.Operator.GTE);
+    assertThat(query.getMetricCriteria().get(0).getValue()).isEqualTo(80.0);
+    assertThat(query.getAnalysedAfter()).isEqualTo(new Date(1_000L));
+    assertThat(query.getAnalysedBefore()).isNull();
+    assertThat(query.getSort()).isEqualTo(ProjectMeasuresQuery.Sort.METRIC);
+    assertThat(query.getSortMetricKey()).isEqualTo("lines");
+    assertThat(query.isAsc()).isFalse();
+  }
+
+  @Test
+  public void do_not_convert_unsupported_filters_to_index_query() {
+    // other qualifiers
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK", "CLA")))).isNull();
+    // favourites
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setUserFavourites(true))).isNull();
+    // name
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setResourceName("php"))).isNull();
+    // text measure
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_PROFILE, MeasureFilterCondition.Operator.EQUALS, "Sonar way")))).isNull();
+    // variation
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK"))
+      .addCondition(new MeasureFilterCondition(METRIC_LINES, MeasureFilterCondition.Operator.GREATER, 10.0).setPeriod(1)))).isNull();
+    // sort on text measure
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOnMetric(METRIC_PROFILE))).isNull();
+    // sort on version
+    assertThat(MeasureFilterExecutor.toIndexQuery(new MeasureFilter().setResourceQualifiers(Arrays.asList("TRK")).setSortOn(MeasureFilterSort.Field.VERSION))).isNull();
   }
 
   @Test
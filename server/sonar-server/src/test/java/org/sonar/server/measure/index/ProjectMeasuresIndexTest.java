@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import java.util.Date;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.server.es.EsTester;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.INDEX;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES;
+import static org.sonar.server.measure.index.ProjectMeasuresQuery.Operator.EQ;
+import static org.sonar.server.measure.index.ProjectMeasuresQuery.Operator.GT;
+import static org.sonar.server.measure.index.ProjectMeasuresQuery.Operator.GTE;
+import static org.sonar.server.measure.index.ProjectMeasuresQuery.Operator.LT;
+import static org.sonar.server.measure.index.ProjectMeasuresQuery.Operator.LTE;
+
+public class ProjectMeasuresIndexTest {
+
+  @ClassRule
+  public static EsTester es = new EsTester().addDefinitions(new ProjectMeasuresIndexDefinition(new Settings()));
+
+  ProjectMeasuresIndex underTest = new ProjectMeasuresIndex(es.client());
+
+  @Before
+  public void setUp() throws Exception {
+    es.truncateIndices();
+    es.putDocuments(INDEX, TYPE_PROJECT_MEASURES,
+      newDoc(1L, "struts", "Apache Struts", 3_000L).addMeasure("ncloc", 150d).addMeasure("coverage", 80d),
+      newDoc(2L, "sonar", "SonarQube", 1_000L).addMeasure("ncloc", 5_000d).addMeasure("coverage", 60d),
+      newDoc(3L, "commons", "commons", 2_000L).addMeasure("ncloc", 1_000d));
+  }
+
+  @Test
+  public void return_all_projects_sorted_by_name() {
+    // sort is case-insensitive
+    assertThat(searchIds(new ProjectMeasuresQuery())).containsExactly(10L, 30L, 20L);
+  }
+
+  @Test
+  public void return_only_snapshot_and_project_ids() {
+    ProjectMeasuresDoc doc = underTest.search(new ProjectMeasuresQuery().addMetricCriterion("ncloc", EQ, 150d)).get(0);
+
+    assertThat(doc.projectId()).isEqualTo(1L);
+    assertThat(doc.snapshotId()).isEqualTo(10L);
+    assertThat(doc.getFields()).hasSize(2);
+  }
+
+  @Test
+  public void filter_on_measures() {
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("ncloc", GT, 150d))).containsExactly(30L, 20L);
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("ncloc", GTE, 150d))).containsExactly(10L, 30L, 20L);
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("ncloc", LT, 1_000d))).containsExactly(10L);
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("ncloc", LTE, 1_000d))).containsExactly(10L, 30L);
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("ncloc", EQ, 5_000d))).containsExactly(20L);
+  }
+
+  @Test
+  public void filter_on_value_and_key_of_the_same_measure() {
+    // commons has no coverage
+    assertThat(searchIds(new ProjectMeasuresQuery().addMetricCriterion("coverage", GT, 70d))).containsExactly(10L);
+    assertThat(searchIds(new ProjectMeasuresQuery()
+      .addMetricCriterion("coverage", GTE, 60d)
+      .addMetricCriterion("ncloc", LT, 1_000d))).containsExactly(10L);
+  }
+
+  @Test
+  public void filter_on_analysis_date() {
+    assertThat(searchIds(new ProjectMeasuresQuery().setAnalysedAfter(new Date(2_000L)))).containsExactly(10L, 30L);
+    assertThat(searchIds(new ProjectMeasuresQuery().setAnalysedBefore(new Date(2_000L)))).containsExactly(30L, 20L);
+  }
+
+  @Test
+  public void sort_by_key_and_analysis_date() {
+    assertThat(searchIds(new ProjectMeasuresQuery().setSort(ProjectMeasuresQuery.Sort.KEY))).containsExactly(30L, 20L, 10L);
+    assertThat(searchIds(new ProjectMeasuresQuery().setSort(ProjectMeasuresQuery.Sort.ANALYSIS_DATE).setAsc(false))).containsExactly(10L, 30L, 20L);
+  }
+
+  @Test
+  public void sort_by_measure_with_missing_values_last() {
+    assertThat(searchIds(new ProjectMeasuresQuery().setSortOnMetric("ncloc").setAsc(false))).containsExactly(20L, 30L, 10L);
+    assertThat(searchIds(new ProjectMeasuresQuery().setSortOnMetric("coverage"))).containsExactly(20L, 10L, 30L);
+    assertThat(searchIds(new ProjectMeasuresQuery().setSortOnMetric("coverage").setAsc(false))).containsExactly(10L, 20L, 30L);
+  }
+
+  private List<Long> searchIds(ProjectMeasuresQuery query) {
+    return Lists.transform(underTest.search(query), new Function<ProjectMeasuresDoc, Long>() {
+      @Override
+      public Long apply(@Nonnull ProjectMeasuresDoc doc) {
+        return doc.snapshotId();
+      }
+    });
+  }
+
+  private static ProjectMeasuresDoc newDoc(long projectId, String key, String name, long analysedAt) {
+    return new ProjectMeasuresDoc()
+      .setProjectUuid("UUID_" + key)
+      .setProjectId(projectId)
+      .setSnapshotId(projectId * 10)
+      .setKey(key)
+      .setName(name)
+      .setAnalysedAt(new Date(analysedAt))
+      .setUpdatedAt(new Date(analysedAt));
+  }
+}
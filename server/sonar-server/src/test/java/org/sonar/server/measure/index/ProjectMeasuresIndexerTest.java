@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.measure.index;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.server.es.EsTester;
+import org.sonar.test.DbTests;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.FIELD_PROJECT_UUID;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.INDEX;
+import static org.sonar.server.measure.index.ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES;
+
+@Category(DbTests.class)
+public class ProjectMeasuresIndexerTest {
+
+  @ClassRule
+  public static EsTester es = new EsTester().addDefinitions(new ProjectMeasuresIndexDefinition(new Settings()));
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  ProjectMeasuresIndexer underTest;
+
+  @Before
+  public void setUp() {
+    es.truncateIndices();
+    db.truncateTables();
+    underTest = new ProjectMeasuresIndexer(db.getDbClient(), es.client());
+    underTest.setEnabled(true);
+  }
+
+  @Test
+  public void index_nothing() {
+    underTest.index();
+
+    assertThat(es.countDocuments(INDEX, TYPE_PROJECT_MEASURES)).isZero();
+  }
+
+  @Test
+  public void index_last_analysis_of_projects() {
+    db.prepareDbUnit(getClass(), "shared.xml");
+
+    underTest.index();
+
+    List<ProjectMeasuresDoc> docs = es.getDocuments(INDEX, TYPE_PROJECT_MEASURES, ProjectMeasuresDoc.class);
+    assertThat(es.getDocumentFieldValues(INDEX, TYPE_PROJECT_MEASURES, FIELD_PROJECT_UUID)).containsOnly("ABCD", "CDEF");
+
+    ProjectMeasuresDoc struts = getByUuid(docs, "ABCD");
+    assertThat(struts.projectId()).isEqualTo(1L);
+    assertThat(struts.snapshotId()).isEqualTo(11L);
+    assertThat(struts.key()).isEqualTo("struts");
+    assertThat(struts.name()).isEqualTo("Apache Struts");
+    assertThat(struts.analysedAt().getTime()).isEqualTo(1_100_000_000_000L);
+    assertThat(struts.updatedAt().getTime()).isEqualTo(1_100_000_001_000L);
+    assertThat(struts.measures()).hasSize(2);
+    assertThat(getMeasure(struts, "ncloc")).isEqualTo(150d);
+    assertThat(getMeasure(struts, "coverage")).isEqualTo(80.5d);
+
+    assertThat(getByUuid(docs, "CDEF").measures()).isEmpty();
+  }
+
+  @Test
+  public void index_project() {
+    db.prepareDbUnit(getClass(), "shared.xml");
+
+    underTest.index("ABCD");
+
+    assertThat(es.getDocumentFieldValues(INDEX, TYPE_PROJECT_MEASURES, FIELD_PROJECT_UUID)).containsOnly("ABCD");
+  }
+
+  @Test
+  public void delete_project() {
+    db.prepareDbUnit(getClass(), "shared.xml");
+    underTest.index();
+
+    underTest.deleteProject("ABCD");
+
+    assertThat(es.getDocumentFieldValues(INDEX, TYPE_PROJECT_MEASURES, FIELD_PROJECT_UUID)).containsOnly("CDEF");
+  }
+
+  private static ProjectMeasuresDoc getByUuid(List<ProjectMeasuresDoc> docs, String uuid) {
+    for (ProjectMeasuresDoc doc : docs) {
+      if (doc.projectUuid().equals(uuid)) {
+        return doc;
+      }
+    }
+    throw new IllegalStateException("Document not found: " + uuid);
+  }
+
+  private static Double getMeasure(ProjectMeasuresDoc doc, String metricKey) {
+    for (Map<String, Object> measure : doc.measures()) {
+      if (metricKey.equals(measure.get(ProjectMeasuresIndexDefinition.FIELD_MEASURES_KEY))) {
+        return ((Number) measure.get(ProjectMeasuresIndexDefinition.FIELD_MEASURES_VALUE)).doubleValue();
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.server.ws.WsMetrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WebServicesMonitorTest {
+
+  WsMetrics metrics = new WsMetrics();
+  WebServicesMonitor underTest = new WebServicesMonitor(metrics);
+
+  @Test
+  public void name() {
+    assertThat(underTest.name()).isEqualTo("WebServices");
+  }
+
+  @Test
+  public void no_requests() {
+    assertThat(underTest.getRequests()).isZero();
+    assertThat(underTest.getActions()).isEmpty();
+  }
+
+  @Test
+  public void sum_metrics_of_actions() {
+    WebService.Action search = newAction("api/issues/search");
+    WebService.Action show = newAction("api/components/show");
+    metrics.record(search, TimeUnit.MILLISECONDS.toNanos(10), 200, 100);
+    metrics.record(search, TimeUnit.MILLISECONDS.toNanos(10), 500, 10);
+    metrics.record(show, TimeUnit.MILLISECONDS.toNanos(50), 404, 5);
+
+    assertThat(underTest.getRequests()).isEqualTo(3);
+    assertThat(underTest.getClientErrors()).isEqualTo(1);
+    assertThat(underTest.getServerErrors()).isEqualTo(1);
+    assertThat(underTest.getResponseBytes()).isEqualTo(115);
+
+    LinkedHashMap<String, Object> attributes = underTest.attributes();
+    assertThat(attributes).containsKeys("Requests", "Client Errors", "Server Errors", "Response Bytes");
+    assertThat(attributes.get("Requests")).isEqualTo(3L);
+
+    // sorted by decreasing total time
+    String[] actions = underTest.getActions();
+    assertThat(actions).hasSize(2);
+    assertThat(actions[0]).startsWith("api/components/show requests=1 clientErrors=1 serverErrors=0 bytes=5");
+    assertThat(actions[1]).startsWith("api/issues/search requests=2 clientErrors=0 serverErrors=1 bytes=110");
+  }
+
+  private static WebService.Action newAction(String path) {
+    WebService.Action action = mock(WebService.Action.class);
+    when(action.path()).thenReturn(path);
+    return action;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.platform.ws;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.server.ws.internal.SimpleGetRequest;
+import org.sonar.core.permission.GlobalPermissions;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsMetrics;
+import org.sonar.server.ws.WsTester;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.test.JsonAssert.assertJson;
+
+public class WsMetricsActionTest {
+  @Rule
+  public UserSessionRule userSessionRule = UserSessionRule.standalone().login("login")
+    .setName("name");
+
+  WsMetrics metrics = new WsMetrics();
+  WsMetricsAction underTest = new WsMetricsAction(metrics, userSessionRule);
+
+  @Test(expected = ForbiddenException.class)
+  public void should_fail_when_does_not_have_admin_right() {
+    userSessionRule.setGlobalPermissions(GlobalPermissions.SCAN_EXECUTION);
+
+    underTest.handle(mock(Request.class), mock(Response.class));
+  }
+
+  @Test
+  public void no_requests() {
+    userSessionRule.setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
+
+    WsTester.TestResponse response = new WsTester.TestResponse();
+    underTest.handle(new SimpleGetRequest(), response);
+
+    assertJson(response.outputAsString()).isSimilarTo("{\"actions\":[]}");
+  }
+
+  @Test
+  public void write_json() {
+    userSessionRule.setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
+    WebService.Action action = mock(WebService.Action.class);
+    when(action.path()).thenReturn("api/issues/search");
+    metrics.record(action, TimeUnit.MILLISECONDS.toNanos(3), 200, 100);
+    metrics.record(action, TimeUnit.MILLISECONDS.toNanos(3), 400, 20);
+
+    WsTester.TestResponse response = new WsTester.TestResponse();
+    underTest.handle(new SimpleGetRequest(), response);
+
+    assertJson(response.outputAsString()).isSimilarTo("{\"actions\":[" +
+      "{\"path\":\"api/issues/search\",\"requests\":2,\"clientErrors\":1,\"serverErrors\":0,\"responseBytes\":120,\"meanMs\":3,\"maxMs\":3}]}");
+  }
+}
@@ -59,11 +59,14 @@ import org.sonar.server.issue.IssueTesting;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.measure.index.ProjectMeasuresIndexDefinition;
+import org.sonar.server.measure.index.ProjectMeasuresIndexer;
 import org.sonar.server.rule.db.RuleDao;
 import org.sonar.server.test.index.TestDoc;
 import org.sonar.server.test.index.TestIndexDefinition;
 import org.sonar.server.test.index.TestIndexer;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.ws.WsTester;
 import org.sonar.test.DbTests;
 
@@ -83,7 +86,7 @@ public class BulkDeleteActionTest {
 
   @ClassRule
   public static EsTester es = new EsTester().addDefinitions(new IssueIndexDefinition(new Settings()),
-    new TestIndexDefinition(new Settings()));
+    new TestIndexDefinition(new Settings()), new ProjectMeasuresIndexDefinition(new Settings()));
 
   @Rule
   public UserSessionRule userSessionRule = UserSessionRule.standalone();
@@ -112,7 +115,9 @@ public class BulkDeleteActionTest {
         new ComponentCleanerService(dbClient,
           new IssueAuthorizationIndexer(dbClient, es.client()),
           new IssueIndexer(dbClient, es.client()),
-          new TestIndexer(dbClient, es.client()), mockResourceTypes, new ComponentFinder(dbClient)),
+          new TestIndexer(dbClient, es.client()),
+          new ProjectMeasuresIndexer(dbClient, es.client()), mockResourceTypes, new ComponentFinder(dbClient),
+          mock(AuthorizationCache.class)),
         dbClient,
         userSessionRule)));
     userSessionRule.setGlobalPermissions(GlobalPermissions.SYSTEM_ADMIN);
@@ -0,0 +1,156 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.user;
+
+import java.util.Collection;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.component.ResourceDao;
+import org.sonar.db.component.ResourceDto;
+import org.sonar.db.user.AuthorizationDao;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthorizationCacheTest {
+
+  static final String PROJECT_KEY = "com.foo:Bar";
+  static final String FILE_KEY = "com.foo:Bar:BarFile.xoo";
+
+  AuthorizationDao authorizationDao = mock(AuthorizationDao.class);
+  ResourceDao resourceDao = mock(ResourceDao.class);
+  AuthorizationCache underTest = new AuthorizationCache(authorizationDao, resourceDao);
+
+  @Test
+  public void load_authorized_projects_once_per_user_and_permission() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("P3", "P1", "P2"));
+
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P1")).isTrue();
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P3")).isTrue();
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P4")).isFalse();
+
+    verify(authorizationDao, times(1)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void do_not_keep_authorized_projects_exceeding_max_weight() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER))
+      .thenReturn(nCopies((int) AuthorizationCache.MAX_AUTHORIZED_PROJECTS, "P1"));
+
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P1")).isTrue();
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P1")).isTrue();
+
+    verify(authorizationDao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void cache_is_per_user_and_permission() {
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(1, UserRole.USER)).thenReturn(newArrayList("U1"));
+    when(authorizationDao.selectAuthorizedRootProjectsUuids(null, UserRole.USER)).thenReturn(newArrayList("U2"));
+
+    assertThat(underTest.hasProjectPermissionByUuid(1, UserRole.USER, "U1")).isTrue();
+    assertThat(underTest.hasProjectPermissionByUuid(1, UserRole.ADMIN, "U1")).isFalse();
+    // anonymous
+    assertThat(underTest.hasProjectPermissionByUuid(null, UserRole.USER, "U1")).isFalse();
+    assertThat(underTest.hasProjectPermissionByUuid(null, UserRole.USER, "U2")).isTrue();
+  }
+
+  @Test
+  public void reload_authorized_projects_when_invalidated() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("P1"));
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P2")).isFalse();
+
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenReturn(newArrayList("P1", "P2"));
+    underTest.invalidate();
+
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P2")).isTrue();
+  }
+
+  @Test
+  public void do_not_keep_authorized_projects_loaded_during_invalidation() {
+    when(authorizationDao.selectAuthorizedRootProjectsKeys(1, UserRole.USER)).thenAnswer(new Answer<Collection<String>>() {
+      private boolean revoked = false;
+
+      @Override
+      public Collection<String> answer(InvocationOnMock invocation) {
+        if (revoked) {
+          return emptyList();
+        }
+        // permission is revoked while the previous grants are being loaded
+        revoked = true;
+        underTest.invalidate();
+        return newArrayList("P1");
+      }
+    });
+
+    underTest.hasProjectPermission(1, UserRole.USER, "P1");
+
+    assertThat(underTest.hasProjectPermission(1, UserRole.USER, "P1")).isFalse();
+    verify(authorizationDao, times(2)).selectAuthorizedRootProjectsKeys(1, UserRole.USER);
+  }
+
+  @Test
+  public void do_not_keep_root_project_loaded_during_invalidation() {
+    when(resourceDao.getRootProjectByComponentKey(FILE_KEY)).thenAnswer(new Answer<ResourceDto>() {
+      @Override
+      public ResourceDto answer(InvocationOnMock invocation) {
+        underTest.invalidate();
+        return new ResourceDto().setKey(PROJECT_KEY);
+      }
+    });
+
+    underTest.getRootProjectKey(FILE_KEY);
+    underTest.getRootProjectKey(FILE_KEY);
+
+    verify(resourceDao, times(2)).getRootProjectByComponentKey(FILE_KEY);
+  }
+
+  @Test
+  public void cache_root_project_of_existing_components() {
+    when(resourceDao.getRootProjectByComponentKey(FILE_KEY)).thenReturn(new ResourceDto().setKey(PROJECT_KEY));
+
+    assertThat(underTest.getRootProjectKey(FILE_KEY)).isEqualTo(PROJECT_KEY);
+    assertThat(underTest.getRootProjectKey(FILE_KEY)).isEqualTo(PROJECT_KEY);
+    verify(resourceDao, times(1)).getRootProjectByComponentKey(FILE_KEY);
+
+    assertThat(underTest.getRootProjectKey("unknown")).isNull();
+    assertThat(underTest.getRootProjectKey("unknown")).isNull();
+    verify(resourceDao, times(2)).getRootProjectByComponentKey("unknown");
+  }
+
+  @Test
+  public void cache_project_uuid_of_existing_components() {
+    when(resourceDao.selectResource("FILE_UUID")).thenReturn(new ResourceDto().setUuid("FILE_UUID").setProjectUuid("PROJECT_UUID"));
+
+    assertThat(underTest.getProjectUuid("FILE_UUID")).isEqualTo("PROJECT_UUID");
+    assertThat(underTest.getProjectUuid("FILE_UUID")).isEqualTo("PROJECT_UUID");
+    verify(resourceDao, times(1)).selectResource("FILE_UUID");
+
+    assertThat(underTest.getProjectUuid("unknown")).isNull();
+  }
+}
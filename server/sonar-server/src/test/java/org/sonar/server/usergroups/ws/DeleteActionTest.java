@@ -40,10 +40,12 @@ import org.sonar.db.user.UserGroupDao;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.AuthorizationCache;
 import org.sonar.server.ws.WsTester;
 import org.sonar.test.DbTests;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.db.user.GroupTesting.newGroupDto;
 import static org.sonar.server.usergroups.ws.UserGroupsWsParameters.PARAM_GROUP_NAME;
 
@@ -84,7 +86,8 @@ public class DeleteActionTest {
         dbClient,
         new UserGroupFinder(dbClient),
         userSession,
-        settings)));
+        settings,
+        mock(AuthorizationCache.class))));
   }
 
   @Test
@@ -25,6 +25,9 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
@@ -77,4 +80,62 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  @Test
+  public void write_and_read_with_codec() throws Exception {
+    verifyWriteAndReadWithCodec(false);
+  }
+
+  @Test
+  public void write_and_read_with_codec_and_compression() throws Exception {
+    verifyWriteAndReadWithCodec(true);
+  }
+
+  private void verifyWriteAndReadWithCodec(boolean compressed) throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), compressed);
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    // appender without any objects
+    cache.newAppender().close();
+    cache.newAppender()
+      .append("baz")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void fail_to_encode() throws Exception {
+    DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), true);
+    try {
+      cache.newAppender().append(StringCodec.FAILURE);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("Fail to write into file");
+    }
+  }
+
+  private static class StringCodec implements DiskCacheCodec<String> {
+    private static final String FAILURE = "failure";
+
+    @Override
+    public void write(DataOutput output, String object) throws IOException {
+      if (FAILURE.equals(object)) {
+        throw new IOException("expected error");
+      }
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  }
 }
@@ -51,7 +51,8 @@ public class WebServiceEngineTest {
   @Rule
   public UserSessionRule userSessionRule = UserSessionRule.standalone();
   I18n i18n = mock(I18n.class);
-  WebServiceEngine engine = new WebServiceEngine(new WebService[] {new SystemWs()}, i18n, userSessionRule);
+  WsMetrics metrics = new WsMetrics();
+  WebServiceEngine engine = new WebServiceEngine(new WebService[] {new SystemWs()}, i18n, userSessionRule, metrics);
 
   @Before
   public void start() {
@@ -78,6 +79,30 @@ public class WebServiceEngineTest {
     assertThat(response.stream().outputAsString()).isEqualTo("good");
   }
 
+  @Test
+  public void record_metrics_of_executed_actions() {
+    engine.execute(new SimpleRequest("GET"), new ServletResponse(), "api/system", "health");
+    engine.execute(new SimpleRequest("GET"), new ServletResponse(), "api/system", "ping");
+    engine.execute(new SimpleRequest("GET"), new ServletResponse(), "api/system", "fail");
+
+    Map<String, WsActionMetrics> metricsByPath = Maps.newHashMap();
+    for (WsActionMetrics actionMetrics : metrics.getAll()) {
+      metricsByPath.put(actionMetrics.getPath(), actionMetrics);
+    }
+    assertThat(metricsByPath.keySet()).containsOnly("api/system/health", "api/system/ping", "api/system/fail");
+    assertThat(metricsByPath.get("api/system/health").getRequests()).isEqualTo(1);
+    assertThat(metricsByPath.get("api/system/health").getResponseBytes()).isEqualTo(4);
+    assertThat(metricsByPath.get("api/system/ping").getClientErrors()).isEqualTo(1);
+    assertThat(metricsByPath.get("api/system/fail").getServerErrors()).isEqualTo(1);
+  }
+
+  @Test
+  public void do_not_record_metrics_of_unknown_actions() {
+    engine.execute(new SimpleRequest("GET"), new ServletResponse(), "api/system", "xxx");
+
+    assertThat(metrics.getAll()).isEmpty();
+  }
+
   @Test
   public void execute_request_with_format_type() {
     ValidatingRequest request = new SimpleRequest("GET");
@@ -0,0 +1,119 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.ws;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WsActionMetricsTest {
+
+  WsActionMetrics underTest = new WsActionMetrics("api/issues/search");
+
+  @Test
+  public void no_requests() {
+    assertThat(underTest.getPath()).isEqualTo("api/issues/search");
+    assertThat(underTest.getRequests()).isZero();
+    assertThat(underTest.getTotalMicros()).isZero();
+    assertThat(underTest.getMaxMicros()).isZero();
+    assertThat(underTest.getPercentileMicros(99d)).isZero();
+  }
+
+  @Test
+  public void count_requests_errors_and_bytes() {
+    underTest.record(micros(10), 200, 100);
+    underTest.record(micros(20), 400, 20);
+    underTest.record(micros(30), 404, 20);
+    underTest.record(micros(40), 500, 10);
+
+    assertThat(underTest.getRequests()).isEqualTo(4);
+    assertThat(underTest.getClientErrors()).isEqualTo(2);
+    assertThat(underTest.getServerErrors()).isEqualTo(1);
+    assertThat(underTest.getResponseBytes()).isEqualTo(150);
+    assertThat(underTest.getTotalMicros()).isEqualTo(100);
+    assertThat(underTest.getMaxMicros()).isEqualTo(40);
+  }
+
+  @Test
+  public void percentiles_have_relative_error_lower_than_25_percent() {
+    for (int i = 1; i <= 1000; i++) {
+      underTest.record(micros(i * 1000), 200, 0);
+    }
+
+    assertPercentile(50d, 500_000);
+    assertPercentile(90d, 900_000);
+    assertPercentile(99d, 990_000);
+    assertThat(underTest.getPercentileMicros(100d)).isEqualTo(1_000_000);
+  }
+
+  @Test
+  public void bucket_bounds() {
+    assertThat(WsActionMetrics.bucketIndex(0)).isEqualTo(0);
+    assertThat(WsActionMetrics.bucketIndex(3)).isEqualTo(3);
+    assertThat(WsActionMetrics.bucketIndex(4)).isEqualTo(4);
+    assertThat(WsActionMetrics.bucketIndex(7)).isEqualTo(7);
+    assertThat(WsActionMetrics.bucketIndex(8)).isEqualTo(8);
+    assertThat(WsActionMetrics.bucketIndex(9)).isEqualTo(8);
+    assertThat(WsActionMetrics.bucketIndex(Long.MAX_VALUE)).isEqualTo(WsActionMetrics.bucketIndex(1L << 50));
+
+    for (long value : new long[] {0, 1, 5, 17, 1_000, 123_456, 98_765_432}) {
+      int bucket = WsActionMetrics.bucketIndex(value);
+      assertThat(WsActionMetrics.bucketUpperBound(bucket)).isGreaterThanOrEqualTo(value);
+      if (bucket > 0) {
+        assertThat(WsActionMetrics.bucketUpperBound(bucket - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  public void record_from_concurrent_threads() throws Exception {
+    final int threads = 8;
+    final int requestsPerThread = 10_000;
+    final CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < requestsPerThread; j++) {
+            underTest.record(micros(5), 200, 1);
+          }
+          latch.countDown();
+        }
+      }.start();
+    }
+    latch.await(1, TimeUnit.MINUTES);
+
+    assertThat(underTest.getRequests()).isEqualTo(threads * requestsPerThread);
+    assertThat(underTest.getResponseBytes()).isEqualTo(threads * requestsPerThread);
+    assertThat(underTest.getTotalMicros()).isEqualTo(5L * threads * requestsPerThread);
+  }
+
+  private void assertPercentile(double percentile, long expectedMicros) {
+    long micros = underTest.getPercentileMicros(percentile);
+    assertThat(micros).isGreaterThanOrEqualTo(expectedMicros);
+    assertThat(micros).isLessThanOrEqualTo((long) (expectedMicros * 1.25));
+  }
+
+  private static long micros(long micros) {
+    return TimeUnit.MICROSECONDS.toNanos(micros);
+  }
+}
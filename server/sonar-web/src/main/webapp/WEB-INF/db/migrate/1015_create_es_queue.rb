@@ -0,0 +1,35 @@
+#
+# SonarQube, open source software quality management tool.
+# Copyright (C) 2008-2014 SonarSource
+# mailto:contact AT sonarsource DOT com
+#
+# SonarQube is free software; you can redistribute it and/or
+# modify it under the terms of the GNU Lesser General Public
+# License as published by the Free Software Foundation; either
+# version 3 of the License, or (at your option) any later version.
+#
+# SonarQube is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+# Lesser General Public License for more details.
+#
+# You should have received a copy of the GNU Lesser General Public License
+# along with this program; if not, write to the Free Software Foundation,
+# Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+#
+
+#
+# SonarQube 5.4
+#
+class CreateEsQueue < ActiveRecord::Migration
+
+  def self.up
+    create_table 'es_queue' do |t|
+      t.column 'doc_type', :string, :limit => 40, :null => false
+      t.column 'doc_id', :string, :limit => 400, :null => false
+      t.column 'created_at', :big_integer, :null => false
+    end
+    add_index 'es_queue', 'doc_type', :name => 'es_queue_doc_type'
+  end
+
+end
@@ -19,154 +19,227 @@
  */
 package org.sonar.batch.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
 import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
+/**
+ * Reads an analysis report, either from the directory written by {@link BatchReportWriter} or from
+ * the single file written by {@link SegmentedReportWriter}.
+ */
 public class BatchReportReader {
 
   private final FileStructure fileStructure;
-
-  public BatchReportReader(File dir) {
-    this.fileStructure = new FileStructure(dir);
+  private final SegmentedReportReader segmentedReport;
+
+  /**
+   * @param report directory of report or segmented report file
+   */
+  public BatchReportReader(File report) {
+    if (SegmentedReportReader.isSegmentedReport(report)) {
+      this.fileStructure = new FileStructure(report.getParentFile());
+      this.segmentedReport = new SegmentedReportReader(report);
+    } else {
+      this.fileStructure = new FileStructure(report);
+      this.segmentedReport = null;
+    }
   }
 
   public BatchReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    InputStream input = openEntry(FileStructure.METADATA);
+    if (input == null) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + entryPath(FileStructure.METADATA));
     }
-    return Protobuf.read(file, BatchReport.Metadata.PARSER);
+    return Protobuf.read(input, BatchReport.Metadata.PARSER);
   }
 
   public CloseableIterator<BatchReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, BatchReport.ActiveRule.PARSER);
+    return readEntryStream(FileStructure.ACTIVE_RULES, BatchReport.ActiveRule.PARSER);
   }
 
   public CloseableIterator<BatchReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Measure.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.MEASURES, componentRef, BatchReport.Measure.PARSER);
+  }
+
+  public boolean hasChangesets(int componentRef) {
+    return hasEntry(FileStructure.fileNameFor(FileStructure.Domain.CHANGESETS, componentRef));
   }
 
   @CheckForNull
   public BatchReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, BatchReport.Changesets.PARSER);
+    InputStream input = openComponentData(FileStructure.Domain.CHANGESETS, componentRef);
+    if (input != null) {
+      return Protobuf.read(input, BatchReport.Changesets.PARSER);
     }
     return null;
   }
 
   public BatchReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    InputStream input = openComponentData(FileStructure.Domain.COMPONENT, componentRef);
+    if (input == null) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: "
+        + entryPath(FileStructure.fileNameFor(FileStructure.Domain.COMPONENT, componentRef)));
     }
-    return Protobuf.read(file, BatchReport.Component.PARSER);
+    return Protobuf.read(input, BatchReport.Component.PARSER);
   }
 
   public CloseableIterator<BatchReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Issue.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.ISSUES, componentRef, BatchReport.Issue.PARSER);
   }
 
   public CloseableIterator<BatchReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Duplication.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.DUPLICATIONS, componentRef, BatchReport.Duplication.PARSER);
   }
 
   public CloseableIterator<BatchReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef, BatchReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<BatchReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Symbol.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYMBOLS, componentRef, BatchReport.Symbol.PARSER);
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return hasEntry(FileStructure.fileNameFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef));
   }
 
   public CloseableIterator<BatchReport.SyntaxHighlighting> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.SyntaxHighlighting.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef, BatchReport.SyntaxHighlighting.PARSER);
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return hasEntry(FileStructure.fileNameFor(FileStructure.Domain.COVERAGES, componentRef));
   }
 
   public CloseableIterator<BatchReport.Coverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, BatchReport.Coverage.PARSER);
-    }
-    return emptyCloseableIterator();
+    return readComponentStream(FileStructure.Domain.COVERAGES, fileRef, BatchReport.Coverage.PARSER);
   }
 
+  /**
+   * Only supported when report is a directory. Use {@link #openComponentData(FileStructure.Domain, int)}
+   * to support both formats.
+   */
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return componentFile(FileStructure.Domain.SOURCE, fileRef);
   }
 
+  /**
+   * Only supported when report is a directory. Use {@link #openComponentData(FileStructure.Domain, int)}
+   * to support both formats.
+   */
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
+    return componentFile(FileStructure.Domain.TESTS, testFileRef);
+  }
+
+  /**
+   * Only supported when report is a directory. Use {@link #openComponentData(FileStructure.Domain, int)}
+   * to support both formats.
+   */
+  @CheckForNull
+  public File readCoverageDetails(int testFileRef) {
+    return componentFile(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
+  }
+
+  /**
+   * Raw content of the data of a component, for example the source code of a file. The caller is
+   * responsible for closing the stream.
+   *
+   * @return null if the report does not contain such data
+   */
+  @CheckForNull
+  public InputStream openComponentData(FileStructure.Domain domain, int componentRef) {
+    return openEntry(FileStructure.fileNameFor(domain, componentRef));
+  }
+
+  /**
+   * The caller is responsible for closing the stream.
+   *
+   * @return null if the report does not contain the log of analysis
+   */
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return openEntry(FileStructure.ANALYSIS_LOG);
+  }
+
+  /**
+   * Only supported when report is a directory
+   */
+  public FileStructure getFileStructure() {
+    checkDirectory();
+    return fileStructure;
+  }
+
+  public boolean isSegmented() {
+    return segmentedReport != null;
+  }
+
+  @CheckForNull
+  private File componentFile(FileStructure.Domain domain, int componentRef) {
+    checkDirectory();
+    File file = fileStructure.fileFor(domain, componentRef);
     if (fileExists(file)) {
       return file;
     }
-
     return null;
   }
 
+  private <MSG extends Message> CloseableIterator<MSG> readComponentStream(FileStructure.Domain domain, int componentRef, Parser<MSG> parser) {
+    return readEntryStream(FileStructure.fileNameFor(domain, componentRef), parser);
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readEntryStream(String name, Parser<MSG> parser) {
+    InputStream input = openEntry(name);
+    if (input != null) {
+      return Protobuf.readStream(input, parser);
+    }
+    return emptyCloseableIterator();
+  }
+
+  private boolean hasEntry(String name) {
+    if (segmentedReport != null) {
+      return segmentedReport.hasSegment(name);
+    }
+    return fileExists(new File(fileStructure.getDir(), name));
+  }
+
   @CheckForNull
-  public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
+  private InputStream openEntry(String name) {
+    if (segmentedReport != null) {
+      return segmentedReport.openSegment(name);
+    }
+    File file = new File(fileStructure.getDir(), name);
+    if (!fileExists(file)) {
+      return null;
+    }
+    try {
+      return new BufferedInputStream(new FileInputStream(file));
+    } catch (FileNotFoundException e) {
+      throw new IllegalStateException("Fail to open file " + file, e);
     }
+  }
 
-    return null;
+  private String entryPath(String name) {
+    return segmentedReport != null ? name : new File(fileStructure.getDir(), name).getPath();
   }
 
-  private static boolean fileExists(File file) {
-    return file.exists() && file.isFile();
+  private void checkDirectory() {
+    if (segmentedReport != null) {
+      throw new IllegalStateException("Report is a segmented file, its entries can't be accessed as files");
+    }
   }
 
-  public FileStructure getFileStructure() {
-    return fileStructure;
+  private static boolean fileExists(File file) {
+    return file.exists() && file.isFile();
   }
 }
@@ -22,10 +22,15 @@ package org.sonar.batch.protocol.output;
 import java.io.File;
 
 /**
- * Structure of files in the zipped report
+ * Structure of files in the report directory. The same names are used for the entries of
+ * the segmented report file, see {@link SegmentedReportWriter}.
  */
 public class FileStructure {
 
+  public static final String METADATA = "metadata.pb";
+  public static final String ANALYSIS_LOG = "analysis.log";
+  public static final String ACTIVE_RULES = "activerules.pb";
+
   public enum Domain {
     ISSUES("issues-", Domain.PB),
     COMPONENT("component-", Domain.PB),
@@ -60,19 +65,27 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, fileNameFor(domain, componentRef));
+  }
+
+  File getDir() {
+    return dir;
+  }
+
+  public static String fileNameFor(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + domain.fileSuffix;
   }
 
 }
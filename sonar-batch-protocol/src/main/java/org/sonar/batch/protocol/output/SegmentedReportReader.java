@@ -0,0 +1,192 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Random access to the segments of a report file written by {@link SegmentedReportWriter}.
+ * The file is memory-mapped, so that segments are read without being extracted nor copied. The file
+ * is not kept open once mapped.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ */
+public class SegmentedReportReader {
+
+  // files larger than 1Gb are mapped in several chunks
+  private static final int CHUNK_SIZE = 1 << 30;
+  private static final int FOOTER_SIZE = 8 + SegmentedReportWriter.MAGIC.length;
+
+  private final File file;
+  private final MappedByteBuffer[] chunks;
+  private final Map<String, long[]> segments = new HashMap<>();
+
+  public SegmentedReportReader(File file) {
+    this.file = file;
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+      FileChannel channel = randomAccessFile.getChannel();
+      long size = channel.size();
+      if (size < SegmentedReportWriter.MAGIC.length + 4 + FOOTER_SIZE) {
+        throw new IllegalStateException("Report file is truncated: " + file);
+      }
+      int chunkCount = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+      this.chunks = new MappedByteBuffer[chunkCount];
+      for (int i = 0; i < chunkCount; i++) {
+        long chunkOffset = (long) i * CHUNK_SIZE;
+        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffset, Math.min(CHUNK_SIZE, size - chunkOffset));
+      }
+      readIndex(size);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open report file " + file, e);
+    }
+  }
+
+  private void readIndex(long size) throws IOException {
+    byte[] footer = new byte[FOOTER_SIZE];
+    new DataInputStream(new MappedInputStream(size - FOOTER_SIZE, FOOTER_SIZE)).readFully(footer);
+    if (!Arrays.equals(SegmentedReportWriter.MAGIC, Arrays.copyOfRange(footer, 8, FOOTER_SIZE))) {
+      throw new IllegalStateException("Report file is truncated: " + file);
+    }
+    long indexOffset = ByteBuffer.wrap(footer).getLong();
+    DataInputStream index = new DataInputStream(new MappedInputStream(indexOffset, size - FOOTER_SIZE - indexOffset));
+    int count = index.readInt();
+    for (int i = 0; i < count; i++) {
+      String name = index.readUTF();
+      long offset = index.readLong();
+      long length = index.readLong();
+      segments.put(name, new long[] {offset, length});
+    }
+  }
+
+  /**
+   * Checks whether {@code file} has been written by {@link SegmentedReportWriter}.
+   */
+  public static boolean isSegmentedReport(File file) {
+    if (!file.isFile()) {
+      return false;
+    }
+    byte[] header = new byte[SegmentedReportWriter.MAGIC.length];
+    try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+      input.readFully(header);
+      return Arrays.equals(SegmentedReportWriter.MAGIC, header);
+    } catch (IOException e) {
+      // file is smaller than header
+      return false;
+    }
+  }
+
+  public boolean hasSegment(String name) {
+    return segments.containsKey(name);
+  }
+
+  public Set<String> getSegmentNames() {
+    return segments.keySet();
+  }
+
+  /**
+   * @return the stream of content of segment, or null if the segment does not exist. Closing the
+   * stream is not required.
+   */
+  @CheckForNull
+  public InputStream openSegment(String name) {
+    long[] segment = segments.get(name);
+    if (segment == null) {
+      return null;
+    }
+    return new MappedInputStream(segment[0], segment[1]);
+  }
+
+  /**
+   * Stream over a range of the mapped file. Each stream has its own views of the chunks, as
+   * buffers are not thread-safe.
+   */
+  private class MappedInputStream extends InputStream {
+    private long position;
+    private final long end;
+    private ByteBuffer view;
+    private int viewChunk = -1;
+
+    private MappedInputStream(long offset, long length) {
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    @Override
+    public int read() {
+      if (position >= end) {
+        return -1;
+      }
+      int b = view().get() & 0xFF;
+      position++;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= end) {
+        return -1;
+      }
+      ByteBuffer buffer = view();
+      int count = (int) Math.min(Math.min(len, buffer.remaining()), end - position);
+      buffer.get(bytes, off, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = Math.max(0L, Math.min(n, end - position));
+      position += skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    private ByteBuffer view() {
+      int chunk = (int) (position / CHUNK_SIZE);
+      if (chunk != viewChunk) {
+        view = chunks[chunk].duplicate();
+        viewChunk = chunk;
+      }
+      view.position((int) (position % CHUNK_SIZE));
+      return view;
+    }
+  }
+}
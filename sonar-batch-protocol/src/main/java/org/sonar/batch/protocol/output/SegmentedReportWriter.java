@@ -0,0 +1,181 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Writes an analysis report into a single file, which can be read without extraction by
+ * {@link SegmentedReportReader}. Each entry of the report, for example the issues of a component, is a segment
+ * appended to the file. The index of segments is written when the writer is closed.
+ * <p>
+ * Format of file:
+ * <ul>
+ *   <li>magic number (8 bytes)</li>
+ *   <li>content of segments</li>
+ *   <li>index: number of segments (int), then name (modified UTF-8), offset (long) and length (long) of each segment</li>
+ *   <li>offset of index (long)</li>
+ *   <li>magic number (8 bytes)</li>
+ * </ul>
+ * </p>
+ */
+public class SegmentedReportWriter implements Closeable {
+
+  static final byte[] MAGIC = "SQREPSEG".getBytes(StandardCharsets.UTF_8);
+
+  private final String target;
+  private final DataOutputStream output;
+  private final boolean closeOutput;
+  private final Map<String, long[]> segments = new LinkedHashMap<>();
+  private long position;
+
+  public SegmentedReportWriter(File file) {
+    this("report file " + file, openFile(file), true);
+  }
+
+  /**
+   * Writes the report to a stream, for example the body of an HTTP request, which is not closed
+   * by {@link #close()}.
+   */
+  public SegmentedReportWriter(OutputStream output) {
+    this("report stream", new BufferedOutputStream(output), false);
+  }
+
+  private SegmentedReportWriter(String target, OutputStream output, boolean closeOutput) {
+    this.target = target;
+    this.output = new DataOutputStream(output);
+    this.closeOutput = closeOutput;
+    try {
+      this.output.write(MAGIC);
+      position = MAGIC.length;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write header of " + target, e);
+    }
+  }
+
+  private static OutputStream openFile(File file) {
+    try {
+      return new BufferedOutputStream(new FileOutputStream(file));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create report file " + file, e);
+    }
+  }
+
+  /**
+   * Appends the content of {@code input}, which is not closed, as the segment {@code name}.
+   */
+  public SegmentedReportWriter appendSegment(String name, InputStream input) {
+    if (segments.containsKey(name)) {
+      throw new IllegalArgumentException("Segment already exists in report file: " + name);
+    }
+    try {
+      long length = IOUtils.copyLarge(input, output);
+      segments.put(name, new long[] {position, length});
+      position += length;
+      return this;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write segment " + name + " to " + target, e);
+    }
+  }
+
+  public SegmentedReportWriter appendFile(String name, File segmentFile) {
+    try (InputStream input = new FileInputStream(segmentFile)) {
+      return appendSegment(name, input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read file " + segmentFile, e);
+    }
+  }
+
+  /**
+   * Writes the index of segments. The file is closed, but not the stream given to {@link #SegmentedReportWriter(OutputStream)}.
+   */
+  @Override
+  public void close() {
+    try {
+      long indexOffset = position;
+      output.writeInt(segments.size());
+      for (Map.Entry<String, long[]> segment : segments.entrySet()) {
+        output.writeUTF(segment.getKey());
+        output.writeLong(segment.getValue()[0]);
+        output.writeLong(segment.getValue()[1]);
+      }
+      output.writeLong(indexOffset);
+      output.write(MAGIC);
+      output.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write index of " + target, e);
+    } finally {
+      if (closeOutput) {
+        IOUtils.closeQuietly((OutputStream) output);
+      }
+    }
+  }
+
+  /**
+   * Writes all the files of the report directory, as written by {@link BatchReportWriter}, into a single file.
+   * Files are streamed in the order of their names.
+   */
+  public static void writeDirectory(File dir, File toFile) {
+    File[] files = listFiles(dir);
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(toFile)) {
+      writer.appendFiles(files);
+    }
+  }
+
+  /**
+   * Same as {@link #writeDirectory(File, File)} but streams the report to {@code output}, which is not closed.
+   */
+  public static void writeDirectory(File dir, OutputStream output) {
+    File[] files = listFiles(dir);
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(output)) {
+      writer.appendFiles(files);
+    }
+  }
+
+  private static File[] listFiles(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      throw new IllegalStateException("Directory of analysis report does not exist: " + dir);
+    }
+    Arrays.sort(files);
+    return files;
+  }
+
+  private void appendFiles(File[] files) {
+    for (File file : files) {
+      if (file.isFile()) {
+        appendFile(file.getName(), file);
+      }
+    }
+  }
+}
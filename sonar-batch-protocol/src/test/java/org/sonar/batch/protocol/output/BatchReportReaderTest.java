@@ -385,4 +385,52 @@ public class BatchReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_segmented_report() throws Exception {
+    BatchReportWriter writer = new BatchReportWriter(dir);
+    writer.writeMetadata(BatchReport.Metadata.newBuilder().setProjectKey("PROJECT_A").setRootComponentRef(1).build());
+    writer.writeComponent(BatchReport.Component.newBuilder().setRef(1).setPath("src/main/java/Foo.java").build());
+    writer.writeComponentIssues(1, singletonList(BatchReport.Issue.newBuilder().setMsg("the message").build()));
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2");
+    File report = temp.newFile();
+    SegmentedReportWriter.writeDirectory(dir, report);
+
+    BatchReportReader segmentedReader = new BatchReportReader(report);
+
+    assertThat(segmentedReader.isSegmented()).isTrue();
+    assertThat(segmentedReader.readMetadata().getProjectKey()).isEqualTo("PROJECT_A");
+    assertThat(segmentedReader.readComponent(1).getPath()).isEqualTo("src/main/java/Foo.java");
+    try (CloseableIterator<BatchReport.Issue> issues = segmentedReader.readComponentIssues(1)) {
+      assertThat(issues.next().getMsg()).isEqualTo("the message");
+      assertThat(issues.hasNext()).isFalse();
+    }
+    assertThat(segmentedReader.readComponentIssues(UNKNOWN_COMPONENT_REF).hasNext()).isFalse();
+    assertThat(segmentedReader.hasCoverage(1)).isFalse();
+    try (InputStream inputStream = segmentedReader.openComponentData(FileStructure.Domain.SOURCE, 1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(segmentedReader.openComponentData(FileStructure.Domain.SOURCE, UNKNOWN_COMPONENT_REF)).isNull();
+    assertThat(segmentedReader.openAnalysisLog()).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void files_of_segmented_report_can_not_be_accessed() throws Exception {
+    File report = temp.newFile();
+    SegmentedReportWriter.writeDirectory(dir, report);
+
+    new BatchReportReader(report).readFileSource(1);
+  }
+
+  @Test
+  public void open_component_data_of_directory() throws Exception {
+    BatchReportWriter writer = new BatchReportWriter(dir);
+    FileUtils.write(writer.getSourceFile(1), "line1\nline2");
+
+    assertThat(underTest.isSegmented()).isFalse();
+    try (InputStream inputStream = underTest.openComponentData(FileStructure.Domain.SOURCE, 1)) {
+      assertThat(IOUtils.readLines(inputStream)).containsOnly("line1", "line2");
+    }
+    assertThat(underTest.openComponentData(FileStructure.Domain.SOURCE, UNKNOWN_COMPONENT_REF)).isNull();
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SegmentedReportWriterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void write_and_read_segments() throws Exception {
+    File file = temp.newFile();
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(file)) {
+      writer.appendSegment("foo", IOUtils.toInputStream("content of foo", StandardCharsets.UTF_8));
+      writer.appendSegment("empty", IOUtils.toInputStream("", StandardCharsets.UTF_8));
+      writer.appendSegment("bar", IOUtils.toInputStream("content of bar", StandardCharsets.UTF_8));
+    }
+
+    assertThat(SegmentedReportReader.isSegmentedReport(file)).isTrue();
+    SegmentedReportReader reader = new SegmentedReportReader(file);
+    assertThat(reader.getSegmentNames()).containsOnly("foo", "empty", "bar");
+    assertThat(reader.hasSegment("foo")).isTrue();
+    assertThat(reader.hasSegment("unknown")).isFalse();
+    assertThat(read(reader, "foo")).isEqualTo("content of foo");
+    assertThat(read(reader, "bar")).isEqualTo("content of bar");
+    assertThat(read(reader, "empty")).isEmpty();
+    assertThat(reader.openSegment("unknown")).isNull();
+  }
+
+  @Test
+  public void segments_can_be_read_concurrently() throws Exception {
+    File file = temp.newFile();
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(file)) {
+      writer.appendSegment("foo", IOUtils.toInputStream("0123456789", StandardCharsets.UTF_8));
+    }
+    SegmentedReportReader reader = new SegmentedReportReader(file);
+
+    InputStream first = reader.openSegment("foo");
+    InputStream second = reader.openSegment("foo");
+    assertThat(first.read()).isEqualTo('0');
+    assertThat(first.read()).isEqualTo('1');
+    assertThat(second.read()).isEqualTo('0');
+    assertThat(first.skip(2)).isEqualTo(2);
+    assertThat(IOUtils.toString(first, StandardCharsets.UTF_8)).isEqualTo("456789");
+    assertThat(IOUtils.toString(second, StandardCharsets.UTF_8)).isEqualTo("123456789");
+  }
+
+  @Test
+  public void write_directory() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "b.txt"), "b");
+    FileUtils.write(new File(dir, "a.txt"), "a");
+    File file = temp.newFile();
+
+    SegmentedReportWriter.writeDirectory(dir, file);
+
+    SegmentedReportReader reader = new SegmentedReportReader(file);
+    assertThat(reader.getSegmentNames()).containsOnly("a.txt", "b.txt");
+    assertThat(read(reader, "a.txt")).isEqualTo("a");
+    assertThat(read(reader, "b.txt")).isEqualTo("b");
+  }
+
+  @Test
+  public void fail_to_add_segment_twice() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Segment already exists in report file: foo");
+
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(temp.newFile())) {
+      writer.appendSegment("foo", IOUtils.toInputStream("a", StandardCharsets.UTF_8));
+      writer.appendSegment("foo", IOUtils.toInputStream("b", StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void zip_and_empty_files_are_not_segmented_reports() throws Exception {
+    File file = temp.newFile();
+    assertThat(SegmentedReportReader.isSegmentedReport(file)).isFalse();
+
+    FileUtils.write(file, "PK not a report");
+    assertThat(SegmentedReportReader.isSegmentedReport(file)).isFalse();
+    assertThat(SegmentedReportReader.isSegmentedReport(temp.newFolder())).isFalse();
+  }
+
+  @Test
+  public void fail_if_report_is_truncated() throws Exception {
+    File file = temp.newFile();
+    try (SegmentedReportWriter writer = new SegmentedReportWriter(file)) {
+      writer.appendSegment("foo", IOUtils.toInputStream("content of foo", StandardCharsets.UTF_8));
+    }
+    truncate(file, 3);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Report file is truncated");
+
+    new SegmentedReportReader(file);
+  }
+
+  private static String read(SegmentedReportReader reader, String name) throws IOException {
+    try (InputStream input = reader.openSegment(name)) {
+      return IOUtils.toString(input, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static void truncate(File file, int bytes) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(randomAccessFile.length() - bytes);
+    }
+  }
+}
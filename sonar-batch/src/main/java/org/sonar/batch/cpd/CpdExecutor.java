@@ -22,6 +22,7 @@ package org.sonar.batch.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -39,9 +40,18 @@ import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.collect.FluentIterable.from;
 
@@ -49,9 +59,17 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * <p>
+ * Detection is executed concurrently for several files, as the index is not modified anymore. Duplications
+ * are written to the report by the calling thread, in the order of the index. The timeout of a file runs from
+ * the start of its detection, so that files waiting for a free thread are not skipped.
+ * </p>
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
+  static final String TIMEOUT_PROPERTY = "sonar.cpd.timeoutPerFileInSeconds";
+  static final int DEFAULT_TIMEOUT_IN_SECONDS = 5 * 60;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
@@ -68,29 +86,90 @@ public class CpdExecutor {
   }
 
   public void execute() {
+    int threads = getThreads();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").setDaemon(true).build());
+    try {
+      execute(executorService, 2 * threads, TimeUnit.SECONDS.toMillis(getTimeoutInSeconds()));
+    } finally {
+      // detection of files that timed out may still be running
+      executorService.shutdownNow();
+    }
+  }
+
+  @VisibleForTesting
+  void execute(ExecutorService executorService, int maxPendingFiles, long timeoutMs) {
+    // the index is sorted by this call, so it is not modified anymore by the concurrent queries
     Iterator<ResourceBlocks> it = index.iterator();
 
+    // blocks of files are loaded in memory when submitted, so the number of pending files is limited
+    Deque<PendingFile> pendingFiles = new ArrayDeque<>();
     while (it.hasNext()) {
       ResourceBlocks resourceBlocks = it.next();
-      runCpdAnalysis(resourceBlocks.resourceId(), resourceBlocks.blocks());
+      BatchComponent component = batchComponentCache.get(resourceBlocks.resourceId());
+      if (component == null) {
+        LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resourceBlocks.resourceId());
+        continue;
+      }
+      if (pendingFiles.size() >= maxPendingFiles) {
+        saveDuplications(pendingFiles.removeFirst(), timeoutMs);
+      }
+      CpdAnalysis analysis = new CpdAnalysis(component, resourceBlocks.blocks());
+      pendingFiles.addLast(new PendingFile(component, analysis, executorService.submit(analysis)));
+    }
+    while (!pendingFiles.isEmpty()) {
+      saveDuplications(pendingFiles.removeFirst(), timeoutMs);
     }
   }
 
-  private void runCpdAnalysis(String resource, Collection<Block> fileBlocks) {
-    LOG.debug("Detection of duplications for {}", resource);
-
-    BatchComponent component = batchComponentCache.get(resource);
-    if (component == null) {
-      LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
+  private void saveDuplications(PendingFile pendingFile, long timeoutMs) {
+    List<CloneGroup> duplications;
+    try {
+      duplications = waitForDuplications(pendingFile, timeoutMs);
+    } catch (TimeoutException e) {
+      pendingFile.future.cancel(true);
+      LOG.warn("Timeout during detection of duplications for {}. Skipping CPD computation for it", pendingFile.component.inputComponent());
       return;
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail during detection of duplication for " + pendingFile.component.key(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during detection of duplication for " + pendingFile.component.key(), e);
     }
+    saveDuplications(pendingFile.component, duplications);
+  }
 
-    List<CloneGroup> duplications;
-    try {
-      duplications = SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail during detection of duplication for " + resource, e);
+  private static List<CloneGroup> waitForDuplications(PendingFile pendingFile, long timeoutMs)
+    throws InterruptedException, ExecutionException, TimeoutException {
+    while (true) {
+      long startedAt = pendingFile.analysis.startedAt;
+      if (startedAt != CpdAnalysis.NOT_STARTED) {
+        long remainingMs = startedAt + timeoutMs - System.currentTimeMillis();
+        return pendingFile.future.get(Math.max(remainingMs, 0L), TimeUnit.MILLISECONDS);
+      }
+      try {
+        // if detection starts meanwhile, this wait ends before its deadline
+        return pendingFile.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // detection was still waiting for a thread, or started during the wait. The deadline is checked again.
+      }
     }
+  }
+
+  private int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  private long getTimeoutInSeconds() {
+    int timeout = settings.getInt(TIMEOUT_PROPERTY);
+    return timeout > 0 ? timeout : DEFAULT_TIMEOUT_IN_SECONDS;
+  }
+
+  private List<CloneGroup> runCpdAnalysis(BatchComponent component, Collection<Block> fileBlocks) {
+    LOG.debug("Detection of duplications for {}", component.key());
+
+    List<CloneGroup> duplications = SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
 
     InputFile inputFile = (InputFile) component.inputComponent();
 
@@ -101,8 +180,38 @@ public class CpdExecutor {
     } else {
       filtered = duplications;
     }
+    return filtered;
+  }
+
+  private class CpdAnalysis implements Callable<List<CloneGroup>> {
+    private static final long NOT_STARTED = 0L;
+
+    private final BatchComponent component;
+    private final Collection<Block> fileBlocks;
+    private volatile long startedAt = NOT_STARTED;
+
+    private CpdAnalysis(BatchComponent component, Collection<Block> fileBlocks) {
+      this.component = component;
+      this.fileBlocks = fileBlocks;
+    }
+
+    @Override
+    public List<CloneGroup> call() {
+      startedAt = System.currentTimeMillis();
+      return runCpdAnalysis(component, fileBlocks);
+    }
+  }
 
-    saveDuplications(component, filtered);
+  private static class PendingFile {
+    private final BatchComponent component;
+    private final CpdAnalysis analysis;
+    private final Future<List<CloneGroup>> future;
+
+    private PendingFile(BatchComponent component, CpdAnalysis analysis, Future<List<CloneGroup>> future) {
+      this.component = component;
+      this.analysis = analysis;
+      this.future = future;
+    }
   }
 
   @VisibleForTesting
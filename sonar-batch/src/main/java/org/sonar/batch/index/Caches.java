@@ -21,6 +21,7 @@ package org.sonar.batch.index;
 
 import com.google.common.collect.Maps;
 
+import java.io.File;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -37,12 +38,18 @@ import org.sonar.api.batch.BatchSide;
 
 @BatchSide
 public class Caches implements Startable {
+  // size of the files of mapped caches, bigger values having their own file
+  private static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+
   private final Map<String, Exchange> cacheMap = Maps.newHashMap();
+  private final Map<String, MappedCache<?>> mappedCacheMap = Maps.newHashMap();
+  private final File tempDir;
   private Persistit persistit;
   private Volume volume;
 
   public Caches(CachesManager caches) {
     persistit = caches.persistit();
+    tempDir = caches.tempDir();
     doStart();
   }
 
@@ -67,7 +74,7 @@ public class Caches implements Startable {
 
   public <V> Cache<V> createCache(String cacheName) {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
+    checkNotCreated(cacheName);
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
@@ -79,8 +86,31 @@ public class Caches implements Startable {
     }
   }
 
+  /**
+   * Creates a thread-safe cache which values are encoded by the given codec and stored off-heap,
+   * in memory-mapped files.
+   *
+   * @since 5.4
+   */
+  public <V> MappedCache<V> createMappedCache(String cacheName, CacheCodec<V> codec) {
+    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    checkNotCreated(cacheName);
+    MappedCache<V> cache = new MappedCache<>(cacheName, codec, new MappedSegments(tempDir, SEGMENT_SIZE));
+    mappedCacheMap.put(cacheName, cache);
+    return cache;
+  }
+
+  private void checkNotCreated(String cacheName) {
+    Preconditions.checkState(!cacheMap.containsKey(cacheName) && !mappedCacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
+  }
+
   @Override
   public void stop() {
+    for (MappedCache<?> mappedCache : mappedCacheMap.values()) {
+      mappedCache.close();
+    }
+    mappedCacheMap.clear();
+
     for (Entry<String, Exchange> e : cacheMap.entrySet()) {
       persistit.releaseExchange(e.getValue());
     }
@@ -0,0 +1,104 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Date;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encoding of nullable fields for the implementations of {@link CacheCodec}
+ *
+ * @since 5.4
+ */
+public final class CodecUtils {
+
+  private static final int NULL_SIZE = -1;
+
+  private CodecUtils() {
+    // only static methods
+  }
+
+  /**
+   * Unlike {@link DataOutput#writeUTF(String)}, the length of the string is not limited to 64Kb,
+   * as measure data can be big
+   */
+  public static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(NULL_SIZE);
+    } else {
+      byte[] bytes = s.getBytes(UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  public static String readString(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == NULL_SIZE) {
+      return null;
+    }
+    byte[] bytes = new byte[size];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  public static void writeInteger(DataOutput output, @Nullable Integer i) throws IOException {
+    output.writeBoolean(i != null);
+    if (i != null) {
+      output.writeInt(i);
+    }
+  }
+
+  @CheckForNull
+  public static Integer readInteger(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readInt() : null;
+  }
+
+  public static void writeDouble(DataOutput output, @Nullable Double d) throws IOException {
+    output.writeBoolean(d != null);
+    if (d != null) {
+      output.writeDouble(d);
+    }
+  }
+
+  @CheckForNull
+  public static Double readDouble(DataInput input) throws IOException {
+    return input.readBoolean() ? input.readDouble() : null;
+  }
+
+  public static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    output.writeBoolean(date != null);
+    if (date != null) {
+      output.writeLong(date.getTime());
+    }
+  }
+
+  @CheckForNull
+  public static Date readDate(DataInput input) throws IOException {
+    return input.readBoolean() ? new Date(input.readLong()) : null;
+  }
+}
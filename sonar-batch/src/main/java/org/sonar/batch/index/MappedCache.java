@@ -0,0 +1,752 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Sets;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import javax.annotation.CheckForNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * <p>
+ * Cache which values are encoded by a {@link CacheCodec} and stored off-heap, in memory-mapped
+ * {@link MappedSegments}. Values are decoded directly from the mapped files.
+ * </p>
+ * <p>
+ * Keys are composed of one or several objects, like in {@link Cache}, and are sorted the same way, so that
+ * values can be iterated by their first keys. Only the addresses of values are indexed on heap, in primitive
+ * arrays grouped by first key. The other elements of keys are interned once and referenced by int ids,
+ * so that a value with a key of three elements costs 16 bytes of heap, whatever the number of values
+ * sharing the same elements.
+ * </p>
+ * <p>
+ * Unlike {@link Cache}, this cache is thread-safe. Iterations are lazy and weakly consistent: they reflect
+ * the values put after their creation or not.
+ * </p>
+ * <p>
+ * Storage is append-only: replaced or removed values are not reclaimed before the cache is closed. Interned
+ * elements of keys are not reclaimed either.
+ * </p>
+ *
+ * @since 5.4
+ */
+public class MappedCache<V> {
+
+  // same limit as Persistit values in Cache
+  static final int MAX_VALUE_SIZE = 64 * 1024 * 1024;
+
+  private static final int[] NO_IDS = new int[0];
+  // pads the ids of keys shorter than the other keys of the same node
+  private static final int NO_ELEMENT = -1;
+
+  private final String name;
+  private final CacheCodec<V> codec;
+  private final MappedSegments segments;
+  private final ConcurrentNavigableMap<Object, Node> nodesByFirstKey = new ConcurrentSkipListMap<>(ElementComparator.INSTANCE);
+  private final Dictionary dictionary = new Dictionary();
+
+  MappedCache(String name, CacheCodec<V> codec, MappedSegments segments) {
+    this.name = name;
+    this.codec = codec;
+    this.segments = segments;
+  }
+
+  public MappedCache<V> put(Object key, V value) {
+    return doPut(new Object[] {key}, value);
+  }
+
+  public MappedCache<V> put(Object firstKey, Object secondKey, V value) {
+    return doPut(new Object[] {firstKey, secondKey}, value);
+  }
+
+  public MappedCache<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
+    return doPut(new Object[] {firstKey, secondKey, thirdKey}, value);
+  }
+
+  public MappedCache<V> put(Object[] key, V value) {
+    return doPut(key, value);
+  }
+
+  private MappedCache<V> doPut(Object[] key, V value) {
+    checkArgument(key.length > 0, "Key must not be empty");
+    long address;
+    try {
+      Output output = new Output();
+      codec.write(new DataOutputStream(output), value);
+      if (output.size() > MAX_VALUE_SIZE) {
+        throw new IllegalArgumentException("Value exceeds the maximum size of " + MAX_VALUE_SIZE + " bytes: " + output.size());
+      }
+      address = segments.append(output.buffer(), output.size());
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to put element in the cache " + name, e);
+    }
+    int[] ids = dictionary.intern(key);
+    while (true) {
+      Node node = nodesByFirstKey.get(key[0]);
+      if (node == null) {
+        Node created = new Node();
+        node = nodesByFirstKey.putIfAbsent(key[0], created);
+        if (node == null) {
+          node = created;
+        }
+      }
+      synchronized (node) {
+        // otherwise the node has been removed meanwhile, and a new one is created
+        if (!node.detached) {
+          node.put(ids, address);
+          return this;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value object associated with keys, or null if not found.
+   */
+  @CheckForNull
+  public V get(Object key) {
+    return doGet(new Object[] {key});
+  }
+
+  /**
+   * Returns the value object associated with keys, or null if not found.
+   */
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey) {
+    return doGet(new Object[] {firstKey, secondKey});
+  }
+
+  /**
+   * Returns the value object associated with keys, or null if not found.
+   */
+  @CheckForNull
+  public V get(Object firstKey, Object secondKey, Object thirdKey) {
+    return doGet(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  /**
+   * Returns the value object associated with keys, or null if not found.
+   */
+  @CheckForNull
+  public V get(Object[] key) {
+    return doGet(key);
+  }
+
+  @CheckForNull
+  private V doGet(Object[] key) {
+    long address = addressOf(key);
+    return address == Node.NO_ADDRESS ? null : decode(address);
+  }
+
+  private long addressOf(Object[] key) {
+    Node node = nodesByFirstKey.get(key[0]);
+    int[] ids = dictionary.ids(key);
+    if (node == null || ids == null) {
+      return Node.NO_ADDRESS;
+    }
+    synchronized (node) {
+      int index = node.indexOf(ids);
+      return index >= 0 ? node.addresses[index] : Node.NO_ADDRESS;
+    }
+  }
+
+  private V decode(long address) {
+    try {
+      return codec.read(new DataInputStream(new BufferInputStream(segments.read(address))));
+    } catch (Exception e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  public boolean containsKey(Object key) {
+    return containsKey(new Object[] {key});
+  }
+
+  public boolean containsKey(Object firstKey, Object secondKey) {
+    return containsKey(new Object[] {firstKey, secondKey});
+  }
+
+  public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
+    return containsKey(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  public boolean containsKey(Object[] key) {
+    return addressOf(key) != Node.NO_ADDRESS;
+  }
+
+  public boolean remove(Object key) {
+    return remove(new Object[] {key});
+  }
+
+  public boolean remove(Object firstKey, Object secondKey) {
+    return remove(new Object[] {firstKey, secondKey});
+  }
+
+  public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
+    return remove(new Object[] {firstKey, secondKey, thirdKey});
+  }
+
+  public boolean remove(Object[] key) {
+    Node node = nodesByFirstKey.get(key[0]);
+    int[] ids = dictionary.ids(key);
+    if (node == null || ids == null) {
+      return false;
+    }
+    synchronized (node) {
+      boolean removed = node.remove(ids);
+      detachIfEmpty(key[0], node);
+      return removed;
+    }
+  }
+
+  /**
+   * Removes the value of the given key and all the values which keys start with it.
+   */
+  public MappedCache<V> clear(Object key) {
+    return doClear(new Object[] {key});
+  }
+
+  public MappedCache<V> clear(Object firstKey, Object secondKey) {
+    return doClear(new Object[] {firstKey, secondKey});
+  }
+
+  public MappedCache<V> clear(Object[] key) {
+    return doClear(key);
+  }
+
+  private MappedCache<V> doClear(Object[] prefix) {
+    if (prefix.length == 0) {
+      clear();
+      return this;
+    }
+    Node node = nodesByFirstKey.get(prefix[0]);
+    int[] ids = dictionary.ids(prefix);
+    if (node != null && ids != null) {
+      synchronized (node) {
+        node.removeStartingWith(ids);
+        detachIfEmpty(prefix[0], node);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Removes all the values
+   */
+  public void clear() {
+    for (Map.Entry<Object, Node> entry : nodesByFirstKey.entrySet()) {
+      Node node = entry.getValue();
+      synchronized (node) {
+        node.size = 0;
+        detachIfEmpty(entry.getKey(), node);
+      }
+    }
+  }
+
+  /**
+   * Must be called when holding the lock on node
+   */
+  private void detachIfEmpty(Object firstKey, Node node) {
+    if (node.size == 0) {
+      node.detached = true;
+      nodesByFirstKey.remove(firstKey, node);
+    }
+  }
+
+  /**
+   * Returns the set of the first keys of this cache.
+   */
+  public Set<Object> keySet() {
+    Set<Object> keys = Sets.newLinkedHashSet();
+    for (Map.Entry<Object, Node> entry : nodesByFirstKey.entrySet()) {
+      Node node = entry.getValue();
+      synchronized (node) {
+        if (node.size > 0) {
+          keys.add(entry.getKey());
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Lazy-loading values for given keys
+   */
+  public Iterable<V> values(Object firstKey, Object secondKey) {
+    return new ValueIterable(new Object[] {firstKey, secondKey});
+  }
+
+  /**
+   * Lazy-loading values for a given key
+   */
+  public Iterable<V> values(Object firstKey) {
+    return new ValueIterable(new Object[] {firstKey});
+  }
+
+  /**
+   * Lazy-loading values
+   */
+  public Iterable<V> values() {
+    return new ValueIterable(new Object[0]);
+  }
+
+  public Iterable<Cache.Entry<V>> entries() {
+    return new EntryIterable(new Object[0]);
+  }
+
+  public Iterable<Cache.Entry<V>> entries(Object firstKey) {
+    return new EntryIterable(new Object[] {firstKey});
+  }
+
+  /**
+   * Releases the storage. The cache must not be used anymore.
+   */
+  void close() {
+    nodesByFirstKey.clear();
+    dictionary.clear();
+    segments.close();
+  }
+
+  /**
+   * Copies of the entries which keys are longer than the given prefix and start with it, one slice per first key
+   */
+  private Iterator<Slice> slicesStartingWith(Object[] prefix) {
+    if (prefix.length == 0) {
+      final Iterator<Map.Entry<Object, Node>> it = nodesByFirstKey.entrySet().iterator();
+      return new AbstractIterator<Slice>() {
+        @Override
+        protected Slice computeNext() {
+          while (it.hasNext()) {
+            Map.Entry<Object, Node> entry = it.next();
+            Node node = entry.getValue();
+            synchronized (node) {
+              Slice slice = node.slice(entry.getKey(), NO_IDS, 0);
+              if (slice.size > 0) {
+                return slice;
+              }
+            }
+          }
+          return endOfData();
+        }
+      };
+    }
+    Node node = nodesByFirstKey.get(prefix[0]);
+    int[] ids = dictionary.ids(prefix);
+    if (node == null || ids == null) {
+      return Collections.emptyIterator();
+    }
+    synchronized (node) {
+      return Iterators.singletonIterator(node.slice(prefix[0], ids, prefix.length));
+    }
+  }
+
+  /**
+   * Values of a first key. Elements of keys after the first one are replaced by their ids in {@link Dictionary}.
+   * Ids of each key are stored in {@code width} consecutive ints of {@link #ids}, padded with {@link #NO_ELEMENT}
+   * if the key is shorter. Keys are sorted, in order to look for them by binary search.
+   * Access must be synchronized on the node.
+   */
+  private final class Node {
+    static final long NO_ADDRESS = -1L;
+
+    private int width = 0;
+    private int size = 0;
+    private int[] ids = new int[0];
+    private long[] addresses = new long[4];
+    private boolean detached = false;
+
+    void put(int[] keyIds, long address) {
+      if (keyIds.length > width) {
+        widen(keyIds.length);
+      }
+      int index = indexOf(keyIds);
+      if (index >= 0) {
+        addresses[index] = address;
+        return;
+      }
+      int insertion = -index - 1;
+      if (size == addresses.length) {
+        int capacity = size * 2;
+        addresses = Arrays.copyOf(addresses, capacity);
+        ids = Arrays.copyOf(ids, capacity * width);
+      }
+      System.arraycopy(addresses, insertion, addresses, insertion + 1, size - insertion);
+      System.arraycopy(ids, insertion * width, ids, (insertion + 1) * width, (size - insertion) * width);
+      addresses[insertion] = address;
+      for (int i = 0; i < width; i++) {
+        ids[insertion * width + i] = i < keyIds.length ? keyIds[i] : NO_ELEMENT;
+      }
+      size++;
+    }
+
+    private void widen(int newWidth) {
+      int[] newIds = new int[addresses.length * newWidth];
+      Arrays.fill(newIds, NO_ELEMENT);
+      for (int index = 0; index < size; index++) {
+        System.arraycopy(ids, index * width, newIds, index * newWidth, width);
+      }
+      ids = newIds;
+      width = newWidth;
+    }
+
+    /**
+     * Same contract as {@link Arrays#binarySearch(int[], int)}
+     */
+    int indexOf(int[] keyIds) {
+      if (keyIds.length > width) {
+        // if key was stored, the node would be wide enough. This key is after all the shorter keys starting with it.
+        return -size - 1;
+      }
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int result = compare(middle, keyIds);
+        if (result < 0) {
+          low = middle + 1;
+        } else if (result > 0) {
+          high = middle - 1;
+        } else {
+          return middle;
+        }
+      }
+      return -low - 1;
+    }
+
+    private int compare(int index, int[] keyIds) {
+      for (int i = 0; i < width; i++) {
+        int id1 = ids[index * width + i];
+        int id2 = i < keyIds.length ? keyIds[i] : NO_ELEMENT;
+        if (id1 != id2) {
+          if (id1 == NO_ELEMENT) {
+            return -1;
+          }
+          if (id2 == NO_ELEMENT) {
+            return 1;
+          }
+          return ElementComparator.INSTANCE.compare(dictionary.element(id1), dictionary.element(id2));
+        }
+      }
+      return 0;
+    }
+
+    boolean remove(int[] keyIds) {
+      int index = indexOf(keyIds);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(addresses, index + 1, addresses, index, size - index - 1);
+      System.arraycopy(ids, (index + 1) * width, ids, index * width, (size - index - 1) * width);
+      size--;
+      return true;
+    }
+
+    /**
+     * Removes the keys which start with the given ids, including the key equal to them
+     */
+    void removeStartingWith(int[] prefixIds) {
+      int kept = 0;
+      for (int index = 0; index < size; index++) {
+        if (!startsWith(index, prefixIds)) {
+          addresses[kept] = addresses[index];
+          System.arraycopy(ids, index * width, ids, kept * width, width);
+          kept++;
+        }
+      }
+      size = kept;
+    }
+
+    private boolean startsWith(int index, int[] prefixIds) {
+      if (prefixIds.length > width) {
+        return false;
+      }
+      for (int i = 0; i < prefixIds.length; i++) {
+        if (ids[index * width + i] != prefixIds[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int lengthOf(int index) {
+      int length = 0;
+      while (length < width && ids[index * width + length] != NO_ELEMENT) {
+        length++;
+      }
+      return length;
+    }
+
+    /**
+     * Copy of the keys which start with the given ids and have at least the given number of ids
+     */
+    Slice slice(Object firstKey, int[] prefixIds, int minLength) {
+      Slice slice = new Slice(firstKey, width, size);
+      for (int index = 0; index < size; index++) {
+        if (startsWith(index, prefixIds) && lengthOf(index) >= minLength) {
+          System.arraycopy(ids, index * width, slice.ids, slice.size * width, width);
+          slice.addresses[slice.size] = addresses[index];
+          slice.size++;
+        }
+      }
+      return slice;
+    }
+  }
+
+  private final class Slice {
+    private final Object firstKey;
+    private final int width;
+    private final int[] ids;
+    private final long[] addresses;
+    private int size = 0;
+
+    Slice(Object firstKey, int width, int capacity) {
+      this.firstKey = firstKey;
+      this.width = width;
+      this.ids = new int[capacity * width];
+      this.addresses = new long[capacity];
+    }
+
+    Object[] key(int index) {
+      int length = 0;
+      while (length < width && ids[index * width + length] != NO_ELEMENT) {
+        length++;
+      }
+      Object[] key = new Object[length + 1];
+      key[0] = firstKey;
+      for (int i = 0; i < length; i++) {
+        key[i + 1] = dictionary.element(ids[index * width + i]);
+      }
+      return key;
+    }
+  }
+
+  /**
+   * Interns the elements of keys, except the first ones which are already indexed by node.
+   * Ids are never reused.
+   */
+  private static final class Dictionary {
+    private final ConcurrentMap<Object, Integer> idsByElement = new ConcurrentHashMap<>();
+    // guarded by this for writes. The element of an id is set before the id is published.
+    private volatile Object[] elements = new Object[64];
+    private int size = 0;
+
+    int[] intern(Object[] key) {
+      int[] ids = new int[key.length - 1];
+      for (int i = 1; i < key.length; i++) {
+        ids[i - 1] = intern(key[i]);
+      }
+      return ids;
+    }
+
+    private int intern(Object element) {
+      Integer id = idsByElement.get(element);
+      if (id != null) {
+        return id;
+      }
+      synchronized (this) {
+        id = idsByElement.get(element);
+        if (id == null) {
+          if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+          }
+          elements[size] = element;
+          id = size;
+          size++;
+          idsByElement.put(element, id);
+        }
+        return id;
+      }
+    }
+
+    /**
+     * Ids of the elements of the key after the first one, or null if one of them has never been interned,
+     * so that the key can't be in cache.
+     */
+    @CheckForNull
+    int[] ids(Object[] key) {
+      int[] ids = new int[key.length - 1];
+      for (int i = 1; i < key.length; i++) {
+        Integer id = idsByElement.get(key[i]);
+        if (id == null) {
+          return null;
+        }
+        ids[i - 1] = id;
+      }
+      return ids;
+    }
+
+    Object element(int id) {
+      return elements[id];
+    }
+
+    synchronized void clear() {
+      idsByElement.clear();
+      elements = new Object[64];
+      size = 0;
+    }
+  }
+
+  //
+  // LAZY ITERABLES
+  //
+
+  private abstract class SliceIterator<T> extends AbstractIterator<T> {
+    private final Iterator<Slice> slices;
+    private Slice slice;
+    private int index;
+
+    SliceIterator(Object[] prefix) {
+      this.slices = slicesStartingWith(prefix);
+    }
+
+    @Override
+    protected T computeNext() {
+      while (slice == null || index >= slice.size) {
+        if (!slices.hasNext()) {
+          return endOfData();
+        }
+        slice = slices.next();
+        index = 0;
+      }
+      T next = get(slice, index);
+      index++;
+      return next;
+    }
+
+    abstract T get(Slice slice, int index);
+  }
+
+  private class ValueIterable implements Iterable<V> {
+    private final Object[] prefix;
+
+    ValueIterable(Object[] prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      return new SliceIterator<V>(prefix) {
+        @Override
+        V get(Slice slice, int index) {
+          return decode(slice.addresses[index]);
+        }
+      };
+    }
+  }
+
+  private class EntryIterable implements Iterable<Cache.Entry<V>> {
+    private final Object[] prefix;
+
+    EntryIterable(Object[] prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Iterator<Cache.Entry<V>> iterator() {
+      return new SliceIterator<Cache.Entry<V>>(prefix) {
+        @Override
+        Cache.Entry<V> get(Slice slice, int index) {
+          return new Cache.Entry<>(slice.key(index), decode(slice.addresses[index]));
+        }
+      };
+    }
+  }
+
+  /**
+   * Orders elements of keys. Elements of the same type are compared by their natural order, or
+   * by their string representation if they are not comparable. Elements of different types are ordered
+   * by the name of their type.
+   */
+  private enum ElementComparator implements Comparator<Object> {
+    INSTANCE;
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int compare(Object o1, Object o2) {
+      if (o1.getClass() != o2.getClass()) {
+        return o1.getClass().getName().compareTo(o2.getClass().getName());
+      }
+      if (o1 instanceof Comparable) {
+        return ((Comparable) o1).compareTo(o2);
+      }
+      return o1.toString().compareTo(o2.toString());
+    }
+  }
+
+  /**
+   * Gives access to the buffer, so that encoded values are copied only once, in mapped files
+   */
+  private static class Output extends ByteArrayOutputStream {
+    byte[] buffer() {
+      return buf;
+    }
+  }
+
+  /**
+   * Reads the mapped buffer without copying it
+   */
+  private static class BufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    BufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only storage of records in memory-mapped files. Each record is addressed by the index of its
+ * segment and its offset in the segment, packed into a long. Records are never moved nor overwritten, so
+ * they can be read concurrently without locking. Appends are serialized.
+ */
+class MappedSegments {
+
+  private static final int LENGTH_SIZE = 4;
+
+  private final File dir;
+  private final int segmentSize;
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private Segment current;
+
+  MappedSegments(File dir, int segmentSize) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Appends the first {@code length} bytes of the array and returns the address of the record
+   */
+  synchronized long append(byte[] bytes, int length) {
+    int recordSize = LENGTH_SIZE + length;
+    if (current == null || current.remaining() < recordSize) {
+      current = newSegment(Math.max(segmentSize, recordSize));
+    }
+    int offset = current.position;
+    ByteBuffer buffer = current.buffer.duplicate();
+    buffer.position(offset);
+    buffer.putInt(length);
+    buffer.put(bytes, 0, length);
+    current.position += recordSize;
+    return ((long) current.index << 32) | offset;
+  }
+
+  /**
+   * Read-only view of the record at the given address, without copying it from the mapped file
+   */
+  ByteBuffer read(long address) {
+    ByteBuffer buffer = segments.get((int) (address >>> 32)).buffer.duplicate();
+    int offset = (int) address;
+    int length = buffer.getInt(offset);
+    buffer.position(offset + LENGTH_SIZE);
+    buffer.limit(offset + LENGTH_SIZE + length);
+    return buffer.slice().asReadOnlyBuffer();
+  }
+
+  private Segment newSegment(int size) {
+    try {
+      File file = File.createTempFile("segment", ".dat", dir);
+      file.deleteOnExit();
+      try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+        // the mapping remains valid after the channel is closed
+        MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        Segment segment = new Segment(segments.size(), file, buffer);
+        segments.add(segment);
+        return segment;
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create cache segment in " + dir, e);
+    }
+  }
+
+  /**
+   * Releases the segments. Records must not be read anymore.
+   */
+  synchronized void close() {
+    for (Segment segment : segments) {
+      // mapped files can't be deleted on Windows until they are unmapped by garbage collection
+      FileUtils.deleteQuietly(segment.file);
+    }
+    segments.clear();
+    current = null;
+  }
+
+  private static class Segment {
+    private final int index;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    // only accessed when appending
+    private int position = 0;
+
+    Segment(int index, File file, MappedByteBuffer buffer) {
+      this.index = index;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    int remaining() {
+      return buffer.capacity() - position;
+    }
+  }
+}
@@ -22,8 +22,8 @@ package org.sonar.batch.issue;
 import org.sonar.batch.issue.tracking.TrackedIssue;
 
 import org.sonar.api.batch.BatchSide;
-import org.sonar.batch.index.Cache;
 import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.MappedCache;
 
 import java.util.Collection;
 
@@ -34,10 +34,10 @@ import java.util.Collection;
 public class IssueCache {
 
   // component key -> issue key -> issue
-  private final Cache<TrackedIssue> cache;
+  private final MappedCache<TrackedIssue> cache;
 
   public IssueCache(Caches caches) {
-    cache = caches.createCache("issues");
+    cache = caches.createMappedCache("issues", new TrackedIssueCodec());
   }
 
   public Iterable<TrackedIssue> byComponent(String componentKey) {
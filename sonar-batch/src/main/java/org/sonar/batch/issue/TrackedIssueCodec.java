@@ -0,0 +1,87 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.issue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.index.CacheCodec;
+import org.sonar.batch.issue.tracking.TrackedIssue;
+
+import static org.sonar.batch.index.CodecUtils.readDate;
+import static org.sonar.batch.index.CodecUtils.readDouble;
+import static org.sonar.batch.index.CodecUtils.readInteger;
+import static org.sonar.batch.index.CodecUtils.readString;
+import static org.sonar.batch.index.CodecUtils.writeDate;
+import static org.sonar.batch.index.CodecUtils.writeDouble;
+import static org.sonar.batch.index.CodecUtils.writeInteger;
+import static org.sonar.batch.index.CodecUtils.writeString;
+
+/**
+ * Binary encoding of {@link TrackedIssue} for {@link IssueCache}. As with Java serialization,
+ * line hashes of the file are not stored.
+ */
+class TrackedIssueCodec implements CacheCodec<TrackedIssue> {
+
+  @Override
+  public void write(DataOutput output, TrackedIssue issue) throws IOException {
+    writeString(output, issue.key());
+    writeString(output, issue.componentKey());
+    RuleKey ruleKey = issue.getRuleKey();
+    writeString(output, ruleKey != null ? ruleKey.toString() : null);
+    writeString(output, issue.severity());
+    writeString(output, issue.getMessage());
+    writeInteger(output, issue.startLine());
+    writeInteger(output, issue.startLineOffset());
+    writeInteger(output, issue.endLine());
+    writeInteger(output, issue.endLineOffset());
+    writeDouble(output, issue.effortToFix());
+    output.writeBoolean(issue.isNew());
+    writeDate(output, issue.creationDate());
+    writeString(output, issue.resolution());
+    writeString(output, issue.status());
+    writeString(output, issue.assignee());
+    writeString(output, issue.reporter());
+  }
+
+  @Override
+  public TrackedIssue read(DataInput input) throws IOException {
+    TrackedIssue issue = new TrackedIssue();
+    issue.setKey(readString(input));
+    issue.setComponentKey(readString(input));
+    String ruleKey = readString(input);
+    issue.setRuleKey(ruleKey != null ? RuleKey.parse(ruleKey) : null);
+    issue.setSeverity(readString(input));
+    issue.setMessage(readString(input));
+    issue.setStartLine(readInteger(input));
+    issue.setStartLineOffset(readInteger(input));
+    issue.setEndLine(readInteger(input));
+    issue.setEndLineOffset(readInteger(input));
+    issue.setEffortToFix(readDouble(input));
+    issue.setNew(input.readBoolean());
+    issue.setCreationDate(readDate(input));
+    issue.setResolution(readString(input));
+    issue.setStatus(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setReporter(readString(input));
+    return issue;
+  }
+}
@@ -21,138 +21,210 @@ package org.sonar.batch.issue.ignore.scanner;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
-import org.apache.commons.io.FileUtils;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.batch.issue.ignore.pattern.IssueExclusionPatternInitializer;
 import org.sonar.batch.issue.ignore.pattern.IssuePattern;
 import org.sonar.batch.issue.ignore.pattern.LineRange;
+import org.sonar.batch.scan.filesystem.InputFileCharHandlerFactory;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
-import java.util.Set;
-
+/**
+ * Searches the file content patterns of issue exclusions. Files are scanned while being indexed, when their content is
+ * already read for the computation of metadata. The exclusions that have been found are registered later by
+ * {@link #scan(String, File, Charset)}.
+ */
 @BatchSide
-public class IssueExclusionsRegexpScanner {
+public class IssueExclusionsRegexpScanner implements InputFileCharHandlerFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(IssueExclusionsRegexpScanner.class);
 
-  private IssueExclusionPatternInitializer exclusionPatternInitializer;
-  private List<java.util.regex.Pattern> allFilePatterns;
-  private List<DoubleRegexpMatcher> blockMatchers;
+  private final IssueExclusionPatternInitializer exclusionPatternInitializer;
+  private final MultiRegexpMatcher allFilePatterns;
+  private final List<DoubleRegexpMatcher> blockMatchers;
+  private final MultiRegexpMatcher blockBeginPatterns;
 
-  // fields to be reset at every new scan
-  private DoubleRegexpMatcher currentMatcher;
-  private int fileLength;
-  private List<LineExclusion> lineExclusions;
-  private LineExclusion currentLineExclusion;
+  // files scanned during indexing, by component key
+  private final ConcurrentMap<String, FileScanner> scannedFiles = new ConcurrentHashMap<>();
 
   public IssueExclusionsRegexpScanner(IssueExclusionPatternInitializer patternsInitializer) {
     this.exclusionPatternInitializer = patternsInitializer;
 
-    lineExclusions = Lists.newArrayList();
-    allFilePatterns = Lists.newArrayList();
+    List<java.util.regex.Pattern> allFileRegexps = Lists.newArrayList();
     blockMatchers = Lists.newArrayList();
+    List<java.util.regex.Pattern> beginBlockRegexps = Lists.newArrayList();
 
     for (IssuePattern pattern : patternsInitializer.getAllFilePatterns()) {
-      allFilePatterns.add(java.util.regex.Pattern.compile(pattern.getAllFileRegexp()));
+      allFileRegexps.add(java.util.regex.Pattern.compile(pattern.getAllFileRegexp()));
     }
     for (IssuePattern pattern : patternsInitializer.getBlockPatterns()) {
-      blockMatchers.add(new DoubleRegexpMatcher(
+      DoubleRegexpMatcher matcher = new DoubleRegexpMatcher(
         java.util.regex.Pattern.compile(pattern.getBeginBlockRegexp()),
-        java.util.regex.Pattern.compile(pattern.getEndBlockRegexp())));
+        java.util.regex.Pattern.compile(pattern.getEndBlockRegexp()));
+      blockMatchers.add(matcher);
+      beginBlockRegexps.add(matcher.firstPattern());
     }
+    // all the patterns are searched at once in each line
+    allFilePatterns = new MultiRegexpMatcher(allFileRegexps);
+    blockBeginPatterns = new MultiRegexpMatcher(beginBlockRegexps);
+  }
 
-    init();
+  @Override
+  @CheckForNull
+  public FileMetadata.CharHandler create(DefaultInputFile inputFile) {
+    if (!exclusionPatternInitializer.hasFileContentPattern()) {
+      return null;
+    }
+    FileScanner fileScanner = new FileScanner(inputFile.key());
+    scannedFiles.put(inputFile.key(), fileScanner);
+    return fileScanner;
   }
 
-  private void init() {
-    currentMatcher = null;
-    fileLength = 0;
-    lineExclusions.clear();
-    currentLineExclusion = null;
+  /**
+   * Registers the exclusions found in the file. The file is read only if it has not been scanned
+   * during indexing.
+   */
+  public void scan(String resource, File file, Charset sourcesEncoding) {
+    FileScanner fileScanner = scannedFiles.remove(resource);
+    if (fileScanner == null || !fileScanner.isCompleted()) {
+      LOG.debug("Scanning {}", resource);
+      fileScanner = new FileScanner(resource);
+      FileMetadata.readFile(file, sourcesEncoding, fileScanner);
+    }
+    fileScanner.registerExclusions();
   }
 
-  public void scan(String resource, File file, Charset sourcesEncoding) throws IOException {
-    LOG.debug("Scanning {}", resource);
-    init();
+  /**
+   * Scans the lines of a single file
+   */
+  private class FileScanner extends FileMetadata.CharHandler {
+    private final String resource;
+    // released at the end of file, as scanners are kept until exclusions are registered
+    private StringBuilder line = new StringBuilder();
+    private final List<LineExclusion> lineExclusions = Lists.newArrayList();
+    private int lineIndex = 0;
+    private DoubleRegexpMatcher currentMatcher;
+    private LineExclusion currentLineExclusion;
+    private java.util.regex.Pattern matchingAllFilePattern;
+    private boolean completed = false;
+
+    FileScanner(String resource) {
+      this.resource = resource;
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      if (matchingAllFilePattern == null) {
+        line.append(c);
+      }
+    }
+
+    @Override
+    protected void newLine() {
+      processLine();
+    }
 
-    List<String> lines = FileUtils.readLines(file, sourcesEncoding.name());
-    int lineIndex = 0;
-    for (String line : lines) {
+    @Override
+    protected void eof() {
+      // like the last line of a file ending with a line break, an empty last line is not counted
+      if (line.length() > 0) {
+        processLine();
+      }
+      if (matchingAllFilePattern == null && currentMatcher != null && !currentMatcher.hasSecondPattern()) {
+        // this will happen when there is a start block regexp but no end block regexp
+        endExclusion(lineIndex + 1);
+      }
+      line = null;
+      completed = true;
+    }
+
+    boolean isCompleted() {
+      return completed;
+    }
+
+    private void processLine() {
       lineIndex++;
-      if (line.trim().length() == 0) {
-        continue;
+      if (matchingAllFilePattern != null) {
+        // nothing more to do on this file
+        return;
+      }
+      String lineStr = line.toString();
+      line.setLength(0);
+      if (lineStr.trim().length() == 0) {
+        return;
       }
 
       // first check the single regexp patterns that can be used to totally exclude a file
-      for (java.util.regex.Pattern pattern : allFilePatterns) {
-        if (pattern.matcher(line).find()) {
-          exclusionPatternInitializer.getPatternMatcher().addPatternToExcludeResource(resource);
-          // nothing more to do on this file
-          LOG.debug("- Exclusion pattern '{}': every violation in this file will be ignored.", pattern);
-          return;
-        }
+      int allFilePattern = allFilePatterns.firstMatch(lineStr);
+      if (allFilePattern >= 0) {
+        matchingAllFilePattern = allFilePatterns.pattern(allFilePattern);
+        return;
       }
 
       // then check the double regexps if we're still here
-      checkDoubleRegexps(line, lineIndex);
+      checkDoubleRegexps(lineStr, lineIndex);
     }
 
-    if (currentMatcher != null && !currentMatcher.hasSecondPattern()) {
-      // this will happen when there is a start block regexp but no end block regexp
-      endExclusion(lineIndex + 1);
+    private void checkDoubleRegexps(String line, int lineIndex) {
+      if (currentMatcher == null) {
+        int blockMatcher = blockBeginPatterns.firstMatch(line);
+        if (blockMatcher >= 0) {
+          startExclusion(lineIndex);
+          currentMatcher = blockMatchers.get(blockMatcher);
+        }
+      } else {
+        if (currentMatcher.matchesSecondPattern(line)) {
+          endExclusion(lineIndex);
+          currentMatcher = null;
+        }
+      }
     }
 
-    // now create the new line-based pattern for this file if there are exclusions
-    fileLength = lineIndex;
-    if (!lineExclusions.isEmpty()) {
-      Set<LineRange> lineRanges = convertLineExclusionsToLineRanges();
-      LOG.debug("- Line exclusions found: {}", lineRanges);
-      exclusionPatternInitializer.getPatternMatcher().addPatternToExcludeLines(resource, lineRanges);
+    private void startExclusion(int lineIndex) {
+      currentLineExclusion = new LineExclusion(lineIndex);
+      lineExclusions.add(currentLineExclusion);
     }
-  }
 
-  private Set<LineRange> convertLineExclusionsToLineRanges() {
-    Set<LineRange> lineRanges = Sets.newHashSet();
-    for (LineExclusion lineExclusion : lineExclusions) {
-      lineRanges.add(lineExclusion.toLineRange());
+    private void endExclusion(int lineIndex) {
+      currentLineExclusion.setEnd(lineIndex);
+      currentLineExclusion = null;
     }
-    return lineRanges;
-  }
 
-  private void checkDoubleRegexps(String line, int lineIndex) {
-    if (currentMatcher == null) {
-      for (DoubleRegexpMatcher matcher : blockMatchers) {
-        if (matcher.matchesFirstPattern(line)) {
-          startExclusion(lineIndex);
-          currentMatcher = matcher;
-          break;
-        }
+    void registerExclusions() {
+      if (matchingAllFilePattern != null) {
+        exclusionPatternInitializer.getPatternMatcher().addPatternToExcludeResource(resource);
+        LOG.debug("- Exclusion pattern '{}': every violation in this file will be ignored.", matchingAllFilePattern);
+        return;
       }
-    } else {
-      if (currentMatcher.matchesSecondPattern(line)) {
-        endExclusion(lineIndex);
-        currentMatcher = null;
+
+      // now create the new line-based pattern for this file if there are exclusions
+      if (!lineExclusions.isEmpty()) {
+        Set<LineRange> lineRanges = convertLineExclusionsToLineRanges();
+        LOG.debug("- Line exclusions found: {}", lineRanges);
+        exclusionPatternInitializer.getPatternMatcher().addPatternToExcludeLines(resource, lineRanges);
       }
     }
-  }
-
-  private void startExclusion(int lineIndex) {
-    currentLineExclusion = new LineExclusion(lineIndex);
-    lineExclusions.add(currentLineExclusion);
-  }
 
-  private void endExclusion(int lineIndex) {
-    currentLineExclusion.setEnd(lineIndex);
-    currentLineExclusion = null;
+    private Set<LineRange> convertLineExclusionsToLineRanges() {
+      Set<LineRange> lineRanges = Sets.newHashSet();
+      for (LineExclusion lineExclusion : lineExclusions) {
+        lineRanges.add(lineExclusion.toLineRange(lineIndex));
+      }
+      return lineRanges;
+    }
   }
 
-  private class LineExclusion {
+  private static class LineExclusion {
 
     private int start;
     private int end;
@@ -166,7 +238,7 @@ public class IssueExclusionsRegexpScanner {
       this.end = end;
     }
 
-    public LineRange toLineRange() {
+    public LineRange toLineRange(int fileLength) {
       return new LineRange(start, end == -1 ? fileLength : end);
     }
 
@@ -182,8 +254,8 @@ public class IssueExclusionsRegexpScanner {
       this.secondPattern = secondPattern;
     }
 
-    boolean matchesFirstPattern(String line) {
-      return firstPattern.matcher(line).find();
+    java.util.regex.Pattern firstPattern() {
+      return firstPattern;
     }
 
     boolean matchesSecondPattern(String line) {
@@ -0,0 +1,289 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.issue.ignore.scanner;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+
+/**
+ * Finds which of a list of regular expressions is the first one to match a line. A literal required by
+ * each regular expression is searched at once for all the expressions, using an Aho-Corasick automaton,
+ * so that only the expressions whose literal appears in the line are evaluated.
+ */
+class MultiRegexpMatcher {
+
+  private static final String QUANTIFIERS = "?*+{";
+  // escapes followed by arguments, like \x41 or \p{Lower}
+  private static final String ESCAPES_WITH_ARGUMENTS = "0123456789xucpPkN";
+
+  private final Pattern[] patterns;
+  private final boolean[] hasLiteral;
+  // null if none of the patterns has a literal
+  @CheckForNull
+  private final LiteralMatcher literalMatcher;
+
+  MultiRegexpMatcher(List<Pattern> patterns) {
+    this.patterns = patterns.toArray(new Pattern[patterns.size()]);
+    this.hasLiteral = new boolean[this.patterns.length];
+    String[] literals = new String[this.patterns.length];
+    boolean anyLiteral = false;
+    for (int i = 0; i < literals.length; i++) {
+      literals[i] = requiredLiteral(this.patterns[i]);
+      hasLiteral[i] = literals[i] != null;
+      anyLiteral |= hasLiteral[i];
+    }
+    this.literalMatcher = anyLiteral ? new LiteralMatcher(literals) : null;
+  }
+
+  /**
+   * Index of the first pattern that is found in the line, or -1 if none
+   */
+  int firstMatch(String line) {
+    if (patterns.length == 0) {
+      return -1;
+    }
+    BitSet candidates = literalMatcher == null ? null : literalMatcher.find(line);
+    for (int i = 0; i < patterns.length; i++) {
+      if ((!hasLiteral[i] || candidates.get(i)) && patterns[i].matcher(line).find()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  Pattern pattern(int index) {
+    return patterns[index];
+  }
+
+  /**
+   * Longest string that appears in any match of the pattern, or null if it can't be safely determined.
+   * Only the characters out of any group are considered, so that alternatives and optional groups
+   * do not have to be analyzed.
+   */
+  @VisibleForTesting
+  @CheckForNull
+  static String requiredLiteral(Pattern pattern) {
+    String regexp = pattern.pattern();
+    if (pattern.flags() != 0 || regexp.contains("(?") || regexp.contains("\\Q") || containsAlternation(regexp)) {
+      return null;
+    }
+    String longest = "";
+    StringBuilder current = new StringBuilder();
+    int depth = 0;
+    int i = 0;
+    while (i < regexp.length()) {
+      char c = regexp.charAt(i);
+      Character literal = null;
+      int next = i + 1;
+      if (c == '\\') {
+        char escaped = regexp.charAt(i + 1);
+        next = i + 2;
+        if (ESCAPES_WITH_ARGUMENTS.indexOf(escaped) >= 0) {
+          return null;
+        }
+        if (!Character.isLetterOrDigit(escaped)) {
+          literal = escaped;
+        }
+      } else if (c == '[') {
+        next = endOfCharacterClass(regexp, i);
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '{') {
+        next = regexp.indexOf('}', i) + 1;
+      } else if (".^$?*+".indexOf(c) < 0) {
+        literal = c;
+      }
+
+      if (literal != null && depth == 0) {
+        char quantifier = next < regexp.length() ? regexp.charAt(next) : 0;
+        if (QUANTIFIERS.indexOf(quantifier) < 0 || quantifier == '+') {
+          current.append(literal.charValue());
+        }
+        if (QUANTIFIERS.indexOf(quantifier) >= 0) {
+          longest = longest(longest, current);
+          current.setLength(0);
+        }
+      } else {
+        longest = longest(longest, current);
+        current.setLength(0);
+      }
+      i = next;
+    }
+    longest = longest(longest, current);
+    return longest.isEmpty() ? null : longest;
+  }
+
+  private static boolean containsAlternation(String regexp) {
+    for (int i = 0; i < regexp.length(); i++) {
+      char c = regexp.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        i = endOfCharacterClass(regexp, i) - 1;
+      } else if (c == '|') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Index of the character following the class that starts at the given index
+   */
+  private static int endOfCharacterClass(String regexp, int start) {
+    int depth = 0;
+    int i = start;
+    while (i < regexp.length()) {
+      char c = regexp.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == '[') {
+        depth++;
+        // a closing bracket at first position of the class is a literal
+        if (regexp.startsWith("^]", i + 1)) {
+          i += 2;
+        } else if (regexp.startsWith("]", i + 1)) {
+          i++;
+        }
+      } else if (c == ']') {
+        depth--;
+        if (depth == 0) {
+          return i + 1;
+        }
+      }
+      i++;
+    }
+    return regexp.length();
+  }
+
+  private static String longest(String longest, CharSequence candidate) {
+    return candidate.length() > longest.length() ? candidate.toString() : longest;
+  }
+
+  /**
+   * Aho-Corasick automaton searching a set of strings in a single pass over the text
+   */
+  private static class LiteralMatcher {
+    private final Node root = new Node();
+    private final int size;
+
+    LiteralMatcher(String[] literals) {
+      this.size = literals.length;
+      for (int i = 0; i < literals.length; i++) {
+        if (literals[i] != null) {
+          root.add(literals[i], 0, i);
+        }
+      }
+      root.freeze();
+      linkFailures();
+    }
+
+    private void linkFailures() {
+      Deque<Node> queue = new ArrayDeque<>();
+      for (Node child : root.children) {
+        child.failure = root;
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        Node node = queue.poll();
+        for (int i = 0; i < node.keys.length; i++) {
+          Node child = node.children[i];
+          Node failure = node.failure;
+          while (failure != root && failure.next(node.keys[i]) == null) {
+            failure = failure.failure;
+          }
+          Node next = failure.next(node.keys[i]);
+          child.failure = next != null ? next : root;
+          child.output.or(child.failure.output);
+          queue.add(child);
+        }
+      }
+    }
+
+    /**
+     * Indices of the strings that are found in the text
+     */
+    BitSet find(String text) {
+      BitSet found = new BitSet(size);
+      Node node = root;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        Node next = node.next(c);
+        while (next == null && node != root) {
+          node = node.failure;
+          next = node.next(c);
+        }
+        node = next != null ? next : root;
+        found.or(node.output);
+      }
+      return found;
+    }
+  }
+
+  private static class Node {
+    private Map<Character, Node> childrenByKey = new TreeMap<>();
+    private char[] keys;
+    private Node[] children;
+    private Node failure;
+    private final BitSet output = new BitSet();
+
+    void add(String literal, int index, int literalId) {
+      if (index == literal.length()) {
+        output.set(literalId);
+        return;
+      }
+      Node child = childrenByKey.get(literal.charAt(index));
+      if (child == null) {
+        child = new Node();
+        childrenByKey.put(literal.charAt(index), child);
+      }
+      child.add(literal, index + 1, literalId);
+    }
+
+    void freeze() {
+      keys = new char[childrenByKey.size()];
+      children = new Node[childrenByKey.size()];
+      int i = 0;
+      for (Map.Entry<Character, Node> entry : childrenByKey.entrySet()) {
+        keys[i] = entry.getKey();
+        children[i] = entry.getValue();
+        entry.getValue().freeze();
+        i++;
+      }
+      childrenByKey = null;
+    }
+
+    @CheckForNull
+    Node next(char c) {
+      int i = Arrays.binarySearch(keys, c);
+      return i >= 0 ? children[i] : null;
+    }
+  }
+}
@@ -32,6 +32,8 @@ import org.sonar.api.scan.filesystem.PathResolver;
 import javax.annotation.CheckForNull;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 class InputFileBuilder {
 
@@ -44,9 +46,11 @@ class InputFileBuilder {
   private final DefaultModuleFileSystem fs;
   private final Settings settings;
   private final FileMetadata fileMetadata;
+  private final InputFileCharHandlerFactory[] charHandlerFactories;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata,
+    InputFileCharHandlerFactory[] charHandlerFactories) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
@@ -54,6 +58,7 @@ class InputFileBuilder {
     this.fs = fs;
     this.settings = settings;
     this.fileMetadata = fileMetadata;
+    this.charHandlerFactories = charHandlerFactories;
   }
 
   String moduleKey() {
@@ -101,11 +106,22 @@ class InputFileBuilder {
     }
     inputFile.setLanguage(lang);
 
-    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), fs.encoding()));
+    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), fs.encoding(), createCharHandlers(inputFile)));
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), inputFile.hash()));
 
     return inputFile;
   }
 
+  private FileMetadata.CharHandler[] createCharHandlers(DefaultInputFile inputFile) {
+    List<FileMetadata.CharHandler> handlers = new ArrayList<>(charHandlerFactories.length);
+    for (InputFileCharHandlerFactory factory : charHandlerFactories) {
+      FileMetadata.CharHandler handler = factory.create(inputFile);
+      if (handler != null) {
+        handlers.add(handler);
+      }
+    }
+    return handlers.toArray(new FileMetadata.CharHandler[handlers.size()]);
+  }
+
 }
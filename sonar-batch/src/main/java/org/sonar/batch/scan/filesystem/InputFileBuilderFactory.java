@@ -34,10 +34,12 @@ public class InputFileBuilderFactory {
   private final StatusDetectionFactory statusDetectionFactory;
   private final Settings settings;
   private final FileMetadata fileMetadata;
+  private final InputFileCharHandlerFactory[] charHandlerFactories;
 
   public InputFileBuilderFactory(ProjectDefinition def, PathResolver pathResolver, LanguageDetectionFactory langDetectionFactory,
-    StatusDetectionFactory statusDetectionFactory, Settings settings, FileMetadata fileMetadata) {
+    StatusDetectionFactory statusDetectionFactory, Settings settings, FileMetadata fileMetadata, InputFileCharHandlerFactory[] charHandlerFactories) {
     this.fileMetadata = fileMetadata;
+    this.charHandlerFactories = charHandlerFactories;
     this.moduleKey = def.getKeyWithBranch();
     this.pathResolver = pathResolver;
     this.langDetectionFactory = langDetectionFactory;
@@ -45,7 +47,13 @@ public class InputFileBuilderFactory {
     this.settings = settings;
   }
 
+  public InputFileBuilderFactory(ProjectDefinition def, PathResolver pathResolver, LanguageDetectionFactory langDetectionFactory,
+    StatusDetectionFactory statusDetectionFactory, Settings settings, FileMetadata fileMetadata) {
+    this(def, pathResolver, langDetectionFactory, statusDetectionFactory, settings, fileMetadata, new InputFileCharHandlerFactory[0]);
+  }
+
   InputFileBuilder create(DefaultModuleFileSystem fs) {
-    return new InputFileBuilder(moduleKey, pathResolver, langDetectionFactory.create(), statusDetectionFactory.create(), fs, settings, fileMetadata);
+    return new InputFileBuilder(moduleKey, pathResolver, langDetectionFactory.create(), statusDetectionFactory.create(), fs, settings, fileMetadata,
+      charHandlerFactories);
   }
 }
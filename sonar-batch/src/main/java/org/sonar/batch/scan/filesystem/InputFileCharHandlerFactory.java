@@ -0,0 +1,46 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.BatchSide;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+
+/**
+ * Consumer of the content of files, fed while files are indexed. Content is decoded only once for
+ * the computation of metadata and for all the handlers, so that files are not read again from disk
+ * by the components that need the whole content.
+ * <p/>
+ * Files are indexed concurrently, so implementations must be thread-safe. The handler returned for
+ * a file is used by a single thread.
+ *
+ * @since 5.4
+ */
+@BatchSide
+public interface InputFileCharHandlerFactory {
+
+  /**
+   * @return the handler to be fed with the content of the file, or {@code null} if the file is not relevant
+   */
+  @CheckForNull
+  FileMetadata.CharHandler create(DefaultInputFile inputFile);
+
+}
@@ -31,12 +31,14 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.PathPattern;
+import org.sonar.api.batch.fs.internal.PathPatternSet;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.MessageException;
 
 import javax.annotation.CheckForNull;
 
 import java.text.MessageFormat;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -53,6 +55,9 @@ class LanguageDetection {
   private final Map<String, PathPattern[]> patternsByLanguage = Maps.newLinkedHashMap();
   private final List<String> languagesToConsider = Lists.newArrayList();
   private final String forcedLanguage;
+  // patterns of all the languages to consider, compiled together
+  private final PathPatternSet languagePatterns;
+  private final String[] languageByPattern;
 
   LanguageDetection(Settings settings, LanguagesRepository languages) {
     for (Language language : languages.all()) {
@@ -84,6 +89,17 @@ class LanguageDetection {
     } else {
       languagesToConsider.addAll(patternsByLanguage.keySet());
     }
+
+    List<PathPattern> patterns = Lists.newArrayList();
+    List<String> languageKeys = Lists.newArrayList();
+    for (String languageKey : languagesToConsider) {
+      for (PathPattern pattern : patternsByLanguage.get(languageKey)) {
+        patterns.add(pattern);
+        languageKeys.add(languageKey);
+      }
+    }
+    languagePatterns = new PathPatternSet(patterns.toArray(new PathPattern[patterns.size()]));
+    languageByPattern = languageKeys.toArray(new String[languageKeys.size()]);
   }
 
   Map<String, PathPattern[]> patternsByLanguage() {
@@ -93,15 +109,16 @@ class LanguageDetection {
   @CheckForNull
   String language(InputFile inputFile) {
     String detectedLanguage = null;
-    for (String languageKey : languagesToConsider) {
-      if (isCandidateForLanguage(inputFile, languageKey)) {
-        if (detectedLanguage == null) {
-          detectedLanguage = languageKey;
-        } else {
-          // Language was already forced by another pattern
-          throw MessageException.of(MessageFormat.format("Language of file ''{0}'' can not be decided as the file matches patterns of both {1} and {2}",
-            inputFile.relativePath(), getDetails(detectedLanguage), getDetails(languageKey)));
-        }
+    // patterns are sorted by language
+    BitSet matchingPatterns = languagePatterns.match(inputFile, false);
+    for (int i = matchingPatterns.nextSetBit(0); i >= 0; i = matchingPatterns.nextSetBit(i + 1)) {
+      String languageKey = languageByPattern[i];
+      if (detectedLanguage == null) {
+        detectedLanguage = languageKey;
+      } else if (!detectedLanguage.equals(languageKey)) {
+        // Language was already forced by another pattern
+        throw MessageException.of(MessageFormat.format("Language of file ''{0}'' can not be decided as the file matches patterns of both {1} and {2}",
+          inputFile.relativePath(), getDetails(detectedLanguage), getDetails(languageKey)));
       }
     }
     if (detectedLanguage != null) {
@@ -117,18 +134,6 @@ class LanguageDetection {
     return null;
   }
 
-  private boolean isCandidateForLanguage(InputFile inputFile, String languageKey) {
-    PathPattern[] patterns = patternsByLanguage.get(languageKey);
-    if (patterns != null) {
-      for (PathPattern pathPattern : patterns) {
-        if (pathPattern.match(inputFile, false)) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
   private String getFileLangPatternPropKey(String languageKey) {
     return "sonar.lang.patterns." + languageKey;
   }
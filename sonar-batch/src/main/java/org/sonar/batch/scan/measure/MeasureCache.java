@@ -24,9 +24,9 @@ import org.sonar.api.batch.BatchSide;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Resource;
-import org.sonar.batch.index.Cache;
 import org.sonar.batch.index.Cache.Entry;
 import org.sonar.batch.index.Caches;
+import org.sonar.batch.index.MappedCache;
 
 /**
  * Cache of all measures. This cache is shared amongst all project modules.
@@ -34,11 +34,13 @@ import org.sonar.batch.index.Caches;
 @BatchSide
 public class MeasureCache {
 
-  private final Cache<Measure> cache;
+  // measures of a metric are distinguished by person. Ids of persons are database ids, so they are positive.
+  private static final int NO_PERSON = 0;
+
+  private final MappedCache<Measure> cache;
 
   public MeasureCache(Caches caches, MetricFinder metricFinder) {
-    caches.registerValueCoder(Measure.class, new MeasureValueCoder(metricFinder));
-    cache = caches.createCache("measures");
+    cache = caches.createMappedCache("measures", new MeasureCodec(metricFinder));
   }
 
   public Iterable<Entry<Measure>> entries() {
@@ -64,27 +66,19 @@ public class MeasureCache {
   public MeasureCache put(Resource resource, Measure measure) {
     Preconditions.checkNotNull(resource.getEffectiveKey());
     Preconditions.checkNotNull(measure.getMetricKey());
-    cache.put(resource.getEffectiveKey(), measure.getMetricKey(), computeMeasureKey(measure), measure);
+    cache.put(resource.getEffectiveKey(), measure.getMetricKey(), personKey(measure), measure);
     return this;
   }
 
   public boolean contains(Resource resource, Measure measure) {
     Preconditions.checkNotNull(resource.getEffectiveKey());
     Preconditions.checkNotNull(measure.getMetricKey());
-    return cache.containsKey(resource.getEffectiveKey(), measure.getMetricKey(), computeMeasureKey(measure));
+    return cache.containsKey(resource.getEffectiveKey(), measure.getMetricKey(), personKey(measure));
   }
 
-  private static String computeMeasureKey(Measure m) {
-    StringBuilder sb = new StringBuilder();
-    if (m.getMetricKey() != null) {
-      sb.append(m.getMetricKey());
-    }
-    sb.append("|");
+  private static Integer personKey(Measure m) {
     Integer personId = m.getPersonId();
-    if (personId != null) {
-      sb.append(personId);
-    }
-    return sb.toString();
+    return personId != null ? personId : NO_PERSON;
   }
 
 }
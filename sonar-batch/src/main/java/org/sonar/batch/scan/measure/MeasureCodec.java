@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.measure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.sonar.api.batch.measure.MetricFinder;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.batch.index.CacheCodec;
+
+import static org.sonar.batch.index.CodecUtils.readDate;
+import static org.sonar.batch.index.CodecUtils.readDouble;
+import static org.sonar.batch.index.CodecUtils.readInteger;
+import static org.sonar.batch.index.CodecUtils.readString;
+import static org.sonar.batch.index.CodecUtils.writeDate;
+import static org.sonar.batch.index.CodecUtils.writeDouble;
+import static org.sonar.batch.index.CodecUtils.writeInteger;
+import static org.sonar.batch.index.CodecUtils.writeString;
+
+class MeasureCodec implements CacheCodec<Measure> {
+
+  private final MetricFinder metricFinder;
+
+  public MeasureCodec(MetricFinder metricFinder) {
+    this.metricFinder = metricFinder;
+  }
+
+  @Override
+  public void write(DataOutput output, Measure m) throws IOException {
+    output.writeUTF(m.getMetricKey());
+    writeDouble(output, m.getValue());
+    writeString(output, m.getData());
+    writeString(output, m.getDescription());
+    writeString(output, m.getAlertStatus() != null ? m.getAlertStatus().name() : null);
+    writeString(output, m.getAlertText());
+    writeDate(output, m.getDate());
+    writeDouble(output, m.getVariation1());
+    writeDouble(output, m.getVariation2());
+    writeDouble(output, m.getVariation3());
+    writeDouble(output, m.getVariation4());
+    writeDouble(output, m.getVariation5());
+    writeString(output, m.getUrl());
+    writeInteger(output, m.getPersonId());
+    PersistenceMode persistenceMode = m.getPersistenceMode();
+    writeString(output, persistenceMode != null ? persistenceMode.name() : null);
+  }
+
+  @Override
+  public Measure read(DataInput input) throws IOException {
+    Measure<?> m = new Measure();
+    String metricKey = input.readUTF();
+    org.sonar.api.batch.measure.Metric metric = metricFinder.findByKey(metricKey);
+    if (metric == null) {
+      throw new IllegalStateException("Unknow metric with key " + metricKey);
+    }
+    m.setMetric((org.sonar.api.measures.Metric) metric);
+    m.setRawValue(readDouble(input));
+    m.setData(readString(input));
+    m.setDescription(readString(input));
+    String alertStatus = readString(input);
+    m.setAlertStatus(alertStatus == null ? null : Metric.Level.valueOf(alertStatus));
+    m.setAlertText(readString(input));
+    m.setDate(readDate(input));
+    m.setVariation1(readDouble(input));
+    m.setVariation2(readDouble(input));
+    m.setVariation3(readDouble(input));
+    m.setVariation4(readDouble(input));
+    m.setVariation5(readDouble(input));
+    m.setUrl(readString(input));
+    m.setPersonId(readInteger(input));
+    String persistenceMode = readString(input);
+    m.setPersistenceMode(persistenceMode == null ? null : PersistenceMode.valueOf(persistenceMode));
+    return m;
+  }
+}
@@ -33,10 +33,13 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.WildcardPatternSet;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Directory;
+import org.sonar.api.resources.File;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.WildcardPattern;
@@ -49,6 +52,7 @@ public class CoverageExclusions {
   private final Set<Metric> coverageMetrics;
   private final Set<Metric> byLineMetrics;
   private Collection<WildcardPattern> resourcePatterns;
+  private WildcardPatternSet resourcePatternSet;
 
   private final FileSystem fs;
 
@@ -181,6 +185,13 @@ public class CoverageExclusions {
   }
 
   public boolean hasMatchingPattern(Resource resource) {
+    if (resourcePatterns.isEmpty()) {
+      return false;
+    }
+    if (resource.getClass() == File.class || resource.getClass() == Directory.class) {
+      // same as Resource#matchFilePattern(String) on files and directories, but all the patterns are matched at once
+      return resourcePatternSet.matchAny(resource.getKey());
+    }
     boolean found = false;
     Iterator<WildcardPattern> iterator = resourcePatterns.iterator();
     while (!found && iterator.hasNext()) {
@@ -192,10 +203,12 @@ public class CoverageExclusions {
   @VisibleForTesting
   final void initPatterns() {
     Builder<WildcardPattern> builder = ImmutableList.builder();
-    for (String pattern : settings.getStringArray(CoreProperties.PROJECT_COVERAGE_EXCLUSIONS_PROPERTY)) {
+    String[] patterns = settings.getStringArray(CoreProperties.PROJECT_COVERAGE_EXCLUSIONS_PROPERTY);
+    for (String pattern : patterns) {
       builder.add(WildcardPattern.create(pattern));
     }
     resourcePatterns = builder.build();
+    resourcePatternSet = new WildcardPatternSet(patterns);
     log("Excluded sources for coverage: ", resourcePatterns);
   }
 
@@ -19,10 +19,15 @@
  */
 package org.sonar.batch.cpd;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.config.Settings;
@@ -38,18 +43,30 @@ import org.sonar.batch.protocol.output.BatchReport.Duplicate;
 import org.sonar.batch.protocol.output.BatchReport.Duplication;
 import org.sonar.batch.report.ReportPublisher;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
+import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 public class CpdExecutorTest {
@@ -65,6 +82,9 @@ public class CpdExecutorTest {
   @Rule
   public TemporaryFolder temp = new TemporaryFolder();
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   // private AbstractCpdEngine engine;
 
   private BatchReportReader reader;
@@ -113,6 +133,109 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void detect_duplications_of_files_concurrently() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, 2);
+    index = spy(new SonarDuplicationsIndex(publisher, componentCache, settings));
+    executor = new CpdExecutor(settings, index, publisher, componentCache);
+    index.insert((InputFile) batchComponent1.inputComponent(), newBlocks(batchComponent1.key(), 3));
+    index.insert((InputFile) batchComponent2.inputComponent(), newBlocks(batchComponent2.key(), 3));
+
+    // each file looks for the hash of its first block once. The detection of a file can not go further
+    // until the other one is also started.
+    final CountDownLatch startedFiles = new CountDownLatch(2);
+    final AtomicBoolean concurrent = new AtomicBoolean(true);
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        if (new ByteArray(0L).equals(invocation.getArguments()[0])) {
+          startedFiles.countDown();
+          if (!startedFiles.await(10, TimeUnit.SECONDS)) {
+            concurrent.set(false);
+          }
+        }
+        return invocation.callRealMethod();
+      }
+    }).when(index).getBySequenceHash(any(ByteArray.class));
+
+    executor.execute();
+
+    assertThat(concurrent.get()).isTrue();
+    Duplication[] dups = readDuplications(1);
+    assertDuplication(dups[0], 1, 4, batchComponent2.batchId(), 1, 4);
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(1);
+    assertThat(reader.readComponentDuplications(batchComponent3.batchId())).isEmpty();
+  }
+
+  @Test
+  public void skip_file_when_detection_times_out() {
+    when(index.iterator()).thenReturn(Arrays.asList(
+      new ResourceBlocks(batchComponent1.key(), newBlocks(batchComponent1.key(), 3))).iterator());
+    when(index.getBySequenceHash(any(ByteArray.class))).thenAnswer(new Answer<Collection<Block>>() {
+      @Override
+      public Collection<Block> answer(InvocationOnMock invocation) throws Throwable {
+        Thread.sleep(10000L);
+        return Collections.emptyList();
+      }
+    });
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      executor.execute(executorService, 2, 100L);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .contains("Timeout during detection of duplications for " + batchComponent1.inputComponent() + ". Skipping CPD computation for it");
+  }
+
+  @Test
+  public void detect_duplications_of_files_queued_behind_a_timed_out_file() {
+    index = spy(new SonarDuplicationsIndex(publisher, componentCache, settings));
+    executor = new CpdExecutor(settings, index, publisher, componentCache);
+    index.insert((InputFile) batchComponent1.inputComponent(), newBlocks(batchComponent1.key(), 100L, 3));
+    index.insert((InputFile) batchComponent2.inputComponent(), newBlocks(batchComponent2.key(), 3));
+    index.insert((InputFile) batchComponent3.inputComponent(), newBlocks(batchComponent3.key(), 3));
+
+    // detection of the first file times out and ignores interruption, so it keeps the only thread
+    // busy after its timeout. Other files are still waiting for this thread at that time.
+    doAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        if (new ByteArray(100L).equals(invocation.getArguments()[0])) {
+          Uninterruptibles.sleepUninterruptibly(1500L, TimeUnit.MILLISECONDS);
+        }
+        return invocation.callRealMethod();
+      }
+    }).when(index).getBySequenceHash(any(ByteArray.class));
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      executor.execute(executorService, 3, 500L);
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .containsOnly("Timeout during detection of duplications for " + batchComponent1.inputComponent() + ". Skipping CPD computation for it");
+    assertThat(reader.readComponentDuplications(batchComponent1.batchId())).isEmpty();
+    assertThat(reader.readComponentDuplications(batchComponent2.batchId())).hasSize(1);
+    assertThat(reader.readComponentDuplications(batchComponent3.batchId())).hasSize(1);
+  }
+
+  @Test
+  public void fail_with_key_of_file_when_detection_fails() {
+    when(index.iterator()).thenReturn(Arrays.asList(
+      new ResourceBlocks(batchComponent1.key(), newBlocks(batchComponent1.key(), 3))).iterator());
+    when(index.getBySequenceHash(any(ByteArray.class))).thenThrow(new IllegalArgumentException("Wrong hash"));
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail during detection of duplication for " + batchComponent1.key());
+
+    executor.execute();
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -234,6 +357,27 @@ public class CpdExecutorTest {
     assertThat(d.getDuplicate(0).getRange().getEndLine()).isEqualTo(rangeEndLine);
   }
   
+  /**
+   * Consecutive blocks of 100 tokens, with the same hashes for all resources
+   */
+  private static List<Block> newBlocks(String resourceId, int count) {
+    return newBlocks(resourceId, 0L, count);
+  }
+
+  private static List<Block> newBlocks(String resourceId, long firstHash, int count) {
+    List<Block> blocks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      blocks.add(Block.builder()
+        .setResourceId(resourceId)
+        .setBlockHash(new ByteArray(firstHash + i))
+        .setIndexInFile(i)
+        .setLines(i + 1, i + 2)
+        .setUnit(i * 10, i * 10 + 99)
+        .build());
+    }
+    return blocks;
+  }
+
   private CloneGroup newCloneGroup(ClonePart... parts) {
     return CloneGroup.builder().setLength(0).setOrigin(parts[0]).setParts(Arrays.asList(parts)).build();
   }
@@ -19,6 +19,8 @@
  */
 package org.sonar.batch.index;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Serializable;
 
 import com.persistit.exception.PersistitException;
@@ -44,6 +46,26 @@ public class CachesTest extends AbstractCachesTest {
     }
   }
 
+  @Test
+  public void should_not_create_mapped_cache_with_name_of_cache() {
+    caches.<Element>createCache("foo");
+    try {
+      caches.createMappedCache("foo", new CacheCodec<String>() {
+        @Override
+        public void write(DataOutput out, String value) {
+        }
+
+        @Override
+        public String read(DataInput in) {
+          return null;
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      // ok
+    }
+  }
+
   @Test
   public void should_clean_resources() {
     Cache<String> c = caches.<String>createCache("test1");
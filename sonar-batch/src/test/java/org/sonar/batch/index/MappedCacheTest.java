@@ -0,0 +1,214 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Iterables;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import org.sonar.batch.index.Cache.Entry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCacheTest extends AbstractCachesTest {
+
+  private static final CacheCodec<String> STRING_CODEC = new CacheCodec<String>() {
+    @Override
+    public void write(DataOutput out, String value) throws IOException {
+      out.writeUTF(value);
+    }
+
+    @Override
+    public String read(DataInput in) throws IOException {
+      return in.readUTF();
+    }
+  };
+
+  @Test
+  public void one_part_key() {
+    MappedCache<String> cache = caches.createMappedCache("capitals", STRING_CODEC);
+
+    assertThat(cache.get("france")).isNull();
+
+    cache.put("france", "paris");
+    cache.put("italy", "rome");
+    assertThat(cache.get("france")).isEqualTo("paris");
+    assertThat(cache.keySet()).containsOnly("france", "italy");
+    assertThat(cache.values()).containsExactly("paris", "rome");
+    assertThat(cache.containsKey("france")).isTrue();
+
+    cache.put("france", "lyon");
+    assertThat(cache.get("france")).isEqualTo("lyon");
+    assertThat(cache.values()).containsExactly("lyon", "rome");
+
+    assertThat(cache.remove("france")).isTrue();
+    assertThat(cache.remove("france")).isFalse();
+    assertThat(cache.get("france")).isNull();
+    assertThat(cache.containsKey("france")).isFalse();
+    assertThat(cache.keySet()).containsOnly("italy");
+
+    cache.clear();
+    assertThat(cache.values()).isEmpty();
+  }
+
+  @Test
+  public void key_being_prefix_of_another_key() {
+    MappedCache<String> cache = caches.createMappedCache("components", STRING_CODEC);
+
+    cache.put("struts-el:org.apache.strutsel.taglib.html.ELButtonTag", "the Tag");
+    cache.put("struts-el:org.apache.strutsel.taglib.html.ELButtonTagBeanInfo", "the BeanInfo");
+
+    assertThat(cache.get("struts-el:org.apache.strutsel.taglib.html.ELButtonTag")).isEqualTo("the Tag");
+    assertThat(cache.get("struts-el:org.apache.strutsel.taglib.html.ELButtonTagBeanInfo")).isEqualTo("the BeanInfo");
+  }
+
+  @Test
+  public void two_parts_key() {
+    MappedCache<String> cache = caches.createMappedCache("capitals", STRING_CODEC);
+
+    cache.put("europe", "france", "paris");
+    cache.put("europe", "italy", "rome");
+    cache.put("asia", "china", "pekin");
+    assertThat(cache.get("europe")).isNull();
+    assertThat(cache.get("europe", "france")).isEqualTo("paris");
+    assertThat(cache.keySet()).containsOnly("europe", "asia");
+    assertThat(cache.containsKey("europe")).isFalse();
+    assertThat(cache.containsKey("europe", "france")).isTrue();
+    assertThat(cache.values()).containsExactly("pekin", "paris", "rome");
+    assertThat(cache.values("europe")).containsExactly("paris", "rome");
+    assertThat(cache.values("oceania")).isEmpty();
+
+    Iterable<Entry<String>> iterable = cache.entries("europe");
+    Cache.Entry[] entries = Iterables.toArray(iterable, Cache.Entry.class);
+    assertThat(entries).hasSize(2);
+    assertThat(entries[0].key()).isEqualTo(new String[] {"europe", "france"});
+    assertThat(entries[0].value()).isEqualTo("paris");
+    assertThat(entries[1].key()).isEqualTo(new String[] {"europe", "italy"});
+    assertThat(entries[1].value()).isEqualTo("rome");
+
+    cache.clear("america");
+    assertThat(cache.keySet()).containsOnly("europe", "asia");
+    cache.clear("europe");
+    assertThat(cache.keySet()).containsOnly("asia");
+    assertThat(cache.values()).containsExactly("pekin");
+  }
+
+  @Test
+  public void three_parts_key() {
+    MappedCache<String> cache = caches.createMappedCache("places", STRING_CODEC);
+
+    cache.put("europe", "france", "paris", "eiffel tower");
+    cache.put("europe", "france", "annecy", "lake");
+    cache.put("europe", "italy", "rome", "colosseum");
+    cache.put("asia", "china", "pekin", "great wall");
+    assertThat(cache.get("europe", "france", "paris")).isEqualTo("eiffel tower");
+    assertThat(cache.values("europe", "france")).containsExactly("lake", "eiffel tower");
+    assertThat(cache.values("europe")).containsExactly("lake", "eiffel tower", "colosseum");
+
+    cache.clear("europe", "france");
+    assertThat(cache.values("europe")).containsExactly("colosseum");
+    assertThat(cache.remove("europe", "italy", "rome")).isTrue();
+    assertThat(cache.values()).containsExactly("great wall");
+  }
+
+  @Test
+  public void mixed_key_types() {
+    MappedCache<String> cache = caches.createMappedCache("lines", STRING_CODEC);
+
+    cache.put("file", 10, "ten");
+    cache.put("file", 2, "two");
+    cache.put("file", 1, "one");
+
+    assertThat(cache.get("file", 2)).isEqualTo("two");
+    assertThat(cache.values("file")).containsExactly("one", "two", "ten");
+  }
+
+  @Test
+  public void keys_of_different_lengths() {
+    MappedCache<String> cache = caches.createMappedCache("places", STRING_CODEC);
+
+    cache.put("europe", "france", "paris", "eiffel tower");
+    cache.put("europe", "france", "france");
+    cache.put("europe", "europe");
+    cache.put("europe", "italy", "italy");
+
+    assertThat(cache.get("europe")).isEqualTo("europe");
+    assertThat(cache.get("europe", "france")).isEqualTo("france");
+    assertThat(cache.get("europe", "france", "paris")).isEqualTo("eiffel tower");
+    assertThat(cache.values()).containsExactly("europe", "france", "eiffel tower", "italy");
+    assertThat(cache.values("europe")).containsExactly("france", "eiffel tower", "italy");
+    assertThat(cache.values("europe", "france")).containsExactly("eiffel tower");
+
+    cache.clear("europe", "france");
+    assertThat(cache.values()).containsExactly("europe", "italy");
+    assertThat(cache.remove("europe")).isTrue();
+    assertThat(cache.remove("europe", "italy")).isTrue();
+    assertThat(cache.keySet()).isEmpty();
+    assertThat(cache.get("europe", "france", "paris")).isNull();
+  }
+
+  @Test
+  public void values_spanning_several_segments() {
+    MappedCache<String> cache = caches.createMappedCache("big", STRING_CODEC);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 60_000; i++) {
+      sb.append('a');
+    }
+
+    for (int i = 0; i < 1_000; i++) {
+      cache.put("key" + i, sb.toString());
+    }
+
+    assertThat(cache.get("key999")).isEqualTo(sb.toString());
+    assertThat(cache.values()).hasSize(1_000);
+  }
+
+  @Test
+  public void concurrent_puts() throws Exception {
+    final MappedCache<String> cache = caches.createMappedCache("concurrent", STRING_CODEC);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 1_000; i++) {
+            cache.put(thread, i, "value" + thread + "_" + i);
+            assertThat(cache.get(thread, i)).isEqualTo("value" + thread + "_" + i);
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertThat(cache.values()).hasSize(4_000);
+    assertThat(cache.get(3, 999)).isEqualTo("value3_999");
+  }
+}
@@ -147,7 +147,7 @@ public class IssueExclusionsLoaderTest {
       .setType(InputFile.Type.MAIN));
 
     when(exclusionPatternInitializer.hasFileContentPattern()).thenReturn(true);
-    doThrow(new IOException("BUG")).when(regexpScanner).scan("polop:src/Foo.php", phpFile1, UTF_8);
+    doThrow(new IllegalStateException("BUG")).when(regexpScanner).scan("polop:src/Foo.php", phpFile1, UTF_8);
 
     thrown.expect(IllegalStateException.class);
     thrown.expectMessage("Unable to read the source file");
@@ -25,6 +25,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.batch.issue.ignore.pattern.IssueExclusionPatternInitializer;
 import org.sonar.batch.issue.ignore.pattern.IssuePattern;
 import org.sonar.batch.issue.ignore.pattern.LineRange;
@@ -35,9 +37,11 @@ import java.util.Arrays;
 import java.util.Set;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class IssueExclusionsRegexpScannerTest {
@@ -153,6 +157,32 @@ public class IssueExclusionsRegexpScannerTest {
     verifyNoMoreInteractions(patternsInitializer);
   }
 
+  @Test
+  public void shouldNotScanWhileIndexingIfNoFileContentPattern() {
+    when(patternsInitializer.hasFileContentPattern()).thenReturn(false);
+
+    assertThat(regexpScanner.create(new DefaultInputFile("polop", "src/Foo.java"))).isNull();
+  }
+
+  @Test
+  public void shouldRegisterExclusionsFoundWhileIndexing() throws Exception {
+    when(patternsInitializer.hasFileContentPattern()).thenReturn(true);
+    File file = new File(Resources.getResource(
+      "org/sonar/batch/issue/ignore/scanner/IssueExclusionsRegexpScannerTest/file-with-double-regexp.txt").toURI());
+    DefaultInputFile inputFile = new DefaultInputFile("polop", "src/Foo.java");
+
+    FileMetadata.CharHandler handler = regexpScanner.create(inputFile);
+    FileMetadata.readFile(file, UTF_8, handler);
+    verifyZeroInteractions(patternMatcher);
+
+    // file is not read again
+    regexpScanner.scan(inputFile.key(), new File("does/not/exist"), UTF_8);
+
+    Set<LineRange> lineRanges = Sets.newHashSet();
+    lineRanges.add(new LineRange(21, 25));
+    verify(patternMatcher, times(1)).addPatternToExcludeLines(inputFile.key(), lineRanges);
+  }
+
   @Test
   public void shouldAddPatternToExcludeLinesWithMess() throws Exception {
     regexpScanner.scan(javaFile, new File(Resources.getResource(
@@ -0,0 +1,108 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.issue.ignore.scanner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultiRegexpMatcherTest {
+
+  @Test
+  public void return_first_matching_pattern() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(
+      Pattern.compile("// SONAR-OFF"),
+      Pattern.compile("@Generated|DO NOT EDIT"),
+      Pattern.compile("^\\s*// FOO-OFF"),
+      Pattern.compile("OFF")));
+
+    assertThat(matcher.firstMatch("  // SONAR-OFF")).isEqualTo(0);
+    assertThat(matcher.firstMatch("// DO NOT EDIT, SONAR-OFF")).isEqualTo(1);
+    assertThat(matcher.firstMatch("  // FOO-OFF")).isEqualTo(2);
+    assertThat(matcher.firstMatch("int i; // FOO-OFF")).isEqualTo(3);
+    assertThat(matcher.firstMatch("int i;")).isEqualTo(-1);
+    assertThat(matcher.firstMatch("")).isEqualTo(-1);
+    assertThat(matcher.pattern(2).pattern()).isEqualTo("^\\s*// FOO-OFF");
+  }
+
+  @Test
+  public void match_patterns_having_common_literals() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(
+      Pattern.compile("abab"),
+      Pattern.compile("bab"),
+      Pattern.compile("bc")));
+
+    assertThat(matcher.firstMatch("aabab")).isEqualTo(0);
+    assertThat(matcher.firstMatch("abbab")).isEqualTo(1);
+    assertThat(matcher.firstMatch("ababc")).isEqualTo(0);
+    assertThat(matcher.firstMatch("abbc")).isEqualTo(2);
+    assertThat(matcher.firstMatch("abba")).isEqualTo(-1);
+  }
+
+  @Test
+  public void match_nothing_if_no_patterns() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Collections.<Pattern>emptyList());
+    assertThat(matcher.firstMatch("foo")).isEqualTo(-1);
+  }
+
+  @Test
+  public void match_patterns_without_literals() {
+    MultiRegexpMatcher matcher = new MultiRegexpMatcher(Arrays.asList(
+      Pattern.compile("foo|bar"),
+      Pattern.compile(".*")));
+
+    assertThat(matcher.firstMatch("a bar")).isEqualTo(0);
+    assertThat(matcher.firstMatch("baz")).isEqualTo(1);
+  }
+
+  @Test
+  public void extract_required_literal() {
+    assertThat(literal("// NOSONAR")).isEqualTo("// NOSONAR");
+    assertThat(literal("^\\s*@Generated\\b")).isEqualTo("@Generated");
+    assertThat(literal("\\.java$")).isEqualTo(".java");
+    assertThat(literal("ab+c")).isEqualTo("ab");
+    assertThat(literal("a?bc")).isEqualTo("bc");
+    assertThat(literal("fo{2}bar")).isEqualTo("bar");
+    assertThat(literal("(foo)?bar")).isEqualTo("bar");
+    assertThat(literal("[ab]cd")).isEqualTo("cd");
+    assertThat(literal("x[\\]]yz")).isEqualTo("yz");
+    assertThat(literal("[]a]bc")).isEqualTo("bc");
+    assertThat(literal("generated by .* tool")).isEqualTo("generated by ");
+  }
+
+  @Test
+  public void no_literal_if_not_safely_determined() {
+    assertThat(literal("")).isNull();
+    assertThat(literal(".*")).isNull();
+    assertThat(literal("foo|bar")).isNull();
+    assertThat(literal("(?i)foo")).isNull();
+    assertThat(literal("\\Qfoo\\E")).isNull();
+    assertThat(literal("\\x41BC")).isNull();
+    assertThat(literal("\\p{Lower}abc")).isNull();
+    assertThat(MultiRegexpMatcher.requiredLiteral(Pattern.compile("foo", Pattern.CASE_INSENSITIVE))).isNull();
+  }
+
+  private static String literal(String regexp) {
+    return MultiRegexpMatcher.requiredLiteral(Pattern.compile(regexp));
+  }
+}
@@ -36,6 +36,7 @@ import java.nio.charset.StandardCharsets;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class InputFileBuilderTest {
@@ -65,7 +66,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new Settings(), new FileMetadata());
+      langDetection, statusDetection, fs, new Settings(), new FileMetadata(), new InputFileCharHandlerFactory[0]);
     DefaultInputFile inputFile = builder.create(srcFile);
     builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
@@ -78,6 +79,34 @@ public class InputFileBuilderTest {
     assertThat(inputFile.lines()).isEqualTo(1);
   }
 
+  @Test
+  public void feed_char_handlers_while_computing_metadata() throws Exception {
+    File basedir = temp.newFolder();
+    File srcFile = new File(basedir, "src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile, "first line\nsecond line");
+    when(fs.baseDir()).thenReturn(basedir);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    when(langDetection.language(any(InputFile.class))).thenReturn("java");
+
+    final LineCounter lineCounter = new LineCounter();
+    InputFileCharHandlerFactory factory = new InputFileCharHandlerFactory() {
+      @Override
+      public FileMetadata.CharHandler create(DefaultInputFile inputFile) {
+        return lineCounter;
+      }
+    };
+    InputFileCharHandlerFactory ignoringFactory = mock(InputFileCharHandlerFactory.class);
+
+    InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
+      langDetection, statusDetection, fs, new Settings(), new FileMetadata(), new InputFileCharHandlerFactory[] {ignoringFactory, factory});
+    DefaultInputFile inputFile = builder.create(srcFile);
+    builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
+
+    assertThat(inputFile.lines()).isEqualTo(2);
+    assertThat(lineCounter.lines).isEqualTo(2);
+    verify(ignoringFactory).create(inputFile);
+  }
+
   @Test
   public void return_null_if_file_outside_basedir() throws Exception {
     // file system
@@ -88,7 +117,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new Settings(), new FileMetadata());
+      langDetection, statusDetection, fs, new Settings(), new FileMetadata(), new InputFileCharHandlerFactory[0]);
     DefaultInputFile inputFile = builder.create(srcFile);
 
     assertThat(inputFile).isNull();
@@ -108,11 +137,25 @@ public class InputFileBuilderTest {
     when(langDetection.language(any(InputFile.class))).thenReturn(null);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new Settings(), new FileMetadata());
+      langDetection, statusDetection, fs, new Settings(), new FileMetadata(), new InputFileCharHandlerFactory[0]);
     DefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
     assertThat(inputFile).isNull();
   }
 
+  private static class LineCounter extends FileMetadata.CharHandler {
+    int lines = 0;
+
+    @Override
+    protected void newLine() {
+      lines++;
+    }
+
+    @Override
+    protected void eof() {
+      lines++;
+    }
+  }
+
 }
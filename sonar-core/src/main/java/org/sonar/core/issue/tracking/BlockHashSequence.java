@@ -19,7 +19,6 @@
  */
 package org.sonar.core.issue.tracking;
 
-import java.util.List;
 import javax.annotation.Nullable;
 
 public class BlockHashSequence {
@@ -33,14 +32,25 @@ public class BlockHashSequence {
   BlockHashSequence(LineHashSequence lineHashSequence, int halfBlockSize) {
     this.blockHashes = new int[lineHashSequence.length()];
 
-    BlockHashFactory blockHashFactory = new BlockHashFactory(lineHashSequence.getHashes(), halfBlockSize);
+    // hash codes of lines, computed once per distinct hash
+    int[] hashCodesById = new int[lineHashSequence.getDistinctHashCount()];
+    for (int id = 0; id < hashCodesById.length; id++) {
+      hashCodesById[id] = lineHashSequence.getHashForId(id).hashCode();
+    }
+    int[] ids = lineHashSequence.getHashIds();
+    int[] hashCodes = new int[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      hashCodes[i] = hashCodesById[ids[i]];
+    }
+
+    BlockHashFactory blockHashFactory = new BlockHashFactory(hashCodes, halfBlockSize);
     for (int line = 1; line <= lineHashSequence.length(); line++) {
       blockHashes[line - 1] = blockHashFactory.getHash();
       if (line - halfBlockSize > 0) {
-        blockHashFactory.remove(lineHashSequence.getHashForLine(line - halfBlockSize).hashCode());
+        blockHashFactory.remove(hashCodes[line - halfBlockSize - 1]);
       }
       if (line + 1 + halfBlockSize <= lineHashSequence.length()) {
-        blockHashFactory.add(lineHashSequence.getHashForLine(line + 1 + halfBlockSize).hashCode());
+        blockHashFactory.add(hashCodes[line + halfBlockSize]);
       } else {
         blockHashFactory.add(0);
       }
@@ -68,14 +78,14 @@ public class BlockHashSequence {
     private final int power;
     private int hash = 0;
 
-    public BlockHashFactory(List<String> hashes, int halfBlockSize) {
+    public BlockHashFactory(int[] hashCodes, int halfBlockSize) {
       int pow = 1;
       for (int i = 0; i < halfBlockSize * 2; i++) {
         pow = pow * PRIME_BASE;
       }
       this.power = pow;
-      for (int i = 1; i <= Math.min(hashes.size(), halfBlockSize + 1); i++) {
-        add(hashes.get(i - 1).hashCode());
+      for (int i = 1; i <= Math.min(hashCodes.length, halfBlockSize + 1); i++) {
+        add(hashCodes[i - 1]);
       }
     }
 
@@ -20,8 +20,8 @@
 package org.sonar.core.issue.tracking;
 
 import com.google.common.collect.LinkedHashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -31,6 +31,12 @@ import java.util.Map;
 
 class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
 
+  /**
+   * Maximum number of raw lines paired with a base line of the same hash. Lines like "}" or blank lines
+   * are repeated all over a file, so only the nearest ones are kept to bound the number of pairs.
+   */
+  static final int MAX_SIMILAR_LINES = 20;
+
   /**
    * If base source code is available, then detect code moves through block hashes.
    * Only the issues associated to a line can be matched here.
@@ -75,48 +81,181 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       }
     }
 
-    // Check if remaining number of lines exceeds threshold
-    if (basesByLine.keySet().size() * rawsByLine.keySet().size() < 250000) {
-      List<LinePair> possibleLinePairs = Lists.newArrayList();
-      for (Integer baseLine : basesByLine.keySet()) {
-        for (Integer rawLine : rawsByLine.keySet()) {
-          int weight = lengthOfMaximalBlock(baseInput.getLineHashSequence(), baseLine, rawInput.getLineHashSequence(), rawLine);
-          possibleLinePairs.add(new LinePair(baseLine, rawLine, weight));
+    List<Integer> baseLines = new ArrayList<>(basesByLine.keySet());
+    List<Integer> rawLines = new ArrayList<>(rawsByLine.keySet());
+    if (baseLines.isEmpty() || rawLines.isEmpty()) {
+      return;
+    }
+
+    // ids of line hashes, base ids being translated to raw ids
+    int[] rawHashes = rawInput.getLineHashSequence().getHashIds();
+    int[] baseHashes = toRawIds(baseInput.getLineHashSequence(), rawInput.getLineHashSequence());
+
+    List<LinePair> possibleLinePairs = similarLinePairs(baseLines, baseHashes, rawLines, rawHashes);
+    Collections.sort(possibleLinePairs, LinePairComparator.INSTANCE);
+    // Pairs of lines with different hashes are the less probable ones. As their number is the product
+    // of the numbers of remaining lines, they are checked only below a threshold.
+    if ((long) baseLines.size() * rawLines.size() < 250000L) {
+      List<LinePair> otherLinePairs = differentLinePairs(baseLines, baseHashes, rawLines, rawHashes);
+      Collections.sort(otherLinePairs, LinePairComparator.INSTANCE);
+      possibleLinePairs.addAll(otherLinePairs);
+    }
+    for (LinePair linePair : possibleLinePairs) {
+      // High probability that baseLine has been moved to rawLine, so we can map all Issues on baseLine to all Issues on rawLine
+      map(rawsByLine.get(linePair.rawLine), basesByLine.get(linePair.baseLine), tracking);
+    }
+  }
+
+  /**
+   * Pairs of lines with the same hash. The weight of each pair is the length of the maximal block of similar lines
+   * containing both lines. Pairs are grouped by diagonal (difference between raw line and base line), so that
+   * each block is browsed only once whatever the number of pairs it contains. Each base line is paired with
+   * at most {@link #MAX_SIMILAR_LINES} raw lines, so the number of pairs is linear in the number of lines.
+   */
+  private static List<LinePair> similarLinePairs(List<Integer> baseLines, int[] baseHashes, List<Integer> rawLines, int[] rawHashes) {
+    Map<Integer, List<Integer>> rawLinesByHash = new HashMap<>();
+    Map<Integer, Integer> rawIndexesByLine = new HashMap<>();
+    for (int rawIndex = 0; rawIndex < rawLines.size(); rawIndex++) {
+      Integer rawLine = rawLines.get(rawIndex);
+      int hash = rawHashes[rawLine - 1];
+      List<Integer> sameHashRawLines = rawLinesByHash.get(hash);
+      if (sameHashRawLines == null) {
+        sameHashRawLines = new ArrayList<>();
+        rawLinesByHash.put(hash, sameHashRawLines);
+      }
+      sameHashRawLines.add(rawLine);
+      rawIndexesByLine.put(rawLine, rawIndex);
+    }
+    for (List<Integer> sameHashRawLines : rawLinesByHash.values()) {
+      Collections.sort(sameHashRawLines);
+    }
+
+    List<LinePair> linePairs = new ArrayList<>();
+    for (int baseIndex = 0; baseIndex < baseLines.size(); baseIndex++) {
+      int baseLine = baseLines.get(baseIndex);
+      List<Integer> sameHashRawLines = rawLinesByHash.get(baseHashes[baseLine - 1]);
+      if (sameHashRawLines != null) {
+        for (Integer rawLine : nearestLines(sameHashRawLines, baseLine, MAX_SIMILAR_LINES)) {
+          linePairs.add(new LinePair(baseLine, rawLine, 0, order(baseIndex, rawIndexesByLine.get(rawLine), rawLines.size())));
         }
       }
-      Collections.sort(possibleLinePairs, LinePairComparator.INSTANCE);
-      for (LinePair linePair : possibleLinePairs) {
-        // High probability that baseLine has been moved to rawLine, so we can map all Issues on baseLine to all Issues on rawLine
-        map(rawsByLine.get(linePair.rawLine), basesByLine.get(linePair.baseLine), tracking);
+    }
+
+    Collections.sort(linePairs, DiagonalComparator.INSTANCE);
+    int blockDiagonal = 0;
+    int blockEndLine = -1;
+    int blockLength = 0;
+    for (LinePair linePair : linePairs) {
+      int diagonal = linePair.rawLine - linePair.baseLine;
+      if (diagonal != blockDiagonal || linePair.baseLine > blockEndLine) {
+        blockEndLine = blockEndLine(baseHashes, linePair.baseLine, rawHashes, linePair.rawLine);
+        blockLength = blockEndLine - blockStartLine(baseHashes, linePair.baseLine, rawHashes, linePair.rawLine) + 1;
+        blockDiagonal = diagonal;
       }
+      linePair.weight = blockLength;
     }
+    return linePairs;
   }
 
   /**
-   * @param startLineA number of line from first version of text (numbering starts from 1)
-   * @param startLineB number of line from second version of text (numbering starts from 1)
+   * The lines closest to the given line, at most {@code max} of them
+   *
+   * @param sortedLines lines in ascending order
    */
-  static int lengthOfMaximalBlock(LineHashSequence hashesA, int startLineA, LineHashSequence hashesB, int startLineB) {
-    if (!hashesA.getHashForLine(startLineA).equals(hashesB.getHashForLine(startLineB))) {
-      return 0;
-    }
-    int length = 0;
-    int ai = startLineA;
-    int bi = startLineB;
-    while (ai <= hashesA.length() && bi <= hashesB.length() && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
-      ai++;
-      bi++;
-      length++;
+  static List<Integer> nearestLines(List<Integer> sortedLines, int line, int max) {
+    if (sortedLines.size() <= max) {
+      return sortedLines;
+    }
+    // index of the first line greater than or equal to the given line
+    int high = Collections.binarySearch(sortedLines, line);
+    if (high < 0) {
+      high = -high - 1;
+    }
+    int low = high - 1;
+    List<Integer> result = new ArrayList<>(max);
+    while (result.size() < max) {
+      if (low >= 0 && (high >= sortedLines.size() || line - sortedLines.get(low) <= sortedLines.get(high) - line)) {
+        result.add(sortedLines.get(low));
+        low--;
+      } else {
+        result.add(sortedLines.get(high));
+        high++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Pairs of lines with different hashes. Their weight is zero.
+   */
+  private static List<LinePair> differentLinePairs(List<Integer> baseLines, int[] baseHashes, List<Integer> rawLines, int[] rawHashes) {
+    List<LinePair> linePairs = new ArrayList<>();
+    for (int baseIndex = 0; baseIndex < baseLines.size(); baseIndex++) {
+      int baseLine = baseLines.get(baseIndex);
+      for (int rawIndex = 0; rawIndex < rawLines.size(); rawIndex++) {
+        int rawLine = rawLines.get(rawIndex);
+        if (baseHashes[baseLine - 1] != rawHashes[rawLine - 1]) {
+          linePairs.add(new LinePair(baseLine, rawLine, 0, order(baseIndex, rawIndex, rawLines.size())));
+        }
+      }
     }
-    ai = startLineA;
-    bi = startLineB;
-    while (ai > 0 && bi > 0 && hashesA.getHashForLine(ai).equals(hashesB.getHashForLine(bi))) {
+    return linePairs;
+  }
+
+  /**
+   * Pairs with the same weight and the same distance are kept in the order of lines of issues
+   */
+  private static long order(int baseIndex, int rawIndex, int rawCount) {
+    return (long) baseIndex * rawCount + rawIndex;
+  }
+
+  /**
+   * Ids of the hashes of base lines, in the dictionary of raw lines. Hashes which do not exist in raw lines
+   * get negative ids.
+   */
+  private static int[] toRawIds(LineHashSequence baseSequence, LineHashSequence rawSequence) {
+    int[] rawIdsByBaseId = new int[baseSequence.getDistinctHashCount()];
+    for (int baseId = 0; baseId < rawIdsByBaseId.length; baseId++) {
+      int rawId = rawSequence.getIdForHash(baseSequence.getHashForId(baseId));
+      rawIdsByBaseId[baseId] = rawId >= 0 ? rawId : (-1 - baseId);
+    }
+    int[] baseIds = baseSequence.getHashIds();
+    int[] result = new int[baseIds.length];
+    for (int i = 0; i < baseIds.length; i++) {
+      result[i] = rawIdsByBaseId[baseIds[i]];
+    }
+    return result;
+  }
+
+  /**
+   * First line in text A of the maximal block of similar lines containing line A and line B
+   *
+   * @param lineA number of line from first version of text (numbering starts from 1)
+   * @param lineB number of line from second version of text (numbering starts from 1)
+   */
+  static int blockStartLine(int[] hashesA, int lineA, int[] hashesB, int lineB) {
+    int ai = lineA;
+    int bi = lineB;
+    while (ai > 1 && bi > 1 && hashesA[ai - 2] == hashesB[bi - 2]) {
       ai--;
       bi--;
-      length++;
     }
-    // Note that position (startA, startB) was counted twice
-    return length - 1;
+    return ai;
+  }
+
+  /**
+   * Last line in text A of the maximal block of similar lines containing line A and line B
+   *
+   * @see #blockStartLine(int[], int, int[], int)
+   */
+  static int blockEndLine(int[] hashesA, int lineA, int[] hashesB, int lineB) {
+    int ai = lineA;
+    int bi = lineB;
+    while (ai < hashesA.length && bi < hashesB.length && hashesA[ai] == hashesB[bi]) {
+      ai++;
+      bi++;
+    }
+    return ai;
   }
 
   private void map(Collection<RAW> raws, Collection<BASE> bases, Tracking<RAW, BASE> result) {
@@ -145,11 +284,13 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
     int baseLine;
     int rawLine;
     int weight;
+    long order;
 
-    public LinePair(int baseLine, int rawLine, int weight) {
+    public LinePair(int baseLine, int rawLine, int weight, long order) {
       this.baseLine = baseLine;
       this.rawLine = rawLine;
       this.weight = weight;
+      this.order = order;
     }
   }
 
@@ -168,9 +309,25 @@ class BlockRecognizer<RAW extends Trackable, BASE extends Trackable> {
       int weightDiff = o2.weight - o1.weight;
       if (weightDiff != 0) {
         return weightDiff;
-      } else {
-        return Math.abs(o1.baseLine - o1.rawLine) - Math.abs(o2.baseLine - o2.rawLine);
       }
+      int distanceDiff = Math.abs(o1.baseLine - o1.rawLine) - Math.abs(o2.baseLine - o2.rawLine);
+      if (distanceDiff != 0) {
+        return distanceDiff;
+      }
+      return Long.compare(o1.order, o2.order);
+    }
+  }
+
+  private enum DiagonalComparator implements Comparator<LinePair> {
+    INSTANCE;
+
+    @Override
+    public int compare(LinePair o1, LinePair o2) {
+      int diagonalDiff = Integer.compare(o1.rawLine - o1.baseLine, o2.rawLine - o2.baseLine);
+      if (diagonalDiff != 0) {
+        return diagonalDiff;
+      }
+      return Integer.compare(o1.baseLine, o2.baseLine);
     }
   }
 }
@@ -19,35 +19,54 @@
  */
 package org.sonar.core.issue.tracking;
 
-import com.google.common.collect.SetMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.base.Strings;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
 import org.sonar.core.hash.SourceLinesHashesComputer;
 
 /**
- * Sequence of hash of lines for a given file
+ * Sequence of hash of lines for a given file.
+ * <p>
+ * Hashes are interned: each distinct hash is stored once and lines refer to it through an integer id,
+ * so that lines can be compared without comparing strings.
+ * </p>
  */
 public class LineHashSequence {
 
   /**
-   * Hashes of lines. Line 1 is at index 0. No null elements.
+   * Ids of hashes of lines. Line 1 is at index 0.
+   */
+  private final int[] ids;
+
+  /**
+   * Distinct hashes, by id. No null elements.
+   */
+  private final List<String> hashesById = new ArrayList<>();
+  private final Map<String, Integer> idsByHash = new HashMap<>();
+
+  /**
+   * Lines of each hash, lazily loaded. Lines with id {@code i} are {@code lines[linesStart[i]]} to
+   * {@code lines[linesStart[i + 1] - 1]}.
    */
-  private final List<String> hashes;
-  private final SetMultimap<String, Integer> lineByHash;
+  private int[] linesStart;
+  private int[] lines;
 
   public LineHashSequence(List<String> hashes) {
-    this.hashes = hashes;
-    this.lineByHash = HashMultimap.create();
-    
-    int lineNo = 1;
-    
-    for (String hash : hashes) {
-      lineByHash.put(hash, lineNo);
-      lineNo++;
+    this.ids = new int[hashes.size()];
+    for (int i = 0; i < ids.length; i++) {
+      String hash = Strings.nullToEmpty(hashes.get(i));
+      Integer id = idsByHash.get(hash);
+      if (id == null) {
+        id = hashesById.size();
+        hashesById.add(hash);
+        idsByHash.put(hash, id);
+      }
+      ids[i] = id;
     }
   }
 
@@ -55,21 +74,30 @@ public class LineHashSequence {
    * Number of lines
    */
   public int length() {
-    return hashes.size();
+    return ids.length;
   }
 
   /**
    * Checks if the line, starting with 1, is defined.
    */
   public boolean hasLine(int line) {
-    return 0 < line && line <= hashes.size();
+    return 0 < line && line <= ids.length;
   }
 
   /**
    * The lines, starting with 1, that matches the given hash.
    */
   public Set<Integer> getLinesForHash(String hash) {
-    return lineByHash.get(hash);
+    Integer id = idsByHash.get(hash);
+    if (id == null) {
+      return Collections.emptySet();
+    }
+    ensureLinesByHash();
+    Set<Integer> result = new LinkedHashSet<>();
+    for (int i = linesStart[id]; i < linesStart[id + 1]; i++) {
+      result.add(lines[i]);
+    }
+    return result;
   }
 
   /**
@@ -77,14 +105,58 @@ public class LineHashSequence {
    * is the line does not exist.
    */
   public String getHashForLine(int line) {
-    if (line > 0 && line <= hashes.size()) {
-      return Strings.nullToEmpty(hashes.get(line - 1));
+    if (line > 0 && line <= ids.length) {
+      return hashesById.get(ids[line - 1]);
     }
     return "";
   }
 
-  List<String> getHashes() {
-    return hashes;
+  /**
+   * Ids of hashes of lines. Line 1 is at index 0. Two lines have the same id if and only if they have
+   * the same hash.
+   */
+  int[] getHashIds() {
+    return ids;
+  }
+
+  /**
+   * Number of distinct hashes. Ids are between 0 (included) and this number (excluded).
+   */
+  int getDistinctHashCount() {
+    return hashesById.size();
+  }
+
+  String getHashForId(int id) {
+    return hashesById.get(id);
+  }
+
+  /**
+   * @return the id of hash, or -1 if no line has this hash
+   */
+  int getIdForHash(String hash) {
+    Integer id = idsByHash.get(hash);
+    return id == null ? -1 : id;
+  }
+
+  private void ensureLinesByHash() {
+    if (lines != null) {
+      return;
+    }
+    // counting sort of lines by id
+    int[] starts = new int[hashesById.size() + 1];
+    for (int id : ids) {
+      starts[id + 1]++;
+    }
+    for (int i = 1; i < starts.length; i++) {
+      starts[i] += starts[i - 1];
+    }
+    int[] sortedLines = new int[ids.length];
+    int[] next = starts.clone();
+    for (int i = 0; i < ids.length; i++) {
+      sortedLines[next[ids[i]]++] = i + 1;
+    }
+    this.linesStart = starts;
+    this.lines = sortedLines;
   }
 
   public static LineHashSequence createForLines(List<String> lines) {
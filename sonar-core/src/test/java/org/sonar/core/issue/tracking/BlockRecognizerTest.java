@@ -19,7 +19,7 @@
  */
 package org.sonar.core.issue.tracking;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.junit.Test;
 
@@ -41,16 +41,42 @@ public class BlockRecognizerTest {
     assertThat(compute(seq("bcde"), seq("abcde"), 3, 4)).isEqualTo(4);
   }
 
-  private int compute(LineHashSequence seqA, LineHashSequence seqB, int ai, int bi) {
-    return BlockRecognizer.lengthOfMaximalBlock(seqA, ai, seqB, bi);
+  @Test
+  public void boundaries_of_maximal_block() {
+    assertThat(BlockRecognizer.blockStartLine(seq("abcde"), 4, seq("xabcde"), 5)).isEqualTo(1);
+    assertThat(BlockRecognizer.blockEndLine(seq("abcde"), 4, seq("xabcde"), 5)).isEqualTo(5);
+
+    assertThat(BlockRecognizer.blockStartLine(seq("abcde"), 2, seq("xbcy"), 2)).isEqualTo(2);
+    assertThat(BlockRecognizer.blockEndLine(seq("abcde"), 2, seq("xbcy"), 2)).isEqualTo(3);
+  }
+
+  @Test
+  public void nearest_lines() {
+    List<Integer> lines = Arrays.asList(2, 5, 8, 9, 15);
+
+    assertThat(BlockRecognizer.nearestLines(lines, 8, 5)).containsExactly(2, 5, 8, 9, 15);
+    assertThat(BlockRecognizer.nearestLines(lines, 8, 3)).containsOnly(8, 9, 5);
+    assertThat(BlockRecognizer.nearestLines(lines, 7, 2)).containsOnly(8, 5);
+    assertThat(BlockRecognizer.nearestLines(lines, 1, 2)).containsOnly(2, 5);
+    assertThat(BlockRecognizer.nearestLines(lines, 20, 2)).containsOnly(15, 9);
+  }
+
+  private int compute(int[] seqA, int[] seqB, int ai, int bi) {
+    if (seqA[ai - 1] != seqB[bi - 1]) {
+      return 0;
+    }
+    return BlockRecognizer.blockEndLine(seqA, ai, seqB, bi) - BlockRecognizer.blockStartLine(seqA, ai, seqB, bi) + 1;
   }
 
-  private static LineHashSequence seq(String text) {
-    List<String> hashes = new ArrayList<>();
+  /**
+   * Each character is a line, its hash being the character code
+   */
+  private static int[] seq(String text) {
+    int[] hashes = new int[text.length()];
     for (int i = 0; i < text.length(); i++) {
-      hashes.add("" + text.charAt(i));
+      hashes[i] = text.charAt(i);
     }
-    return new LineHashSequence(hashes);
+    return hashes;
   }
 
 }
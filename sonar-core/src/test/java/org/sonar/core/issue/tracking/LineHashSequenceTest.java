@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.tracking;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LineHashSequenceTest {
+
+  @Test
+  public void hashes_of_lines() {
+    LineHashSequence underTest = new LineHashSequence(asList("H1", "H2", "H1", null));
+
+    assertThat(underTest.length()).isEqualTo(4);
+    assertThat(underTest.getHashForLine(1)).isEqualTo("H1");
+    assertThat(underTest.getHashForLine(3)).isEqualTo("H1");
+    assertThat(underTest.getHashForLine(4)).isEqualTo("");
+    assertThat(underTest.getHashForLine(0)).isEqualTo("");
+    assertThat(underTest.getHashForLine(5)).isEqualTo("");
+    assertThat(underTest.hasLine(4)).isTrue();
+    assertThat(underTest.hasLine(5)).isFalse();
+  }
+
+  @Test
+  public void lines_for_hash() {
+    LineHashSequence underTest = new LineHashSequence(asList("H1", "H2", "H1", "H3", "H1"));
+
+    assertThat(underTest.getLinesForHash("H1")).containsOnly(1, 3, 5);
+    assertThat(underTest.getLinesForHash("H2")).containsOnly(2);
+    assertThat(underTest.getLinesForHash("H4")).isEmpty();
+  }
+
+  @Test
+  public void same_hashes_have_same_ids() {
+    LineHashSequence underTest = new LineHashSequence(asList("H1", "H2", "H1"));
+
+    int[] ids = underTest.getHashIds();
+    assertThat(ids[0]).isEqualTo(ids[2]).isNotEqualTo(ids[1]);
+    assertThat(underTest.getDistinctHashCount()).isEqualTo(2);
+    assertThat(underTest.getHashForId(ids[1])).isEqualTo("H2");
+    assertThat(underTest.getIdForHash("H1")).isEqualTo(ids[0]);
+    assertThat(underTest.getIdForHash("H3")).isEqualTo(-1);
+  }
+}
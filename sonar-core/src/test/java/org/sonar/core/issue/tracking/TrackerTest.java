@@ -358,6 +358,36 @@ public class TrackerTest {
     assertThat(tracking.getUnmatchedBases()).containsOnly(base2);
   }
 
+  @Test
+  public void recognize_blocks_of_large_files() {
+    // 600 lines with repeated content, so that blocks are not unique. Lines are moved by inserting 3 lines at the
+    // beginning of file. Messages of issues changed.
+    int lines = 600;
+    String[] baseHashes = new String[lines];
+    String[] rawHashes = new String[lines + 3];
+    rawHashes[0] = "new1";
+    rawHashes[1] = "new2";
+    rawHashes[2] = "new3";
+    for (int i = 0; i < lines; i++) {
+      baseHashes[i] = "H" + (i % 10);
+      rawHashes[i + 3] = baseHashes[i];
+    }
+    FakeInput baseInput = new FakeInput(baseHashes);
+    FakeInput rawInput = new FakeInput(rawHashes);
+    List<Issue> raws = new ArrayList<>();
+    List<Issue> bases = new ArrayList<>();
+    for (int line = 1; line <= lines; line++) {
+      bases.add(baseInput.createIssueOnLine(line, RULE_SYSTEM_PRINT, "msg" + line));
+      raws.add(rawInput.createIssueOnLine(line + 3, RULE_SYSTEM_PRINT, "new msg" + line));
+    }
+
+    Tracking<Issue, Issue> tracking = tracker.track(rawInput, baseInput);
+
+    for (int i = 0; i < lines; i++) {
+      assertThat(tracking.baseFor(raws.get(i))).isSameAs(bases.get(i));
+    }
+  }
+
   @Test
   public void move_manual_issue_to_line_with_same_hash() {
     FakeInput baseInput = new FakeInput("H1", "H2");
@@ -37,6 +37,7 @@ import org.sonar.db.dashboard.WidgetDao;
 import org.sonar.db.dashboard.WidgetPropertyDao;
 import org.sonar.db.debt.CharacteristicDao;
 import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.es.EsQueueDao;
 import org.sonar.db.event.EventDao;
 import org.sonar.db.issue.ActionPlanDao;
 import org.sonar.db.issue.ActionPlanStatsDao;
@@ -84,6 +85,7 @@ public class DaoModule extends Module {
     CustomMeasureDao.class,
     DashboardDao.class,
     DuplicationDao.class,
+    EsQueueDao.class,
     EventDao.class,
     FileSourceDao.class,
     GroupDao.class,
@@ -37,6 +37,7 @@ import org.sonar.db.dashboard.WidgetDao;
 import org.sonar.db.dashboard.WidgetPropertyDao;
 import org.sonar.db.debt.CharacteristicDao;
 import org.sonar.db.duplication.DuplicationDao;
+import org.sonar.db.es.EsQueueDao;
 import org.sonar.db.event.EventDao;
 import org.sonar.db.issue.ActionPlanDao;
 import org.sonar.db.issue.ActionPlanStatsDao;
@@ -114,6 +115,7 @@ public class DbClient {
   private final QualityGateConditionDao gateConditionDao;
   private final ProjectQgateAssociationDao projectQgateAssociationDao;
   private final DuplicationDao duplicationDao;
+  private final EsQueueDao esQueueDao;
   private final NotificationQueueDao notificationQueueDao;
   private final CustomMeasureDao customMeasureDao;
   private final MetricDao metricDao;
@@ -169,6 +171,7 @@ public class DbClient {
     gateConditionDao = getDao(map, QualityGateConditionDao.class);
     projectQgateAssociationDao = getDao(map, ProjectQgateAssociationDao.class);
     duplicationDao = getDao(map, DuplicationDao.class);
+    esQueueDao = getDao(map, EsQueueDao.class);
     notificationQueueDao = getDao(map, NotificationQueueDao.class);
     customMeasureDao = getDao(map, CustomMeasureDao.class);
     metricDao = getDao(map, MetricDao.class);
@@ -358,6 +361,10 @@ public class DbClient {
     return duplicationDao;
   }
 
+  public EsQueueDao esQueueDao() {
+    return esQueueDao;
+  }
+
   public NotificationQueueDao notificationQueueDao() {
     return notificationQueueDao;
   }
@@ -20,7 +20,9 @@
 package org.sonar.db.ce;
 
 import com.google.common.base.Optional;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.sonar.api.utils.System2;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
@@ -80,14 +82,26 @@ public class CeQueueDao implements Dao {
     return mapper(dbSession).countAll();
   }
 
+  /**
+   * Claims the oldest pending task which component has no task in progress. Only the oldest pending task of
+   * a given component is a candidate, so that tasks of a component are executed in submission order and never
+   * concurrently. If a candidate is claimed by another worker in the meantime, the next one is tried.
+   */
   public Optional<CeQueueDto> peek(DbSession session) {
-    List<String> taskUuids = mapper(session).selectEligibleForPeek();
-    if (taskUuids.isEmpty()) {
-      return Optional.absent();
+    List<CeQueueDto> eligibles = mapper(session).selectEligibleForPeek();
+    Set<String> componentUuids = new HashSet<>();
+    for (CeQueueDto eligible : eligibles) {
+      String componentUuid = eligible.getComponentUuid();
+      if (componentUuid != null && !componentUuids.add(componentUuid)) {
+        // an older task of the same component is already a candidate
+        continue;
+      }
+      Optional<CeQueueDto> peeked = tryToPeek(session, eligible.getUuid());
+      if (peeked.isPresent()) {
+        return peeked;
+      }
     }
-
-    String taskUuid = taskUuids.get(0);
-    return tryToPeek(session, taskUuid);
+    return Optional.absent();
   }
 
   private Optional<CeQueueDto> tryToPeek(DbSession session, String taskUuid) {
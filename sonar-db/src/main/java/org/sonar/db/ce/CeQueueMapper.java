@@ -30,7 +30,10 @@ public interface CeQueueMapper {
 
   List<CeQueueDto> selectAllInAscOrder();
 
-  List<String> selectEligibleForPeek();
+  /**
+   * Only fields uuid and componentUuid are loaded
+   */
+  List<CeQueueDto> selectEligibleForPeek();
 
   @CheckForNull
   CeQueueDto selectByUuid(@Param("uuid") String uuid);
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
@@ -42,6 +43,15 @@ public class DuplicationDao implements Dao {
     });
   }
 
+  /**
+   * Streams the blocks of the last snapshots of all the enabled files, whatever their project and language.
+   * The field id is not loaded, but the fields componentKey, componentLanguage and
+   * projectUuid are.
+   */
+  public void selectLastBlocks(DbSession session, ResultHandler handler) {
+    session.getMapper(DuplicationMapper.class).selectLastBlocks(handler);
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
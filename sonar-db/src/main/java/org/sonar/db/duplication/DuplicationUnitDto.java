@@ -32,6 +32,8 @@ public final class DuplicationUnitDto {
 
   // Return by join
   private String componentKey;
+  private String componentLanguage;
+  private String projectUuid;
 
   public long getId() {
     return id;
@@ -100,4 +102,27 @@ public final class DuplicationUnitDto {
     return componentKey;
   }
 
+  public DuplicationUnitDto setComponentKey(String componentKey) {
+    this.componentKey = componentKey;
+    return this;
+  }
+
+  public String getComponentLanguage() {
+    return componentLanguage;
+  }
+
+  public DuplicationUnitDto setComponentLanguage(String componentLanguage) {
+    this.componentLanguage = componentLanguage;
+    return this;
+  }
+
+  public String getProjectUuid() {
+    return projectUuid;
+  }
+
+  public DuplicationUnitDto setProjectUuid(String projectUuid) {
+    this.projectUuid = projectUuid;
+    return this;
+  }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+import com.google.common.base.Function;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.apache.ibatis.session.RowBounds;
+import org.sonar.api.utils.System2;
+import org.sonar.db.Dao;
+import org.sonar.db.DbSession;
+
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+
+/**
+ * Journal of the documents to be indexed in Elasticsearch. Indexers drain it, so that indexing
+ * costs depend on the changes only, and that changes committed in db are indexed even if
+ * server is stopped in the meantime.
+ */
+public class EsQueueDao implements Dao {
+
+  private final System2 system2;
+
+  public EsQueueDao(System2 system2) {
+    this.system2 = system2;
+  }
+
+  /**
+   * Must be called within the session that updates the related rows, before commit.
+   */
+  public void insert(DbSession session, String docType, Collection<String> docIds) {
+    EsQueueMapper mapper = mapper(session);
+    long now = system2.now();
+    for (String docId : docIds) {
+      mapper.insert(new EsQueueDto().setDocType(docType).setDocId(docId).setCreatedAt(now));
+    }
+  }
+
+  /**
+   * Ordered by ascending id: oldest to newest. A same document can be returned multiple times.
+   */
+  public List<EsQueueDto> selectOldest(DbSession session, String docType, int limit) {
+    return mapper(session).selectOldest(docType, new RowBounds(0, limit));
+  }
+
+  public int countByDocType(DbSession session, String docType) {
+    return mapper(session).countByDocType(docType);
+  }
+
+  public void deleteByIds(DbSession session, Collection<Long> ids) {
+    final EsQueueMapper mapper = mapper(session);
+    executeLargeInputsWithoutOutput(ids, new Function<List<Long>, Void>() {
+      @Override
+      public Void apply(@Nonnull List<Long> input) {
+        mapper.deleteByIds(input);
+        return null;
+      }
+    });
+  }
+
+  private static EsQueueMapper mapper(DbSession session) {
+    return session.getMapper(EsQueueMapper.class);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+import javax.annotation.CheckForNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Document to be (re-)indexed in Elasticsearch. Rows are inserted in the same transaction
+ * as the changes of the db tables, then are deleted when the document is indexed.
+ */
+public class EsQueueDto {
+
+  /**
+   * Key of issue
+   */
+  public static final String TYPE_ISSUE = "issue";
+
+  private Long id;
+  private String docType;
+  private String docId;
+  private long createdAt;
+
+  @CheckForNull
+  public Long getId() {
+    return id;
+  }
+
+  public EsQueueDto setId(Long id) {
+    this.id = id;
+    return this;
+  }
+
+  public String getDocType() {
+    return docType;
+  }
+
+  public EsQueueDto setDocType(String s) {
+    checkArgument(s.length() <= 40, "Value of document type is too long: %s", s);
+    this.docType = s;
+    return this;
+  }
+
+  public String getDocId() {
+    return docId;
+  }
+
+  public EsQueueDto setDocId(String s) {
+    checkArgument(s.length() <= 400, "Value of document id is too long: %s", s);
+    this.docId = s;
+    return this;
+  }
+
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  public EsQueueDto setCreatedAt(long l) {
+    this.createdAt = l;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "EsQueueDto{id=" + id + ", docType=" + docType + ", docId=" + docId + ", createdAt=" + createdAt + "}";
+  }
+}
@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
@@ -44,6 +45,16 @@ public class MeasureDao implements Dao {
     return mapper(session).selectByComponentAndMetric(componentKey, metricKey);
   }
 
+  /**
+   * Streams the measures of the specified metric on the last snapshot of the specified project and of all its
+   * components (modules, directories, files...). Measures on rules, on characteristics and on developers are excluded.
+   * <p/>
+   * {@link MeasureDto#getComponentUuid()} of the returned objects is populated.
+   */
+  public void selectLastByProjectUuidAndMetricId(DbSession session, String projectUuid, int metricId, ResultHandler resultHandler) {
+    mapper(session).selectLastByProjectUuidAndMetricId(projectUuid, metricId, resultHandler);
+  }
+
   public List<MeasureDto> selectByComponentKeyAndMetricKeys(final DbSession session, final String componentKey, List<String> metricKeys) {
     return DatabaseUtils.executeLargeInputs(metricKeys, new Function<List<String>, List<MeasureDto>>() {
       @Override
@@ -79,6 +90,17 @@ public class MeasureDao implements Dao {
     });
   }
 
+  /**
+   * Streams the numeric measures of the specified project snapshot and of the snapshots of all its components,
+   * <strong>ordered by component uuid</strong>, so that the measures of a given component are consecutive. Measures on
+   * developers are excluded.
+   * <p/>
+   * {@link PastMeasureDto#getComponentUuid()} of the returned objects is populated.
+   */
+  public void selectPastMeasuresByProjectSnapshotId(DbSession session, long projectSnapshotId, ResultHandler resultHandler) {
+    mapper(session).selectPastMeasuresByProjectSnapshotIdAndStatus(projectSnapshotId, SnapshotDto.STATUS_PROCESSED, resultHandler);
+  }
+
   /**
    * Used by plugin Developer Cockpit
    */
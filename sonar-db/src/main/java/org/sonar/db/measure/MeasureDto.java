@@ -51,6 +51,9 @@ public class MeasureDto {
   // TODO to delete – not in db
   private String metricKey;
 
+  // not in table PROJECT_MEASURES, joined from table PROJECTS
+  private String componentUuid;
+
   public Long getId() {
     return id;
   }
@@ -173,6 +176,19 @@ public class MeasureDto {
     return this;
   }
 
+  /**
+   * Only populated by {@link MeasureDao#selectLastByProjectUuidAndMetricId(org.sonar.db.DbSession, String, int, org.apache.ibatis.session.ResultHandler)}
+   */
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public MeasureDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
+
   public Integer getMetricId() {
     return metricId;
   }
@@ -246,6 +262,7 @@ public class MeasureDto {
       .add("alertText", alertText)
       .add("description", description)
       .add("componentId", componentId)
+      .add("componentUuid", componentUuid)
       .add("snapshotId", snapshotId)
       .add("metricId", metricId)
       .add("ruleId", ruleId)
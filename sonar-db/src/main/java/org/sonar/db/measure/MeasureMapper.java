@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 public interface MeasureMapper {
 
@@ -44,11 +45,15 @@ public interface MeasureMapper {
   @CheckForNull
   MeasureDto selectByComponentAndMetric(@Param("componentKey") String componentKey, @Param("metricKey") String metricKey);
 
+  void selectLastByProjectUuidAndMetricId(@Param("projectUuid") String projectUuid, @Param("metricId") int metricId, ResultHandler resultHandler);
+
   long countByComponentAndMetric(@Param("componentKey") String componentKey, @Param("metricKey") String metricKey);
 
   List<PastMeasureDto> selectByComponentUuidAndProjectSnapshotIdAndStatusAndMetricIds(@Param("componentUuid") String componentuuid, @Param("rootSnapshotId") long rootSnapshotId,
     @Param("metricIds") List<Integer> metricIds, @Param("status") String status);
 
+  void selectPastMeasuresByProjectSnapshotIdAndStatus(@Param("rootSnapshotId") long rootSnapshotId, @Param("status") String status, ResultHandler resultHandler);
+
   void insert(MeasureDto measureDto);
 
   List<String> selectMetricKeysForSnapshot(@Param("snapshotId") long snapshotId);
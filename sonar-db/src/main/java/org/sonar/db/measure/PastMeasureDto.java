@@ -31,6 +31,7 @@ public class PastMeasureDto {
   private Integer ruleId;
   private Integer characteristicId;
   private Integer personId;
+  private String componentUuid;
 
   public Long getId() {
     return id;
@@ -93,4 +94,17 @@ public class PastMeasureDto {
     this.ruleId = ruleId;
     return this;
   }
+
+  /**
+   * Only populated by {@link MeasureDao#selectPastMeasuresByProjectSnapshotId(org.sonar.db.DbSession, long, org.apache.ibatis.session.ResultHandler)}
+   */
+  @CheckForNull
+  public String getComponentUuid() {
+    return componentUuid;
+  }
+
+  public PastMeasureDto setComponentUuid(@Nullable String componentUuid) {
+    this.componentUuid = componentUuid;
+    return this;
+  }
 }
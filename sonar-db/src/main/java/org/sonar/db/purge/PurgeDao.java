@@ -38,6 +38,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.component.ResourceDao;
 import org.sonar.db.component.ResourceDto;
+import org.sonar.db.es.EsQueueDto;
 
 import static org.sonar.api.utils.DateUtils.dateToLong;
 
@@ -181,7 +182,9 @@ public class PurgeDao implements Dao {
     mapper.setSnapshotIsLastToFalse(componentId);
     mapper.deleteFileSourcesByUuid(componentIdUuid.getUuid());
     mapper.disableResource(componentId);
-    mapper.resolveResourceIssuesNotAlreadyResolved(componentIdUuid.getUuid(), system2.now());
+    long now = system2.now();
+    mapper.queueResourceIssuesNotAlreadyResolved(componentIdUuid.getUuid(), EsQueueDto.TYPE_ISSUE, now);
+    mapper.resolveResourceIssuesNotAlreadyResolved(componentIdUuid.getUuid(), now);
   }
 
   public PurgeDao deleteSnapshots(PurgeSnapshotQuery query, PurgeProfiler profiler) {
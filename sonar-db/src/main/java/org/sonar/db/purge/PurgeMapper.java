@@ -50,6 +50,8 @@ public interface PurgeMapper {
 
   void disableResource(long resourceId);
 
+  void queueResourceIssuesNotAlreadyResolved(@Param("componentUuid") String componentUuid, @Param("docType") String docType, @Param("dateAsLong") Long dateAsLong);
+
   void resolveResourceIssuesNotAlreadyResolved(@Param("componentUuid") String componentUuid, @Param("dateAsLong") Long dateAsLong);
 
   void deleteResourceIndex(@Param("resourceIds") List<Long> resourceIds);
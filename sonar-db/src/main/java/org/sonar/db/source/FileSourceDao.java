@@ -26,11 +26,14 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.db.Dao;
+import org.sonar.db.DatabaseUtils;
 import org.sonar.db.DbSession;
 import org.sonar.db.MyBatis;
 import org.sonar.db.source.FileSourceDto.Type;
@@ -130,6 +133,27 @@ public class FileSourceDao implements Dao {
     mapper(session).update(dto);
   }
 
+  /**
+   * Updates only the columns INPUTS_HASH and SCM_DATA, for example when inputs changed but not the resulting data.
+   */
+  public void updateInputsHashAndScmData(DbSession session, FileSourceDto dto) {
+    mapper(session).updateInputsHashAndScmData(dto);
+  }
+
+  /**
+   * SCM data of the given source files. Only the fields fileUuid, srcHash and scmBinaryData are loaded.
+   * The field scmBinaryData is null on the files which have not been analyzed since the column SCM_DATA
+   * has been added.
+   */
+  public List<FileSourceDto> selectScmDataByFileUuids(final DbSession session, Collection<String> fileUuids) {
+    return DatabaseUtils.executeLargeInputs(fileUuids, new Function<List<String>, List<FileSourceDto>>() {
+      @Override
+      public List<FileSourceDto> apply(@Nonnull List<String> partition) {
+        return mapper(session).selectScmDataByFileUuids(partition, Type.SOURCE);
+      }
+    });
+  }
+
   public void updateDateWhenUpdatedDateIsZero(DbSession session, String projectUuid, long updateDate) {
     mapper(session).updateDateWhenUpdatedDateIsZero(projectUuid, updateDate);
   }
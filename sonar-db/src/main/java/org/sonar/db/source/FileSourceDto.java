@@ -41,7 +41,9 @@ public class FileSourceDto {
   private long updatedAt;
   private String lineHashes;
   private String srcHash;
+  private String inputsHash;
   private byte[] binaryData;
+  private byte[] scmBinaryData;
   private String dataType;
   private String dataHash;
   private String revision;
@@ -125,6 +127,27 @@ public class FileSourceDto {
     }
   }
 
+  /**
+   * Serialize and compress the SCM fields of the lines of {@link org.sonar.db.protobuf.DbFileSources.Data}
+   * in the column SCM_DATA, so that they can be read without decoding all the data of file.
+   */
+  public static byte[] encodeScmData(DbFileSources.Data data) {
+    DbFileSources.Data.Builder scmData = DbFileSources.Data.newBuilder();
+    for (DbFileSources.Line line : data.getLinesList()) {
+      DbFileSources.Line.Builder scmLine = scmData.addLinesBuilder().setLine(line.getLine());
+      if (line.hasScmRevision()) {
+        scmLine.setScmRevision(line.getScmRevision());
+      }
+      if (line.hasScmAuthor()) {
+        scmLine.setScmAuthor(line.getScmAuthor());
+      }
+      if (line.hasScmDate()) {
+        scmLine.setScmDate(line.getScmDate());
+      }
+    }
+    return encodeSourceData(scmData.build());
+  }
+
   public static List<DbFileSources.Test> decodeTestData(byte[] binaryData) {
     // stream is always closed
     return decodeTestData(new ByteArrayInputStream(binaryData));
@@ -200,9 +223,32 @@ public class FileSourceDto {
   public FileSourceDto setSourceData(DbFileSources.Data data) {
     this.dataType = Type.SOURCE;
     this.binaryData = encodeSourceData(data);
+    this.scmBinaryData = encodeScmData(data);
     return this;
   }
 
+  /**
+   * Compressed value of the SCM fields of lines, see {@link #encodeScmData(DbFileSources.Data)}. Null if
+   * the file has not been analyzed since the column SCM_DATA has been added.
+   */
+  @CheckForNull
+  public byte[] getScmBinaryData() {
+    return scmBinaryData;
+  }
+
+  public FileSourceDto setScmBinaryData(@Nullable byte[] scmBinaryData) {
+    this.scmBinaryData = scmBinaryData;
+    return this;
+  }
+
+  /**
+   * Lines of file with only the fields line, scm_revision, scm_author and scm_date.
+   */
+  @CheckForNull
+  public DbFileSources.Data getScmData() {
+    return scmBinaryData == null ? null : decodeSourceData(scmBinaryData);
+  }
+
   /**
    * Compressed value of serialized protobuf message {@link org.sonar.db.protobuf.DbFileSources.Data}
    */
@@ -239,6 +285,20 @@ public class FileSourceDto {
     return this;
   }
 
+  @CheckForNull
+  public String getInputsHash() {
+    return inputsHash;
+  }
+
+  /**
+   * Hash of all the inputs of {@link #getBinaryData()}: source, coverage, highlighting, symbols, duplications
+   * and SCM. Value is computed by Compute Engine, before computing data, in order to skip unchanged files.
+   */
+  public FileSourceDto setInputsHash(@Nullable String inputsHash) {
+    this.inputsHash = inputsHash;
+    return this;
+  }
+
   public long getCreatedAt() {
     return createdAt;
   }
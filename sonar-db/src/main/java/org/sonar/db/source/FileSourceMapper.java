@@ -34,5 +34,9 @@ public interface FileSourceMapper {
 
   void update(FileSourceDto dto);
 
+  List<FileSourceDto> selectScmDataByFileUuids(@Param("fileUuids") List<String> fileUuids, @Param("dataType") String dataType);
+
+  void updateInputsHashAndScmData(FileSourceDto dto);
+
   void updateDateWhenUpdatedDateIsZero(@Param("projectUuid") String projectUuid, @Param("date") Long updateDate);
 }
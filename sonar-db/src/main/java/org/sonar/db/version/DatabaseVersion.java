@@ -29,7 +29,7 @@ import org.sonar.db.MyBatis;
 
 public class DatabaseVersion {
 
-  public static final int LAST_VERSION = 1012;
+  public static final int LAST_VERSION = 1015;
 
   /**
    * The minimum supported version which can be upgraded. Lower
@@ -55,6 +55,7 @@ public class DatabaseVersion {
     "characteristics",
     "dashboards",
     "duplications_index",
+    "es_queue",
     "events",
     "file_sources",
     "groups",
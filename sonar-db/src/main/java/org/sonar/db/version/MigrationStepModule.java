@@ -61,6 +61,7 @@ import org.sonar.db.version.v52.RemoveRuleMeasuresOnIssues;
 import org.sonar.db.version.v52.RemoveSnapshotLibraries;
 import org.sonar.db.version.v53.FixMsSqlCollation;
 import org.sonar.db.version.v53.UpdateCustomDashboardInLoadedTemplates;
+import org.sonar.db.version.v54.AddFileSourcesInputsHashColumn;
 import org.sonar.db.version.v54.AddUsersIdentityColumns;
 import org.sonar.db.version.v54.InsertGateAdminPermissionForEachProfileAdmin;
 import org.sonar.db.version.v54.MigrateUsersIdentity;
@@ -125,7 +126,8 @@ public class MigrationStepModule extends Module {
       InsertGateAdminPermissionForEachProfileAdmin.class,
       RemoveComponentPageProperties.class,
       AddUsersIdentityColumns.class,
-      MigrateUsersIdentity.class
+      MigrateUsersIdentity.class,
+      AddFileSourcesInputsHashColumn.class
     );
   }
 }
@@ -169,6 +169,19 @@ public class CeQueueDaoTest {
     assertThat(peek.get().getUuid()).isEqualTo("TASK_2");
   }
 
+  @Test
+  public void peek_tasks_of_different_projects_while_a_task_of_the_first_project_is_pending() throws Exception {
+    insert("TASK_1", "PROJECT_1", CeQueueDto.Status.PENDING);
+    insert("TASK_2", "PROJECT_1", CeQueueDto.Status.PENDING);
+    insert("TASK_3", "PROJECT_2", CeQueueDto.Status.PENDING);
+
+    assertThat(underTest.peek(db.getSession()).get().getUuid()).isEqualTo("TASK_1");
+    // TASK_2 is skipped as long as TASK_1 is in progress
+    assertThat(underTest.peek(db.getSession()).get().getUuid()).isEqualTo("TASK_3");
+    assertThat(underTest.peek(db.getSession()).isPresent()).isFalse();
+    assertThat(underTest.countByStatus(db.getSession(), CeQueueDto.Status.IN_PROGRESS)).isEqualTo(2);
+  }
+
   private void insert(String uuid, String componentUuid, CeQueueDto.Status status) {
     CeQueueDto dto = new CeQueueDto();
     dto.setUuid(uuid);
@@ -20,6 +20,8 @@
 package org.sonar.db.duplication;
 
 import java.util.List;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -28,6 +30,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.test.DbTests;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -61,6 +64,25 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void select_last_blocks() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    final List<DuplicationUnitDto> blocks = newArrayList();
+    dao.selectLastBlocks(dbSession, new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        blocks.add((DuplicationUnitDto) context.getResultObject());
+      }
+    });
+
+    assertThat(blocks).extracting("componentKey").containsOnly("bar-last", "foo-last", "baz");
+    assertThat(blocks).extracting("componentLanguage").containsOnly("java", "grvy");
+    assertThat(blocks).extracting("snapshotId").containsOnly(4L, 8L, 11L);
+    assertThat(blocks).extracting("projectSnapshotId").containsOnly(3L, 7L, 1L);
+  }
+
   @Test
   public void insert() {
     db.prepareDbUnit(getClass(), "insert.xml");
@@ -0,0 +1,73 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.db.es;
+
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.TestSystem2;
+import org.sonar.db.DbTester;
+import org.sonar.test.DbTests;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Category(DbTests.class)
+public class EsQueueDaoTest {
+
+  System2 system2 = new TestSystem2().setNow(1_450_000_000_000L);
+
+  @Rule
+  public DbTester db = DbTester.create(system2);
+
+  EsQueueDao underTest = new EsQueueDao(system2);
+
+  @Test
+  public void insert_and_select_oldest() {
+    underTest.insert(db.getSession(), EsQueueDto.TYPE_ISSUE, asList("ISSUE_1", "ISSUE_2"));
+    underTest.insert(db.getSession(), "other", asList("OTHER_1"));
+    underTest.insert(db.getSession(), EsQueueDto.TYPE_ISSUE, asList("ISSUE_3", "ISSUE_1"));
+    db.getSession().commit();
+
+    List<EsQueueDto> items = underTest.selectOldest(db.getSession(), EsQueueDto.TYPE_ISSUE, 3);
+    assertThat(items).extracting("docId").containsExactly("ISSUE_1", "ISSUE_2", "ISSUE_3");
+    assertThat(items.get(0).getDocType()).isEqualTo(EsQueueDto.TYPE_ISSUE);
+    assertThat(items.get(0).getCreatedAt()).isEqualTo(1_450_000_000_000L);
+    assertThat(items.get(0).getId()).isNotNull();
+
+    assertThat(underTest.selectOldest(db.getSession(), EsQueueDto.TYPE_ISSUE, 10)).hasSize(4);
+    assertThat(underTest.countByDocType(db.getSession(), EsQueueDto.TYPE_ISSUE)).isEqualTo(4);
+    assertThat(underTest.countByDocType(db.getSession(), "other")).isEqualTo(1);
+  }
+
+  @Test
+  public void delete_by_ids() {
+    underTest.insert(db.getSession(), EsQueueDto.TYPE_ISSUE, asList("ISSUE_1", "ISSUE_2", "ISSUE_3"));
+    db.getSession().commit();
+    List<EsQueueDto> items = underTest.selectOldest(db.getSession(), EsQueueDto.TYPE_ISSUE, 2);
+
+    underTest.deleteByIds(db.getSession(), asList(items.get(0).getId(), items.get(1).getId()));
+    db.getSession().commit();
+
+    assertThat(underTest.selectOldest(db.getSession(), EsQueueDto.TYPE_ISSUE, 10)).extracting("docId").containsExactly("ISSUE_3");
+  }
+}
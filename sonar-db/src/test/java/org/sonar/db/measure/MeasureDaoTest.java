@@ -29,6 +29,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -165,6 +167,22 @@ public class MeasureDaoTest {
     assertThat(underTest.selectByComponentKeyAndMetricKey(dbSession, "org.struts:struts-core:src/org/struts/RequestContext.java", "unknown")).isNull();
   }
 
+  @Test
+  public void select_last_by_project_uuid_and_metric_id() {
+    db.prepareDbUnit(getClass(), "select_last_by_project_uuid_and_metric_id.xml");
+
+    final List<MeasureDto> measures = newArrayList();
+    underTest.selectLastByProjectUuidAndMetricId(dbSession, "PROJECT_UUID", NCLOC_METRIC_ID, new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        measures.add((MeasureDto) context.getResultObject());
+      }
+    });
+
+    assertThat(measures).extracting("id").containsOnly(20L, 21L);
+    assertThat(measures).extracting("componentUuid").containsOnly("PROJECT_UUID", "FILE_UUID");
+  }
+
   @Test
   public void exists_by_key() {
     db.prepareDbUnit(getClass(), "shared.xml");
@@ -173,6 +191,23 @@ public class MeasureDaoTest {
     assertThat(underTest.existsByKey(dbSession, "org.struts:struts-core:src/org/struts/RequestContext.java", "unknown")).isFalse();
   }
 
+  @Test
+  public void select_past_measures_by_project_snapshot_id_ordered_by_component_uuid() {
+    db.prepareDbUnit(getClass(), "past_measures.xml");
+
+    final List<PastMeasureDto> measures = newArrayList();
+    underTest.selectPastMeasuresByProjectSnapshotId(dbSession, 1000L, new ResultHandler() {
+      @Override
+      public void handleResult(ResultContext context) {
+        measures.add((PastMeasureDto) context.getResultObject());
+      }
+    });
+
+    assertThat(measures).hasSize(6);
+    assertThat(measures).extracting("componentUuid").containsExactly("ABCD", "ABCD", "BCDE", "BCDE", "CDEF", "CDEF");
+    assertThat(measures).extracting("id").containsOnly(1L, 2L, 3L, 4L, 5L, 6L);
+  }
+
   @Test
   public void select_past_measures_by_component_uuid_and_root_snapshot_id_and_metric_keys() {
     db.prepareDbUnit(getClass(), "past_measures.xml");
@@ -89,6 +89,8 @@ public class PurgeDaoTest {
     underTest.purge(newConfigurationWith30Days(system2), PurgeListener.EMPTY, new PurgeProfiler());
     dbTester.assertDbUnit(getClass(), "disable_resources_without_last_snapshot-result.xml", new String[] {"issue_close_date", "issue_update_date"}, "projects", "snapshots",
       "issues");
+    // closed issues are queued for indexing
+    assertThat(dbTester.countSql("select count(*) from es_queue where doc_type='issue'")).isEqualTo(3);
   }
 
   @Test
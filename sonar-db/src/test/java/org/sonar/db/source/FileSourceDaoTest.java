@@ -22,6 +22,8 @@ package org.sonar.db.source;
 import com.google.common.base.Function;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
@@ -32,6 +34,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.test.DbTests;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @Category(DbTests.class)
@@ -52,6 +55,7 @@ public class FileSourceDaoTest {
 
     assertThat(fileSourceDto.getBinaryData()).isNotEmpty();
     assertThat(fileSourceDto.getDataHash()).isEqualTo("hash");
+    assertThat(fileSourceDto.getInputsHash()).isEqualTo("INPUTS_HASH");
     assertThat(fileSourceDto.getProjectUuid()).isEqualTo("PRJ_UUID");
     assertThat(fileSourceDto.getFileUuid()).isEqualTo("FILE1_UUID");
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(1500000000000L);
@@ -101,13 +105,14 @@ public class FileSourceDaoTest {
       .setDataHash("FILE2_DATA_HASH")
       .setLineHashes("LINE1_HASH\\nLINE2_HASH")
       .setSrcHash("FILE2_HASH")
+      .setInputsHash("FILE2_INPUTS_HASH")
       .setDataType(Type.SOURCE)
       .setCreatedAt(1500000000000L)
       .setUpdatedAt(1500000000001L)
       .setRevision("123456789"));
 
     dbTester.assertDbUnitTable(getClass(), "insert-result.xml", "file_sources",
-      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "inputs_hash", "created_at", "updated_at", "data_type", "revision");
   }
 
   @Test
@@ -121,13 +126,63 @@ public class FileSourceDaoTest {
       .setBinaryData("updated data".getBytes())
       .setDataHash("NEW_DATA_HASH")
       .setSrcHash("NEW_FILE_HASH")
+      .setInputsHash("NEW_INPUTS_HASH")
       .setLineHashes("NEW_LINE_HASHES")
       .setDataType(Type.SOURCE)
       .setUpdatedAt(1500000000002L)
       .setRevision("987654321"));
 
     dbTester.assertDbUnitTable(getClass(), "update-result.xml", "file_sources",
-      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "created_at", "updated_at", "data_type", "revision");
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "inputs_hash", "created_at", "updated_at", "data_type", "revision");
+  }
+
+  @Test
+  public void update_inputs_hash_and_scm_data() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    underTest.updateInputsHashAndScmData(session, new FileSourceDto().setId(101L).setInputsHash("NEW_INPUTS_HASH").setScmBinaryData("scm".getBytes()));
+    session.commit();
+
+    dbTester.assertDbUnitTable(getClass(), "update_inputs_hash-result.xml", "file_sources",
+      "project_uuid", "file_uuid", "data_hash", "line_hashes", "src_hash", "inputs_hash", "created_at", "updated_at", "data_type", "revision");
+    assertThat(underTest.selectSourceByFileUuid(session, "FILE1_UUID").getScmBinaryData()).isEqualTo("scm".getBytes());
+  }
+
+  @Test
+  public void select_scm_data_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setScmBinaryData("FILE2_SCM_DATA".getBytes())
+      .setSrcHash("FILE2_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("OTHER_PRJ_UUID")
+      .setFileUuid("FILE3_UUID")
+      .setBinaryData("FILE3_BINARY_DATA".getBytes())
+      .setScmBinaryData("FILE3_SCM_DATA".getBytes())
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L));
+    session.commit();
+
+    Map<String, FileSourceDto> dtosByFileUuid = new HashMap<>();
+    for (FileSourceDto dto : underTest.selectScmDataByFileUuids(session, asList("FILE1_UUID", "FILE2_UUID", "UNKNOWN"))) {
+      dtosByFileUuid.put(dto.getFileUuid(), dto);
+    }
+
+    assertThat(dtosByFileUuid.keySet()).containsOnly("FILE1_UUID", "FILE2_UUID");
+    // file analyzed before SCM data was stored
+    assertThat(dtosByFileUuid.get("FILE1_UUID").getScmBinaryData()).isNull();
+    FileSourceDto file2 = dtosByFileUuid.get("FILE2_UUID");
+    assertThat(file2.getSrcHash()).isEqualTo("FILE2_HASH");
+    assertThat(file2.getScmBinaryData()).isEqualTo("FILE2_SCM_DATA".getBytes());
+    // source data is not loaded
+    assertThat(file2.getBinaryData()).isNull();
   }
 
   @Test
@@ -43,4 +43,32 @@ public class FileSourceDtoTest {
     assertThat(underTest.getTestData()).hasSize(2);
     assertThat(underTest.getTestData().get(0).getName()).isEqualTo("name#1");
   }
+
+  @Test
+  public void encode_only_scm_fields_of_source_data() {
+    DbFileSources.Data data = DbFileSources.Data.newBuilder()
+      .addLines(DbFileSources.Line.newBuilder().setLine(1).setSource("foo").setScmAuthor("henry").setScmRevision("rev-1").setScmDate(123L))
+      .addLines(DbFileSources.Line.newBuilder().setLine(2).setSource("bar").setHighlighting("0,3,k"))
+      .build();
+
+    FileSourceDto underTest = new FileSourceDto().setSourceData(data);
+
+    DbFileSources.Data scmData = underTest.getScmData();
+    assertThat(scmData.getLinesCount()).isEqualTo(2);
+    DbFileSources.Line line1 = scmData.getLines(0);
+    assertThat(line1.getLine()).isEqualTo(1);
+    assertThat(line1.getScmAuthor()).isEqualTo("henry");
+    assertThat(line1.getScmRevision()).isEqualTo("rev-1");
+    assertThat(line1.getScmDate()).isEqualTo(123L);
+    assertThat(line1.hasSource()).isFalse();
+    DbFileSources.Line line2 = scmData.getLines(1);
+    assertThat(line2.getLine()).isEqualTo(2);
+    assertThat(line2.hasScmAuthor()).isFalse();
+    assertThat(line2.hasHighlighting()).isFalse();
+  }
+
+  @Test
+  public void scm_data_is_null_if_not_stored() {
+    assertThat(new FileSourceDto().getScmData()).isNull();
+  }
 }
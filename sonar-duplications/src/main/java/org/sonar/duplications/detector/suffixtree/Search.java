@@ -71,6 +71,7 @@ public final class Search {
     Deque<Node> stack = new LinkedList<>();
     stack.add(tree.getRootNode());
     while (!stack.isEmpty()) {
+      SuffixTreeCloneDetectionAlgorithm.checkInterrupted();
       Node node = stack.removeLast();
       node.startSize = list.size();
       if (node.getEdges().isEmpty()) {
@@ -106,6 +107,7 @@ public final class Search {
    */
   private void visitInnerNodes() {
     for (Node node : innerNodes) {
+      SuffixTreeCloneDetectionAlgorithm.checkInterrupted();
       if (containsOrigin(node)) {
         report(node);
       }
@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
@@ -35,6 +36,9 @@ import org.sonar.duplications.index.CloneIndex;
 
 public final class SuffixTreeCloneDetectionAlgorithm {
 
+  /**
+   * @throws CancellationException if the current thread is interrupted during detection
+   */
   public static List<CloneGroup> detect(CloneIndex cloneIndex, Collection<Block> fileBlocks) {
     if (fileBlocks.isEmpty()) {
       return Collections.emptyList();
@@ -51,6 +55,17 @@ public final class SuffixTreeCloneDetectionAlgorithm {
   private SuffixTreeCloneDetectionAlgorithm() {
   }
 
+  /**
+   * Detection on big files can be long, so it stops as soon as the thread is interrupted, for example
+   * when the caller cancels it after a timeout.
+   */
+  static void checkInterrupted() {
+    if (Thread.interrupted()) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("Detection of duplications is interrupted");
+    }
+  }
+
   private static TextSet createTextSet(CloneIndex index, Collection<Block> fileBlocks) {
     Set<ByteArray> hashes = new HashSet<>();
     for (Block fileBlock : fileBlocks) {
@@ -95,6 +110,7 @@ public final class SuffixTreeCloneDetectionAlgorithm {
   private static Map<String, List<Block>> retrieveFromIndex(CloneIndex index, String originResourceId, Set<ByteArray> hashes) {
     Map<String, List<Block>> collection = new HashMap<>();
     for (ByteArray hash : hashes) {
+      checkInterrupted();
       Collection<Block> blocks = index.getBySequenceHash(hash);
       for (Block blockFromIndex : blocks) {
         // Godin: skip blocks for this file if they come from index
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Once sorted, which is done by the first query, {@link #getBySequenceHash(ByteArray)} can be called concurrently
+ * as long as no block is inserted.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -118,6 +122,10 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   }
 
   private Block createBlock(int index, String resourceId, @Nullable ByteArray byteHash) {
+    return createBlock(blockBuilder, index, resourceId, byteHash);
+  }
+
+  private Block createBlock(Block.Builder builder, int index, String resourceId, @Nullable ByteArray byteHash) {
     int offset = index * blockInts;
     ByteArray blockHash;
     
@@ -138,7 +146,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     int startUnit = blockData[offset++];
     int endUnit = blockData[offset];
 
-    return blockBuilder
+    return builder
       .setResourceId(resourceId)
       .setBlockHash(blockHash)
       .setIndexInFile(indexInFile)
@@ -212,33 +220,56 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   /**
    * {@inheritDoc}
+   * <p>
+   * Unlike the other queries, it does not write into the index, so that it can be executed concurrently.
+   * </p>
    */
   @Override
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    // lower bound of hash
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (compareHash(middle, hash) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
 
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    Block.Builder builder = Block.builder();
+    int index = low;
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
-      result.add(createBlock(index, resourceId, sequenceHash));
+      result.add(createBlock(builder, index, resourceId, sequenceHash));
       index++;
     }
     return result;
   }
 
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] < hash[k]) {
+        return -1;
+      }
+      if (blockData[offset] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
   /**
    * {@inheritDoc}
    * <p>
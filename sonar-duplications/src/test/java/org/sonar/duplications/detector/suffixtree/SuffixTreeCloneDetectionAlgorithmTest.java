@@ -29,10 +29,13 @@ import org.sonar.duplications.index.CloneIndex;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.sonar.duplications.detector.CloneGroupMatcher.hasCloneGroup;
 
 public class SuffixTreeCloneDetectionAlgorithmTest extends DetectorTestCase {
@@ -192,6 +195,22 @@ public class SuffixTreeCloneDetectionAlgorithmTest extends DetectorTestCase {
         newClonePart("c", 0, 1)));
   }
 
+  @Test
+  public void stop_detection_when_thread_is_interrupted() {
+    CloneIndex index = createIndex(
+      newBlocks("y", "2 3 4 5"));
+    Block[] fileBlocks = newBlocks("x", "1 2 3 4 5 6");
+
+    Thread.currentThread().interrupt();
+    try {
+      detect(index, fileBlocks);
+      fail();
+    } catch (CancellationException e) {
+      // the interrupted status is kept for the caller
+      assertTrue(Thread.interrupted());
+    }
+  }
+
   @Override
   protected List<CloneGroup> detect(CloneIndex index, Block[] fileBlocks) {
     return SuffixTreeCloneDetectionAlgorithm.detect(index, Arrays.asList(fileBlocks));
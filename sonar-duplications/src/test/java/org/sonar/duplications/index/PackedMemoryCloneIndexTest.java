@@ -28,6 +28,11 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -109,6 +114,43 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  @Test
+  public void query_by_negative_hash() {
+    index.insert(newBlock("a", -1L));
+    index.insert(newBlock("b", 1L));
+    index.insert(newBlock("c", Long.MIN_VALUE));
+
+    assertThat(index.getBySequenceHash(new ByteArray(-1L)).size(), is(1));
+    assertThat(index.getBySequenceHash(new ByteArray(Long.MIN_VALUE)).size(), is(1));
+    assertThat(index.getBySequenceHash(new ByteArray(-2L)).size(), is(0));
+  }
+
+  @Test
+  public void query_by_hash_concurrently() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("resource" + (i % 10), i % 100));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final long hash = i;
+        futures.add(executor.submit(new Callable<Integer>() {
+          @Override
+          public Integer call() {
+            return index.getBySequenceHash(new ByteArray(hash)).size();
+          }
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        assertThat(future.get(), is(10));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
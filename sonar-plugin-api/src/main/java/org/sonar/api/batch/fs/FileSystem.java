@@ -25,6 +25,7 @@ import javax.annotation.CheckForNull;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collection;
 import java.util.SortedSet;
 
 /**
@@ -162,5 +163,23 @@ public interface FileSystem {
 
     @CheckForNull
     InputDir inputDir(String relativePath);
+
+    /**
+     * Files of the given language, including the files whose language changed after being added to the index.
+     * @since 5.4
+     */
+    Collection<InputFile> inputFilesByLanguage(String language);
+
+    /**
+     * Files of the given type, including the files whose type changed after being added to the index.
+     * @since 5.4
+     */
+    Collection<InputFile> inputFilesByType(InputFile.Type type);
+
+    /**
+     * Files of the given status, including the files whose status changed after being added to the index.
+     * @since 5.4
+     */
+    Collection<InputFile> inputFilesByStatus(InputFile.Status status);
   }
 }
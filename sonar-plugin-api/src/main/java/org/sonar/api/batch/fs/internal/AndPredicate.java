@@ -83,10 +83,20 @@ class AndPredicate extends AbstractFilePredicate {
     if (predicates.isEmpty()) {
       return index.inputFiles();
     }
-    // Optimization, use get on first predicate then filter with next predicates
+    // Optimization, use get on the predicate returning the fewest files from index then filter with next predicates
+    int first = 0;
     Iterable<InputFile> result = predicates.get(0).get(index);
-    for (int i = 1; i < predicates.size(); i++) {
-      result = predicates.get(i).filter(result);
+    for (int i = 1; i < predicates.size() && predicates.get(i).priority() >= USE_INDEX && result instanceof Collection; i++) {
+      Iterable<InputFile> files = predicates.get(i).get(index);
+      if (files instanceof Collection && ((Collection<InputFile>) files).size() < ((Collection<InputFile>) result).size()) {
+        first = i;
+        result = files;
+      }
+    }
+    for (int i = 0; i < predicates.size(); i++) {
+      if (i != first) {
+        result = predicates.get(i).filter(result);
+      }
     }
     return result;
   }
@@ -21,6 +21,9 @@ package org.sonar.api.batch.fs.internal;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.TreeMultimap;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.FileSystem;
@@ -37,7 +40,9 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -246,6 +251,11 @@ public class DefaultFileSystem implements FileSystem {
   }
 
   public abstract static class Cache implements Index {
+    // secondary indexes, files being sorted by relative path as in main index
+    private final SetMultimap<String, InputFile> filesByLanguage = TreeMultimap.create(Ordering.natural(), ByRelativePath.INSTANCE);
+    private final SetMultimap<InputFile.Type, InputFile> filesByType = TreeMultimap.create(Ordering.natural(), ByRelativePath.INSTANCE);
+    private final SetMultimap<InputFile.Status, InputFile> filesByStatus = TreeMultimap.create(Ordering.natural(), ByRelativePath.INSTANCE);
+
     @Override
     public abstract Iterable<InputFile> inputFiles();
 
@@ -257,18 +267,74 @@ public class DefaultFileSystem implements FileSystem {
     @CheckForNull
     public abstract InputDir inputDir(String relativePath);
 
+    @Override
+    public Collection<InputFile> inputFilesByLanguage(String language) {
+      return Collections.unmodifiableCollection(filesByLanguage.get(language));
+    }
+
+    @Override
+    public Collection<InputFile> inputFilesByType(InputFile.Type type) {
+      return Collections.unmodifiableCollection(filesByType.get(type));
+    }
+
+    @Override
+    public Collection<InputFile> inputFilesByStatus(InputFile.Status status) {
+      return Collections.unmodifiableCollection(filesByStatus.get(status));
+    }
+
     protected abstract void doAdd(InputFile inputFile);
 
     protected abstract void doAdd(InputDir inputDir);
 
     final void add(InputFile inputFile) {
+      InputFile previous = inputFile(inputFile.relativePath());
+      if (previous != null) {
+        updateSecondaryIndexes(previous, false);
+        if (previous instanceof DefaultInputFile) {
+          ((DefaultInputFile) previous).removeIndex(this);
+        }
+      }
       doAdd(inputFile);
+      updateSecondaryIndexes(inputFile, true);
+      if (inputFile instanceof DefaultInputFile) {
+        // attributes can be changed after the file is added
+        ((DefaultInputFile) inputFile).addIndex(this);
+      }
     }
 
     public void add(InputDir inputDir) {
       doAdd(inputDir);
     }
 
+    void updateSecondaryIndexes(InputFile inputFile, boolean add) {
+      String language = inputFile.language();
+      if (language != null) {
+        update(filesByLanguage, language, inputFile, add);
+      }
+      if (inputFile.type() != null) {
+        update(filesByType, inputFile.type(), inputFile, add);
+      }
+      if (inputFile.status() != null) {
+        update(filesByStatus, inputFile.status(), inputFile, add);
+      }
+    }
+
+    private static <K> void update(SetMultimap<K, InputFile> index, K key, InputFile inputFile, boolean add) {
+      if (add) {
+        index.put(key, inputFile);
+      } else {
+        index.remove(key, inputFile);
+      }
+    }
+  }
+
+  private enum ByRelativePath implements Comparator<InputFile> {
+    INSTANCE;
+
+    @Override
+    public int compare(InputFile o1, InputFile o2) {
+      return o1.relativePath().compareTo(o2.relativePath());
+    }
   }
 
   /**
@@ -27,7 +27,9 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
@@ -53,6 +55,8 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   private String hash;
   private int nonBlankLines;
   private int[] originalLineOffsets;
+  // indexes of the file systems the file is added to. They are updated when language, type or status change.
+  private List<DefaultFileSystem.Cache> indexes = null;
 
   public DefaultInputFile(String moduleKey, String relativePath) {
     this.moduleKey = moduleKey;
@@ -136,20 +140,57 @@ public class DefaultInputFile extends DefaultInputComponent implements InputFile
   }
 
   public DefaultInputFile setLanguage(@Nullable String language) {
+    unindex();
     this.language = language;
+    index();
     return this;
   }
 
   public DefaultInputFile setType(Type type) {
+    unindex();
     this.type = type;
+    index();
     return this;
   }
 
   public DefaultInputFile setStatus(Status status) {
+    unindex();
     this.status = status;
+    index();
     return this;
   }
 
+  void addIndex(DefaultFileSystem.Cache index) {
+    if (indexes == null) {
+      indexes = new ArrayList<>(1);
+    }
+    if (!indexes.contains(index)) {
+      indexes.add(index);
+    }
+  }
+
+  void removeIndex(DefaultFileSystem.Cache index) {
+    if (indexes != null) {
+      indexes.remove(index);
+    }
+  }
+
+  private void unindex() {
+    if (indexes != null) {
+      for (DefaultFileSystem.Cache index : indexes) {
+        index.updateSecondaryIndexes(this, false);
+      }
+    }
+  }
+
+  private void index() {
+    if (indexes != null) {
+      for (DefaultFileSystem.Cache index : indexes) {
+        index.updateSecondaryIndexes(this, true);
+      }
+    }
+  }
+
   public DefaultInputFile setLines(int lines) {
     this.lines = lines;
     return this;
@@ -19,6 +19,7 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import com.google.common.collect.ObjectArrays;
 import com.google.common.primitives.Ints;
 import java.io.BufferedReader;
 import java.io.File;
@@ -267,10 +268,20 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
+    return readMetadata(file, encoding, new CharHandler[0]);
+  }
+
+  /**
+   * Same as {@link #readMetadata(File, Charset)}, but the given handlers are also fed
+   * with the content of the file, so that it is read and decoded only once.
+   * @since 5.4
+   */
+  public Metadata readMetadata(File file, Charset encoding, CharHandler... otherHandlers) {
     LineCounter lineCounter = new LineCounter(file, encoding);
     FileHashComputer fileHashComputer = new FileHashComputer(file);
     LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
+    CharHandler[] handlers = ObjectArrays.concat(new CharHandler[] {lineCounter, fileHashComputer, lineOffsetCounter}, otherHandlers, CharHandler.class);
+    readFile(file, encoding, handlers);
     return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
       lineOffsetCounter.getLastValidOffset());
   }
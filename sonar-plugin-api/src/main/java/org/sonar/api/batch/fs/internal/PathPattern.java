@@ -19,6 +19,7 @@
  */
 package org.sonar.api.batch.fs.internal;
 
+import javax.annotation.CheckForNull;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.fs.InputFile;
@@ -32,9 +33,34 @@ public abstract class PathPattern {
     this.pattern = WildcardPattern.create(pattern);
   }
 
-  public abstract boolean match(InputFile inputFile);
+  public boolean match(InputFile inputFile) {
+    return match(inputFile, true);
+  }
+
+  public boolean match(InputFile inputFile, boolean caseSensitiveFileExtension) {
+    String path = pathToMatch(inputFile, caseSensitiveFileExtension);
+    return path != null && pattern.match(path);
+  }
+
+  /**
+   * The path of file that is matched against the pattern. Extension is lower-cased if
+   * {@code caseSensitiveFileExtension} is false.
+   */
+  @CheckForNull
+  String pathToMatch(InputFile inputFile, boolean caseSensitiveFileExtension) {
+    String path = path(inputFile);
+    if (path != null && !caseSensitiveFileExtension) {
+      String extension = sanitizeExtension(FilenameUtils.getExtension(inputFile.file().getName()));
+      if (StringUtils.isNotBlank(extension)) {
+        path = StringUtils.removeEndIgnoreCase(path, extension);
+        path = path + extension;
+      }
+    }
+    return path;
+  }
 
-  public abstract boolean match(InputFile inputFile, boolean caseSensitiveFileExtension);
+  @CheckForNull
+  abstract String path(InputFile inputFile);
 
   public static PathPattern create(String s) {
     String trimmed = StringUtils.trim(s);
@@ -58,21 +84,8 @@ public abstract class PathPattern {
     }
 
     @Override
-    public boolean match(InputFile inputFile) {
-      return match(inputFile, true);
-    }
-
-    @Override
-    public boolean match(InputFile inputFile, boolean caseSensitiveFileExtension) {
-      String path = inputFile.absolutePath();
-      if (!caseSensitiveFileExtension) {
-        String extension = sanitizeExtension(FilenameUtils.getExtension(inputFile.file().getName()));
-        if (StringUtils.isNotBlank(extension)) {
-          path = StringUtils.removeEndIgnoreCase(path, extension);
-          path = path + extension;
-        }
-      }
-      return pattern.match(path);
+    String path(InputFile inputFile) {
+      return inputFile.absolutePath();
     }
 
     @Override
@@ -90,21 +103,8 @@ public abstract class PathPattern {
     }
 
     @Override
-    public boolean match(InputFile inputFile) {
-      return match(inputFile, true);
-    }
-
-    @Override
-    public boolean match(InputFile inputFile, boolean caseSensitiveFileExtension) {
-      String path = inputFile.relativePath();
-      if (!caseSensitiveFileExtension) {
-        String extension = sanitizeExtension(FilenameUtils.getExtension(inputFile.file().getName()));
-        if (StringUtils.isNotBlank(extension)) {
-          path = StringUtils.removeEndIgnoreCase(path, extension);
-          path = path + extension;
-        }
-      }
-      return path != null && pattern.match(path);
+    String path(InputFile inputFile) {
+      return inputFile.relativePath();
     }
 
     @Override
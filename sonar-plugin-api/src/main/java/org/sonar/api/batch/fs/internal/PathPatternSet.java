@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Set of {@link PathPattern} that are matched at once against a file. See {@link WildcardPatternSet}.
+ *
+ * @since 5.4
+ */
+public class PathPatternSet {
+
+  private final int size;
+  private final List<Group> groups = new ArrayList<>();
+
+  public PathPatternSet(PathPattern[] patterns) {
+    this.size = patterns.length;
+    // patterns of the same kind match the same path of file (relative or absolute)
+    Map<Class<?>, List<Integer>> indicesByKind = new LinkedHashMap<>();
+    for (int i = 0; i < patterns.length; i++) {
+      List<Integer> indices = indicesByKind.get(patterns[i].getClass());
+      if (indices == null) {
+        indices = new ArrayList<>();
+        indicesByKind.put(patterns[i].getClass(), indices);
+      }
+      indices.add(i);
+    }
+    for (List<Integer> indices : indicesByKind.values()) {
+      groups.add(new Group(patterns, indices));
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Indices of the patterns that match the file
+   */
+  public BitSet match(InputFile inputFile, boolean caseSensitiveFileExtension) {
+    BitSet matching = new BitSet(size);
+    for (Group group : groups) {
+      BitSet groupMatching = group.match(inputFile, caseSensitiveFileExtension);
+      for (int i = groupMatching.nextSetBit(0); i >= 0; i = groupMatching.nextSetBit(i + 1)) {
+        matching.set(group.indices[i]);
+      }
+    }
+    return matching;
+  }
+
+  public boolean matchAny(InputFile inputFile) {
+    return matchAny(inputFile, true);
+  }
+
+  /**
+   * Returns true if at least one of the patterns matches the file
+   */
+  public boolean matchAny(InputFile inputFile, boolean caseSensitiveFileExtension) {
+    for (Group group : groups) {
+      if (group.matchAny(inputFile, caseSensitiveFileExtension)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static class Group {
+    private final PathPattern firstPattern;
+    private final int[] indices;
+    private final WildcardPatternSet wildcardPatterns;
+
+    Group(PathPattern[] patterns, List<Integer> indices) {
+      this.firstPattern = patterns[indices.get(0)];
+      this.indices = new int[indices.size()];
+      String[] wildcards = new String[indices.size()];
+      for (int i = 0; i < this.indices.length; i++) {
+        this.indices[i] = indices.get(i);
+        wildcards[i] = patterns[this.indices[i]].pattern.toString();
+      }
+      this.wildcardPatterns = new WildcardPatternSet(wildcards);
+    }
+
+    BitSet match(InputFile inputFile, boolean caseSensitiveFileExtension) {
+      String path = firstPattern.pathToMatch(inputFile, caseSensitiveFileExtension);
+      return path == null ? new BitSet() : wildcardPatterns.match(path);
+    }
+
+    boolean matchAny(InputFile inputFile, boolean caseSensitiveFileExtension) {
+      String path = firstPattern.pathToMatch(inputFile, caseSensitiveFileExtension);
+      return path != null && wildcardPatterns.matchAny(path);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.api.utils.WildcardPattern;
+
+/**
+ * Set of Ant-style patterns, as defined by {@link WildcardPattern} with "/" as directory separator,
+ * that are matched at once against a path. Result is the set of the indices of the matching patterns.
+ * <p/>
+ * The most common forms of patterns are indexed by their literal part, so that their number does not
+ * impact the cost of matching:
+ * <ul>
+ *   <li><code>**&#47;*.java</code> by extension of file name</li>
+ *   <li><code>src/generated/**</code> by path prefix</li>
+ *   <li><code>**&#47;generated/**</code> by name of parent directory</li>
+ *   <li><code>**&#47;package-info.java</code> or <code>**&#47;gen/Foo.java</code> by path suffix</li>
+ *   <li><code>src/Foo.java</code> by path</li>
+ *   <li><code>**</code> and <code>**&#47;*</code> that match all paths</li>
+ * </ul>
+ * Other patterns are matched one by one with their regular expression.
+ *
+ * @since 5.4
+ */
+public class WildcardPatternSet {
+
+  private static final String ANY_DIRECTORIES = "**/";
+  private static final String ANY_SUB_PATH = "/**";
+  private static final String ANY_FILE_NAME_WITH_EXTENSION = "*.";
+
+  private final int size;
+  private final BitSet matchingAll = new BitSet();
+  private final ListMultimap<String, Integer> byPath = ArrayListMultimap.create();
+  private final ListMultimap<String, Integer> byPathPrefix = ArrayListMultimap.create();
+  private final ListMultimap<String, Integer> byPathSuffix = ArrayListMultimap.create();
+  private final ListMultimap<String, Integer> byDirectoryName = ArrayListMultimap.create();
+  private final ListMultimap<String, Integer> byExtension = ArrayListMultimap.create();
+  private final List<WildcardPattern> otherPatterns = new ArrayList<>();
+  private final List<Integer> otherPatternIndices = new ArrayList<>();
+
+  public WildcardPatternSet(String[] patterns) {
+    this.size = patterns.length;
+    for (int i = 0; i < patterns.length; i++) {
+      add(i, patterns[i]);
+    }
+  }
+
+  private void add(int index, String pattern) {
+    // same normalization as WildcardPattern
+    String normalized = pattern.replace('\\', '/');
+    if (normalized.startsWith("/")) {
+      normalized = normalized.substring(1);
+    }
+    if (!addIndexed(index, normalized)) {
+      otherPatterns.add(WildcardPattern.create(pattern));
+      otherPatternIndices.add(index);
+    }
+  }
+
+  private boolean addIndexed(int index, String pattern) {
+    if ("**".equals(pattern) || "**/*".equals(pattern)) {
+      matchingAll.set(index);
+      return true;
+    }
+    if (isLiteral(pattern)) {
+      byPath.put(pattern, index);
+      return true;
+    }
+    if (pattern.startsWith(ANY_DIRECTORIES)) {
+      return addAfterAnyDirectories(index, pattern.substring(ANY_DIRECTORIES.length()));
+    }
+    String prefix = StringUtils.removeEnd(pattern, ANY_SUB_PATH);
+    if (pattern.endsWith(ANY_SUB_PATH) && !prefix.isEmpty() && isLiteral(prefix)) {
+      byPathPrefix.put(prefix, index);
+      return true;
+    }
+    return false;
+  }
+
+  private boolean addAfterAnyDirectories(int index, String pattern) {
+    if (pattern.isEmpty()) {
+      return false;
+    }
+    if (isLiteral(pattern)) {
+      byPathSuffix.put(pattern, index);
+      return true;
+    }
+    String extension = StringUtils.removeStart(pattern, ANY_FILE_NAME_WITH_EXTENSION);
+    if (pattern.startsWith(ANY_FILE_NAME_WITH_EXTENSION) && isLiteralName(extension)) {
+      byExtension.put(extension, index);
+      return true;
+    }
+    String directoryName = StringUtils.removeEnd(pattern, ANY_SUB_PATH);
+    if (pattern.endsWith(ANY_SUB_PATH) && isLiteralName(directoryName)) {
+      byDirectoryName.put(directoryName, index);
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean isLiteral(String s) {
+    return s.indexOf('*') < 0 && s.indexOf('?') < 0;
+  }
+
+  private static boolean isLiteralName(String s) {
+    return !s.isEmpty() && isLiteral(s) && s.indexOf('/') < 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Indices of the patterns that match the given path
+   */
+  public BitSet match(String path) {
+    return match(path, false);
+  }
+
+  /**
+   * Returns true if at least one of the patterns matches the given path
+   */
+  public boolean matchAny(String path) {
+    return !match(path, true).isEmpty();
+  }
+
+  private BitSet match(String value, boolean stopAtFirstMatch) {
+    // same normalization as WildcardPattern
+    String path = StringUtils.removeEnd(StringUtils.removeStart(value, "/"), "/");
+    BitSet matching = (BitSet) matchingAll.clone();
+    addAll(matching, byPath.get(path));
+    addAll(matching, byPathSuffix.get(path));
+
+    int nameStart = 0;
+    for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+      if (!byPathPrefix.isEmpty()) {
+        addAll(matching, byPathPrefix.get(path.substring(0, slash)));
+      }
+      if (!byPathSuffix.isEmpty()) {
+        addAll(matching, byPathSuffix.get(path.substring(slash + 1)));
+      }
+      if (!byDirectoryName.isEmpty()) {
+        addAll(matching, byDirectoryName.get(path.substring(nameStart, slash)));
+      }
+      nameStart = slash + 1;
+    }
+
+    if (!byExtension.isEmpty()) {
+      String fileName = path.substring(nameStart);
+      for (int dot = fileName.indexOf('.'); dot >= 0; dot = fileName.indexOf('.', dot + 1)) {
+        addAll(matching, byExtension.get(fileName.substring(dot + 1)));
+      }
+    }
+
+    for (int i = 0; i < otherPatterns.size(); i++) {
+      if (stopAtFirstMatch && !matching.isEmpty()) {
+        break;
+      }
+      if (otherPatterns.get(i).match(value)) {
+        matching.set(otherPatternIndices.get(i));
+      }
+    }
+    return matching;
+  }
+
+  private static void addAll(BitSet bitSet, Collection<Integer> indices) {
+    for (Integer index : indices) {
+      bitSet.set(index);
+    }
+  }
+}
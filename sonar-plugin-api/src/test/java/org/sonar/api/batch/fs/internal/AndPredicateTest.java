@@ -21,10 +21,17 @@ package org.sonar.api.batch.fs.internal;
 
 import org.junit.Test;
 import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem.Index;
+import org.sonar.api.batch.fs.InputFile;
 
 import java.util.Arrays;
+import java.util.Collection;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class AndPredicateTest {
 
@@ -48,6 +55,21 @@ public class AndPredicateTest {
     assertThat(((AndPredicate) andPredicate).predicates()).containsExactly(relativePathPredicate, pathPatternPredicate1, pathPatternPredicate2);
   }
 
+  @Test
+  public void getFilesFromSmallestIndex() {
+    InputFile file = new DefaultInputFile("foo", "src/Foo.java").setLanguage("java");
+    Collection<InputFile> mainFiles = mock(Collection.class);
+    when(mainFiles.size()).thenReturn(1000);
+    Index index = mock(Index.class);
+    when(index.inputFilesByType(InputFile.Type.MAIN)).thenReturn(mainFiles);
+    when(index.inputFilesByLanguage("java")).thenReturn(Arrays.asList(file));
+
+    FilePredicate andPredicate = AndPredicate.create(Arrays.<FilePredicate>asList(new TypePredicate(InputFile.Type.MAIN),
+      new LanguagePredicate("java")));
+    assertThat(((AndPredicate) andPredicate).get(index)).containsExactly(file);
+    verify(mainFiles, never()).iterator();
+  }
+
   @Test
   public void simplifyAndExpressionsWhenEmpty() {
     FilePredicate andPredicate = AndPredicate.create(Arrays.<FilePredicate>asList());
@@ -24,9 +24,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FilePredicates;
+import org.sonar.api.batch.fs.InputFile;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -107,6 +111,60 @@ public class DefaultFileSystemTest {
     assertThat(fs.languages()).containsOnly("java", "php");
   }
 
+  @Test
+  public void files_by_language_type_and_status() {
+    fs.add(new DefaultInputFile("foo", "src/Foo.php").setLanguage("php").setStatus(InputFile.Status.ADDED));
+    fs.add(new DefaultInputFile("foo", "src/Bar.java").setLanguage("java").setStatus(InputFile.Status.SAME));
+    fs.add(new DefaultInputFile("foo", "src/Baz.java").setLanguage("java").setStatus(InputFile.Status.CHANGED));
+    fs.add(new DefaultInputFile("foo", "test/BazTest.java").setLanguage("java").setType(InputFile.Type.TEST).setStatus(InputFile.Status.ADDED));
+
+    FilePredicates p = fs.predicates();
+    assertThat(relativePaths(fs.inputFiles(p.and(p.hasType(InputFile.Type.MAIN), p.hasLanguage("java"))))).containsExactly("src/Bar.java", "src/Baz.java");
+    assertThat(relativePaths(fs.inputFiles(p.and(p.hasLanguage("java"), p.hasStatus(InputFile.Status.ADDED))))).containsExactly("test/BazTest.java");
+    assertThat(relativePaths(fs.inputFiles(p.and(p.hasLanguage("java"), p.hasRelativePath("src/Baz.java"))))).containsExactly("src/Baz.java");
+    assertThat(fs.inputFiles(p.and(p.hasType(InputFile.Type.TEST), p.hasLanguage("php")))).isEmpty();
+    assertThat(fs.inputFiles(p.hasStatus(InputFile.Status.SAME))).hasSize(1);
+
+    // file added again with another language
+    fs.add(new DefaultInputFile("foo", "src/Baz.java").setLanguage("php").setStatus(InputFile.Status.CHANGED));
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("java")))).containsExactly("src/Bar.java", "test/BazTest.java");
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("php")))).containsExactly("src/Baz.java", "src/Foo.php");
+    assertThat(fs.inputFiles(p.hasType(InputFile.Type.MAIN))).hasSize(3);
+  }
+
+  @Test
+  public void files_by_language_type_and_status_when_attributes_change_after_being_added() {
+    DefaultInputFile foo = new DefaultInputFile("foo", "src/Foo.php");
+    DefaultInputFile bar = new DefaultInputFile("foo", "src/Bar.java").setLanguage("java");
+    fs.add(foo);
+    fs.add(bar);
+
+    foo.setLanguage("php").setType(InputFile.Type.TEST).setStatus(InputFile.Status.ADDED);
+    bar.setLanguage("js").setStatus(InputFile.Status.SAME);
+
+    FilePredicates p = fs.predicates();
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("php")))).containsExactly("src/Foo.php");
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("js")))).containsExactly("src/Bar.java");
+    assertThat(fs.inputFiles(p.hasLanguage("java"))).isEmpty();
+    assertThat(relativePaths(fs.inputFiles(p.hasType(InputFile.Type.TEST)))).containsExactly("src/Foo.php");
+    assertThat(relativePaths(fs.inputFiles(p.hasType(InputFile.Type.MAIN)))).containsExactly("src/Bar.java");
+    assertThat(relativePaths(fs.inputFiles(p.hasStatus(InputFile.Status.ADDED)))).containsExactly("src/Foo.php");
+
+    // file replaced by another one with the same path is not indexed anymore
+    fs.add(new DefaultInputFile("foo", "src/Bar.java").setLanguage("java"));
+    bar.setLanguage("php");
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("php")))).containsExactly("src/Foo.php");
+    assertThat(relativePaths(fs.inputFiles(p.hasLanguage("java")))).containsExactly("src/Bar.java");
+  }
+
+  private static List<String> relativePaths(Iterable<InputFile> inputFiles) {
+    List<String> paths = new ArrayList<>();
+    for (InputFile inputFile : inputFiles) {
+      paths.add(inputFile.relativePath());
+    }
+    return paths;
+  }
+
   @Test
   public void input_file_returns_null_if_file_not_found() {
     assertThat(fs.inputFile(fs.predicates().hasRelativePath("src/Bar.java"))).isNull();
@@ -74,6 +74,30 @@ public class FileMetadataTest {
     assertThat(metadata.lastValidOffset).isEqualTo(13);
   }
 
+  @Test
+  public void feed_other_handlers_while_reading_metadata() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "foo\r\nbar\nbaz", StandardCharsets.UTF_8, true);
+
+    final StringBuilder content = new StringBuilder();
+    FileMetadata.CharHandler handler = new FileMetadata.CharHandler() {
+      @Override
+      protected void handleIgnoreEoL(char c) {
+        content.append(c);
+      }
+
+      @Override
+      protected void newLine() {
+        content.append('|');
+      }
+    };
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8, handler);
+
+    assertThat(metadata.lines).isEqualTo(3);
+    assertThat(metadata.hash).isEqualTo(md5Hex("foo\nbar\nbaz"));
+    assertThat(content.toString()).isEqualTo("foo|bar|baz");
+  }
+
   @Test
   public void read_with_wrong_encoding() throws Exception {
     File tempFile = temp.newFile();
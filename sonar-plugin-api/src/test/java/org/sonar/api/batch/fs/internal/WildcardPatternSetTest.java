@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.util.BitSet;
+import org.junit.Test;
+import org.sonar.api.utils.WildcardPattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WildcardPatternSetTest {
+
+  private static final String[] PATTERNS = {
+    "**/*.java",
+    "**/*.tar.gz",
+    "src/**",
+    "/src/main/**",
+    "**/gen/**",
+    "**/Foo.java",
+    "**/org/Foo.java",
+    "src/Foo.java",
+    "**",
+    "**/*",
+    "dir\\**",
+    "*.java",
+    "org/T?st.java",
+    "**/*Foo.java",
+    "src/**/test/*.xml",
+    "**/",
+    "src/**/",
+    "\\src\\**",
+    "**/a.b/**",
+    "**/*."
+  };
+
+  private static final String[] PATHS = {
+    "Foo.java",
+    "/Foo.java",
+    "src/Foo.java",
+    "src/Foo.java/",
+    "src/main/java/org/Foo.java",
+    "src/main/java/org/MyFoo.java",
+    "src/main/resources/gen/foo.xml",
+    "src/test/Bar.xml",
+    "src/test/a/b/test/Bar.xml",
+    "src",
+    "gen",
+    "gen/Foo.java",
+    "org/Test.java",
+    "org/Tst.java",
+    "dir/Foo.java",
+    "archive.tar.gz",
+    "lib/archive.gz",
+    "docs/README",
+    ".java",
+    "other/src/Foo.JAVA",
+    "x/a.b/c",
+    "foo."
+  };
+
+  @Test
+  public void match_same_paths_as_wildcard_patterns() {
+    for (String pattern : PATTERNS) {
+      WildcardPattern wildcardPattern = WildcardPattern.create(pattern);
+      WildcardPatternSet set = new WildcardPatternSet(new String[] {pattern});
+      for (String path : PATHS) {
+        assertThat(set.matchAny(path)).as(pattern + " on " + path).isEqualTo(wildcardPattern.match(path));
+      }
+    }
+  }
+
+  @Test
+  public void match_indices_of_patterns() {
+    WildcardPatternSet set = new WildcardPatternSet(PATTERNS);
+    assertThat(set.size()).isEqualTo(PATTERNS.length);
+
+    for (String path : PATHS) {
+      BitSet expected = new BitSet();
+      for (int i = 0; i < PATTERNS.length; i++) {
+        if (WildcardPattern.create(PATTERNS[i]).match(path)) {
+          expected.set(i);
+        }
+      }
+      assertThat(set.match(path)).as(path).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void match_nothing_if_empty() {
+    WildcardPatternSet set = new WildcardPatternSet(new String[0]);
+    assertThat(set.size()).isEqualTo(0);
+    assertThat(set.match("src/Foo.java").isEmpty()).isTrue();
+    assertThat(set.matchAny("src/Foo.java")).isFalse();
+  }
+
+  @Test
+  public void match_any() {
+    WildcardPatternSet set = new WildcardPatternSet(new String[] {"**/*.xml", "src/**/*Test.java"});
+    assertThat(set.matchAny("src/org/FooTest.java")).isTrue();
+    assertThat(set.matchAny("pom.xml")).isTrue();
+    assertThat(set.matchAny("src/org/Foo.java")).isFalse();
+  }
+}
@@ -38,6 +38,7 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.net.ssl.SSLSocketFactory;
+import okio.BufferedSink;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -156,7 +157,7 @@ public class HttpConnector implements WsConnector {
         PostRequest.Part part = param.getValue();
         body.addPart(
           Headers.of("Content-Disposition", format("form-data; name=\"%s\"", param.getKey())),
-          RequestBody.create(MediaType.parse(part.getMediaType()), part.getFile()));
+          partBody(part));
       }
       okRequestBuilder.post(body.build());
     }
@@ -164,6 +165,26 @@ public class HttpConnector implements WsConnector {
     return doCall(okRequestBuilder.build());
   }
 
+  private static RequestBody partBody(PostRequest.Part part) {
+    final MediaType mediaType = MediaType.parse(part.getMediaType());
+    if (part.getFile() != null) {
+      return RequestBody.create(mediaType, part.getFile());
+    }
+    final PostRequest.ContentWriter contentWriter = part.getContentWriter();
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        // length is unknown (-1 by default), so the request is chunked
+        contentWriter.writeTo(sink.outputStream());
+      }
+    };
+  }
+
   private HttpUrl.Builder prepareUrlBuilder(WsRequest wsRequest) {
     String path = wsRequest.getPath();
     HttpUrl.Builder urlBuilder = baseUrl
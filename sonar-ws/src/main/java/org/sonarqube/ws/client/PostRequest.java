@@ -20,8 +20,11 @@
 package org.sonarqube.ws.client;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import javax.annotation.CheckForNull;
 
 /**
  * @since 5.3
@@ -51,19 +54,55 @@ public class PostRequest extends BaseRequest<PostRequest> {
   public static class Part {
     private final String mediaType;
     private final File file;
+    private final ContentWriter contentWriter;
 
     public Part(String mediaType, File file) {
       this.mediaType = mediaType;
       this.file = file;
+      this.contentWriter = null;
+    }
+
+    /**
+     * Part which content is generated while the request is being sent, so that it's
+     * not stored in a temporary file. The request is chunked as its length is not known.
+     * @since 5.4
+     */
+    public Part(String mediaType, ContentWriter contentWriter) {
+      this.mediaType = mediaType;
+      this.file = null;
+      this.contentWriter = contentWriter;
     }
 
     public String getMediaType() {
       return mediaType;
     }
 
+    /**
+     * @return null if the content of part is streamed, see {@link #getContentWriter()}
+     */
+    @CheckForNull
     public File getFile() {
       return file;
     }
+
+    /**
+     * @return null if the content of part is a file, see {@link #getFile()}
+     * @since 5.4
+     */
+    @CheckForNull
+    public ContentWriter getContentWriter() {
+      return contentWriter;
+    }
+  }
+
+  /**
+   * @since 5.4
+   */
+  public interface ContentWriter {
+    /**
+     * Writes the content of part. The stream must not be closed.
+     */
+    void writeTo(OutputStream output) throws IOException;
   }
 
 }